@@ -1,6 +1,8 @@
 // Copyright (c) Microsoft Corporation. All rights reserved.
 // Licensed under the MIT License. See License.txt in the project root for license information.
 
+using System;
+
 namespace Microsoft.Azure.Functions.Worker.Extensions.Sql
 {
     /// <summary>
@@ -31,6 +33,18 @@ namespace Microsoft.Azure.Functions.Worker.Extensions.Sql
         /// keys will be populated.
         /// </summary>
         public T Item { get; }
+
+        /// <summary>
+        /// The time (in UTC) at which the transaction that made the change committed. Only populated for batches of
+        /// changes sampled for commit latency, see the Sql_Trigger_CommitLatencySamplingPercent setting.
+        /// </summary>
+        public DateTime? CommitTime { get; set; }
+
+        /// <summary>
+        /// The number of milliseconds between the commit of the change and when it was fetched by the trigger. Only
+        /// populated for batches of changes sampled for commit latency, see the Sql_Trigger_CommitLatencySamplingPercent setting.
+        /// </summary>
+        public long? CommitLagMs { get; set; }
     }
 
     /// <summary>
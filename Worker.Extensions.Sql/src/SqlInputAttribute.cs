@@ -61,8 +61,94 @@ namespace Microsoft.Azure.Functions.Worker.Extensions.Sql
         /// If the value of a parameter should be null, use "null", as in @param1=null,@param2=param2".
         /// If the value of a parameter should be an empty string, do not add anything after the equals sign and before the comma,
         /// as in "@param1=,@param2=param2"
-        /// Note that neither the parameter name nor the parameter value can have ',' or '='
+        /// Note that neither the parameter name nor the parameter value can have ',' or '=', unless the value is a JSON array
+        /// enclosed in square brackets, as in "@Ids=[1,2,3]", which is passed as a single nvarchar(max) parameter to read with OPENJSON
         /// </summary>
         public string Parameters { get; }
+
+        /// <summary>
+        /// Optional. The duration in milliseconds above which the statements executed by this binding are recorded as slow
+        /// statements, overriding the Sql_SlowStatementThresholdMs app setting. More information can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#slow-statements
+        /// </summary>
+        public int SlowStatementThresholdMs { get; set; }
+
+        /// <summary>
+        /// Optional. How the date and time columns are written in the payload passed to the function.
+        /// Defaults to <see cref="SqlTemporalFormat.Default"/>. More information can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#temporal-formats
+        /// </summary>
+        public SqlTemporalFormat TemporalFormat { get; set; }
+
+        /// <summary>
+        /// Optional. The layout of the rows in the payload passed to the function.
+        /// Defaults to <see cref="SqlPayloadFormat.Default"/>. More information can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#payload-formats
+        /// </summary>
+        public SqlPayloadFormat PayloadFormat { get; set; }
+
+        /// <summary>
+        /// Optional. The duration in milliseconds for which the results of the query are cached and returned to the next
+        /// invocations running the same query with the same parameters. Defaults to 0, which means that the results aren't
+        /// cached. More information can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#input-caching
+        /// </summary>
+        public int CacheTtlMs { get; set; }
+
+        /// <summary>
+        /// Optional. A comma separated list of the tables the results of the query depend on, e.g. "dbo.Products,dbo.Prices".
+        /// The results are then cached until change tracking reports a change to one of the tables (or until
+        /// <see cref="CacheTtlMs"/> if it's also set). The tables must have change tracking enabled. More information can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#input-caching
+        /// </summary>
+        public string CacheDependencies { get; set; }
+
+        /// <summary>
+        /// Optional. Whether the query is sent with ApplicationIntent=ReadOnly, so that it's routed to a readable secondary
+        /// replica of the database instead of the primary. More information can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#read-replicas
+        /// </summary>
+        public bool ReadOnly { get; set; }
+
+        /// <summary>
+        /// Optional. The name of the app setting where the connection string of a read replica of the database is stored.
+        /// The query is run against it instead of the database of <see cref="ConnectionStringSetting"/>. More information
+        /// can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#read-replicas
+        /// </summary>
+        public string ReadReplicaConnectionStringSetting { get; set; }
+
+        /// <summary>
+        /// Optional. When reading from a replica, the maximum estimated lag in milliseconds of the replica, above which
+        /// the query is run against the primary instead. Defaults to 0, which means that the lag isn't checked. More
+        /// information can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#read-replicas
+        /// </summary>
+        public int MaxReplicaLagMs { get; set; }
+
+        /// <summary>
+        /// Optional. The maximum number of rows of the result set passed to the function. The binding stops reading the
+        /// result set once it has read that many rows and cancels the rest of the command. Defaults to 0, which means that
+        /// all the rows are passed to the function. More information can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#large-result-sets
+        /// </summary>
+        public int PageSize { get; set; }
+
+        /// <summary>
+        /// Optional. The zero-based index of the result set returned by the stored procedure or batch which is bound.
+        /// Bindings of an invocation with the same InvocationScope to different result sets of the same command with the
+        /// same parameters share a single execution of the command. Defaults to 0, the first result set. More information
+        /// can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#multiple-result-sets
+        /// </summary>
+        public int ResultSetIndex { get; set; }
+
+        /// <summary>
+        /// Optional. A name unique to each invocation of the function (e.g. the id of the triggering message), shared by
+        /// the input bindings of the function to different result sets of the same command. The bindings of an invocation
+        /// with the same InvocationScope share a single execution of the command. More information can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#multiple-result-sets
+        /// </summary>
+        public string InvocationScope { get; set; }
     }
 }
@@ -0,0 +1,25 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+namespace Microsoft.Azure.Functions.Worker.Extensions.Sql
+{
+    /// <summary>
+    /// The layout of the JSON passed to functions binding to a string, e.g. out-of-process functions.
+    /// </summary>
+    public enum SqlPayloadFormat
+    {
+        /// <summary>
+        /// An array with an object for each row, e.g. [{"ProductId":1,"Name":"Cup"},{"ProductId":2,"Name":"Mug"}].
+        /// </summary>
+        Default,
+
+        /// <summary>
+        /// An object with the names of the columns and then an array of rows, each an array with the values of the
+        /// columns in the same order, e.g. {"columns":["ProductId","Name"],"rows":[[1,"Cup"],[2,"Mug"]]}. The names of
+        /// the columns aren't repeated for every row, which makes large payloads smaller and faster to decode.
+        /// For the trigger the array is named "changes" and each change is an array with the operation and the values
+        /// of the row, e.g. {"columns":["ProductId","Name"],"changes":[[0,[1,"Cup"]],[2,[2,null]]]}.
+        /// </summary>
+        Columnar
+    }
+}
@@ -0,0 +1,28 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+namespace Microsoft.Azure.Functions.Worker.Extensions.Sql
+{
+    /// <summary>
+    /// How the date and time columns are written in the JSON passed to functions binding to a string, e.g.
+    /// out-of-process functions.
+    /// </summary>
+    public enum SqlTemporalFormat
+    {
+        /// <summary>
+        /// datetime, datetime2, smalldatetime and date values are written in UTC with millisecond precision, e.g.
+        /// 2023-01-02T03:04:05.678Z, by the input binding and in the default ISO 8601 format of Json.NET by the trigger.
+        /// datetimeoffset values don't keep their offset in the input binding.
+        /// </summary>
+        Default,
+
+        /// <summary>
+        /// Values are written in a fixed-width ISO 8601 form with 7 fractional digits, which can be decoded by position
+        /// without any culture or time zone information:
+        /// - datetime, datetime2, smalldatetime and date: 2023-01-02T03:04:05.6780000Z
+        /// - datetimeoffset: 2023-01-02T03:04:05.6780000+05:30, keeping the offset of the value
+        /// - time: 03:04:05.6780000
+        /// </summary>
+        Iso8601
+    }
+}
@@ -45,5 +45,29 @@ namespace Microsoft.Azure.Functions.Worker.Extensions.Sql
         /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/TriggerBinding.md#az_funcleasestablename
         /// </summary>
         public string LeasesTableName { get; }
+
+        /// <summary>
+        /// Whether this function is the only consumer of the changes on the table, e.g. because the app runs on a single instance.
+        /// In exclusive mode the changes are processed without per-row leases: a single lease is held for the function and table
+        /// while the instance is consuming changes and only the LastSyncVersion is updated after each batch. If another instance
+        /// takes over the lease it continues from the last LastSyncVersion that was stored.
+        /// More information can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/TriggerBinding.md#exclusive-mode
+        /// </summary>
+        public bool Exclusive { get; set; }
+
+        /// <summary>
+        /// Optional. How the date and time columns of the changed rows are written in the payload passed to the function.
+        /// Defaults to <see cref="SqlTemporalFormat.Default"/>. More information can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#temporal-formats
+        /// </summary>
+        public SqlTemporalFormat TemporalFormat { get; set; }
+
+        /// <summary>
+        /// Optional. The layout of the changes in the payload passed to the function.
+        /// Defaults to <see cref="SqlPayloadFormat.Default"/>. More information can be found here
+        /// https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#payload-formats
+        /// </summary>
+        public SqlPayloadFormat PayloadFormat { get; set; }
     }
 }
\ No newline at end of file
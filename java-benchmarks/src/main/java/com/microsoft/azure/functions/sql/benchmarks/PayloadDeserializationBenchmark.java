@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.microsoft.azure.functions.sql.benchmarks.models.Product;
+import com.microsoft.azure.functions.sql.benchmarks.models.ProductColumnTypes;
+import com.microsoft.azure.functions.sql.benchmarks.models.SqlChangeProduct;
+import com.microsoft.azure.functions.sql.runtime.SqlRowDecoder;
+import com.microsoft.azure.functions.sql.runtime.SqlRowIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the deserialization of the payloads passed to Java functions by the SQL input binding and trigger,
+ * for each of the ways a function typically decodes them: with Gson, which is the baseline, and with the
+ * SqlRowDecoder of the java-library, either through the mappers its annotation processor generates or through
+ * reflection. Run with the GC profiler (the default when using {@link BenchmarkRunner}) to get the allocation rate
+ * of each decoder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadDeserializationBenchmark {
+
+    /**
+     * The shape of the payload, taken from the tables used by the samples and integration tests.
+     */
+    public enum PayloadType {
+        /** Input binding rows from the Products table */
+        PRODUCT(Product.class, Product.class, ReflectedProduct.class),
+        /** Input binding rows from the ProductsColumnTypes table, which has a column of each supported type */
+        PRODUCT_COLUMN_TYPES(ProductColumnTypes.class, ProductColumnTypes.class, ReflectedProductColumnTypes.class),
+        /** Trigger changes on the Products table */
+        SQL_CHANGE_PRODUCT(SqlChangeProduct.class, Product.class, ReflectedProduct.class);
+
+        private final Class<?> itemType;
+        /** The type of the rows, which has a mapper generated by the annotation processor */
+        private final Class<?> rowType;
+        /** The same type without a mapper, which the SqlRowDecoder binds through reflection */
+        private final Class<?> reflectedRowType;
+
+        PayloadType(Class<?> itemType, Class<?> rowType, Class<?> reflectedRowType) {
+            this.itemType = itemType;
+            this.rowType = rowType;
+            this.reflectedRowType = reflectedRowType;
+        }
+
+        SqlRowDecoder<?> createDecoder(boolean reflected) {
+            Class<?> type = reflected ? this.reflectedRowType : this.rowType;
+            return this == SQL_CHANGE_PRODUCT ? SqlRowDecoder.forChanges(type) : SqlRowDecoder.forType(type);
+        }
+
+        String create(int rowCount) {
+            switch (this) {
+                case PRODUCT:
+                    return Payloads.products(rowCount);
+                case PRODUCT_COLUMN_TYPES:
+                    return Payloads.productColumnTypes(rowCount);
+                default:
+                    return Payloads.sqlChangeProducts(rowCount);
+            }
+        }
+    }
+
+    @Param({"1", "100", "1000", "10000"})
+    public int rowCount;
+
+    @Param
+    public PayloadType payloadType;
+
+    private final Gson gson = new Gson();
+
+    private String json;
+    private byte[] utf8;
+    private Class<?> arrayType;
+    private TypeAdapter<?> itemAdapter;
+    private SqlRowDecoder<?> decoder;
+    private SqlRowDecoder<?> reflectedDecoder;
+
+    /**
+     * A subclass of {@link Product} without the SQLRow annotation, so no mapper is generated for it.
+     */
+    public static class ReflectedProduct extends Product {
+    }
+
+    /**
+     * A subclass of {@link ProductColumnTypes} without the SQLRow annotation, so no mapper is generated for it.
+     */
+    public static class ReflectedProductColumnTypes extends ProductColumnTypes {
+    }
+
+    @Setup
+    public void setup() {
+        this.json = this.payloadType.create(this.rowCount);
+        this.utf8 = this.json.getBytes(StandardCharsets.UTF_8);
+        this.arrayType = Array.newInstance(this.payloadType.itemType, 0).getClass();
+        this.itemAdapter = this.gson.getAdapter(this.payloadType.itemType);
+        // Created once per type the same as in a function, so the benchmarks don't include looking up the mapper or
+        // computing the accessors of the type
+        this.decoder = this.payloadType.createDecoder(false);
+        this.reflectedDecoder = this.payloadType.createDecoder(true);
+    }
+
+    /**
+     * Deserializes the whole payload into an array of POJOs, the way the samples do with the String they're passed.
+     */
+    @Benchmark
+    public Object gsonPojoFromString() {
+        return this.gson.fromJson(this.json, this.arrayType);
+    }
+
+    /**
+     * Same as {@link #gsonPojoFromString()} but decoding the UTF-8 bytes directly, without first building a String.
+     */
+    @Benchmark
+    public Object gsonPojoFromUtf8() throws IOException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(this.utf8), StandardCharsets.UTF_8)) {
+            return this.gson.fromJson(reader, this.arrayType);
+        }
+    }
+
+    /**
+     * Parses the payload into a JSON tree, for functions which read individual properties instead of binding to a POJO.
+     */
+    @Benchmark
+    public void gsonTree(Blackhole blackhole) {
+        for (JsonElement row : JsonParser.parseString(this.json).getAsJsonArray()) {
+            blackhole.consume(row.getAsJsonObject().get("ProductId"));
+        }
+    }
+
+    /**
+     * Streams the payload, deserializing one row at a time without materializing the whole array.
+     */
+    @Benchmark
+    public void gsonStreaming(Blackhole blackhole) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(this.utf8), StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                blackhole.consume(this.itemAdapter.read(reader));
+            }
+            reader.endArray();
+        }
+    }
+
+    /**
+     * Decodes the whole payload into a list with the SqlRowDecoder, binding the rows with the generated mapper. This
+     * is the equivalent of {@link #gsonPojoFromString()}.
+     */
+    @Benchmark
+    public Object decoderMapperFromString() {
+        return this.decoder.decodeAll(this.json);
+    }
+
+    /**
+     * Same as {@link #decoderMapperFromString()} but binding the rows through reflection, for the types the annotation
+     * processor couldn't generate a mapper for.
+     */
+    @Benchmark
+    public Object decoderReflectionFromString() {
+        return this.reflectedDecoder.decodeAll(this.json);
+    }
+
+    /**
+     * Streams the UTF-8 bytes of the payload with the SqlRowDecoder, binding one row at a time with the generated
+     * mapper. This is the equivalent of {@link #gsonStreaming(Blackhole)}.
+     */
+    @Benchmark
+    public void decoderMapperStreaming(Blackhole blackhole) throws IOException {
+        try (SqlRowIterator<?> rows = this.decoder.iterate(new InputStreamReader(new ByteArrayInputStream(this.utf8), StandardCharsets.UTF_8))) {
+            while (rows.hasNext()) {
+                blackhole.consume(rows.next());
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.benchmarks;
+
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Builds canned payloads in the same JSON format the SQL extension passes to Java functions, so the benchmarks
+ * run entirely offline. The payloads are generated from a fixed seed so every run deserializes the exact same
+ * bytes.
+ */
+public final class Payloads {
+    private static final long SEED = 42;
+
+    private Payloads() {
+    }
+
+    /**
+     * A JSON array of rows as returned by a SQL input binding on the Products table.
+     */
+    public static String products(int rowCount) {
+        Random random = new Random(SEED);
+        StringBuilder json = new StringBuilder(rowCount * 64 + 2);
+        json.append('[');
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendProduct(json, random, i);
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * A JSON array of rows as returned by a SQL input binding on the ProductsColumnTypes table, which covers all
+     * the supported column types.
+     */
+    public static String productColumnTypes(int rowCount) {
+        Random random = new Random(SEED);
+        StringBuilder json = new StringBuilder(rowCount * 640 + 2);
+        json.append('[');
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"ProductId\":").append(i)
+                .append(",\"BigInt\":").append(random.nextLong())
+                .append(",\"Bit\":").append(random.nextBoolean())
+                .append(",\"DecimalType\":").append(decimal(random, 18, 3))
+                .append(",\"Money\":").append(decimal(random, 15, 4))
+                .append(",\"Numeric\":").append(decimal(random, 18, 3))
+                .append(",\"SmallInt\":").append((short) random.nextInt())
+                .append(",\"SmallMoney\":").append(decimal(random, 6, 4))
+                .append(",\"TinyInt\":").append(random.nextInt(256))
+                .append(",\"FloatType\":").append(random.nextDouble())
+                .append(",\"Real\":").append(random.nextFloat())
+                .append(",\"Date\":\"").append(dateTime(random, false)).append('"')
+                .append(",\"Datetime\":\"").append(dateTime(random, true)).append('"')
+                .append(",\"Datetime2\":\"").append(dateTime(random, true)).append('"')
+                .append(",\"DatetimeOffset\":\"").append(dateTime(random, true)).append('"')
+                .append(",\"SmallDatetime\":\"").append(dateTime(random, false)).append('"')
+                .append(",\"Time\":\"").append(String.format(Locale.ROOT, "%02d:%02d:%02d",
+                    random.nextInt(24), random.nextInt(60), random.nextInt(60))).append('"')
+                .append(",\"CharType\":\"").append(text(random, 10)).append('"')
+                .append(",\"Varchar\":\"").append(text(random, 1 + random.nextInt(100))).append('"')
+                .append(",\"Nchar\":\"").append(text(random, 10)).append('"')
+                .append(",\"Nvarchar\":\"").append(text(random, 1 + random.nextInt(100))).append('"')
+                .append(",\"Binary\":\"").append(binary(random, 8)).append('"')
+                .append(",\"Varbinary\":\"").append(binary(random, 1 + random.nextInt(64))).append('"')
+                .append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * A JSON array of changes as passed by a SQL trigger on the Products table. The operation is serialized as a
+     * number, the same as the extension does.
+     */
+    public static String sqlChangeProducts(int rowCount) {
+        Random random = new Random(SEED);
+        StringBuilder json = new StringBuilder(rowCount * 96 + 2);
+        json.append('[');
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"Operation\":").append(random.nextInt(3)).append(",\"Item\":");
+            appendProduct(json, random, i);
+            json.append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private static void appendProduct(StringBuilder json, Random random, int productId) {
+        json.append("{\"ProductId\":").append(productId)
+            .append(",\"Name\":\"").append(text(random, 5 + random.nextInt(20))).append('"')
+            .append(",\"Cost\":").append(random.nextInt(1000))
+            .append('}');
+    }
+
+    private static String decimal(Random random, int precision, int scale) {
+        long unscaled = (long) (random.nextDouble() * Math.pow(10, Math.min(precision, 15)));
+        long divisor = (long) Math.pow(10, scale);
+        return String.format(Locale.ROOT, "%d.%0" + scale + "d", unscaled / divisor, unscaled % divisor);
+    }
+
+    /**
+     * Dates are sent in the ISO 8601 format used by the extension (yyyy-MM-ddTHH:mm:ss.fffZ).
+     */
+    private static String dateTime(Random random, boolean withMilliseconds) {
+        return String.format(Locale.ROOT, "%04d-%02d-%02dT%02d:%02d:%02d.%03dZ",
+            1990 + random.nextInt(40), 1 + random.nextInt(12), 1 + random.nextInt(28),
+            random.nextInt(24), random.nextInt(60), random.nextInt(60),
+            withMilliseconds ? random.nextInt(1000) : 0);
+    }
+
+    private static String text(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    private static String binary(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.benchmarks.models;
+
+import com.microsoft.azure.functions.sql.annotation.SQLRow;
+
+@SQLRow
+public class Product {
+    private Integer ProductId;
+    private String Name;
+    private int Cost;
+
+    public Product() {
+    }
+
+    public Product(int productId, String name, int cost) {
+        ProductId = productId;
+        Name = name;
+        Cost = cost;
+    }
+
+    public int getProductId() {
+        return ProductId;
+    }
+
+    public void setProductId(int productId) {
+        this.ProductId = productId;
+    }
+
+    public String getName() {
+        return Name;
+    }
+
+    public void setName(String name) {
+        this.Name = name;
+    }
+
+    public int getCost() {
+        return Cost;
+    }
+
+    public void setCost(int cost) {
+        this.Cost = cost;
+    }
+}
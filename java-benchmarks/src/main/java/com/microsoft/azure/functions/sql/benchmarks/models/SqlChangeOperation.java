@@ -0,0 +1,18 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.benchmarks.models;
+
+import com.google.gson.annotations.SerializedName;
+
+public enum SqlChangeOperation {
+    @SerializedName("0")
+    Insert,
+    @SerializedName("1")
+    Update,
+    @SerializedName("2")
+    Delete
+}
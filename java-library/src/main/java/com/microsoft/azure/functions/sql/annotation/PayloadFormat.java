@@ -0,0 +1,22 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.azure.functions.sql.annotation;
+
+/**
+ * The layout of the rows in the payload passed to the function.
+ */
+public enum PayloadFormat {
+    /**
+     * An array with an object for each row.
+     */
+    Default,
+
+    /**
+     * An object with the names of the columns and then an array of rows, each an array with the values of the
+     * columns in the same order. Only decoded by the SqlRowDecoder, which detects the layout of the payload.
+     */
+    Columnar
+}
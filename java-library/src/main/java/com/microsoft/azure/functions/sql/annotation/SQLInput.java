@@ -35,7 +35,8 @@ public @interface SQLInput {
     /**
      * Parameters to the query or stored procedure. This string must follow the format
      * "@param1=param1,@param2=param2" where @param1 is the name of the parameter and
-     * param1 is the parameter value.
+     * param1 is the parameter value. A value enclosed in square brackets, e.g. "@ids=[1,2,3]", is a JSON array
+     * which can contain ',' and '=' and is passed as a single nvarchar(max) parameter to read with OPENJSON.
      */
     String parameters() default "";
 
@@ -43,4 +44,88 @@ public @interface SQLInput {
      * Setting name for SQL connection string.
      */
     String connectionStringSetting() default "";
+
+    /**
+     * Optional. The duration in milliseconds above which the statements executed by this binding are recorded as slow
+     * statements, overriding the Sql_SlowStatementThresholdMs app setting. More information can be found here:
+     * https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#slow-statements
+     */
+    int slowStatementThresholdMs() default 0;
+
+    /**
+     * Optional. How the date and time columns are written in the payload. Iso8601 keeps the offset of datetimeoffset
+     * values and the full precision of the values, which are then bound to java.time types without any parsing of
+     * locale-dependent strings. More information can be found here:
+     * https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#temporal-formats
+     */
+    TemporalFormat temporalFormat() default TemporalFormat.Default;
+
+    /**
+     * Optional. The layout of the rows in the payload. Columnar writes the names of the columns once instead of for
+     * every row, and is decoded by the SqlRowDecoder the same way as the default layout. More information can be found
+     * here: https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#payload-formats
+     */
+    PayloadFormat payloadFormat() default PayloadFormat.Default;
+
+    /**
+     * Optional. The duration in milliseconds for which the results of the query are cached by the extension and
+     * returned to the next invocations running the same query with the same parameters. Defaults to 0, which means
+     * that the results aren't cached. More information can be found here:
+     * https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#input-caching
+     */
+    int cacheTtlMs() default 0;
+
+    /**
+     * Optional. A comma separated list of the tables the results of the query depend on, e.g. "dbo.Products,dbo.Prices".
+     * The results are then cached until change tracking reports a change to one of the tables (or until cacheTtlMs if
+     * it's also set). The tables must have change tracking enabled. More information can be found here:
+     * https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#input-caching
+     */
+    String cacheDependencies() default "";
+
+    /**
+     * Optional. Whether the query is sent with ApplicationIntent=ReadOnly, so that it's routed to a readable secondary
+     * replica of the database instead of the primary. More information can be found here:
+     * https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#read-replicas
+     */
+    boolean readOnly() default false;
+
+    /**
+     * Optional. The name of the app setting where the connection string of a read replica of the database is stored.
+     * The query is run against it instead of the database of connectionStringSetting. More information can be found
+     * here: https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#read-replicas
+     */
+    String readReplicaConnectionStringSetting() default "";
+
+    /**
+     * Optional. When reading from a replica, the maximum estimated lag in milliseconds of the replica, above which
+     * the query is run against the primary instead. Defaults to 0, which means that the lag isn't checked. More
+     * information can be found here:
+     * https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#read-replicas
+     */
+    int maxReplicaLagMs() default 0;
+
+    /**
+     * Optional. The maximum number of rows of the result set passed to the function. The binding stops reading the
+     * result set once it has read that many rows and cancels the rest of the command. Defaults to 0, which means that
+     * all the rows are passed to the function. More information can be found here:
+     * https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#large-result-sets
+     */
+    int pageSize() default 0;
+
+    /**
+     * Optional. The zero-based index of the result set returned by the stored procedure or batch which is bound.
+     * Parameters of an invocation with the same invocationScope bound to different result sets of the same command with
+     * the same parameters share a single execution of the command. Defaults to 0, the first result set. More information
+     * can be found here: https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#multiple-result-sets
+     */
+    int resultSetIndex() default 0;
+
+    /**
+     * Optional. A name unique to each invocation of the function (e.g. the id of the triggering message), shared by
+     * the parameters of the function bound to different result sets of the same command. The parameters of an
+     * invocation with the same invocationScope share a single execution of the command. More information can be found
+     * here: https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#multiple-result-sets
+     */
+    String invocationScope() default "";
 }
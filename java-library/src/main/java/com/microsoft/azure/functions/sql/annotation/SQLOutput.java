@@ -32,4 +32,20 @@ public @interface SQLOutput {
      * Setting name for SQL connection string.
      */
     String connectionStringSetting() default "";
+
+    /**
+     * Optional. The duration in milliseconds above which the statements executed by this binding are recorded as slow
+     * statements, overriding the Sql_SlowStatementThresholdMs app setting. More information can be found here:
+     * https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#slow-statements
+     */
+    int slowStatementThresholdMs() default 0;
+
+    /**
+     * Optional. A name unique to each invocation of the function (e.g. the id of the triggering message), shared by
+     * the output bindings of the function whose rows should be written together. The rows of all the output bindings
+     * of an invocation with the same invocationScope and connection string are upserted in a single transaction
+     * whenever one of them flushes, so that either all of them or none of them are written. More information can be found here:
+     * https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#invocation-scopes
+     */
+    String invocationScope() default "";
 }
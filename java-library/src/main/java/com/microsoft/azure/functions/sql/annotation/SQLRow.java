@@ -0,0 +1,23 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class or record whose instances are decoded from SQL rows with the SqlRowDecoder, so that the SQL
+ * bindings annotation processor generates a mapper binding the rows to it without reflection. Mappers are
+ * generated automatically for the types of the parameters annotated with SQLInput and SQLTrigger, this is only
+ * needed for the types decoded from a String parameter.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface SQLRow {
+}
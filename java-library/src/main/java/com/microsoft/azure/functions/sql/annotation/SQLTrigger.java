@@ -38,4 +38,23 @@ public @interface SQLTrigger {
      * https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/TriggerBinding.md#az_funcleases_).
      */
     String leasesTableName() default "";
+
+    /**
+     * Optional. Whether this function is the only consumer of the changes on the table. In exclusive mode the changes
+     * are processed without per-row leases, only the LastSyncVersion is updated after each batch. More information can
+     * be found here: https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/TriggerBinding.md#exclusive-mode
+     */
+    boolean exclusive() default false;
+
+    /**
+     * Optional. How the date and time columns of the changed rows are written in the payload. More information can be
+     * found here: https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#temporal-formats
+    */
+    TemporalFormat temporalFormat() default TemporalFormat.Default;
+
+    /**
+     * Optional. The layout of the changes in the payload. More information can be found here:
+     * https://github.com/Azure/azure-functions-sql-extension/blob/main/docs/BindingsOverview.md#payload-formats
+    */
+    PayloadFormat payloadFormat() default PayloadFormat.Default;
 }
\ No newline at end of file
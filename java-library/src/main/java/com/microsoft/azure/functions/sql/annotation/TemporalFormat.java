@@ -0,0 +1,24 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.azure.functions.sql.annotation;
+
+/**
+ * How the date and time columns are written in the payload passed to the function.
+ */
+public enum TemporalFormat {
+    /**
+     * datetime, datetime2, smalldatetime and date values are written in UTC with millisecond precision by the input
+     * binding, and datetimeoffset values don't keep their offset.
+     */
+    Default,
+
+    /**
+     * Values are written in a fixed-width ISO 8601 form with 7 fractional digits, e.g. 2023-01-02T03:04:05.6780000Z,
+     * 2023-01-02T03:04:05.6780000+05:30 for datetimeoffset values and 03:04:05.6780000 for time values. These are
+     * decoded to java.time types by position, without any locale or time zone lookups.
+     */
+    Iso8601
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The columns of the tables of a database, read from a checked-in properties file where each key is the name of a
+ * table and each value is the comma-separated names of its columns, e.g.
+ * <pre>
+ * dbo.Products=ProductId,Name,Cost
+ * </pre>
+ * Names are compared ignoring case, and tables without a schema are assumed to be in the dbo schema.
+ */
+final class SchemaSnapshot {
+    private static final String DEFAULT_SCHEMA = "dbo";
+
+    private final Map<String, Set<String>> tables = new HashMap<String, Set<String>>();
+
+    static SchemaSnapshot load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream stream = Files.newInputStream(path); Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        SchemaSnapshot snapshot = new SchemaSnapshot();
+        for (String table : properties.stringPropertyNames()) {
+            Set<String> columns = new HashSet<String>();
+            for (String column : properties.getProperty(table).split(",")) {
+                if (!column.trim().isEmpty()) {
+                    columns.add(column.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+            snapshot.tables.put(getKey(SqlBindingValidator.parseTableName(table)), columns);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Gets the columns of the table with the given name parts, in lower case, or null if the table isn't in the
+     * snapshot.
+     */
+    Set<String> getColumns(List<String> tableName) {
+        return this.tables.get(getKey(tableName));
+    }
+
+    private static String getKey(List<String> tableName) {
+        // Only the schema and table are used by the extension
+        String table = tableName.get(tableName.size() - 1);
+        String schema = tableName.size() > 1 ? tableName.get(tableName.size() - 2) : DEFAULT_SCHEMA;
+        return (schema + "." + table).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.processor;
+
+import com.microsoft.azure.functions.sql.annotation.CommandType;
+import com.microsoft.azure.functions.sql.annotation.SQLInput;
+import com.microsoft.azure.functions.sql.annotation.SQLOutput;
+import com.microsoft.azure.functions.sql.annotation.SQLRow;
+import com.microsoft.azure.functions.sql.annotation.SQLTrigger;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Checks the SQL binding annotations at compile time, so that errors which the extension would otherwise only
+ * report on the first invocation of the function fail the build instead:
+ * <ul>
+ * <li>the commandText and parameters of {@link SQLInput}</li>
+ * <li>the bracket quoting of the tableName of {@link SQLOutput} and {@link SQLTrigger}</li>
+ * <li>if a schema snapshot is specified with the {@value #SCHEMA_SNAPSHOT_OPTION} option, that the properties of
+ * the types bound to {@link SQLOutput} and {@link SQLTrigger} are columns of the table</li>
+ * </ul>
+ * It also generates a mapper for the types bound to {@link SQLInput} and {@link SQLTrigger} parameters and the
+ * types annotated with {@link SQLRow}, which the SqlRowDecoder uses to bind rows without any reflection.
+ * <p>
+ * The processor is registered as a service so it runs automatically when compiling with this library on the
+ * classpath.
+ */
+@SupportedAnnotationTypes({
+    "com.microsoft.azure.functions.sql.annotation.SQLInput",
+    "com.microsoft.azure.functions.sql.annotation.SQLOutput",
+    "com.microsoft.azure.functions.sql.annotation.SQLTrigger",
+    "com.microsoft.azure.functions.sql.annotation.SQLRow"
+})
+@SupportedOptions(SqlBindingProcessor.SCHEMA_SNAPSHOT_OPTION)
+public class SqlBindingProcessor extends AbstractProcessor {
+    /**
+     * The processor option with the path of the schema snapshot, see {@link SchemaSnapshot} for its format.
+     */
+    public static final String SCHEMA_SNAPSHOT_OPTION = "sql.schemaSnapshot";
+
+    private static final String OUTPUT_BINDING = "com.microsoft.azure.functions.OutputBinding";
+    private static final String CHANGE_ITEM = "Item";
+
+    private SqlRowMapperGenerator generator;
+    private SchemaSnapshot schemaSnapshot;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.generator = new SqlRowMapperGenerator(processingEnv);
+        String snapshotPath = processingEnv.getOptions().get(SCHEMA_SNAPSHOT_OPTION);
+        if (snapshotPath != null && !snapshotPath.isEmpty()) {
+            try {
+                this.schemaSnapshot = SchemaSnapshot.load(Paths.get(snapshotPath));
+            } catch (IOException | IllegalArgumentException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to read the SQL schema snapshot " + snapshotPath + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(SQLInput.class)) {
+            this.checkInput(element, element.getAnnotation(SQLInput.class));
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(SQLOutput.class)) {
+            this.checkOutput(element, element.getAnnotation(SQLOutput.class));
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(SQLTrigger.class)) {
+            this.checkTrigger(element, element.getAnnotation(SQLTrigger.class));
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(SQLRow.class)) {
+            this.generator.generate((TypeElement) element, element);
+        }
+        // Other processors may also handle the binding annotations
+        return false;
+    }
+
+    private void checkInput(Element parameter, SQLInput input) {
+        if (input.commandText().trim().isEmpty()) {
+            this.error(parameter, "The commandText of the SQL input binding " + input.name() + " is required.");
+        } else if (input.commandType() == CommandType.StoredProcedure && !SqlBindingValidator.isResolvedAtRuntime(input.commandText())) {
+            this.checkTableName(parameter, input.commandText(), "stored procedure of the SQL input binding " + input.name());
+        }
+        String error = SqlBindingValidator.validateParameters(input.parameters());
+        if (error != null) {
+            this.error(parameter, "Invalid parameters for the SQL input binding " + input.name() + ": " + error);
+        }
+        TypeElement rowType = this.getRowType(parameter.asType());
+        if (rowType != null) {
+            this.generator.generate(rowType, parameter);
+        }
+    }
+
+    private void checkOutput(Element parameter, SQLOutput output) {
+        List<String> tableName = this.checkTableName(parameter, output.commandText(), "table of the SQL output binding " + output.name());
+        TypeElement rowType = this.getRowType(parameter.asType());
+        if (tableName != null && rowType != null) {
+            // The extension fails to upsert rows with properties which aren't columns
+            this.checkColumns(parameter, tableName, rowType, Diagnostic.Kind.ERROR);
+        }
+    }
+
+    private void checkTrigger(Element parameter, SQLTrigger trigger) {
+        List<String> tableName = this.checkTableName(parameter, trigger.tableName(), "table of the SQL trigger " + trigger.name());
+        if (!trigger.leasesTableName().isEmpty()) {
+            this.checkTableName(parameter, trigger.leasesTableName(), "leases table of the SQL trigger " + trigger.name());
+        }
+        TypeElement changeType = this.getRowType(parameter.asType());
+        if (changeType == null) {
+            return;
+        }
+        this.generator.generate(changeType, parameter);
+        // The changed row is the Item property of the change, its properties which aren't columns are never set
+        TypeElement itemType = this.getItemType(changeType);
+        if (tableName != null && itemType != null) {
+            this.checkColumns(parameter, tableName, itemType, Diagnostic.Kind.WARNING);
+        }
+    }
+
+    /**
+     * Validates the name of a table, returning its parts or null if it's invalid or resolved at runtime.
+     */
+    private List<String> checkTableName(Element parameter, String name, String description) {
+        if (name.trim().isEmpty()) {
+            this.error(parameter, "The " + description + " is required.");
+            return null;
+        }
+        if (SqlBindingValidator.isResolvedAtRuntime(name)) {
+            return null;
+        }
+        try {
+            List<String> parts = SqlBindingValidator.parseTableName(name);
+            if (parts.size() > 2) {
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Only the schema and name of the " + description
+                    + " are used, the database in " + name + " is ignored.", parameter);
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            this.error(parameter, "Invalid name '" + name + "' for the " + description + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void checkColumns(Element parameter, List<String> tableName, TypeElement rowType, Diagnostic.Kind kind) {
+        if (this.schemaSnapshot == null) {
+            return;
+        }
+        Set<String> columns = this.schemaSnapshot.getColumns(tableName);
+        if (columns == null) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "The table " + String.join(".", tableName)
+                + " isn't in the SQL schema snapshot.", parameter);
+            return;
+        }
+        // The rows are serialized by the Java worker, which uses all the fields
+        for (TypeElement current = rowType; current != null && !current.getQualifiedName().contentEquals("java.lang.Object");
+            current = (TypeElement) this.processingEnv.getTypeUtils().asElement(current.getSuperclass())) {
+            for (Element member : current.getEnclosedElements()) {
+                Set<Modifier> modifiers = member.getModifiers();
+                if (member.getKind() != ElementKind.FIELD && !"RECORD_COMPONENT".equals(member.getKind().name())
+                    || modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                if (!columns.contains(member.getSimpleName().toString().toLowerCase(Locale.ROOT))) {
+                    this.processingEnv.getMessager().printMessage(kind, "The property " + member.getSimpleName() + " of "
+                        + rowType.getSimpleName() + " isn't a column of the table " + String.join(".", tableName) + ".", parameter);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the type of the rows bound to a parameter (e.g. Product for Product[] or OutputBinding&lt;Product[]&gt;),
+     * or null if the parameter isn't bound to a class or record.
+     */
+    private TypeElement getRowType(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            DeclaredType declaredType = (DeclaredType) type;
+            TypeElement element = (TypeElement) declaredType.asElement();
+            if (element.getQualifiedName().contentEquals(OUTPUT_BINDING)) {
+                return declaredType.getTypeArguments().size() == 1 ? this.getRowType(declaredType.getTypeArguments().get(0)) : null;
+            }
+        }
+        if (type.getKind() == TypeKind.ARRAY) {
+            type = ((ArrayType) type).getComponentType();
+        }
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        String name = element.getQualifiedName().toString();
+        boolean isClass = element.getKind() == ElementKind.CLASS || "RECORD".equals(element.getKind().name());
+        if (!isClass || name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("com.google.gson.")) {
+            return null;
+        }
+        return element;
+    }
+
+    private TypeElement getItemType(TypeElement changeType) {
+        for (Element member : changeType.getEnclosedElements()) {
+            if ((member.getKind() == ElementKind.FIELD || "RECORD_COMPONENT".equals(member.getKind().name()))
+                && member.getSimpleName().toString().equalsIgnoreCase(CHANGE_ITEM)) {
+                return this.getRowType(member.asType());
+            }
+        }
+        return null;
+    }
+
+    private void error(Element element, String message) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Validates the values of the SQL binding annotations the same way the extension does when the function is first
+ * invoked.
+ */
+final class SqlBindingValidator {
+    private SqlBindingValidator() {
+    }
+
+    /**
+     * Returns whether the value is resolved at runtime, from an app setting (%Setting%) or a binding expression
+     * ({Query.id}), in which case it can't be validated.
+     */
+    static boolean isResolvedAtRuntime(String value) {
+        return value.indexOf('%') >= 0 || value.indexOf('{') >= 0;
+    }
+
+    /**
+     * Validates the parameters of an input binding, which must be in the format "@param1=value1,@param2=value2", where
+     * a value enclosed in square brackets is a JSON array which can contain ',' and '='.
+     * Returns the error message, or null if the parameters are valid.
+     */
+    static String validateParameters(String parameters) {
+        // Same as the extension, empty entries are ignored and each entry other than an array must contain exactly one '='
+        List<String> pairs = splitParameterPairs(parameters);
+        if (pairs == null) {
+            return "Array parameter values must end with \"]\", i.e. \"@param1=[1,2,3]\".";
+        }
+        for (String pair : pairs) {
+            int separatorIndex = pair.indexOf('=');
+            String value = separatorIndex < 0 ? null : pair.substring(separatorIndex + 1);
+            if (value == null || (!isArrayParameterValue(value) && value.indexOf('=') >= 0)) {
+                return "Parameters must be separated by \",\" and parameter name and parameter value must be separated by \"=\", "
+                    + "i.e. \"@param1=param1,@param2=param2\". Invalid parameter: \"" + pair + "\".";
+            }
+            if (!pair.startsWith("@")) {
+                return "Parameter name must start with \"@\", i.e. \"@param1=param1,@param2=param2\". Invalid parameter: \"" + pair + "\".";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Splits the parameters on the commas that aren't inside an array value, skipping empty entries, the same way the
+     * extension does. Returns null if an array isn't closed.
+     */
+    private static List<String> splitParameterPairs(String parameters) {
+        List<String> pairs = new ArrayList<String>();
+        int start = 0;
+        int depth = 0;
+        boolean inString = false;
+        for (int i = 0; i < parameters.length(); i++) {
+            char c = parameters.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '[' && (depth > 0 || (i > 0 && parameters.charAt(i - 1) == '='))) {
+                // Only brackets at the start of a value begin an array, so that scalar values can still contain them
+                depth++;
+            } else if (depth > 0 && c == ']') {
+                depth--;
+            } else if (depth > 0 && c == '"') {
+                inString = true;
+            } else if (depth == 0 && c == ',') {
+                if (i > start) {
+                    pairs.add(parameters.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        if (depth > 0) {
+            return null;
+        }
+        if (parameters.length() > start) {
+            pairs.add(parameters.substring(start));
+        }
+        return pairs;
+    }
+
+    private static boolean isArrayParameterValue(String value) {
+        return value.length() >= 2 && value.charAt(0) == '[' && value.charAt(value.length() - 1) == ']';
+    }
+
+    /**
+     * Parses the name of a table in the format [schema].[table], where each part is optionally quoted with brackets
+     * or double quotes, and returns the unquoted parts.
+     *
+     * @throws IllegalArgumentException If the name isn't valid
+     */
+    static List<String> parseTableName(String name) {
+        List<String> parts = new ArrayList<String>();
+        int i = skipWhitespace(name, 0);
+        while (true) {
+            if (i == name.length()) {
+                throw new IllegalArgumentException("Missing table name after '.'");
+            }
+            char c = name.charAt(i);
+            StringBuilder part = new StringBuilder();
+            if (c == '[' || c == '"') {
+                char close = c == '[' ? ']' : '"';
+                i++;
+                while (true) {
+                    if (i == name.length()) {
+                        throw new IllegalArgumentException("Missing closing " + close + " in " + name);
+                    }
+                    char ch = name.charAt(i++);
+                    if (ch == close) {
+                        // The closing character is escaped by doubling it
+                        if (i < name.length() && name.charAt(i) == close) {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                    part.append(ch);
+                }
+                if (part.length() == 0) {
+                    throw new IllegalArgumentException("Empty quoted name");
+                }
+            } else {
+                while (i < name.length() && name.charAt(i) != '.' && !Character.isWhitespace(name.charAt(i))) {
+                    char ch = name.charAt(i);
+                    boolean valid = part.length() == 0
+                        ? Character.isLetter(ch) || ch == '_' || ch == '@' || ch == '#'
+                        : Character.isLetterOrDigit(ch) || ch == '_' || ch == '@' || ch == '#' || ch == '$';
+                    if (!valid) {
+                        throw new IllegalArgumentException("Invalid character '" + ch + "' in " + name
+                            + ", names containing special characters must be quoted with brackets, e.g. [my-table]");
+                    }
+                    part.append(ch);
+                    i++;
+                }
+                if (part.length() == 0) {
+                    throw new IllegalArgumentException("Missing table name before '.'");
+                }
+            }
+            parts.add(part.toString());
+            i = skipWhitespace(name, i);
+            if (i == name.length()) {
+                return parts;
+            }
+            if (name.charAt(i) != '.') {
+                throw new IllegalArgumentException("Unexpected '" + name.substring(i) + "' after " + name.substring(0, i).trim());
+            }
+            i = skipWhitespace(name, i + 1);
+        }
+    }
+
+    private static int skipWhitespace(String value, int index) {
+        while (index < value.length() && Character.isWhitespace(value.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+}
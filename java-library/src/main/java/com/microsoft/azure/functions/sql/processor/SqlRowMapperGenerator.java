@@ -0,0 +1,399 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.processor;
+
+import com.microsoft.azure.functions.sql.runtime.SqlRowMapper;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates the {@link SqlRowMapper} of a type, which binds rows to the type through its accessible fields or
+ * setters (or the canonical constructor of records) without any reflection. Types which can't be bound this way,
+ * e.g. because a field is private and has no setter, are reported with a warning and bound through reflection at
+ * runtime instead.
+ */
+final class SqlRowMapperGenerator {
+    private static final String RECORD = "RECORD";
+    private static final String RECORD_COMPONENT = "RECORD_COMPONENT";
+
+    private final Elements elements;
+    private final Types types;
+    private final Messager messager;
+    private final ProcessingEnvironment processingEnv;
+    private final Set<String> processed = new HashSet<String>();
+
+    SqlRowMapperGenerator(ProcessingEnvironment processingEnv) {
+        this.processingEnv = processingEnv;
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.messager = processingEnv.getMessager();
+    }
+
+    /**
+     * Generates the mapper of the type, unless it was already generated.
+     *
+     * @param origin The element the warnings and errors are reported on
+     */
+    void generate(TypeElement type, Element origin) {
+        String binaryName = this.elements.getBinaryName(type).toString();
+        if (!this.processed.add(binaryName)) {
+            return;
+        }
+        String mapperName = SqlRowMapper.getMapperName(binaryName);
+        if (this.elements.getTypeElement(mapperName) != null) {
+            // Generated when compiling another module
+            return;
+        }
+        List<TypeElement> nestedTypes = new ArrayList<TypeElement>();
+        String source;
+        try {
+            source = this.createSource(type, mapperName, nestedTypes);
+        } catch (UnsupportedTypeException e) {
+            this.messager.printMessage(Diagnostic.Kind.WARNING, "No SQL row mapper was generated for " + type.getQualifiedName()
+                + ", its rows will be bound through reflection. " + e.getMessage(), origin);
+            return;
+        }
+        try {
+            JavaFileObject file = this.processingEnv.getFiler().createSourceFile(mapperName, type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source);
+            }
+        } catch (IOException e) {
+            this.messager.printMessage(Diagnostic.Kind.ERROR, "Failed to generate the SQL row mapper for " + type.getQualifiedName() + ": " + e, origin);
+        }
+        for (TypeElement nestedType : nestedTypes) {
+            this.generate(nestedType, origin);
+        }
+    }
+
+    private String createSource(TypeElement type, String mapperName, List<TypeElement> nestedTypes) throws UnsupportedTypeException {
+        checkTypeAccessible(type);
+        String typeName = type.getQualifiedName().toString();
+        String packageName = this.elements.getPackageOf(type).getQualifiedName().toString();
+        String simpleName = mapperName.substring(mapperName.lastIndexOf('.') + 1);
+        boolean isRecord = RECORD.equals(type.getKind().name());
+        List<Column> columns = isRecord ? this.getRecordColumns(type) : this.getClassColumns(type);
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import com.microsoft.azure.functions.sql.runtime.SqlRowMapper;\n")
+            .append("import com.microsoft.azure.functions.sql.runtime.SqlRowReader;\n\n")
+            .append("import java.io.IOException;\n\n")
+            .append("/**\n")
+            .append(" * Binds SQL rows to {@link ").append(typeName).append("} without reflection.\n")
+            .append(" * Generated by the SQL bindings annotation processor, do not edit.\n")
+            .append(" */\n")
+            .append("public final class ").append(simpleName).append(" extends SqlRowMapper<").append(typeName).append("> {\n")
+            .append("    private static final String[] COLUMNS = {");
+        for (int i = 0; i < columns.size(); i++) {
+            source.append(i == 0 ? " \"" : ", \"").append(columns.get(i).name).append('"');
+        }
+        source.append(" };\n\n")
+            .append("    public ").append(simpleName).append("() {\n")
+            .append("        super(").append(typeName).append(".class);\n")
+            .append("    }\n\n")
+            .append("    @Override\n")
+            .append("    protected ").append(typeName).append(" read(SqlRowReader reader) throws IOException {\n");
+        if (isRecord) {
+            for (int i = 0; i < columns.size(); i++) {
+                Column column = columns.get(i);
+                source.append("        ").append(column.type).append(" c").append(i).append(" = ")
+                    .append(getDefaultValue(column.typeMirror)).append(";\n");
+            }
+        } else {
+            source.append("        ").append(typeName).append(" row = new ").append(typeName).append("();\n");
+        }
+        source.append("        reader.beginRow();\n")
+            .append("        int column;\n")
+            .append("        while ((column = reader.nextColumn(COLUMNS)) != SqlRowReader.END_OF_ROW) {\n")
+            .append("            switch (column) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            String target = isRecord ? "c" + i + " = %s;" : column.assignment;
+            source.append("                case ").append(i).append(":\n")
+                .append("                    ").append(this.getReadStatement(column, target, nestedTypes)).append('\n')
+                .append("                    break;\n");
+        }
+        source.append("                default:\n")
+            .append("                    reader.skipValue();\n")
+            .append("                    break;\n")
+            .append("            }\n")
+            .append("        }\n");
+        if (isRecord) {
+            source.append("        return new ").append(typeName).append('(');
+            for (int i = 0; i < columns.size(); i++) {
+                source.append(i == 0 ? "c" : ", c").append(i);
+            }
+            source.append(");\n");
+        } else {
+            source.append("        return row;\n");
+        }
+        source.append("    }\n")
+            .append("}\n");
+        return source.toString();
+    }
+
+    private List<Column> getRecordColumns(TypeElement type) throws UnsupportedTypeException {
+        List<Column> columns = new ArrayList<Column>();
+        for (Element member : type.getEnclosedElements()) {
+            if (RECORD_COMPONENT.equals(member.getKind().name())) {
+                columns.add(new Column(member.getSimpleName().toString(), member.asType(), null));
+            }
+        }
+        for (ExecutableElement constructor : this.getConstructors(type)) {
+            List<? extends VariableElement> parameters = constructor.getParameters();
+            if (parameters.size() != columns.size() || !this.isAccessible(constructor, type)) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < parameters.size(); i++) {
+                matches &= this.types.isSameType(parameters.get(i).asType(), columns.get(i).typeMirror);
+            }
+            if (matches) {
+                return columns;
+            }
+        }
+        throw new UnsupportedTypeException("The canonical constructor of the record isn't accessible.");
+    }
+
+    private List<Column> getClassColumns(TypeElement type) throws UnsupportedTypeException {
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new UnsupportedTypeException("Rows can only be bound to classes and records.");
+        }
+        boolean hasConstructor = false;
+        for (ExecutableElement constructor : this.getConstructors(type)) {
+            hasConstructor |= constructor.getParameters().isEmpty() && this.isAccessible(constructor, type);
+        }
+        if (!hasConstructor) {
+            throw new UnsupportedTypeException("The class doesn't have an accessible constructor without parameters.");
+        }
+        List<Column> columns = new ArrayList<Column>();
+        Set<String> names = new HashSet<String>();
+        for (TypeElement current = type; current != null && !current.getQualifiedName().contentEquals("java.lang.Object");
+            current = (TypeElement) this.types.asElement(current.getSuperclass())) {
+            for (Element member : current.getEnclosedElements()) {
+                Set<Modifier> modifiers = member.getModifiers();
+                if (member.getKind() != ElementKind.FIELD || modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                String name = member.getSimpleName().toString();
+                if (!names.add(name)) {
+                    continue;
+                }
+                if (!modifiers.contains(Modifier.FINAL) && this.isAccessible(member, type)) {
+                    columns.add(new Column(name, member.asType(), "row." + name + " = %s;"));
+                    continue;
+                }
+                ExecutableElement setter = this.findSetter(type, name);
+                if (setter == null) {
+                    throw new UnsupportedTypeException("The field " + name + " isn't accessible and doesn't have an accessible setter.");
+                }
+                columns.add(new Column(name, setter.getParameters().get(0).asType(), "row." + setter.getSimpleName() + "(%s);"));
+            }
+        }
+        return columns;
+    }
+
+    private ExecutableElement findSetter(TypeElement type, String fieldName) {
+        for (Element member : this.elements.getAllMembers(type)) {
+            if (member.getKind() == ElementKind.METHOD
+                && member.getSimpleName().toString().equalsIgnoreCase("set" + fieldName)
+                && ((ExecutableElement) member).getParameters().size() == 1
+                && !member.getModifiers().contains(Modifier.STATIC)
+                && this.isAccessible(member, type)) {
+                return (ExecutableElement) member;
+            }
+        }
+        return null;
+    }
+
+    private List<ExecutableElement> getConstructors(TypeElement type) {
+        List<ExecutableElement> constructors = new ArrayList<ExecutableElement>();
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR) {
+                constructors.add((ExecutableElement) member);
+            }
+        }
+        return constructors;
+    }
+
+    /**
+     * Returns whether the member can be used by the mapper, which is in the same package as the type.
+     */
+    private boolean isAccessible(Element member, TypeElement type) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return modifiers.contains(Modifier.PUBLIC) || this.elements.getPackageOf(member).equals(this.elements.getPackageOf(type));
+    }
+
+    private static void checkTypeAccessible(TypeElement type) throws UnsupportedTypeException {
+        for (Element current = type; current instanceof TypeElement; current = current.getEnclosingElement()) {
+            TypeElement currentType = (TypeElement) current;
+            if (currentType.getModifiers().contains(Modifier.PRIVATE)) {
+                throw new UnsupportedTypeException("The type isn't accessible.");
+            }
+            if (currentType.getNestingKind() == NestingKind.MEMBER && !currentType.getModifiers().contains(Modifier.STATIC)
+                && currentType.getEnclosingElement().getKind() == ElementKind.CLASS) {
+                throw new UnsupportedTypeException("Inner classes must be static.");
+            }
+            if (currentType.getNestingKind() == NestingKind.LOCAL || currentType.getNestingKind() == NestingKind.ANONYMOUS) {
+                throw new UnsupportedTypeException("Local classes aren't supported.");
+            }
+        }
+    }
+
+    /**
+     * Gets the statement reading the value of a column and assigning it with the given format.
+     */
+    private String getReadStatement(Column column, String target, List<TypeElement> nestedTypes) throws UnsupportedTypeException {
+        TypeMirror type = column.typeMirror;
+        String primitiveRead = getPrimitiveRead(type.getKind());
+        if (primitiveRead != null) {
+            // Nulls leave the default value of primitives
+            return "if (!reader.readNull()) { " + String.format(target, "reader." + primitiveRead + "()") + " }";
+        }
+        if (type.getKind() == TypeKind.ARRAY) {
+            if (this.types.isSameType(type, this.types.getArrayType(this.types.getPrimitiveType(TypeKind.BYTE)))) {
+                return String.format(target, "reader.readBytes()");
+            }
+        } else if (type.getKind() == TypeKind.DECLARED) {
+            TypeElement element = (TypeElement) this.types.asElement(type);
+            String name = element.getQualifiedName().toString();
+            try {
+                TypeKind primitiveKind = this.types.unboxedType(type).getKind();
+                return String.format(target, "reader.readNull() ? null : " + name + ".valueOf(reader." + getPrimitiveRead(primitiveKind) + "())");
+            } catch (IllegalArgumentException e) {
+                // Not a boxed type
+            }
+            switch (name) {
+                case "java.lang.String":
+                    return String.format(target, "reader.readString()");
+                case "java.math.BigDecimal":
+                    return String.format(target, "reader.readBigDecimal()");
+                case "java.math.BigInteger":
+                    return String.format(target, "reader.readBigInteger()");
+                case "java.util.UUID":
+                    return String.format(target, "reader.readUuid()");
+                case "java.time.LocalDate":
+                    return String.format(target, "reader.readLocalDate()");
+                case "java.time.LocalDateTime":
+                    return String.format(target, "reader.readLocalDateTime()");
+                case "java.time.LocalTime":
+                    return String.format(target, "reader.readLocalTime()");
+                case "java.time.OffsetDateTime":
+                    return String.format(target, "reader.readOffsetDateTime()");
+                case "java.time.Instant":
+                    return String.format(target, "reader.readInstant()");
+                default:
+                    break;
+            }
+            if (element.getKind() == ElementKind.ENUM) {
+                return String.format(target, "reader.readEnum(" + name + ".class)");
+            }
+            if (((DeclaredType) type).getTypeArguments().isEmpty() && !name.startsWith("java.") && !name.startsWith("javax.")) {
+                nestedTypes.add(element);
+                return String.format(target, "reader.readObject(" + name + ".class)");
+            }
+        }
+        throw new UnsupportedTypeException("The type " + type + " of " + column.name + " is not supported.");
+    }
+
+    private static String getPrimitiveRead(TypeKind kind) {
+        switch (kind) {
+            case BOOLEAN:
+                return "readBoolean";
+            case BYTE:
+                return "readByte";
+            case SHORT:
+                return "readShort";
+            case INT:
+                return "readInt";
+            case LONG:
+                return "readLong";
+            case FLOAT:
+                return "readFloat";
+            case DOUBLE:
+                return "readDouble";
+            case CHAR:
+                return "readChar";
+            default:
+                return null;
+        }
+    }
+
+    private static String getDefaultValue(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case CHAR:
+                return "'\\0'";
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return "0";
+            default:
+                return "null";
+        }
+    }
+
+    /**
+     * A column bound to a field, setter or record component.
+     */
+    private static final class Column {
+        private final String name;
+        private final TypeMirror typeMirror;
+        private final String type;
+        /**
+         * The format of the statement assigning the value, for fields and setters.
+         */
+        private final String assignment;
+
+        Column(String name, TypeMirror typeMirror, String assignment) {
+            this.name = name;
+            this.typeMirror = typeMirror;
+            this.type = typeMirror.toString();
+            this.assignment = assignment;
+        }
+    }
+
+    private static final class UnsupportedTypeException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedTypeException(String message) {
+            super(message);
+        }
+    }
+}
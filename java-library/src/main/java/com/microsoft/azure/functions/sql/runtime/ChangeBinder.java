@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+import java.io.IOException;
+
+/**
+ * Binds the changes sent by the SQL trigger, which are objects with an Operation and the changed Item, or in a
+ * columnar payload arrays with the operation followed by the values of the row.
+ */
+final class ChangeBinder<T> implements ValueReader<SqlChange<T>> {
+    private static final String OPERATION = "Operation";
+    private static final String ITEM = "Item";
+
+    private final ValueReader<T> itemBinder;
+
+    ChangeBinder(Class<T> itemType) {
+        this.itemBinder = RowBinder.forType(itemType);
+    }
+
+    @Override
+    public SqlChange<T> read(JsonPullParser parser) throws IOException {
+        if (parser.peekValue() == JsonPullParser.ValueKind.ARRAY) {
+            return this.readColumnar(parser);
+        }
+        SqlChangeOperation operation = null;
+        T item = null;
+        parser.beginObject();
+        while (parser.nextName()) {
+            if (JsonPullParser.contentEquals(parser.text(), OPERATION)) {
+                operation = readOperation(parser);
+            } else if (JsonPullParser.contentEquals(parser.text(), ITEM)) {
+                item = this.itemBinder.read(parser);
+            } else {
+                parser.skipValue();
+            }
+        }
+        if (operation == null) {
+            throw parser.syntaxError("Missing Operation of the change");
+        }
+        return new SqlChange<T>(operation, item);
+    }
+
+    private SqlChange<T> readColumnar(JsonPullParser parser) throws IOException {
+        parser.beginArray();
+        if (!parser.hasNextElement()) {
+            throw parser.syntaxError("Missing Operation of the change");
+        }
+        SqlChangeOperation operation = readOperation(parser);
+        if (operation == null) {
+            throw parser.syntaxError("Missing Operation of the change");
+        }
+        T item = parser.hasNextElement() ? this.itemBinder.read(parser) : null;
+        // Skip the commit time and lag
+        while (parser.hasNextElement()) {
+            parser.skipValue();
+        }
+        return new SqlChange<T>(operation, item);
+    }
+
+    private static SqlChangeOperation readOperation(JsonPullParser parser) throws IOException {
+        if (!parser.readScalar()) {
+            return null;
+        }
+        CharSequence text = parser.text();
+        for (SqlChangeOperation operation : SqlChangeOperation.values()) {
+            if (JsonPullParser.contentEquals(text, operation.name())) {
+                return operation;
+            }
+        }
+        try {
+            return SqlChangeOperation.fromValue(RowBinder.parseInt(text));
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            throw parser.syntaxError("Invalid Operation '" + text + "' of the change");
+        }
+    }
+}
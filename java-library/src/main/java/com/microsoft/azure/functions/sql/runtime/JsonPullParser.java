@@ -0,0 +1,454 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal pull parser for the JSON payloads sent by the SQL extension. The input is read through a char buffer
+ * which is reused by the parsers created on the same thread, and the text of the current name or value is kept in
+ * a reused builder, so reading a row doesn't allocate anything besides the values bound to it.
+ * <p>
+ * Payloads in the columnar layout, where the names of the columns are sent once followed by each row as an array
+ * of values, are started with {@link #beginRows()}. Each row array is then read as if it were an object with the
+ * names of the columns, so the rows are bound the same way in both layouts.
+ */
+final class JsonPullParser implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+    private static final ThreadLocal<char[]> BUFFERS = new ThreadLocal<char[]>();
+    private static final String COLUMNS = "columns";
+    private static final String ROWS = "rows";
+    private static final String CHANGES = "changes";
+
+    /**
+     * The kinds of value which can be read, see {@link #peekValue()}.
+     */
+    enum ValueKind {
+        STRING, NUMBER, BOOLEAN, NULL, OBJECT, ARRAY
+    }
+
+    private final Reader reader;
+    private char[] buffer;
+    private int pos;
+    private int limit;
+    private long offset;
+    private final StringBuilder text = new StringBuilder(64);
+    private SqlRowReader rowReader;
+    /**
+     * The names of the columns of a columnar payload, null for an array of objects.
+     */
+    private String[] columns;
+    /**
+     * The index of the next value of the columnar row being read, -1 outside of a row.
+     */
+    private int column = -1;
+    /**
+     * The depth of the objects nested in the columnar row being read, whose properties are read normally.
+     */
+    private int nestedObjects;
+    /**
+     * Whether the object or array being read was just started, so its first element isn't preceded by a comma.
+     */
+    private boolean first;
+    /**
+     * The offset of the element which the last call to {@link #skipSeparators()} stopped at, so that checking for
+     * the next element again before reading it doesn't expect another comma.
+     */
+    private long separatedAt = -1;
+
+    JsonPullParser(Reader reader) {
+        this.reader = reader;
+        // Take the buffer of this thread, parsers nested on the same thread use their own buffer
+        char[] pooled = BUFFERS.get();
+        if (pooled != null) {
+            BUFFERS.set(null);
+            this.buffer = pooled;
+        } else {
+            this.buffer = new char[BUFFER_SIZE];
+        }
+    }
+
+    /**
+     * The text of the last name or value read.
+     */
+    CharSequence text() {
+        return this.text;
+    }
+
+    /**
+     * The reader used by generated mappers to read the rows of this payload.
+     */
+    SqlRowReader rowReader() {
+        if (this.rowReader == null) {
+            this.rowReader = new SqlRowReader(this);
+        }
+        return this.rowReader;
+    }
+
+    void beginArray() throws IOException {
+        this.expect('[');
+        this.first = true;
+    }
+
+    /**
+     * Returns whether the current array has another element, consuming the end of the array if it doesn't.
+     */
+    boolean hasNextElement() throws IOException {
+        int c = this.skipSeparators();
+        if (c == ']') {
+            this.pos++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts reading the rows of the payload, which is either an array of rows or a columnar object with the names
+     * of the columns followed by the array of rows (or changes for the trigger).
+     */
+    void beginRows() throws IOException {
+        if (this.skipWhitespace() != '{') {
+            this.beginArray();
+            return;
+        }
+        this.beginObject();
+        while (this.nextName()) {
+            if (contentEquals(this.text, COLUMNS)) {
+                this.columns = this.readColumns();
+            } else if (contentEquals(this.text, ROWS) || contentEquals(this.text, CHANGES)) {
+                if (this.columns == null) {
+                    throw this.syntaxError("Expected the columns before the rows of the payload");
+                }
+                this.beginArray();
+                return;
+            } else {
+                this.skipValue();
+            }
+        }
+        throw this.syntaxError("Missing rows in the payload");
+    }
+
+    /**
+     * Finishes reading the payload once the end of the rows has been consumed. The properties following the rows of
+     * a columnar payload are skipped, and anything but whitespace after the payload is rejected.
+     */
+    void endRows() throws IOException {
+        if (this.columns != null) {
+            while (this.nextName()) {
+                this.skipValue();
+            }
+        }
+        if (this.skipWhitespace() != -1) {
+            throw this.syntaxError("Unexpected content after the end of the payload");
+        }
+    }
+
+    /**
+     * Starts reading an object, or in a columnar payload a row array which is then read as an object.
+     */
+    void beginObject() throws IOException {
+        if (this.columns != null && this.column < 0 && this.skipWhitespace() == '[') {
+            this.pos++;
+            this.column = 0;
+            this.first = true;
+            return;
+        }
+        this.expect('{');
+        this.first = true;
+        if (this.column >= 0) {
+            this.nestedObjects++;
+        }
+    }
+
+    /**
+     * Reads the name of the next property of the current object into {@link #text()}, or consumes the end of the
+     * object and returns false if there are no more properties.
+     */
+    boolean nextName() throws IOException {
+        int c = this.skipSeparators();
+        if (this.column >= 0 && this.nestedObjects == 0) {
+            return this.nextColumn(c);
+        }
+        if (c == '}') {
+            this.pos++;
+            if (this.nestedObjects > 0) {
+                this.nestedObjects--;
+            }
+            return false;
+        }
+        this.readString();
+        if (this.skipWhitespace() != ':') {
+            throw this.syntaxError("Expected ':'");
+        }
+        this.pos++;
+        return true;
+    }
+
+    /**
+     * Reads the name of the column of the next value of a columnar row, see {@link #nextName()}.
+     */
+    private boolean nextColumn(int c) throws IOException {
+        if (c == ']') {
+            this.pos++;
+            this.column = -1;
+            return false;
+        }
+        if (this.column >= this.columns.length) {
+            throw this.syntaxError("More values than columns in the row");
+        }
+        this.text.setLength(0);
+        this.text.append(this.columns[this.column++]);
+        return true;
+    }
+
+    private String[] readColumns() throws IOException {
+        List<String> names = new ArrayList<String>();
+        this.beginArray();
+        while (this.hasNextElement()) {
+            if (!this.readScalar()) {
+                throw this.syntaxError("Expected the name of a column");
+            }
+            names.add(this.text.toString());
+        }
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the kind of the next value without consuming it.
+     */
+    ValueKind peekValue() throws IOException {
+        int c = this.skipWhitespace();
+        switch (c) {
+            case '"':
+                return ValueKind.STRING;
+            case '{':
+                return ValueKind.OBJECT;
+            case '[':
+                return ValueKind.ARRAY;
+            case 't':
+            case 'f':
+                return ValueKind.BOOLEAN;
+            case 'n':
+                return ValueKind.NULL;
+            case -1:
+                throw this.syntaxError("Unexpected end of payload");
+            default:
+                return ValueKind.NUMBER;
+        }
+    }
+
+    /**
+     * Reads a string, number or literal value into {@link #text()}. Returns false if the value was null.
+     */
+    boolean readScalar() throws IOException {
+        int c = this.skipWhitespace();
+        if (c == '"') {
+            this.readString();
+            return true;
+        }
+        this.text.setLength(0);
+        while (true) {
+            if (this.pos == this.limit && !this.fill()) {
+                break;
+            }
+            char ch = this.buffer[this.pos];
+            if (ch == ',' || ch == '}' || ch == ']' || ch <= ' ') {
+                break;
+            }
+            this.text.append(ch);
+            this.pos++;
+        }
+        if (this.text.length() == 0) {
+            throw this.syntaxError("Expected a value");
+        }
+        return !contentEquals(this.text, "null");
+    }
+
+    /**
+     * Skips the next value, including any nested objects or arrays.
+     */
+    void skipValue() throws IOException {
+        ValueKind kind = this.peekValue();
+        if (kind == ValueKind.OBJECT) {
+            this.beginObject();
+            while (this.nextName()) {
+                this.skipValue();
+            }
+        } else if (kind == ValueKind.ARRAY) {
+            this.beginArray();
+            while (this.hasNextElement()) {
+                this.skipValue();
+            }
+        } else {
+            this.readScalar();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.buffer != null) {
+            BUFFERS.set(this.buffer);
+            this.buffer = null;
+        }
+        this.reader.close();
+    }
+
+    static boolean contentEquals(CharSequence value, String expected) {
+        if (value.length() != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (value.charAt(i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    IOException syntaxError(String message) {
+        return new IOException(message + " at offset " + (this.offset + this.pos) + " of the SQL payload");
+    }
+
+    private void expect(char expected) throws IOException {
+        if (this.skipWhitespace() != expected) {
+            throw this.syntaxError("Expected '" + expected + "'");
+        }
+        this.pos++;
+    }
+
+    private void readString() throws IOException {
+        if (this.skipWhitespace() != '"') {
+            throw this.syntaxError("Expected '\"'");
+        }
+        this.pos++;
+        this.text.setLength(0);
+        while (true) {
+            if (this.pos == this.limit && !this.fill()) {
+                throw this.syntaxError("Unterminated string");
+            }
+            // Append runs of plain characters at once
+            int start = this.pos;
+            while (this.pos < this.limit && this.buffer[this.pos] != '"' && this.buffer[this.pos] != '\\') {
+                this.pos++;
+            }
+            this.text.append(this.buffer, start, this.pos - start);
+            if (this.pos == this.limit) {
+                continue;
+            }
+            char ch = this.buffer[this.pos++];
+            if (ch == '"') {
+                return;
+            }
+            this.text.append(this.readEscape());
+        }
+    }
+
+    private char readEscape() throws IOException {
+        if (this.pos == this.limit && !this.fill()) {
+            throw this.syntaxError("Unterminated escape sequence");
+        }
+        char ch = this.buffer[this.pos++];
+        switch (ch) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (this.pos == this.limit && !this.fill()) {
+                        throw this.syntaxError("Unterminated escape sequence");
+                    }
+                    int digit = Character.digit(this.buffer[this.pos++], 16);
+                    if (digit < 0) {
+                        throw this.syntaxError("Invalid escape sequence");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                // \" \\ \/
+                return ch;
+        }
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it, or -1 at the end of the payload.
+     */
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            if (this.pos == this.limit && !this.fill()) {
+                return -1;
+            }
+            char ch = this.buffer[this.pos];
+            if (ch > ' ') {
+                return ch;
+            }
+            this.pos++;
+        }
+    }
+
+    /**
+     * Skips whitespace and the comma separating elements or properties, and returns the first character of the next
+     * element or the end of the object or array. Rejects a missing comma, or one before the first element or after
+     * the last one.
+     */
+    private int skipSeparators() throws IOException {
+        int c = this.skipWhitespace();
+        if (c != -1 && this.offset + this.pos == this.separatedAt) {
+            return c;
+        }
+        if (this.first) {
+            this.first = false;
+            if (c == ',') {
+                throw this.syntaxError("Unexpected ','");
+            }
+        } else if (c == ',') {
+            this.pos++;
+            c = this.skipWhitespace();
+            if (c == '}' || c == ']') {
+                throw this.syntaxError("Unexpected ',' before '" + (char) c + "'");
+            } else if (c == ',') {
+                throw this.syntaxError("Unexpected ','");
+            }
+        } else if (c != '}' && c != ']' && c != -1) {
+            throw this.syntaxError("Expected ','");
+        }
+        if (c == -1) {
+            throw this.syntaxError("Unexpected end of payload");
+        }
+        if (c != '}' && c != ']') {
+            this.separatedAt = this.offset + this.pos;
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        if (this.buffer == null) {
+            throw new IOException("The SQL payload has already been closed");
+        }
+        this.offset += this.limit;
+        this.pos = 0;
+        this.limit = 0;
+        int read = this.reader.read(this.buffer, 0, this.buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        this.limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,558 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binds the JSON objects of a payload to instances of a class. The properties, their converters and the way to
+ * create and populate instances are computed once per class so that binding a row doesn't do any reflective
+ * lookups. Classes are bound through their fields and a constructor without parameters, and records through
+ * their canonical constructor. JSON properties are matched to fields by name, ignoring case.
+ */
+final class RowBinder<T> implements ValueReader<T> {
+    private static final ConcurrentHashMap<Class<?>, ValueReader<?>> READERS = new ConcurrentHashMap<Class<?>, ValueReader<?>>();
+
+    private final Class<T> type;
+    private final Property[] properties;
+    private final Constructor<T> constructor;
+    /**
+     * Whether the instances are created by passing the values to the constructor (records) instead of setting fields.
+     */
+    private final boolean isRecord;
+
+    /**
+     * Gets the reader binding rows to the given type. This is the mapper generated for the type at compile time if
+     * there is one, so that no reflection is needed, and a binder computed through reflection otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> ValueReader<T> forType(Class<T> type) {
+        ValueReader<?> reader = READERS.get(type);
+        if (reader == null) {
+            final SqlRowMapper<T> mapper = SqlRowMapper.find(type);
+            reader = mapper != null ? (ValueReader<T>) mapper::readRow : new RowBinder<T>(type);
+            ValueReader<?> existing = READERS.putIfAbsent(type, reader);
+            if (existing != null) {
+                reader = existing;
+            }
+        }
+        return (ValueReader<T>) reader;
+    }
+
+    private RowBinder(Class<T> type) {
+        if (type.isPrimitive() || type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            throw new IllegalArgumentException(type.getName() + " can't be bound to SQL rows, it must be a class or a record.");
+        }
+        this.type = type;
+        Object[] components = Records.getComponents(type);
+        this.isRecord = components != null;
+        List<Property> properties = new ArrayList<Property>();
+        try {
+            if (this.isRecord) {
+                Class<?>[] parameterTypes = new Class<?>[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    parameterTypes[i] = Records.getType(components[i]);
+                    properties.add(new Property(Records.getName(components[i]), parameterTypes[i], null, i));
+                }
+                this.constructor = type.getDeclaredConstructor(parameterTypes);
+            } else {
+                for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                    for (Field field : c.getDeclaredFields()) {
+                        if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) || field.isSynthetic()) {
+                            continue;
+                        }
+                        field.setAccessible(true);
+                        properties.add(new Property(field.getName(), field.getType(), field, properties.size()));
+                    }
+                }
+                this.constructor = type.getDeclaredConstructor();
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " can't be bound to SQL rows, it must have a constructor without parameters.", e);
+        }
+        this.constructor.setAccessible(true);
+        this.properties = properties.toArray(new Property[0]);
+    }
+
+    @Override
+    public T read(JsonPullParser parser) throws IOException {
+        if (parser.peekValue() == JsonPullParser.ValueKind.NULL) {
+            parser.readScalar();
+            return null;
+        }
+        Object[] values = this.isRecord ? this.createDefaultValues() : null;
+        T instance = this.isRecord ? null : this.newInstance(null);
+        parser.beginObject();
+        // The columns of every row are in the same order, so the next property is almost always the one after the
+        // last property that was found
+        int expected = 0;
+        while (parser.nextName()) {
+            Property property = this.findProperty(parser.text(), expected);
+            if (property == null) {
+                parser.skipValue();
+                continue;
+            }
+            expected = property.index + 1;
+            try {
+                if (this.isRecord) {
+                    Object value = property.read(parser);
+                    if (value != null) {
+                        values[property.index] = value;
+                    }
+                } else {
+                    property.set(instance, parser);
+                }
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                throw parser.syntaxError("Invalid value for " + this.type.getSimpleName() + "." + property.name + " (" + e.getMessage() + ")");
+            }
+        }
+        return this.isRecord ? this.newInstance(values) : instance;
+    }
+
+    private Property findProperty(CharSequence name, int expected) {
+        if (expected < this.properties.length && JsonPullParser.contentEquals(name, this.properties[expected].name)) {
+            return this.properties[expected];
+        }
+        for (Property property : this.properties) {
+            if (JsonPullParser.contentEquals(name, property.name)) {
+                return property;
+            }
+        }
+        for (Property property : this.properties) {
+            if (equalsIgnoreCase(name, property.name)) {
+                return property;
+            }
+        }
+        return null;
+    }
+
+    private Object[] createDefaultValues() {
+        Object[] values = new Object[this.properties.length];
+        for (Property property : this.properties) {
+            values[property.index] = property.defaultValue;
+        }
+        return values;
+    }
+
+    private T newInstance(Object[] values) throws IOException {
+        try {
+            return values == null ? this.constructor.newInstance() : this.constructor.newInstance(values);
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IOException("Failed to create an instance of " + this.type.getName(), e);
+        } catch (InvocationTargetException e) {
+            throw new IOException("Failed to create an instance of " + this.type.getName(), e.getCause());
+        }
+    }
+
+    static boolean equalsIgnoreCase(CharSequence value, String expected) {
+        if (value.length() != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase(value.charAt(i)) != Character.toLowerCase(expected.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * How the value of a property is converted, chosen once from the type of the property.
+     */
+    private enum Kind {
+        BOOLEAN, BYTE, SHORT, INT, LONG, FLOAT, DOUBLE, CHAR,
+        BOXED_BOOLEAN, BOXED_BYTE, BOXED_SHORT, BOXED_INT, BOXED_LONG, BOXED_FLOAT, BOXED_DOUBLE, BOXED_CHAR,
+        STRING, BIG_DECIMAL, BIG_INTEGER, UUID, BYTES, ENUM, OBJECT,
+        LOCAL_DATE, LOCAL_DATE_TIME, LOCAL_TIME, OFFSET_DATE_TIME, INSTANT
+    }
+
+    private static final class Property {
+        private final String name;
+        private final Class<?> type;
+        private final Field field;
+        private final int index;
+        private final Kind kind;
+        private final Object defaultValue;
+        private volatile ValueReader<?> objectReader;
+
+        Property(String name, Class<?> type, Field field, int index) {
+            this.name = name;
+            this.type = type;
+            this.field = field;
+            this.index = index;
+            this.kind = getKind(type);
+            if (this.kind == null) {
+                throw new IllegalArgumentException("The type " + type.getName() + " of " + name + " is not supported for SQL rows.");
+            }
+            this.defaultValue = getDefaultValue(this.kind);
+        }
+
+        /**
+         * Sets the field of the instance to the next value, without boxing primitive values.
+         */
+        void set(Object instance, JsonPullParser parser) throws IOException {
+            try {
+                switch (this.kind) {
+                    case BOOLEAN:
+                        if (parser.readScalar()) {
+                            this.field.setBoolean(instance, parseBoolean(parser.text()));
+                        }
+                        break;
+                    case BYTE:
+                        if (parser.readScalar()) {
+                            this.field.setByte(instance, parseByte(parser.text()));
+                        }
+                        break;
+                    case SHORT:
+                        if (parser.readScalar()) {
+                            this.field.setShort(instance, parseShort(parser.text()));
+                        }
+                        break;
+                    case INT:
+                        if (parser.readScalar()) {
+                            this.field.setInt(instance, parseInt(parser.text()));
+                        }
+                        break;
+                    case LONG:
+                        if (parser.readScalar()) {
+                            this.field.setLong(instance, parseLong(parser.text()));
+                        }
+                        break;
+                    case FLOAT:
+                        if (parser.readScalar()) {
+                            this.field.setFloat(instance, Float.parseFloat(parser.text().toString()));
+                        }
+                        break;
+                    case DOUBLE:
+                        if (parser.readScalar()) {
+                            this.field.setDouble(instance, Double.parseDouble(parser.text().toString()));
+                        }
+                        break;
+                    case CHAR:
+                        if (parser.readScalar()) {
+                            this.field.setChar(instance, parseChar(parser.text()));
+                        }
+                        break;
+                    default:
+                        this.field.set(instance, this.read(parser));
+                        break;
+                }
+            } catch (IllegalAccessException e) {
+                throw new IOException("Failed to set " + this.field, e);
+            }
+        }
+
+        /**
+         * Reads the next value, boxing primitive values.
+         */
+        Object read(JsonPullParser parser) throws IOException {
+            if (this.kind == Kind.OBJECT) {
+                return this.getObjectReader().read(parser);
+            }
+            if (!parser.readScalar()) {
+                return null;
+            }
+            CharSequence text = parser.text();
+            switch (this.kind) {
+                case BOOLEAN:
+                case BOXED_BOOLEAN:
+                    return parseBoolean(text);
+                case BYTE:
+                case BOXED_BYTE:
+                    return parseByte(text);
+                case SHORT:
+                case BOXED_SHORT:
+                    return parseShort(text);
+                case INT:
+                case BOXED_INT:
+                    return parseInt(text);
+                case LONG:
+                case BOXED_LONG:
+                    return parseLong(text);
+                case FLOAT:
+                case BOXED_FLOAT:
+                    return Float.parseFloat(text.toString());
+                case DOUBLE:
+                case BOXED_DOUBLE:
+                    return Double.parseDouble(text.toString());
+                case CHAR:
+                case BOXED_CHAR:
+                    return parseChar(text);
+                case STRING:
+                    return text.toString();
+                case BIG_DECIMAL:
+                    return new BigDecimal(text.toString());
+                case BIG_INTEGER:
+                    return new BigInteger(text.toString());
+                case UUID:
+                    return java.util.UUID.fromString(text.toString());
+                case BYTES:
+                    return Base64.getDecoder().decode(text.toString());
+                case LOCAL_DATE:
+                    return TemporalParser.parseLocalDate(text);
+                case LOCAL_DATE_TIME:
+                    return TemporalParser.parseLocalDateTime(text);
+                case LOCAL_TIME:
+                    return TemporalParser.parseLocalTime(text);
+                case OFFSET_DATE_TIME:
+                    return TemporalParser.parseOffsetDateTime(text);
+                case INSTANT:
+                    return TemporalParser.parseInstant(text);
+                default:
+                    return parseEnum(this.type, text);
+            }
+        }
+
+        private ValueReader<?> getObjectReader() {
+            // Resolved lazily so that classes can reference themselves
+            ValueReader<?> reader = this.objectReader;
+            if (reader == null) {
+                reader = RowBinder.forType(this.type);
+                this.objectReader = reader;
+            }
+            return reader;
+        }
+    }
+
+    private static Kind getKind(Class<?> type) {
+        if (type == boolean.class) {
+            return Kind.BOOLEAN;
+        } else if (type == byte.class) {
+            return Kind.BYTE;
+        } else if (type == short.class) {
+            return Kind.SHORT;
+        } else if (type == int.class) {
+            return Kind.INT;
+        } else if (type == long.class) {
+            return Kind.LONG;
+        } else if (type == float.class) {
+            return Kind.FLOAT;
+        } else if (type == double.class) {
+            return Kind.DOUBLE;
+        } else if (type == char.class) {
+            return Kind.CHAR;
+        } else if (type == Boolean.class) {
+            return Kind.BOXED_BOOLEAN;
+        } else if (type == Byte.class) {
+            return Kind.BOXED_BYTE;
+        } else if (type == Short.class) {
+            return Kind.BOXED_SHORT;
+        } else if (type == Integer.class) {
+            return Kind.BOXED_INT;
+        } else if (type == Long.class) {
+            return Kind.BOXED_LONG;
+        } else if (type == Float.class) {
+            return Kind.BOXED_FLOAT;
+        } else if (type == Double.class) {
+            return Kind.BOXED_DOUBLE;
+        } else if (type == Character.class) {
+            return Kind.BOXED_CHAR;
+        } else if (type == String.class) {
+            return Kind.STRING;
+        } else if (type == BigDecimal.class) {
+            return Kind.BIG_DECIMAL;
+        } else if (type == BigInteger.class) {
+            return Kind.BIG_INTEGER;
+        } else if (type == UUID.class) {
+            return Kind.UUID;
+        } else if (type == byte[].class) {
+            return Kind.BYTES;
+        } else if (type == LocalDate.class) {
+            return Kind.LOCAL_DATE;
+        } else if (type == LocalDateTime.class) {
+            return Kind.LOCAL_DATE_TIME;
+        } else if (type == LocalTime.class) {
+            return Kind.LOCAL_TIME;
+        } else if (type == OffsetDateTime.class) {
+            return Kind.OFFSET_DATE_TIME;
+        } else if (type == Instant.class) {
+            return Kind.INSTANT;
+        } else if (type.isEnum()) {
+            return Kind.ENUM;
+        } else if (!type.isPrimitive() && !type.isArray() && !type.isInterface() && !type.getName().startsWith("java.")) {
+            return Kind.OBJECT;
+        }
+        return null;
+    }
+
+    private static Object getDefaultValue(Kind kind) {
+        switch (kind) {
+            case BOOLEAN:
+                return false;
+            case BYTE:
+                return (byte) 0;
+            case SHORT:
+                return (short) 0;
+            case INT:
+                return 0;
+            case LONG:
+                return 0L;
+            case FLOAT:
+                return 0f;
+            case DOUBLE:
+                return 0d;
+            case CHAR:
+                return '\0';
+            default:
+                return null;
+        }
+    }
+
+    static boolean parseBoolean(CharSequence text) {
+        if (JsonPullParser.contentEquals(text, "true") || JsonPullParser.contentEquals(text, "1")) {
+            return true;
+        }
+        if (JsonPullParser.contentEquals(text, "false") || JsonPullParser.contentEquals(text, "0")) {
+            return false;
+        }
+        throw new IllegalArgumentException("'" + text + "' is not a boolean");
+    }
+
+    /**
+     * Parses an integer without creating a String, falling back to parsing a decimal for values such as 1.0 or 1e3.
+     */
+    static long parseLong(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i++;
+        }
+        if (i == length || length - i > 18) {
+            return new BigDecimal(text.toString()).longValueExact();
+        }
+        long value = 0;
+        for (; i < length; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return new BigDecimal(text.toString()).longValueExact();
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    static int parseInt(CharSequence text) {
+        return (int) parseLong(text, Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+    }
+
+    static short parseShort(CharSequence text) {
+        return (short) parseLong(text, Short.MIN_VALUE, Short.MAX_VALUE, "short");
+    }
+
+    static byte parseByte(CharSequence text) {
+        return (byte) parseLong(text, Byte.MIN_VALUE, Byte.MAX_VALUE, "byte");
+    }
+
+    /**
+     * Parses an integer which must fit in the range of a narrower type, rejecting values which would be truncated
+     * the same way {@link #parseLong(CharSequence)} rejects values which don't fit in a long.
+     */
+    private static long parseLong(CharSequence text, long min, long max, String type) {
+        long value = parseLong(text);
+        if (value < min || value > max) {
+            throw new ArithmeticException("'" + text + "' is out of the range of " + type);
+        }
+        return value;
+    }
+
+    static char parseChar(CharSequence text) {
+        if (text.length() != 1) {
+            throw new IllegalArgumentException("'" + text + "' is not a single character");
+        }
+        return text.charAt(0);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static Object parseEnum(Class<?> type, CharSequence text) {
+        Object[] constants = type.getEnumConstants();
+        for (Object constant : constants) {
+            if (equalsIgnoreCase(text, ((Enum) constant).name())) {
+                return constant;
+            }
+        }
+        if (type == SqlChangeOperation.class) {
+            return SqlChangeOperation.fromValue(parseInt(text));
+        }
+        long ordinal = parseLong(text);
+        if (ordinal < 0 || ordinal >= constants.length) {
+            throw new IllegalArgumentException("'" + text + "' is not a value of " + type.getSimpleName());
+        }
+        return constants[(int) ordinal];
+    }
+
+    /**
+     * Access to records through reflection, since this library targets Java 8.
+     */
+    private static final class Records {
+        private static final Method GET_RECORD_COMPONENTS;
+        private static final Method GET_NAME;
+        private static final Method GET_TYPE;
+
+        static {
+            Method getRecordComponents = null;
+            Method getName = null;
+            Method getType = null;
+            try {
+                getRecordComponents = Class.class.getMethod("getRecordComponents");
+                Class<?> recordComponent = Class.forName("java.lang.reflect.RecordComponent");
+                getName = recordComponent.getMethod("getName");
+                getType = recordComponent.getMethod("getType");
+            } catch (ClassNotFoundException | NoSuchMethodException e) {
+                // Running on a version of Java without records
+                getRecordComponents = null;
+            }
+            GET_RECORD_COMPONENTS = getRecordComponents;
+            GET_NAME = getName;
+            GET_TYPE = getType;
+        }
+
+        private Records() {
+        }
+
+        /**
+         * Gets the components of the record, or null if the type isn't a record.
+         */
+        static Object[] getComponents(Class<?> type) {
+            return GET_RECORD_COMPONENTS == null ? null : (Object[]) invoke(GET_RECORD_COMPONENTS, type);
+        }
+
+        static String getName(Object component) {
+            return (String) invoke(GET_NAME, component);
+        }
+
+        static Class<?> getType(Object component) {
+            return (Class<?>) invoke(GET_TYPE, component);
+        }
+
+        private static Object invoke(Method method, Object target) {
+            try {
+                return method.invoke(target);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Failed to read the components of " + target, e);
+            }
+        }
+    }
+}
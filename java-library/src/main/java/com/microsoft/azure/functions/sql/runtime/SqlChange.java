@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+/**
+ * A change to a row of the table monitored by the SQL trigger, decoded with {@link SqlRowDecoder#forChanges(Class)}.
+ *
+ * @param <T> The type the changed row is bound to
+ */
+public final class SqlChange<T> {
+    private final SqlChangeOperation operation;
+    private final T item;
+
+    public SqlChange(SqlChangeOperation operation, T item) {
+        this.operation = operation;
+        this.item = item;
+    }
+
+    /**
+     * The type of change made to the row.
+     */
+    public SqlChangeOperation getOperation() {
+        return this.operation;
+    }
+
+    /**
+     * The changed row. For deletes only the primary key columns are set.
+     */
+    public T getItem() {
+        return this.item;
+    }
+
+    @Override
+    public String toString() {
+        return "SqlChange{operation=" + this.operation + ", item=" + this.item + "}";
+    }
+}
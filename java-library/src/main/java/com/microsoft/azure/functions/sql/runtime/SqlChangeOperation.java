@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+/**
+ * The type of change made to a row, as sent by the SQL trigger.
+ */
+public enum SqlChangeOperation {
+    /**
+     * The row was inserted.
+     */
+    Insert(0),
+
+    /**
+     * The row was updated.
+     */
+    Update(1),
+
+    /**
+     * The row was deleted.
+     */
+    Delete(2);
+
+    private final int value;
+
+    SqlChangeOperation(int value) {
+        this.value = value;
+    }
+
+    /**
+     * The value used for this operation in the trigger payload.
+     */
+    public int getValue() {
+        return this.value;
+    }
+
+    /**
+     * Gets the operation with the given value in the trigger payload.
+     */
+    public static SqlChangeOperation fromValue(int value) {
+        for (SqlChangeOperation operation : values()) {
+            if (operation.value == value) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown change operation " + value);
+    }
+}
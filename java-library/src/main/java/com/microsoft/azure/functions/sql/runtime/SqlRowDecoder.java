@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes the rows passed to Java functions by the SQL input binding and the changes passed by the SQL trigger.
+ * Both are passed as a JSON array, so bind the parameter of the function to a String (or to a byte[] and wrap it
+ * in a Reader) and decode it with a decoder created once per type:
+ * <pre>
+ * private static final SqlRowDecoder&lt;SqlChange&lt;Product&gt;&gt; DECODER = SqlRowDecoder.forChanges(Product.class);
+ *
+ * for (SqlChange&lt;Product&gt; change : DECODER.rows(changes)) {
+ *     ...
+ * }
+ * </pre>
+ * The payload is parsed incrementally and each row is bound when it's iterated, so the rows don't need to be
+ * materialized all at once. Rows are bound to classes through their fields and a constructor without parameters,
+ * or to records through their canonical constructor, with the properties matched by name ignoring case. The
+ * accessors used to bind a type are computed once, when the first decoder for the type is created.
+ * <p>
+ * Decoders are thread-safe.
+ *
+ * @param <T> The type the rows are bound to
+ */
+public final class SqlRowDecoder<T> {
+    private final ValueReader<T> reader;
+
+    private SqlRowDecoder(ValueReader<T> reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Creates a decoder for the rows returned by the SQL input binding.
+     *
+     * @param type The type each row is bound to
+     * @throws IllegalArgumentException If the type can't be bound to rows
+     */
+    public static <T> SqlRowDecoder<T> forType(Class<T> type) {
+        return new SqlRowDecoder<T>(RowBinder.forType(type));
+    }
+
+    /**
+     * Creates a decoder for the changes passed by the SQL trigger.
+     *
+     * @param itemType The type each changed row is bound to
+     * @throws IllegalArgumentException If the type can't be bound to rows
+     */
+    public static <T> SqlRowDecoder<SqlChange<T>> forChanges(Class<T> itemType) {
+        return new SqlRowDecoder<SqlChange<T>>(new ChangeBinder<T>(itemType));
+    }
+
+    /**
+     * Iterates over the rows of the payload read from the given reader. The reader is closed when the iterator is.
+     */
+    public SqlRowIterator<T> iterate(Reader payload) {
+        return new SqlRowIterator<T>(new JsonPullParser(payload), this.reader);
+    }
+
+    /**
+     * Iterates over the rows of the payload.
+     */
+    public SqlRowIterator<T> iterate(String payload) {
+        return this.iterate(new StringReader(payload));
+    }
+
+    /**
+     * Returns the rows of the payload, for use in a for-each loop. Each call to {@link Iterable#iterator()} decodes
+     * the payload again.
+     */
+    public Iterable<T> rows(final String payload) {
+        return () -> this.iterate(payload);
+    }
+
+    /**
+     * Decodes all the rows of the payload into a list.
+     */
+    public List<T> decodeAll(String payload) {
+        List<T> rows = new ArrayList<T>();
+        SqlRowIterator<T> iterator = this.iterate(payload);
+        while (iterator.hasNext()) {
+            rows.add(iterator.next());
+        }
+        return rows;
+    }
+}
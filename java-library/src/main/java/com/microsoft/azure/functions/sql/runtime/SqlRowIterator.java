@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates lazily over the rows of a payload, reading and binding each row only when it's requested. Only the
+ * current row is kept in memory, so payloads of any size can be processed in constant memory as long as the rows
+ * aren't accumulated by the caller.
+ * <p>
+ * The iterator is closed automatically once all the rows have been read. It should be closed explicitly (e.g. with
+ * a try-with-resources statement) when the iteration is stopped early.
+ *
+ * @param <T> The type the rows are bound to
+ */
+public final class SqlRowIterator<T> implements Iterator<T>, Closeable {
+    private final JsonPullParser parser;
+    private final ValueReader<T> reader;
+    private boolean started;
+    private boolean finished;
+
+    SqlRowIterator(JsonPullParser parser, ValueReader<T> reader) {
+        this.parser = parser;
+        this.reader = reader;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException If the payload couldn't be read or isn't valid
+     */
+    @Override
+    public boolean hasNext() {
+        if (this.finished) {
+            return false;
+        }
+        try {
+            if (!this.started) {
+                this.started = true;
+                this.parser.beginRows();
+            }
+            if (!this.parser.hasNextElement()) {
+                this.parser.endRows();
+                this.close();
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            this.closeQuietly();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException If the payload couldn't be read or isn't valid
+     */
+    @Override
+    public T next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return this.reader.read(this.parser);
+        } catch (IOException e) {
+            this.closeQuietly();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!this.finished) {
+            this.finished = true;
+            this.parser.close();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            this.close();
+        } catch (IOException e) {
+            // Already reporting the original error
+        }
+    }
+}
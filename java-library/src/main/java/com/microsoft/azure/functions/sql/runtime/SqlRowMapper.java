@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Base class of the mappers generated at compile time by the SQL bindings annotation processor, which bind rows to
+ * a type without any reflection. {@link SqlRowDecoder} uses the mapper generated for a type when there is one and
+ * falls back to binding the type through reflection otherwise.
+ * <p>
+ * The mapper of a type is named after the binary name of the type with '$' replaced by '_' and the suffix
+ * {@value #MAPPER_SUFFIX}, e.g. com.function.Product_SqlMapper.
+ *
+ * @param <T> The type the rows are bound to
+ */
+public abstract class SqlRowMapper<T> {
+    /**
+     * The suffix of the name of the generated mappers.
+     */
+    public static final String MAPPER_SUFFIX = "_SqlMapper";
+
+    private final Class<T> type;
+
+    protected SqlRowMapper(Class<T> type) {
+        this.type = type;
+    }
+
+    /**
+     * The type the rows are bound to.
+     */
+    public final Class<T> getType() {
+        return this.type;
+    }
+
+    /**
+     * Reads a row, which isn't null. Implementations call {@link SqlRowReader#beginRow()} and then read each column.
+     */
+    protected abstract T read(SqlRowReader reader) throws IOException;
+
+    /**
+     * Gets the name of the mapper generated for the type with the given binary name.
+     */
+    public static String getMapperName(String binaryName) {
+        return binaryName.replace('$', '_') + MAPPER_SUFFIX;
+    }
+
+    final T readRow(JsonPullParser parser) throws IOException {
+        SqlRowReader reader = parser.rowReader();
+        if (reader.readNull()) {
+            return null;
+        }
+        try {
+            return this.read(reader);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            throw parser.syntaxError("Invalid value for " + this.type.getSimpleName() + "." + reader.getColumn() + " (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Finds the mapper generated for the type, or returns null if there isn't one.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> SqlRowMapper<T> find(Class<T> type) {
+        ClassLoader loader = type.getClassLoader();
+        if (loader == null) {
+            return null;
+        }
+        try {
+            Class<?> mapperType = Class.forName(getMapperName(type.getName()), true, loader);
+            if (!SqlRowMapper.class.isAssignableFrom(mapperType)) {
+                return null;
+            }
+            SqlRowMapper<?> mapper = (SqlRowMapper<?>) mapperType.getDeclaredConstructor().newInstance();
+            return mapper.type == type ? (SqlRowMapper<T>) mapper : null;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+            throw new IllegalStateException("Failed to create the SQL row mapper generated for " + type.getName(), e);
+        }
+    }
+}
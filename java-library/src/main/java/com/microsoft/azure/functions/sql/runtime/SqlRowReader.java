@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Reads the columns of a row for the mappers generated at compile time, see {@link SqlRowMapper}. This isn't
+ * intended to be used directly.
+ * <p>
+ * The columns are read with {@link #nextColumn(String[])} and the value of each column must then be read with one
+ * of the read methods or skipped. The methods reading a primitive value don't accept nulls, so {@link #readNull()}
+ * must be checked first.
+ */
+public final class SqlRowReader {
+    /**
+     * Returned by {@link #nextColumn(String[])} when all the columns of the row have been read.
+     */
+    public static final int END_OF_ROW = -1;
+
+    /**
+     * Returned by {@link #nextColumn(String[])} when the column isn't one of the expected columns.
+     */
+    public static final int UNKNOWN_COLUMN = -2;
+
+    private final JsonPullParser parser;
+    private int expected;
+    private String column;
+
+    SqlRowReader(JsonPullParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Starts reading a row.
+     */
+    public void beginRow() throws IOException {
+        this.parser.beginObject();
+        this.expected = 0;
+        this.column = null;
+    }
+
+    /**
+     * Reads the name of the next column of the row and returns its index in the given columns, matching the names
+     * ignoring case. Returns {@link #END_OF_ROW} at the end of the row and {@link #UNKNOWN_COLUMN} if the column
+     * isn't one of the given columns, in which case the value must be skipped.
+     */
+    public int nextColumn(String[] columns) throws IOException {
+        if (!this.parser.nextName()) {
+            return END_OF_ROW;
+        }
+        CharSequence name = this.parser.text();
+        // The columns of every row are in the same order, so the next column is almost always the one after the
+        // last column that was found
+        int index = UNKNOWN_COLUMN;
+        if (this.expected < columns.length && JsonPullParser.contentEquals(name, columns[this.expected])) {
+            index = this.expected;
+        } else {
+            for (int i = 0; i < columns.length; i++) {
+                if (RowBinder.equalsIgnoreCase(name, columns[i])) {
+                    index = i;
+                    break;
+                }
+            }
+        }
+        if (index >= 0) {
+            this.expected = index + 1;
+            this.column = columns[index];
+        }
+        return index;
+    }
+
+    /**
+     * Consumes the value if it's null, returns false without consuming it otherwise.
+     */
+    public boolean readNull() throws IOException {
+        if (this.parser.peekValue() == JsonPullParser.ValueKind.NULL) {
+            this.parser.readScalar();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean readBoolean() throws IOException {
+        return RowBinder.parseBoolean(this.readText());
+    }
+
+    public byte readByte() throws IOException {
+        return RowBinder.parseByte(this.readText());
+    }
+
+    public short readShort() throws IOException {
+        return RowBinder.parseShort(this.readText());
+    }
+
+    public int readInt() throws IOException {
+        return RowBinder.parseInt(this.readText());
+    }
+
+    public long readLong() throws IOException {
+        return RowBinder.parseLong(this.readText());
+    }
+
+    public float readFloat() throws IOException {
+        return Float.parseFloat(this.readText().toString());
+    }
+
+    public double readDouble() throws IOException {
+        return Double.parseDouble(this.readText().toString());
+    }
+
+    public char readChar() throws IOException {
+        return RowBinder.parseChar(this.readText());
+    }
+
+    public String readString() throws IOException {
+        return this.parser.readScalar() ? this.parser.text().toString() : null;
+    }
+
+    public BigDecimal readBigDecimal() throws IOException {
+        return this.parser.readScalar() ? new BigDecimal(this.parser.text().toString()) : null;
+    }
+
+    public BigInteger readBigInteger() throws IOException {
+        return this.parser.readScalar() ? new BigInteger(this.parser.text().toString()) : null;
+    }
+
+    public UUID readUuid() throws IOException {
+        return this.parser.readScalar() ? UUID.fromString(this.parser.text().toString()) : null;
+    }
+
+    /**
+     * Reads a binary value, which is sent as a base64 string.
+     */
+    public byte[] readBytes() throws IOException {
+        return this.parser.readScalar() ? Base64.getDecoder().decode(this.parser.text().toString()) : null;
+    }
+
+    public LocalDate readLocalDate() throws IOException {
+        return this.parser.readScalar() ? TemporalParser.parseLocalDate(this.parser.text()) : null;
+    }
+
+    /**
+     * Reads a date and time, ignoring its offset.
+     */
+    public LocalDateTime readLocalDateTime() throws IOException {
+        return this.parser.readScalar() ? TemporalParser.parseLocalDateTime(this.parser.text()) : null;
+    }
+
+    public LocalTime readLocalTime() throws IOException {
+        return this.parser.readScalar() ? TemporalParser.parseLocalTime(this.parser.text()) : null;
+    }
+
+    /**
+     * Reads a date and time with its offset, which is UTC if the value doesn't have one.
+     */
+    public OffsetDateTime readOffsetDateTime() throws IOException {
+        return this.parser.readScalar() ? TemporalParser.parseOffsetDateTime(this.parser.text()) : null;
+    }
+
+    public Instant readInstant() throws IOException {
+        return this.parser.readScalar() ? TemporalParser.parseInstant(this.parser.text()) : null;
+    }
+
+    /**
+     * Reads an enum value, sent either as the name of the constant or as its ordinal.
+     */
+    public <E extends Enum<E>> E readEnum(Class<E> type) throws IOException {
+        return this.parser.readScalar() ? type.cast(RowBinder.parseEnum(type, this.parser.text())) : null;
+    }
+
+    /**
+     * Reads a nested object, using its generated mapper if there is one.
+     */
+    public <V> V readObject(Class<V> type) throws IOException {
+        return RowBinder.forType(type).read(this.parser);
+    }
+
+    public void skipValue() throws IOException {
+        this.parser.skipValue();
+    }
+
+    /**
+     * The name of the last column which was read, used in error messages.
+     */
+    String getColumn() {
+        return this.column;
+    }
+
+    private CharSequence readText() throws IOException {
+        if (!this.parser.readScalar()) {
+            throw new IllegalArgumentException("null can't be assigned to a primitive value");
+        }
+        return this.parser.text();
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Parses the date and time values written by the extension by the position of their fields, without creating a
+ * String or using a DateTimeFormatter, so no locale or time zone is ever looked up. The values are in the ISO 8601
+ * form yyyy-MM-ddTHH:mm:ss[.fraction][Z|+hh:mm|-hh:mm] for dates and times and HH:mm:ss[.fraction] for times, which
+ * covers both the Iso8601 temporal format and the default formats of the input binding and the trigger.
+ *
+ * <p>Values which can't be represented exactly by the type they're parsed to are rejected, e.g. a fraction with more
+ * than 9 digits, a date with a time other than midnight or a LocalDateTime with an offset. The extension writes the
+ * values of datetime, datetime2, smalldatetime and date columns in UTC, either with a Z or, in the default format of
+ * the trigger, without an offset, so the only lenient cases are that:
+ * <ul>
+ * <li>LocalDate and LocalDateTime accept the Z of values in UTC, which doesn't change their date and time</li>
+ * <li>LocalDate accepts a time at midnight, since date columns are written as a date and time</li>
+ * <li>OffsetDateTime and Instant treat values without an offset as being in UTC</li>
+ * </ul>
+ */
+final class TemporalParser {
+    private static final int DATE_LENGTH = 10;
+    private static final int TIME_LENGTH = 8;
+    private static final int MAX_FRACTION_DIGITS = 9;
+
+    private TemporalParser() {
+    }
+
+    /**
+     * Parses a date, which may be followed by a time at midnight in UTC since date columns are written as a date and
+     * time.
+     */
+    static LocalDate parseLocalDate(CharSequence text) {
+        try {
+            LocalDate date = parseDate(text);
+            if (text.length() != DATE_LENGTH) {
+                int end = timeEnd(text, DATE_LENGTH + 1);
+                if (!parseTime(text, DATE_LENGTH + 1, end).equals(LocalTime.MIDNIGHT) || !isUtc(text, end)) {
+                    throw invalid(text, "date");
+                }
+            }
+            return date;
+        } catch (DateTimeException e) {
+            throw invalid(text, "date");
+        }
+    }
+
+    /**
+     * Parses a date and time without an offset, or in UTC. The values of datetimeoffset columns have to be parsed to
+     * an OffsetDateTime or an Instant, since the offset would be lost otherwise.
+     */
+    static LocalDateTime parseLocalDateTime(CharSequence text) {
+        try {
+            int end = timeEnd(text, DATE_LENGTH + 1);
+            LocalDateTime value = LocalDateTime.of(parseDate(text), parseTime(text, DATE_LENGTH + 1, end));
+            if (!isUtc(text, end)) {
+                throw invalid(text, "date and time without an offset");
+            }
+            return value;
+        } catch (DateTimeException e) {
+            throw invalid(text, "date and time");
+        }
+    }
+
+    static OffsetDateTime parseOffsetDateTime(CharSequence text) {
+        try {
+            int end = timeEnd(text, DATE_LENGTH + 1);
+            LocalDateTime value = LocalDateTime.of(parseDate(text), parseTime(text, DATE_LENGTH + 1, end));
+            return OffsetDateTime.of(value, parseOffset(text, end));
+        } catch (DateTimeException e) {
+            throw invalid(text, "date and time");
+        }
+    }
+
+    static Instant parseInstant(CharSequence text) {
+        try {
+            int end = timeEnd(text, DATE_LENGTH + 1);
+            LocalTime time = parseTime(text, DATE_LENGTH + 1, end);
+            // Computed from the offset alone, so no time zone rules are loaded
+            long epochSecond = LocalDateTime.of(parseDate(text), time).toEpochSecond(parseOffset(text, end));
+            return Instant.ofEpochSecond(epochSecond, time.getNano());
+        } catch (DateTimeException e) {
+            throw invalid(text, "date and time");
+        }
+    }
+
+    static LocalTime parseLocalTime(CharSequence text) {
+        try {
+            int end = timeEnd(text, 0);
+            if (end != text.length()) {
+                throw invalid(text, "time");
+            }
+            return parseTime(text, 0, end);
+        } catch (DateTimeException e) {
+            throw invalid(text, "time");
+        }
+    }
+
+    private static LocalDate parseDate(CharSequence text) {
+        if (text.length() < DATE_LENGTH) {
+            throw invalid(text, "date");
+        }
+        expect(text, 4, '-');
+        expect(text, 7, '-');
+        return LocalDate.of(parseDigits(text, 0, 4), parseDigits(text, 5, 2), parseDigits(text, 8, 2));
+    }
+
+    /**
+     * Returns the index after the time starting at the given index, including its fraction, which must have between 1
+     * and 9 digits.
+     */
+    private static int timeEnd(CharSequence text, int start) {
+        if (start > 0) {
+            expect(text, start - 1, 'T');
+        }
+        int end = start + TIME_LENGTH;
+        if (text.length() < end) {
+            throw invalid(text, "time");
+        }
+        if (end < text.length() && text.charAt(end) == '.') {
+            int fractionStart = ++end;
+            while (end < text.length() && text.charAt(end) >= '0' && text.charAt(end) <= '9') {
+                end++;
+            }
+            if (end == fractionStart || end - fractionStart > MAX_FRACTION_DIGITS) {
+                throw invalid(text, "time");
+            }
+        }
+        return end;
+    }
+
+    private static LocalTime parseTime(CharSequence text, int start, int end) {
+        expect(text, start + 2, ':');
+        expect(text, start + 5, ':');
+        int nano = 0;
+        int digits = 0;
+        for (int i = start + TIME_LENGTH + 1; i < end; i++, digits++) {
+            nano = nano * 10 + text.charAt(i) - '0';
+        }
+        for (; digits < MAX_FRACTION_DIGITS; digits++) {
+            nano *= 10;
+        }
+        return LocalTime.of(parseDigits(text, start, 2), parseDigits(text, start + 3, 2), parseDigits(text, start + 6, 2), nano);
+    }
+
+    /**
+     * Returns whether the value ends at the given index, or with the Z of values in UTC.
+     */
+    private static boolean isUtc(CharSequence text, int start) {
+        return start == text.length() || (start + 1 == text.length() && text.charAt(start) == 'Z');
+    }
+
+    /**
+     * Parses the offset at the end of the value, which is UTC if there isn't one since the extension writes the values
+     * of the columns without an offset in UTC.
+     */
+    private static ZoneOffset parseOffset(CharSequence text, int start) {
+        int length = text.length();
+        if (start == length) {
+            return ZoneOffset.UTC;
+        }
+        char sign = text.charAt(start);
+        if (sign == 'Z' && start + 1 == length) {
+            return ZoneOffset.UTC;
+        }
+        if ((sign != '+' && sign != '-') || length != start + 6) {
+            throw invalid(text, "offset");
+        }
+        expect(text, start + 3, ':');
+        int hours = parseDigits(text, start + 1, 2);
+        int minutes = parseDigits(text, start + 4, 2);
+        return sign == '-' ? ZoneOffset.ofHoursMinutes(-hours, -minutes) : ZoneOffset.ofHoursMinutes(hours, minutes);
+    }
+
+    private static int parseDigits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid(text, "date or time");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static void expect(CharSequence text, int index, char expected) {
+        if (index >= text.length() || text.charAt(index) != expected) {
+            throw invalid(text, "date or time");
+        }
+    }
+
+    private static IllegalArgumentException invalid(CharSequence text, String kind) {
+        return new IllegalArgumentException("'" + text + "' is not a valid " + kind);
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+import java.io.IOException;
+
+/**
+ * Reads a single value from the payload.
+ */
+interface ValueReader<T> {
+    T read(JsonPullParser parser) throws IOException;
+}
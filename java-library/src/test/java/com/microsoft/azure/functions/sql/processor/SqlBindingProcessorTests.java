@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.microsoft.azure.functions.sql.runtime.SqlRowDecoder;
+import com.microsoft.azure.functions.sql.runtime.SqlRowMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+
+public class SqlBindingProcessorTests {
+    private static final String ROW_SOURCE = "package com.function;\n"
+        + "import com.microsoft.azure.functions.sql.annotation.SQLRow;\n"
+        + "@SQLRow\n"
+        + "public class Product {\n"
+        + "    public int ProductId;\n"
+        + "    public short Quantity;\n"
+        + "    private String name;\n"
+        + "    public String getName() { return this.name; }\n"
+        + "    public void setName(String name) { this.name = name; }\n"
+        + "}\n";
+
+    @Test
+    public void generatesMappersForRowTypes() throws Exception {
+        Compilation compilation = compile("com.function.Product", ROW_SOURCE);
+        assertEquals(Collections.emptyList(), compilation.getMessages(Diagnostic.Kind.ERROR));
+        assertEquals(Collections.emptyList(), compilation.getMessages(Diagnostic.Kind.WARNING));
+
+        try (URLClassLoader loader = compilation.createClassLoader()) {
+            Class<?> type = loader.loadClass("com.function.Product");
+            Class<?> mapper = loader.loadClass("com.function.Product" + SqlRowMapper.MAPPER_SUFFIX);
+            assertTrue(SqlRowMapper.class.isAssignableFrom(mapper));
+
+            SqlRowDecoder<?> decoder = SqlRowDecoder.forType(type);
+            Object product = decoder.decodeAll("[{\"ProductId\":1,\"Name\":\"Cup\",\"Quantity\":3}]").get(0);
+            assertEquals(1, type.getField("ProductId").get(product));
+            assertEquals((short) 3, type.getField("Quantity").get(product));
+            assertEquals("Cup", type.getMethod("getName").invoke(product));
+
+            // The generated mapper rejects values which don't fit in the type of the property the same way the
+            // reflection binder does
+            UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> decoder.decodeAll("[{\"ProductId\":2147483648}]"));
+            assertTrue(e.getCause().getMessage().startsWith("Invalid value for Product.ProductId ('2147483648' is out of the range of int)"), e.getCause().getMessage());
+            e = assertThrows(UncheckedIOException.class, () -> decoder.decodeAll("[{\"Quantity\":32768,}]"));
+            assertTrue(e.getCause().getMessage().startsWith("Invalid value for Product.Quantity ('32768' is out of the range of short)"), e.getCause().getMessage());
+            e = assertThrows(UncheckedIOException.class, () -> decoder.decodeAll("[{\"Quantity\":1,}]"));
+            assertTrue(e.getCause().getMessage().startsWith("Unexpected ',' before '}'"), e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void warnsWhenRowTypeCantBeMapped() throws Exception {
+        Compilation compilation = compile("com.function.Product", "package com.function;\n"
+            + "import com.microsoft.azure.functions.sql.annotation.SQLRow;\n"
+            + "@SQLRow\n"
+            + "public class Product {\n"
+            + "    private int productId;\n"
+            + "}\n");
+        assertEquals(Collections.emptyList(), compilation.getMessages(Diagnostic.Kind.ERROR));
+        List<String> warnings = compilation.getMessages(Diagnostic.Kind.WARNING);
+        assertEquals(1, warnings.size());
+        assertTrue(warnings.get(0).startsWith("No SQL row mapper was generated for com.function.Product"), warnings.get(0));
+    }
+
+    @Test
+    public void reportsInvalidBindings() throws Exception {
+        Compilation compilation = compile("com.function.Functions", "package com.function;\n"
+            + "import com.microsoft.azure.functions.OutputBinding;\n"
+            + "import com.microsoft.azure.functions.sql.annotation.SQLInput;\n"
+            + "import com.microsoft.azure.functions.sql.annotation.SQLOutput;\n"
+            + "import com.microsoft.azure.functions.sql.annotation.SQLTrigger;\n"
+            + "public class Functions {\n"
+            + "    public void input(@SQLInput(name = \"products\", commandText = \" \") String products) { }\n"
+            + "    public void parameters(@SQLInput(name = \"products\", commandText = \"select 1\", parameters = \"@Id\") String products) { }\n"
+            + "    public void output(@SQLOutput(name = \"products\", commandText = \"[dbo.Products\") OutputBinding<String> products) { }\n"
+            + "    public void trigger(@SQLTrigger(name = \"changes\", tableName = \"\", connectionStringSetting = \"SqlConnectionString\") String changes) { }\n"
+            + "    public void valid(@SQLInput(name = \"products\", commandText = \"select * from Products where Id = @Id\", parameters = \"@Id={Query.id}\") String products,\n"
+            + "        @SQLOutput(name = \"output\", commandText = \"[dbo].[Products]\") OutputBinding<String> output) { }\n"
+            + "}\n");
+        List<String> errors = compilation.getMessages(Diagnostic.Kind.ERROR);
+        assertEquals(4, errors.size(), errors.toString());
+        assertEquals("The commandText of the SQL input binding products is required.", errors.get(0));
+        assertTrue(errors.get(1).startsWith("Invalid parameters for the SQL input binding products: "), errors.get(1));
+        assertTrue(errors.get(2).startsWith("Invalid name '[dbo.Products' for the table of the SQL output binding products: "), errors.get(2));
+        assertEquals("The table of the SQL trigger changes is required.", errors.get(3));
+    }
+
+    private static Compilation compile(String className, String source) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler, "The tests must run on a JDK");
+        Path output = Files.createTempDirectory("sql-processor");
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d", output.toString(),
+            "-s", output.toString(), "-processor", SqlBindingProcessor.class.getName());
+        compiler.getTask(null, null, diagnostics, options, null, Collections.singletonList(file)).call();
+        return new Compilation(output, diagnostics.getDiagnostics());
+    }
+
+    private static final class Compilation {
+        private final Path output;
+        private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+        Compilation(Path output, List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+            this.output = output;
+            this.diagnostics = diagnostics;
+        }
+
+        List<String> getMessages(Diagnostic.Kind kind) {
+            List<String> messages = new ArrayList<String>();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : this.diagnostics) {
+                if (diagnostic.getKind() == kind) {
+                    messages.add(diagnostic.getMessage(Locale.ROOT));
+                }
+            }
+            return messages;
+        }
+
+        URLClassLoader createClassLoader() throws IOException {
+            File directory = this.output.toFile();
+            return new URLClassLoader(new URL[] { directory.toURI().toURL() }, SqlBindingProcessorTests.class.getClassLoader());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class SqlRowDecoderTests {
+    public static class Product {
+        public int ProductId;
+        public String Name;
+        public int Cost;
+    }
+
+    public static class Numbers {
+        public byte ByteValue;
+        public short ShortValue;
+        public int IntValue;
+        public long LongValue;
+    }
+
+    public enum Color {
+        Red,
+        Green
+    }
+
+    public static class Paint {
+        public Color Color;
+    }
+
+    private static final SqlRowDecoder<Product> PRODUCTS = SqlRowDecoder.forType(Product.class);
+    private static final SqlRowDecoder<Numbers> NUMBERS = SqlRowDecoder.forType(Numbers.class);
+    private static final SqlRowDecoder<SqlChange<Product>> CHANGES = SqlRowDecoder.forChanges(Product.class);
+
+    @Test
+    public void decodesRows() {
+        List<Product> products = PRODUCTS.decodeAll("[{\"ProductId\":1,\"Name\":\"Cup\",\"Cost\":10}, {\"productid\" : 2, \"Unknown\": [1, {\"a\": 2}], \"Name\": null}, null]");
+        assertEquals(3, products.size());
+        assertEquals(1, products.get(0).ProductId);
+        assertEquals("Cup", products.get(0).Name);
+        assertEquals(10, products.get(0).Cost);
+        assertEquals(2, products.get(1).ProductId);
+        assertNull(products.get(1).Name);
+        assertNull(products.get(2));
+    }
+
+    @Test
+    public void decodesColumnarRows() {
+        List<Product> products = PRODUCTS.decodeAll("{\"columns\":[\"ProductId\",\"Name\",\"Cost\"],\"rows\":[[1,\"Cup\",10],[2,\"Plate\",20]]}");
+        assertEquals(2, products.size());
+        assertEquals(2, products.get(1).ProductId);
+        assertEquals("Plate", products.get(1).Name);
+        assertEquals(20, products.get(1).Cost);
+    }
+
+    @Test
+    public void decodesEmptyPayloads() {
+        assertTrue(PRODUCTS.decodeAll("[]").isEmpty());
+        assertTrue(PRODUCTS.decodeAll(" [ ] ").isEmpty());
+        assertTrue(PRODUCTS.decodeAll("{\"columns\":[\"ProductId\"],\"rows\":[]}").isEmpty());
+        assertEquals(0, PRODUCTS.decodeAll("[{}]").get(0).ProductId);
+    }
+
+    @Test
+    public void hasNextDoesNotSkipRows() {
+        SqlRowIterator<Product> iterator = PRODUCTS.iterate("[{\"ProductId\":1},{\"ProductId\":2}]");
+        assertTrue(iterator.hasNext());
+        assertTrue(iterator.hasNext());
+        assertEquals(1, iterator.next().ProductId);
+        assertTrue(iterator.hasNext());
+        assertEquals(2, iterator.next().ProductId);
+        assertFalse(iterator.hasNext());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void rejectsMisplacedCommas() {
+        assertInvalid(PRODUCTS, "[{\"ProductId\":1,}]", "Unexpected ',' before '}'");
+        assertInvalid(PRODUCTS, "[{\"ProductId\":1},]", "Unexpected ',' before ']'");
+        assertInvalid(PRODUCTS, "[,{\"ProductId\":1}]", "Unexpected ','");
+        assertInvalid(PRODUCTS, "[{,\"ProductId\":1}]", "Unexpected ','");
+        assertInvalid(PRODUCTS, "[{\"ProductId\":1,,\"Cost\":1}]", "Unexpected ','");
+        assertInvalid(PRODUCTS, "[{\"ProductId\":1 \"Cost\":1}]", "Expected ','");
+        assertInvalid(PRODUCTS, "[{\"ProductId\":1}{\"ProductId\":2}]", "Expected ','");
+        assertInvalid(PRODUCTS, "[{\"ProductId\":1,\"Unknown\":[1,]}]", "Unexpected ',' before ']'");
+        assertInvalid(PRODUCTS, "{\"columns\":[\"ProductId\",],\"rows\":[[1]]}", "Unexpected ',' before ']'");
+        assertInvalid(PRODUCTS, "{\"columns\":[\"ProductId\"],\"rows\":[[1,]]}", "Unexpected ',' before ']'");
+        assertInvalid(PRODUCTS, "{\"columns\":[\"ProductId\"],\"rows\":[[1][2]]}", "Expected ','");
+    }
+
+    @Test
+    public void rejectsTruncatedPayloads() {
+        assertInvalid(PRODUCTS, "[{\"ProductId\":1}", "Unexpected end of payload");
+        assertInvalid(PRODUCTS, "[{\"ProductId\":1,", "Unexpected end of payload");
+        assertInvalid(PRODUCTS, "{\"columns\":[\"ProductId\"],\"rows\":[[1]]", "Unexpected end of payload");
+    }
+
+    @Test
+    public void rejectsContentAfterThePayload() {
+        assertEquals(1, PRODUCTS.decodeAll("[{\"ProductId\":1}] \n").size());
+        assertEquals(1, PRODUCTS.decodeAll("{\"columns\":[\"ProductId\"],\"rows\":[[1]],\"unknown\":[1]}").size());
+        assertInvalid(PRODUCTS, "[{\"ProductId\":1}]garbage", "Unexpected content after the end of the payload");
+        assertInvalid(PRODUCTS, "[] []", "Unexpected content after the end of the payload");
+        assertInvalid(PRODUCTS, "{\"columns\":[\"ProductId\"],\"rows\":[[1]]}]", "Unexpected content after the end of the payload");
+        assertInvalid(CHANGES, "[{\"Operation\":0,\"Item\":{}}],", "Unexpected content after the end of the payload");
+    }
+
+    @Test
+    public void bindsIntegersAtTheLimitsOfTheirTypes() {
+        Numbers numbers = NUMBERS.decodeAll("[{\"ByteValue\":-128,\"ShortValue\":32767,\"IntValue\":-2147483648,\"LongValue\":9223372036854775807}]").get(0);
+        assertEquals(Byte.MIN_VALUE, numbers.ByteValue);
+        assertEquals(Short.MAX_VALUE, numbers.ShortValue);
+        assertEquals(Integer.MIN_VALUE, numbers.IntValue);
+        assertEquals(Long.MAX_VALUE, numbers.LongValue);
+    }
+
+    @Test
+    public void rejectsIntegersOutOfTheRangeOfTheirTypes() {
+        assertInvalid(NUMBERS, "[{\"ByteValue\":128}]", "Invalid value for Numbers.ByteValue ('128' is out of the range of byte)");
+        assertInvalid(NUMBERS, "[{\"ShortValue\":-32769}]", "Invalid value for Numbers.ShortValue ('-32769' is out of the range of short)");
+        assertInvalid(NUMBERS, "[{\"IntValue\":2147483648}]", "Invalid value for Numbers.IntValue ('2147483648' is out of the range of int)");
+        assertInvalid(NUMBERS, "[{\"IntValue\":4294967297}]", "Invalid value for Numbers.IntValue ('4294967297' is out of the range of int)");
+        assertInvalid(NUMBERS, "[{\"LongValue\":9223372036854775808}]", "Invalid value for Numbers.LongValue");
+        assertInvalid(NUMBERS, "{\"columns\":[\"IntValue\"],\"rows\":[[2147483648]]}", "Invalid value for Numbers.IntValue ('2147483648' is out of the range of int)");
+    }
+
+    @Test
+    public void bindsEnumsByNameOrOrdinal() {
+        SqlRowDecoder<Paint> decoder = SqlRowDecoder.forType(Paint.class);
+        List<Paint> paints = decoder.decodeAll("[{\"Color\":\"green\"},{\"Color\":0},{\"Color\":\"1\"}]");
+        assertEquals(Color.Green, paints.get(0).Color);
+        assertEquals(Color.Red, paints.get(1).Color);
+        assertEquals(Color.Green, paints.get(2).Color);
+
+        assertInvalid(decoder, "[{\"Color\":2}]", "Invalid value for Paint.Color ('2' is not a value of Color)");
+        assertInvalid(decoder, "[{\"Color\":-1}]", "Invalid value for Paint.Color ('-1' is not a value of Color)");
+        assertInvalid(decoder, "[{\"Color\":4294967296}]", "Invalid value for Paint.Color ('4294967296' is not a value of Color)");
+    }
+
+    @Test
+    public void decodesChanges() {
+        List<SqlChange<Product>> changes = CHANGES.decodeAll("[{\"Operation\":0,\"Item\":{\"ProductId\":1}},{\"Item\":{\"ProductId\":2},\"Operation\":\"Delete\"}]");
+        assertEquals(SqlChangeOperation.Insert, changes.get(0).getOperation());
+        assertEquals(1, changes.get(0).getItem().ProductId);
+        assertEquals(SqlChangeOperation.Delete, changes.get(1).getOperation());
+        assertEquals(2, changes.get(1).getItem().ProductId);
+
+        changes = CHANGES.decodeAll("{\"columns\":[\"ProductId\",\"Name\"],\"changes\":[[1,[3,\"Cup\"],\"2024-01-01T00:00:00\",5]]}");
+        assertEquals(SqlChangeOperation.Update, changes.get(0).getOperation());
+        assertEquals(3, changes.get(0).getItem().ProductId);
+        assertEquals("Cup", changes.get(0).getItem().Name);
+    }
+
+    @Test
+    public void rejectsInvalidChangeOperations() {
+        assertInvalid(CHANGES, "[{\"Item\":{\"ProductId\":1}}]", "Missing Operation of the change");
+        assertInvalid(CHANGES, "[{\"Operation\":3,\"Item\":{}}]", "Invalid Operation '3' of the change");
+        // Would be Insert if it was truncated to an int
+        assertInvalid(CHANGES, "[{\"Operation\":4294967296,\"Item\":{}}]", "Invalid Operation '4294967296' of the change");
+        assertInvalid(CHANGES, "[{\"Operation\":0,\"Item\":{},}]", "Unexpected ',' before '}'");
+    }
+
+    private static void assertInvalid(SqlRowDecoder<?> decoder, String payload, String message) {
+        UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> decoder.decodeAll(payload));
+        assertTrue(e.getCause().getMessage().startsWith(message), e.getCause().getMessage());
+    }
+}
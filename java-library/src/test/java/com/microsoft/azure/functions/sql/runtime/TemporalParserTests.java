@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.functions.sql.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+public class TemporalParserTests {
+    @Test
+    public void parsesValuesWrittenByTheExtension() {
+        assertEquals(LocalDateTime.of(2023, 1, 2, 3, 4, 5, 678000000), TemporalParser.parseLocalDateTime("2023-01-02T03:04:05.6780000Z"));
+        assertEquals(LocalDateTime.of(2023, 1, 2, 3, 4, 5, 678000000), TemporalParser.parseLocalDateTime("2023-01-02T03:04:05.678Z"));
+        assertEquals(OffsetDateTime.of(2023, 1, 2, 3, 4, 5, 678000000, ZoneOffset.ofHoursMinutes(5, 30)),
+            TemporalParser.parseOffsetDateTime("2023-01-02T03:04:05.6780000+05:30"));
+        assertEquals(Instant.parse("2023-01-02T08:34:05.123456789Z"), TemporalParser.parseInstant("2023-01-02T03:04:05.123456789-05:30"));
+        assertEquals(LocalTime.of(3, 4, 5, 678000000), TemporalParser.parseLocalTime("03:04:05.6780000"));
+        assertEquals(LocalTime.of(3, 4, 5), TemporalParser.parseLocalTime("03:04:05"));
+    }
+
+    @Test
+    public void parsesDatesWithTimeAtMidnightInUtc() {
+        assertEquals(LocalDate.of(2023, 1, 2), TemporalParser.parseLocalDate("2023-01-02"));
+        assertEquals(LocalDate.of(2023, 1, 2), TemporalParser.parseLocalDate("2023-01-02T00:00:00"));
+        assertEquals(LocalDate.of(2023, 1, 2), TemporalParser.parseLocalDate("2023-01-02T00:00:00.0000000Z"));
+    }
+
+    @Test
+    public void treatsValuesWithoutOffsetAsUtc() {
+        // The trigger writes the values of datetime columns without an offset in its default format
+        assertEquals(OffsetDateTime.of(2023, 1, 2, 3, 4, 5, 0, ZoneOffset.UTC), TemporalParser.parseOffsetDateTime("2023-01-02T03:04:05"));
+        assertEquals(Instant.parse("2023-01-02T03:04:05.100Z"), TemporalParser.parseInstant("2023-01-02T03:04:05.1"));
+        assertEquals(LocalDateTime.of(2023, 1, 2, 3, 4, 5), TemporalParser.parseLocalDateTime("2023-01-02T03:04:05"));
+    }
+
+    @Test
+    public void rejectsDatesWhichArentAtMidnightInUtc() {
+        assertInvalid(TemporalParser::parseLocalDate, "2023-01-02T03:04:05Z", "date");
+        assertInvalid(TemporalParser::parseLocalDate, "2023-01-02T00:00:00.0000001Z", "date");
+        assertInvalid(TemporalParser::parseLocalDate, "2023-01-02T24:00:00", "date");
+        assertInvalid(TemporalParser::parseLocalDate, "2023-01-02T00:00:00+01:00", "date");
+        assertInvalid(TemporalParser::parseLocalDate, "2023-01-02Tgarbage", "time");
+        assertInvalid(TemporalParser::parseLocalDate, "2023-01-02 00:00:00", "date or time");
+    }
+
+    @Test
+    public void rejectsOffsetsForLocalDateTime() {
+        assertInvalid(TemporalParser::parseLocalDateTime, "2023-01-02T03:04:05+05:30", "date and time without an offset");
+        assertInvalid(TemporalParser::parseLocalDateTime, "2023-01-02T03:04:05+00:00", "date and time without an offset");
+        assertInvalid(TemporalParser::parseLocalDateTime, "2023-01-02T03:04:05ZZ", "date and time without an offset");
+    }
+
+    @Test
+    public void rejectsFractionsWhichCantBeRepresented() {
+        assertInvalid(TemporalParser::parseLocalDateTime, "2023-01-02T03:04:05.1234567891Z", "time");
+        assertInvalid(TemporalParser::parseOffsetDateTime, "2023-01-02T03:04:05.Z", "time");
+        assertInvalid(TemporalParser::parseInstant, "2023-01-02T03:04:05.1234567890+01:00", "time");
+        assertInvalid(TemporalParser::parseLocalTime, "03:04:05.1234567890", "time");
+        assertInvalid(TemporalParser::parseLocalDate, "2023-01-02T00:00:00.0000000000Z", "time");
+    }
+
+    @Test
+    public void rejectsInvalidOffsetsAndFields() {
+        assertInvalid(TemporalParser::parseOffsetDateTime, "2023-01-02T03:04:05+5:30", "offset");
+        assertInvalid(TemporalParser::parseOffsetDateTime, "2023-01-02T03:04:05+19:00", "date and time");
+        assertInvalid(TemporalParser::parseInstant, "2023-02-30T03:04:05Z", "date and time");
+        assertInvalid(TemporalParser::parseLocalTime, "24:00:00", "time");
+        assertInvalid(TemporalParser::parseLocalTime, "03:04:05Z", "time");
+    }
+
+    private static void assertInvalid(Function<CharSequence, ?> parse, String text, String kind) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> parse.apply(text));
+        assertEquals("'" + text + "' is not a valid " + kind, e.getMessage());
+    }
+}
@@ -0,0 +1,134 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Data;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Samples.Common;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Performance
+{
+    /// <summary>
+    /// Synthetic data for the micro benchmarks, which run without a database. The data is generated from a fixed seed
+    /// so every run uses the same values.
+    /// </summary>
+    public static class MicroBenchmarkData
+    {
+        private const int Seed = 42;
+
+        /// <summary>
+        /// Creates rows with the same columns and value types as the ProductsColumnTypes table, which covers all the
+        /// supported column types.
+        /// </summary>
+        public static DataTable CreateProductColumnTypesTable(int rowCount)
+        {
+            var random = new Random(Seed);
+            var table = new DataTable();
+            table.Columns.Add("ProductId", typeof(int));
+            table.Columns.Add("BigInt", typeof(long));
+            table.Columns.Add("Bit", typeof(bool));
+            table.Columns.Add("DecimalType", typeof(decimal));
+            table.Columns.Add("Money", typeof(decimal));
+            table.Columns.Add("Numeric", typeof(decimal));
+            table.Columns.Add("SmallInt", typeof(short));
+            table.Columns.Add("SmallMoney", typeof(decimal));
+            table.Columns.Add("TinyInt", typeof(byte));
+            table.Columns.Add("FloatType", typeof(double));
+            table.Columns.Add("Real", typeof(float));
+            table.Columns.Add("Date", typeof(DateTime));
+            table.Columns.Add("Datetime", typeof(DateTime));
+            table.Columns.Add("Datetime2", typeof(DateTime));
+            table.Columns.Add("DatetimeOffset", typeof(DateTimeOffset));
+            table.Columns.Add("SmallDatetime", typeof(DateTime));
+            table.Columns.Add("Time", typeof(TimeSpan));
+            table.Columns.Add("CharType", typeof(string));
+            table.Columns.Add("Varchar", typeof(string));
+            table.Columns.Add("Nchar", typeof(string));
+            table.Columns.Add("Nvarchar", typeof(string));
+            table.Columns.Add("Binary", typeof(byte[]));
+            table.Columns.Add("Varbinary", typeof(byte[]));
+            for (int i = 0; i < rowCount; i++)
+            {
+                DateTime date = new DateTime(2000, 1, 1, 0, 0, 0, DateTimeKind.Utc).AddSeconds(random.Next());
+                table.Rows.Add(
+                    i,
+                    (long)random.Next() * random.Next(),
+                    random.Next(2) == 1,
+                    (decimal)random.NextDouble() * 1000,
+                    Math.Round((decimal)random.NextDouble() * 1000, 4),
+                    (decimal)random.NextDouble() * 1000,
+                    (short)random.Next(short.MaxValue),
+                    Math.Round((decimal)random.NextDouble() * 100, 4),
+                    (byte)random.Next(256),
+                    random.NextDouble(),
+                    (float)random.NextDouble(),
+                    date.Date,
+                    date,
+                    date,
+                    new DateTimeOffset(date),
+                    date,
+                    date.TimeOfDay,
+                    CreateString(random, 10),
+                    CreateString(random, random.Next(1, 100)),
+                    CreateString(random, 10),
+                    CreateString(random, random.Next(1, 100)),
+                    CreateBytes(random, 8),
+                    CreateBytes(random, random.Next(1, 64)));
+            }
+            return table;
+        }
+
+        public static List<Product> CreateProducts(int rowCount)
+        {
+            var random = new Random(Seed);
+            var products = new List<Product>(rowCount);
+            for (int i = 0; i < rowCount; i++)
+            {
+                products.Add(new Product { ProductId = i, Name = CreateString(random, random.Next(5, 25)), Cost = random.Next(1000) });
+            }
+            return products;
+        }
+
+        /// <summary>
+        /// Creates rows as read from the change table of the Products table, with a mix of inserts, updates and deletes.
+        /// </summary>
+        public static List<IReadOnlyDictionary<string, object>> CreateChangeRows(int rowCount)
+        {
+            var random = new Random(Seed);
+            string[] operations = { "I", "U", "D" };
+            var rows = new List<IReadOnlyDictionary<string, object>>(rowCount);
+            for (int i = 0; i < rowCount; i++)
+            {
+                rows.Add(new Dictionary<string, object>
+                {
+                    { "SYS_CHANGE_VERSION", (long)i + 1 },
+                    { "SYS_CHANGE_OPERATION", operations[random.Next(operations.Length)] },
+                    { "ProductId", i },
+                    { "Name", CreateString(random, random.Next(5, 25)) },
+                    { "Cost", random.Next(1000) },
+                    { "_az_func_ChangeVersion", null },
+                    { "_az_func_AttemptCount", 0 },
+                    { "_az_func_LeaseExpirationTime", null }
+                });
+            }
+            return rows;
+        }
+
+        private static string CreateString(Random random, int length)
+        {
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++)
+            {
+                chars[i] = (char)('a' + random.Next(26));
+            }
+            return new string(chars);
+        }
+
+        private static byte[] CreateBytes(Random random, int length)
+        {
+            byte[] bytes = new byte[length];
+            random.NextBytes(bytes);
+            return bytes;
+        }
+    }
+}
@@ -14,6 +14,22 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql.Performance
         {
             bool runAll = args.Length == 0;
 
+            // The micro benchmarks run in-process against synthetic data, so they don't need a database or Azurite
+            if (runAll || args.Contains("micro"))
+            {
+                BenchmarkRunner.Run<SqlInputBindingMicroPerformance>();
+                BenchmarkRunner.Run<SqlOutputBindingMicroPerformance>();
+                BenchmarkRunner.Run<SqlTriggerBindingMicroPerformance>();
+            }
+            if (runAll || args.Contains("telemetry"))
+            {
+                BenchmarkRunner.Run<SqlTelemetryPerformance>();
+            }
+            if (!runAll && args.All(arg => arg == "micro" || arg == "telemetry"))
+            {
+                return;
+            }
+
             Process azuriteHost = TestUtils.StartAzurite();
             TestUtils.SetupDatabase(out string masterConnectionString, out string connectionString);
             try
@@ -51,6 +67,18 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql.Performance
                 {
                     BenchmarkRunner.Run<SqlTriggerBindingPerformance_ChangeRate>();
                 }
+                if (runAll || args.Contains("trigger_startup"))
+                {
+                    BenchmarkRunner.Run<SqlTriggerBindingPerformance_Startup>();
+                }
+                // The lease contention simulator runs for several minutes, so it's only run when asked for
+                if (args.Contains("trigger_contention"))
+                {
+                    using (var simulator = new SqlTriggerLeaseContentionSimulator())
+                    {
+                        simulator.RunAsync().GetAwaiter().GetResult();
+                    }
+                }
             }
             finally
             {
@@ -0,0 +1,64 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System.Collections.Generic;
+using System.Data;
+using System.Data.Common;
+using Microsoft.Data.SqlClient;
+using BenchmarkDotNet.Attributes;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Performance
+{
+    /// <summary>
+    /// Measures the extension's own cost of running an input binding - parsing the parameters and the object names and
+    /// converting the rows returned by the query - without a database. The rows are synthetic and read through a
+    /// DataTableReader, which stands in for the SqlDataReader.
+    /// </summary>
+    [MemoryDiagnoser]
+    public class SqlInputBindingMicroPerformance
+    {
+        [Params(1, 100, 1000)]
+        public int RowCount;
+
+        private DataTable _rows;
+
+        [GlobalSetup]
+        public void GlobalSetup()
+        {
+            this._rows = MicroBenchmarkData.CreateProductColumnTypesTable(this.RowCount);
+        }
+
+        /// <summary>
+        /// Converts each row to a dictionary and serializes it, as done when binding to IAsyncEnumerable or JArray
+        /// </summary>
+        [Benchmark]
+        public int ConvertRows()
+        {
+            int length = 0;
+            using (DbDataReader reader = this._rows.CreateDataReader())
+            {
+                while (reader.Read())
+                {
+                    IReadOnlyDictionary<string, object> row = SqlBindingUtilities.BuildDictionaryFromSqlRow(reader);
+                    length += Utils.JsonSerializeObject(row).Length;
+                }
+            }
+            return length;
+        }
+
+        [Benchmark]
+        public void ParseParameters()
+        {
+            using (var command = new SqlCommand())
+            {
+                SqlBindingUtilities.ParseParameters("@ProductId=1,@Name=Product 1,@Cost=null,@Description=", command);
+            }
+        }
+
+        [Benchmark]
+        public SqlObject ParseObjectName()
+        {
+            return new SqlObject("[dbo].[ProductsColumnTypes]");
+        }
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Reflection;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Samples.Common;
+using BenchmarkDotNet.Attributes;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Performance
+{
+    /// <summary>
+    /// Measures the extension's own cost of upserting rows with an output binding - de-duplicating the rows by
+    /// primary key, serializing them and generating the MERGE data query - without a database.
+    /// </summary>
+    [MemoryDiagnoser]
+    public class SqlOutputBindingMicroPerformance
+    {
+        [Params(1, 100, 1000)]
+        public int RowCount;
+
+        private SqlAsyncCollector<Product>.TableInformation _tableInfo;
+        private List<Product> _rows;
+
+        [GlobalSetup]
+        public void GlobalSetup()
+        {
+            var columns = new Dictionary<string, string>(StringComparer.OrdinalIgnoreCase)
+            {
+                { "ProductId", "int" },
+                { "Name", "varchar(100)" },
+                { "Cost", "int" }
+            };
+            this._tableInfo = new SqlAsyncCollector<Product>.TableInformation(
+                new List<PrimaryKey> { new PrimaryKey("ProductId", false, false) },
+                new List<PropertyInfo> { typeof(Product).GetProperty(nameof(Product.ProductId)) },
+                columns,
+                false,
+                false);
+            this._rows = MicroBenchmarkData.CreateProducts(this.RowCount);
+        }
+
+        [Benchmark]
+        public string GenerateDataQueryForMerge()
+        {
+            SqlAsyncCollector<Product>.GenerateDataQueryForMerge(this._tableInfo, this._rows, out string newDataQuery, out string rowData);
+            return newDataQuery + rowData;
+        }
+
+        [Benchmark]
+        public string SerializeRows()
+        {
+            return Utils.JsonSerializeObject(this._rows, this._tableInfo.JsonSerializerSettings);
+        }
+    }
+}
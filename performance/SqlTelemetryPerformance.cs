@@ -0,0 +1,84 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System.Collections.Generic;
+using System.Globalization;
+using Microsoft.ApplicationInsights.Channel;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry;
+using Microsoft.Extensions.Configuration;
+using Microsoft.Extensions.Logging.Abstractions;
+using BenchmarkDotNet.Attributes;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Performance
+{
+    /// <summary>
+    /// Measures the cost (and in particular the allocations) of the telemetry sent during a function invocation, with
+    /// the events sent individually (AggregationIntervalSec = 0, the previous behavior) and with the events buffered
+    /// and aggregated in the background. The events are sent to a channel which discards them.
+    /// </summary>
+    [MemoryDiagnoser]
+    public class SqlTelemetryPerformance
+    {
+        [Params(0, Telemetry.Telemetry.DefaultAggregationIntervalSec)]
+        public int AggregationIntervalSec;
+
+        private Telemetry.Telemetry _telemetry;
+
+        private readonly Dictionary<TelemetryPropertyName, string> _props = new Dictionary<TelemetryPropertyName, string>
+        {
+            { TelemetryPropertyName.ServerVersion, "16.00.1000" },
+            { TelemetryPropertyName.EngineEdition, "Enterprise" },
+        };
+
+        [GlobalSetup]
+        public void GlobalSetup()
+        {
+            IConfiguration config = new ConfigurationBuilder()
+                .AddInMemoryCollection(new Dictionary<string, string>
+                {
+                    { Telemetry.Telemetry.TelemetryAggregationIntervalSetting, this.AggregationIntervalSec.ToString(CultureInfo.InvariantCulture) }
+                })
+                .Build();
+            this._telemetry = new Telemetry.Telemetry();
+            this._telemetry.Initialize(config, NullLogger.Instance, new DiscardingTelemetryChannel());
+        }
+
+        /// <summary>
+        /// Sends the telemetry events of an invocation with an input binding and an output binding, as done by the converters and collector
+        /// </summary>
+        [Benchmark]
+        public void Invocation()
+        {
+            this._telemetry.TrackConvert(ConvertType.IEnumerable, this._props);
+            this._telemetry.TrackCreate(CreateType.SqlAsyncCollector);
+            this._telemetry.TrackEvent(TelemetryEventName.TableInfoCacheHit, this._props);
+            Dictionary<TelemetryMeasureName, double> measures = Telemetry.Telemetry.GetCachedMeasures();
+            measures[TelemetryMeasureName.BatchCount] = 1;
+            measures[TelemetryMeasureName.TransactionDurationMs] = 5;
+            measures[TelemetryMeasureName.CommandDurationMs] = 3;
+            measures[TelemetryMeasureName.BatchSize] = 10;
+            measures[TelemetryMeasureName.NumRows] = 10;
+            this._telemetry.TrackEvent(TelemetryEventName.Upsert, this._props, measures);
+            this._telemetry.TrackEvent(TelemetryEventName.FlushAsync);
+        }
+
+        private sealed class DiscardingTelemetryChannel : ITelemetryChannel
+        {
+            public bool? DeveloperMode { get; set; }
+
+            public string EndpointAddress { get; set; }
+
+            public void Send(ITelemetry item)
+            {
+            }
+
+            public void Flush()
+            {
+            }
+
+            public void Dispose()
+            {
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System.Collections.Generic;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Samples.Common;
+using BenchmarkDotNet.Attributes;
+using Newtonsoft.Json.Linq;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Performance
+{
+    /// <summary>
+    /// Measures the extension's own cost of building the changes passed to a triggered function from the rows read
+    /// from the change table, without a database.
+    /// </summary>
+    [MemoryDiagnoser]
+    public class SqlTriggerBindingMicroPerformance
+    {
+        [Params(1, 100, 1000)]
+        public int RowCount;
+
+        private static readonly IReadOnlyList<(string name, string type)> PrimaryKeyColumns = new List<(string name, string type)> { ("ProductId", "int") };
+        private static readonly IReadOnlyList<string> UserTableColumns = new List<string> { "ProductId", "Name", "Cost" };
+
+        private List<IReadOnlyDictionary<string, object>> _rows;
+
+        [GlobalSetup]
+        public void GlobalSetup()
+        {
+            this._rows = MicroBenchmarkData.CreateChangeRows(this.RowCount);
+        }
+
+        [Benchmark]
+        public int ProcessChanges()
+        {
+            return SqlTableChangeMonitor<Product>.BuildChanges(this._rows, PrimaryKeyColumns, UserTableColumns).Count;
+        }
+
+        /// <summary>
+        /// Builds the payload for a function binding to a string by serializing the changes built for JObject items.
+        /// </summary>
+        [Benchmark]
+        public int SerializeChangesForString()
+        {
+            return Utils.JsonSerializeObject(SqlTableChangeMonitor<JObject>.BuildChanges(this._rows, PrimaryKeyColumns, UserTableColumns)).Length;
+        }
+
+        /// <summary>
+        /// Builds the payload for a function binding to a string by writing it directly from the rows.
+        /// </summary>
+        [Benchmark]
+        public int WriteChangesForString()
+        {
+            return new SqlChangeBatch<JObject>(this._rows, PrimaryKeyColumns, UserTableColumns).ToJson().Length;
+        }
+
+        /// <summary>
+        /// Builds the payload for a function binding to a string in the columnar format.
+        /// </summary>
+        [Benchmark]
+        public int WriteColumnarChangesForString()
+        {
+            return new SqlChangeBatch<JObject>(this._rows, PrimaryKeyColumns, UserTableColumns).ToJson(SqlTemporalFormat.Default, SqlPayloadFormat.Columnar).Length;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System.Collections.Generic;
+using System.Linq;
+using System.Threading;
+using System.Threading.Tasks;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Samples.Common;
+using Microsoft.Azure.WebJobs.Host.Executors;
+using Microsoft.Extensions.Configuration;
+using Microsoft.Extensions.Logging;
+using BenchmarkDotNet.Attributes;
+using Moq;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Performance
+{
+    /// <summary>
+    /// Measures how long it takes for a host to start the listeners of all of its trigger functions, both when the
+    /// trigger state has already been created (e.g. a new instance being added on scale out) and when it hasn't.
+    /// The listeners are started in parallel, the same way the host starts them.
+    /// </summary>
+    [MemoryDiagnoser]
+    public class SqlTriggerBindingPerformance_Startup : SqlTriggerBindingPerformanceTestBase
+    {
+        [Params(1, 50)]
+        public int FunctionCount;
+
+        private readonly IConfiguration _configuration = new ConfigurationBuilder().Build();
+
+        [GlobalSetup]
+        public async Task GlobalSetup()
+        {
+            this.SetChangeTrackingForTable("Products", true);
+            // Start each function once so that their trigger state exists for the warm start benchmark
+            await this.StartListenersAsync();
+        }
+
+        [IterationSetup(Target = nameof(ColdStart))]
+        public void ColdStartIterationSetup()
+        {
+            this.ExecuteNonQuery(@"DECLARE @cmd nvarchar(max) = N'';
+                SELECT @cmd = @cmd + N'DROP TABLE az_func.' + QUOTENAME(name) + N';'
+                FROM sys.tables
+                WHERE schema_id = SCHEMA_ID(N'az_func') AND name LIKE 'Leases_%';
+                EXEC sp_executesql @cmd;
+                IF OBJECT_ID(N'az_func.GlobalState', 'U') IS NOT NULL
+                    DELETE FROM az_func.GlobalState;");
+        }
+
+        /// <summary>
+        /// Starts the listeners when the global state table row and leases table for each function already exist.
+        /// </summary>
+        [Benchmark(Baseline = true)]
+        public async Task WarmStart()
+        {
+            await this.StartListenersAsync();
+        }
+
+        /// <summary>
+        /// Starts the listeners when the global state table row and leases table for each function need to be created.
+        /// </summary>
+        [Benchmark]
+        public async Task ColdStart()
+        {
+            await this.StartListenersAsync();
+        }
+
+        private async Task StartListenersAsync()
+        {
+            IEnumerable<SqlTriggerListener<Product>> listeners = Enumerable.Range(0, this.FunctionCount)
+                .Select(i => new SqlTriggerListener<Product>(
+                    this.DbConnectionString,
+                    "dbo.Products",
+                    "",
+                    $"perf-startup-{i:D2}",
+                    "",
+                    Mock.Of<ITriggeredFunctionExecutor>(),
+                    Mock.Of<SqlOptions>(),
+                    Mock.Of<ILogger>(),
+                    this._configuration))
+                .ToList();
+
+            await Task.WhenAll(listeners.Select(l => l.StartAsync(CancellationToken.None)));
+            await Task.WhenAll(listeners.Select(l => l.StopAsync(CancellationToken.None)));
+        }
+    }
+}
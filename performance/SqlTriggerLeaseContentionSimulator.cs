@@ -0,0 +1,622 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Concurrent;
+using System.Collections.Generic;
+using System.Diagnostics;
+using System.Diagnostics.Metrics;
+using System.Globalization;
+using System.IO;
+using System.Linq;
+using System.Text;
+using System.Threading;
+using System.Threading.Tasks;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Samples.Common;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Integration;
+using Microsoft.Azure.WebJobs.Host.Executors;
+using Microsoft.Data.SqlClient;
+using Microsoft.Extensions.Configuration;
+using Microsoft.Extensions.Logging;
+using Moq;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Performance
+{
+    /// <summary>
+    /// Simulates many workers competing for the changes of the same trigger function, to measure how the leases and
+    /// the app lock behave at a scale that can't be reached by starting function hosts. Each worker is a listener with
+    /// its own connection pool (and so its own lease renewal loop), the same as separate instances of a function app.
+    /// While the workers run, a writer updates the Products table at a fixed rate with a configurable skew towards a
+    /// few hot keys, and the simulator reports:
+    /// <list type="bullet">
+    /// <item>the throughput, in distinct changes delivered per second overall and per worker</item>
+    /// <item>the duplicate deliveries, changes which were delivered more than once</item>
+    /// <item>the lease conflicts, duplicates delivered by another worker than the one which got the change first</item>
+    /// <item>the time spent waiting for locks (including the app lock) in SQL Server</item>
+    /// <item>the lag of the watermark (LastSyncVersion) and the number of unprocessed changes</item>
+    /// </list>
+    /// These are used to size MaxChangesPerWorker, and to validate changes to the coordination of the leases.
+    /// </summary>
+    /// <remarks>
+    /// The simulator isn't a BenchmarkDotNet benchmark since each scenario runs for a fixed time instead of a fixed
+    /// amount of work. It's configured by the Contention_* environment variables, see the README, and any of the
+    /// trigger app settings (e.g. Sql_Trigger_MaxBatchSize) are passed to the workers.
+    /// </remarks>
+    public class SqlTriggerLeaseContentionSimulator : SqlTriggerBindingIntegrationTestBase
+    {
+        private const int WriterTicksPerSecond = 10;
+        private const int MaxRowsPerValuesClause = 1000;
+
+        private readonly IConfiguration _configuration = new ConfigurationBuilder().AddEnvironmentVariables().Build();
+
+        /// <summary>
+        /// Runs a scenario for each of the configured worker counts and reports the results to the console and to
+        /// BenchmarkDotNet.Artifacts/results/SqlTriggerLeaseContention-report.md.
+        /// </summary>
+        public async Task RunAsync()
+        {
+            var settings = ContentionSettings.Read(this._configuration);
+            var results = new List<ContentionResult>();
+            for (int i = 0; i < settings.WorkerCounts.Count; i++)
+            {
+                Console.WriteLine($"Running lease contention scenario with {settings.WorkerCounts[i]} workers for {settings.DurationSeconds}s...");
+                ContentionResult result = await this.RunScenarioAsync(settings, settings.WorkerCounts[i], $"contention{i:D6}");
+                results.Add(result);
+                Console.WriteLine(result.ToString());
+            }
+
+            string report = FormatReport(settings, results);
+            Console.WriteLine(report);
+            string resultsFolder = Path.Combine("BenchmarkDotNet.Artifacts", "results");
+            Directory.CreateDirectory(resultsFolder);
+            File.WriteAllText(Path.Combine(resultsFolder, "SqlTriggerLeaseContention-report.md"), report);
+        }
+
+        private async Task<ContentionResult> RunScenarioAsync(ContentionSettings settings, int workerCount, string functionId)
+        {
+            // Reset the table and its change tracking, so the scenario only sees the changes it makes
+            this.ExecuteNonQuery(@"
+                IF EXISTS (SELECT 1 FROM sys.change_tracking_tables WHERE object_id = OBJECT_ID(N'dbo.Products'))
+                    ALTER TABLE [dbo].[Products] DISABLE CHANGE_TRACKING;
+                TRUNCATE TABLE [dbo].[Products];");
+            this.InsertProducts(1, settings.KeyCount);
+            this.SetChangeTrackingForTable("Products", true);
+
+            var recorder = new DeliveryRecorder(workerCount);
+            var loggers = new List<CountingLogger>();
+            var listeners = new List<SqlTriggerListener<Product>>();
+            for (int worker = 0; worker < workerCount; worker++)
+            {
+                string workerConnectionString = new SqlConnectionStringBuilder(this.DbConnectionString) { ApplicationName = $"SqlTriggerContention{worker:D2}" }.ConnectionString;
+                var logger = new CountingLogger();
+                loggers.Add(logger);
+                listeners.Add(new SqlTriggerListener<Product>(
+                    workerConnectionString,
+                    "dbo.Products",
+                    "",
+                    functionId,
+                    "",
+                    new RecordingExecutor(worker, recorder, settings.FunctionDurationMs),
+                    Mock.Of<SqlOptions>(),
+                    logger,
+                    this._configuration));
+            }
+
+            using (var durations = new TriggerDurationCollector(functionId))
+            {
+                (long count, long timeMs) lockWaitsBefore = this.GetLockWaits();
+                // Start the workers in parallel, the same way the instances of a function app start
+                await Task.WhenAll(listeners.Select(l => l.StartAsync(CancellationToken.None)));
+
+                var writtenCosts = new Dictionary<int, int>();
+                var sampler = new WatermarkSampler();
+                using (var writerCts = new CancellationTokenSource(TimeSpan.FromSeconds(settings.DurationSeconds)))
+                using (var samplerCts = new CancellationTokenSource())
+                {
+                    Task samplerTask = this.SampleWatermarkAsync(functionId, sampler, samplerCts.Token);
+                    recorder.Start();
+                    long written = await this.WriteChangesAsync(settings, writtenCosts, writerCts.Token);
+
+                    // Let the workers drain the remaining changes, until the last version of every changed row was delivered
+                    var drainStopwatch = Stopwatch.StartNew();
+                    int missed = recorder.CountMissing(writtenCosts);
+                    while (missed > 0 && drainStopwatch.Elapsed.TotalSeconds < settings.DrainTimeoutSeconds)
+                    {
+                        await Task.Delay(1000);
+                        missed = recorder.CountMissing(writtenCosts);
+                    }
+                    samplerCts.Cancel();
+                    await samplerTask;
+
+                    await Task.WhenAll(listeners.Select(l => l.StopAsync(CancellationToken.None)));
+                    foreach (SqlTriggerListener<Product> listener in listeners)
+                    {
+                        listener.Dispose();
+                    }
+                    (long count, long timeMs) lockWaitsAfter = this.GetLockWaits();
+
+                    double elapsedSeconds = Math.Max(recorder.GetElapsedTime().TotalSeconds, 1);
+                    return new ContentionResult
+                    {
+                        WorkerCount = workerCount,
+                        ChangesWritten = written,
+                        ChangesDelivered = recorder.DistinctDeliveries,
+                        ElapsedSeconds = elapsedSeconds,
+                        MinWorkerDeliveries = recorder.WorkerDeliveries.Min(),
+                        MaxWorkerDeliveries = recorder.WorkerDeliveries.Max(),
+                        DuplicateDeliveries = recorder.DuplicateDeliveries,
+                        LeaseConflicts = recorder.LeaseConflicts,
+                        MissedChanges = missed,
+                        Errors = loggers.Sum(l => l.Errors),
+                        LockWaitCount = lockWaitsAfter.count - lockWaitsBefore.count,
+                        LockWaitMs = lockWaitsAfter.timeMs - lockWaitsBefore.timeMs,
+                        AcquireLeasesP95Ms = durations.GetPercentile("sql.trigger.acquire_leases.duration", 0.95),
+                        ReleaseLeasesP95Ms = durations.GetPercentile("sql.trigger.release_leases.duration", 0.95),
+                        MaxVersionLag = sampler.MaxVersionLag,
+                        MaxUnprocessedChanges = sampler.MaxUnprocessedChanges,
+                        TargetDrainSeconds = settings.TargetDrainSeconds,
+                    };
+                }
+            }
+        }
+
+        /// <summary>
+        /// Updates the cost of the rows at the configured rate until cancelled, setting each one to a sequence number
+        /// so every change written can be told apart from the others when it's delivered.
+        /// </summary>
+        /// <returns>The number of changes written</returns>
+        private async Task<long> WriteChangesAsync(ContentionSettings settings, Dictionary<int, int> writtenCosts, CancellationToken token)
+        {
+            var keys = new KeySampler(settings.KeyCount, settings.KeySkew, settings.Seed);
+            long written = 0;
+            int cost = 0;
+            using (var connection = new SqlConnection(this.DbConnectionString))
+            {
+                await connection.OpenAsync();
+                var stopwatch = Stopwatch.StartNew();
+                while (!token.IsCancellationRequested)
+                {
+                    long due = (long)(settings.ChangesPerSecond * stopwatch.Elapsed.TotalSeconds);
+                    // Changes to the same row in a tick are merged, the same as change tracking does
+                    var tick = new Dictionary<int, int>();
+                    for (; written < due; written++)
+                    {
+                        tick[keys.Next()] = ++cost;
+                    }
+                    foreach (KeyValuePair<int, int>[] chunk in tick.Chunk(MaxRowsPerValuesClause))
+                    {
+                        string values = string.Join(",", chunk.Select(c => $"({c.Key},{c.Value})"));
+                        using (var command = new SqlCommand($@"
+                            UPDATE p SET Cost = v.Cost
+                            FROM [dbo].[Products] p INNER JOIN (VALUES {values}) AS v(ProductId, Cost) ON p.ProductId = v.ProductId;", connection))
+                        {
+                            await command.ExecuteNonQueryAsync();
+                        }
+                        foreach (KeyValuePair<int, int> change in chunk)
+                        {
+                            writtenCosts[change.Key] = change.Value;
+                        }
+                    }
+                    try
+                    {
+                        await Task.Delay(1000 / WriterTicksPerSecond, token);
+                    }
+                    catch (TaskCanceledException)
+                    {
+                        break;
+                    }
+                }
+            }
+            return written;
+        }
+
+        /// <summary>
+        /// Samples once a second how far the watermark of the function is behind the current change tracking version,
+        /// and the number of unprocessed changes the scale controller would see.
+        /// </summary>
+        private async Task SampleWatermarkAsync(string functionId, WatermarkSampler sampler, CancellationToken token)
+        {
+            var metricsProvider = new SqlTriggerMetricsProvider(this.DbConnectionString, Mock.Of<ILogger>(), new SqlObject("dbo.Products"), functionId, "", SqlOptions.DefaultAppLockTimeoutMs);
+            using (var connection = new SqlConnection(this.DbConnectionString))
+            {
+                await connection.OpenAsync();
+                while (!token.IsCancellationRequested)
+                {
+                    using (var command = new SqlCommand($@"
+                        SELECT CHANGE_TRACKING_CURRENT_VERSION() - LastSyncVersion
+                        FROM az_func.GlobalState
+                        WHERE UserFunctionID = '{functionId}' AND UserTableID = OBJECT_ID(N'dbo.Products');", connection))
+                    {
+                        object versionLag = await command.ExecuteScalarAsync();
+                        SqlTriggerMetrics metrics = await metricsProvider.GetMetricsAsync();
+                        sampler.Record(versionLag is long lag ? lag : 0, metrics.UnprocessedChangeCount);
+                    }
+                    try
+                    {
+                        await Task.Delay(1000, token);
+                    }
+                    catch (TaskCanceledException)
+                    {
+                        break;
+                    }
+                }
+            }
+        }
+
+        /// <summary>
+        /// Gets the number of waits for locks and the total time spent waiting since SQL Server started. These are
+        /// server wide, so the database server should only be used by the simulator while it runs.
+        /// </summary>
+        private (long count, long timeMs) GetLockWaits()
+        {
+            using (var command = new SqlCommand(@"
+                SELECT ISNULL(SUM(waiting_tasks_count), 0), ISNULL(SUM(wait_time_ms), 0)
+                FROM sys.dm_os_wait_stats
+                WHERE wait_type LIKE N'LCK[_]M[_]%';", this.Connection))
+            using (SqlDataReader reader = command.ExecuteReader())
+            {
+                reader.Read();
+                return (reader.GetInt64(0), reader.GetInt64(1));
+            }
+        }
+
+        private static string FormatReport(ContentionSettings settings, IEnumerable<ContentionResult> results)
+        {
+            var builder = new StringBuilder();
+            builder.AppendLine("# SQL trigger lease contention");
+            builder.AppendLine();
+            builder.AppendLine(CultureInfo.InvariantCulture, $"{settings.ChangesPerSecond} changes/s for {settings.DurationSeconds}s over {settings.KeyCount} rows with a key skew of {settings.KeySkew}, {settings.FunctionDurationMs}ms per batch.");
+            builder.AppendLine();
+            builder.AppendLine("| Workers | Written | Delivered | Changes/s | Changes/s/worker | Worker min-max | Duplicates | Lease conflicts | Missed | Errors | Lock waits | Lock wait ms | Acquire p95 ms | Release p95 ms | Max version lag | Max unprocessed | MaxChangesPerWorker |");
+            builder.AppendLine("|---|---|---|---|---|---|---|---|---|---|---|---|---|---|---|---|---|");
+            foreach (ContentionResult result in results)
+            {
+                builder.AppendLine(result.ToString());
+            }
+            builder.AppendLine();
+            builder.AppendLine(CultureInfo.InvariantCulture, $"MaxChangesPerWorker is the number of changes a worker delivers in {settings.TargetDrainSeconds}s (Contention_TargetDrainSeconds) at the measured rate.");
+            return builder.ToString();
+        }
+
+        private sealed class ContentionSettings
+        {
+            public IReadOnlyList<int> WorkerCounts { get; private set; }
+            public int DurationSeconds { get; private set; }
+            public int DrainTimeoutSeconds { get; private set; }
+            public int ChangesPerSecond { get; private set; }
+            public int KeyCount { get; private set; }
+            public double KeySkew { get; private set; }
+            public int FunctionDurationMs { get; private set; }
+            public int TargetDrainSeconds { get; private set; }
+            public int Seed { get; private set; }
+
+            public static ContentionSettings Read(IConfiguration configuration)
+            {
+                string workers = configuration.GetValue<string>("Contention_Workers") ?? "10,25,50";
+                var settings = new ContentionSettings
+                {
+                    WorkerCounts = workers.Split(',', StringSplitOptions.RemoveEmptyEntries | StringSplitOptions.TrimEntries)
+                        .Select(w => int.TryParse(w, NumberStyles.None, CultureInfo.InvariantCulture, out int count) && count > 0 ? count : throw new InvalidOperationException($"Invalid value for 'Contention_Workers': '{workers}'. Ensure that the value is a comma-separated list of positive integers."))
+                        .ToList(),
+                    DurationSeconds = configuration.GetValue<int?>("Contention_DurationSeconds") ?? 60,
+                    DrainTimeoutSeconds = configuration.GetValue<int?>("Contention_DrainTimeoutSeconds") ?? 120,
+                    ChangesPerSecond = configuration.GetValue<int?>("Contention_ChangesPerSecond") ?? 1000,
+                    KeyCount = configuration.GetValue<int?>("Contention_KeyCount") ?? 10000,
+                    KeySkew = configuration.GetValue<double?>("Contention_KeySkew") ?? 0,
+                    FunctionDurationMs = configuration.GetValue<int?>("Contention_FunctionDurationMs") ?? 0,
+                    TargetDrainSeconds = configuration.GetValue<int?>("Contention_TargetDrainSeconds") ?? 60,
+                    Seed = configuration.GetValue<int?>("Contention_Seed") ?? 42,
+                };
+                if (settings.WorkerCounts.Count == 0 || settings.DurationSeconds <= 0 || settings.ChangesPerSecond <= 0 || settings.KeyCount <= 0 || settings.TargetDrainSeconds <= 0)
+                {
+                    throw new InvalidOperationException("Invalid lease contention settings. Ensure that Contention_Workers, Contention_DurationSeconds, Contention_ChangesPerSecond, Contention_KeyCount and Contention_TargetDrainSeconds are positive.");
+                }
+                if (settings.DrainTimeoutSeconds < 0 || settings.KeySkew < 0 || settings.FunctionDurationMs < 0)
+                {
+                    throw new InvalidOperationException("Invalid lease contention settings. Ensure that Contention_DrainTimeoutSeconds, Contention_KeySkew and Contention_FunctionDurationMs aren't negative.");
+                }
+                return settings;
+            }
+        }
+
+        private sealed class ContentionResult
+        {
+            public int WorkerCount { get; set; }
+            public long ChangesWritten { get; set; }
+            public long ChangesDelivered { get; set; }
+            public double ElapsedSeconds { get; set; }
+            public long MinWorkerDeliveries { get; set; }
+            public long MaxWorkerDeliveries { get; set; }
+            public long DuplicateDeliveries { get; set; }
+            public long LeaseConflicts { get; set; }
+            public int MissedChanges { get; set; }
+            public long Errors { get; set; }
+            public long LockWaitCount { get; set; }
+            public long LockWaitMs { get; set; }
+            public double AcquireLeasesP95Ms { get; set; }
+            public double ReleaseLeasesP95Ms { get; set; }
+            public long MaxVersionLag { get; set; }
+            public long MaxUnprocessedChanges { get; set; }
+            public int TargetDrainSeconds { get; set; }
+
+            public override string ToString()
+            {
+                double throughput = this.ChangesDelivered / this.ElapsedSeconds;
+                double workerThroughput = throughput / this.WorkerCount;
+                long maxChangesPerWorker = (long)Math.Ceiling(workerThroughput * this.TargetDrainSeconds);
+                return string.Create(
+                    CultureInfo.InvariantCulture,
+                    $"| {this.WorkerCount} | {this.ChangesWritten} | {this.ChangesDelivered} | {throughput:F1} | {workerThroughput:F1} | {this.MinWorkerDeliveries}-{this.MaxWorkerDeliveries} | {this.DuplicateDeliveries} | {this.LeaseConflicts} | {this.MissedChanges} | {this.Errors} | {this.LockWaitCount} | {this.LockWaitMs} | {this.AcquireLeasesP95Ms:F1} | {this.ReleaseLeasesP95Ms:F1} | {this.MaxVersionLag} | {this.MaxUnprocessedChanges} | {maxChangesPerWorker} |");
+            }
+        }
+
+        /// <summary>
+        /// Picks the rows to change following a Zipf distribution, so with a skew of 0 every row is equally likely
+        /// and the higher the skew the more the changes are concentrated on the first rows.
+        /// </summary>
+        private sealed class KeySampler
+        {
+            private readonly double[] _cumulativeProbabilities;
+            private readonly Random _random;
+
+            public KeySampler(int keyCount, double skew, int seed)
+            {
+                this._cumulativeProbabilities = new double[keyCount];
+                this._random = new Random(seed);
+                double total = 0;
+                for (int i = 0; i < keyCount; i++)
+                {
+                    total += 1 / Math.Pow(i + 1, skew);
+                    this._cumulativeProbabilities[i] = total;
+                }
+                for (int i = 0; i < keyCount; i++)
+                {
+                    this._cumulativeProbabilities[i] /= total;
+                }
+            }
+
+            /// <summary>
+            /// Returns the ProductId of the next row to change.
+            /// </summary>
+            public int Next()
+            {
+                int index = Array.BinarySearch(this._cumulativeProbabilities, this._random.NextDouble());
+                if (index < 0)
+                {
+                    index = ~index;
+                }
+                return Math.Min(index, this._cumulativeProbabilities.Length - 1) + 1;
+            }
+        }
+
+        /// <summary>
+        /// Records the changes delivered to each worker. A change is identified by the row and the cost it was set to,
+        /// which is unique for every change written.
+        /// </summary>
+        private sealed class DeliveryRecorder
+        {
+            private readonly ConcurrentDictionary<(int productId, int cost), int> _firstWorkers = new ConcurrentDictionary<(int productId, int cost), int>();
+            private readonly long[] _workerDeliveries;
+            private long _duplicateDeliveries;
+            private long _leaseConflicts;
+            private long _startTimestamp;
+            private long _lastDeliveryTimestamp;
+
+            public DeliveryRecorder(int workerCount)
+            {
+                this._workerDeliveries = new long[workerCount];
+            }
+
+            public long DistinctDeliveries
+            {
+                get
+                {
+                    return this._firstWorkers.Count;
+                }
+            }
+
+            public long DuplicateDeliveries
+            {
+                get
+                {
+                    return Interlocked.Read(ref this._duplicateDeliveries);
+                }
+            }
+
+            public long LeaseConflicts
+            {
+                get
+                {
+                    return Interlocked.Read(ref this._leaseConflicts);
+                }
+            }
+
+            public IReadOnlyList<long> WorkerDeliveries
+            {
+                get
+                {
+                    return Enumerable.Range(0, this._workerDeliveries.Length).Select(i => Interlocked.Read(ref this._workerDeliveries[i])).ToList();
+                }
+            }
+
+            /// <summary>
+            /// Starts measuring the time until the last delivery, see <see cref="GetElapsedTime"/>.
+            /// </summary>
+            public void Start()
+            {
+                this._startTimestamp = Stopwatch.GetTimestamp();
+            }
+
+            public void Record(int worker, IReadOnlyList<SqlChange<Product>> changes)
+            {
+                foreach (SqlChange<Product> change in changes)
+                {
+                    (int productId, int cost) key = (change.Item.ProductId ?? 0, change.Item.Cost);
+                    if (this._firstWorkers.TryAdd(key, worker))
+                    {
+                        Interlocked.Increment(ref this._workerDeliveries[worker]);
+                        continue;
+                    }
+                    Interlocked.Increment(ref this._duplicateDeliveries);
+                    // Another worker got a lease on the same version of the row, e.g. because the lease expired
+                    // while the first worker was still processing it
+                    if (this._firstWorkers.TryGetValue(key, out int firstWorker) && firstWorker != worker)
+                    {
+                        Interlocked.Increment(ref this._leaseConflicts);
+                    }
+                }
+                Interlocked.Exchange(ref this._lastDeliveryTimestamp, Stopwatch.GetTimestamp());
+            }
+
+            /// <summary>
+            /// Gets how many of the last changes written to each row weren't delivered yet.
+            /// </summary>
+            public int CountMissing(Dictionary<int, int> writtenCosts)
+            {
+                return writtenCosts.Count(c => !this._firstWorkers.ContainsKey((c.Key, c.Value)));
+            }
+
+            /// <summary>
+            /// Gets the time from the start until the last delivery, or until now if nothing was delivered.
+            /// </summary>
+            public TimeSpan GetElapsedTime()
+            {
+                long lastDelivery = Interlocked.Read(ref this._lastDeliveryTimestamp);
+                return lastDelivery == 0 ? Stopwatch.GetElapsedTime(this._startTimestamp) : Stopwatch.GetElapsedTime(this._startTimestamp, lastDelivery);
+            }
+        }
+
+        private sealed class WatermarkSampler
+        {
+            public long MaxVersionLag { get; private set; }
+            public long MaxUnprocessedChanges { get; private set; }
+
+            public void Record(long versionLag, long unprocessedChanges)
+            {
+                this.MaxVersionLag = Math.Max(this.MaxVersionLag, versionLag);
+                this.MaxUnprocessedChanges = Math.Max(this.MaxUnprocessedChanges, unprocessedChanges);
+            }
+        }
+
+        /// <summary>
+        /// Collects the durations of the trigger's SQL operations for the function from the metrics of the extension.
+        /// </summary>
+        private sealed class TriggerDurationCollector : IDisposable
+        {
+            private readonly Dictionary<string, List<double>> _durations = new Dictionary<string, List<double>>();
+            private readonly MeterListener _listener;
+
+            public TriggerDurationCollector(string functionId)
+            {
+                this._listener = new MeterListener
+                {
+                    InstrumentPublished = (instrument, l) =>
+                    {
+                        if (instrument.Meter.Name == SqlBindingMetrics.MeterName && instrument.Name.StartsWith("sql.trigger.", StringComparison.Ordinal))
+                        {
+                            l.EnableMeasurementEvents(instrument);
+                        }
+                    }
+                };
+                this._listener.SetMeasurementEventCallback<double>((instrument, value, tags, state) =>
+                {
+                    foreach (KeyValuePair<string, object> tag in tags)
+                    {
+                        if (tag.Key == SqlBindingMetrics.FunctionTagName && functionId.Equals(tag.Value as string, StringComparison.Ordinal))
+                        {
+                            lock (this._durations)
+                            {
+                                if (!this._durations.TryGetValue(instrument.Name, out List<double> values))
+                                {
+                                    values = new List<double>();
+                                    this._durations.Add(instrument.Name, values);
+                                }
+                                values.Add(value);
+                            }
+                            return;
+                        }
+                    }
+                });
+                this._listener.Start();
+            }
+
+            public double GetPercentile(string instrumentName, double percentile)
+            {
+                lock (this._durations)
+                {
+                    if (!this._durations.TryGetValue(instrumentName, out List<double> values) || values.Count == 0)
+                    {
+                        return 0;
+                    }
+                    var sorted = values.OrderBy(v => v).ToList();
+                    return sorted[(int)Math.Ceiling(percentile * sorted.Count) - 1];
+                }
+            }
+
+            public void Dispose()
+            {
+                this._listener.Dispose();
+            }
+        }
+
+        private sealed class RecordingExecutor : ITriggeredFunctionExecutor
+        {
+            private readonly int _worker;
+            private readonly DeliveryRecorder _recorder;
+            private readonly int _functionDurationMs;
+
+            public RecordingExecutor(int worker, DeliveryRecorder recorder, int functionDurationMs)
+            {
+                this._worker = worker;
+                this._recorder = recorder;
+                this._functionDurationMs = functionDurationMs;
+            }
+
+            public async Task<FunctionResult> TryExecuteAsync(TriggeredFunctionData input, CancellationToken cancellationToken)
+            {
+                this._recorder.Record(this._worker, (IReadOnlyList<SqlChange<Product>>)input.TriggerValue);
+                if (this._functionDurationMs > 0)
+                {
+                    await Task.Delay(this._functionDurationMs, cancellationToken);
+                }
+                return new FunctionResult(true);
+            }
+        }
+
+        /// <summary>
+        /// Counts the errors logged by a worker, e.g. when it failed to get the app lock or was chosen as a deadlock
+        /// victim.
+        /// </summary>
+        private sealed class CountingLogger : ILogger
+        {
+            private long _errors;
+
+            public long Errors
+            {
+                get
+                {
+                    return Interlocked.Read(ref this._errors);
+                }
+            }
+
+            public IDisposable BeginScope<TState>(TState state)
+            {
+                return null;
+            }
+
+            public bool IsEnabled(LogLevel logLevel)
+            {
+                return logLevel >= LogLevel.Error;
+            }
+
+            public void Log<TState>(LogLevel logLevel, EventId eventId, TState state, Exception exception, Func<TState, Exception, string> formatter)
+            {
+                if (logLevel >= LogLevel.Error)
+                {
+                    Interlocked.Increment(ref this._errors);
+                }
+            }
+        }
+    }
+}
@@ -17,22 +17,36 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         // NOTE: please ensure the Readme file and other public documentation are also updated if the deafult values
         // are ever changed.
         public const int DefaultMaxBatchSize = 100;
+        /// <summary>
+        /// 0 means that batches are only limited by <see cref="MaxBatchSize"/>
+        /// </summary>
+        public const int DefaultMaxBatchBytes = 0;
         public const int DefaultPollingIntervalMs = 1000;
         private const int DefaultMinimumPollingIntervalMs = 100;
         public const int DefaultMaxChangesPerWorker = 1000;
         public const int DefaultAppLockTimeoutMs = 30000;
         public const int MinimumAppLockTimeoutMs = 1000;
         /// <summary>
+        /// 0 means that the commit time of changes is never looked up
+        /// </summary>
+        public const int DefaultCommitLatencySamplingPercent = 0;
+        /// <summary>
         /// Maximum number of changes to process in each iteration of the loop
         /// </summary>
         private int _maxBatchSize = DefaultMaxBatchSize;
         /// <summary>
+        /// Maximum estimated size in bytes of the changes to process in each iteration of the loop
+        /// </summary>
+        private int _maxBatchBytes = DefaultMaxBatchBytes;
+        /// <summary>
         /// Delay in ms between processing each batch of changes
         /// </summary>
         private int _pollingIntervalMs = DefaultPollingIntervalMs;
         private readonly int _minPollingInterval = DefaultMinimumPollingIntervalMs;
         private int _maxChangesPerWorker = DefaultMaxChangesPerWorker;
         private int _appLockTimeoutMs = DefaultAppLockTimeoutMs;
+        private bool _resyncOnRetentionGap = false;
+        private int _commitLatencySamplingPercent = DefaultCommitLatencySamplingPercent;
 
         /// <summary>
         /// Initializes a new instance of the <see cref="SqlOptions"/> class.
@@ -61,6 +75,28 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             }
         }
 
+        /// <summary>
+        /// Gets or sets the maximum estimated size in bytes of the changes per batch to retrieve from the server. The size
+        /// of each change is estimated as the sum of the DATALENGTH of each column in the row. A batch stops once adding
+        /// the next change would exceed this size, although a batch always contains at least one change. This limit
+        /// applies in addition to <see cref="MaxBatchSize"/>.
+        /// The default is 0, which means batches are only limited by <see cref="MaxBatchSize"/>.
+        /// </summary>
+        public int MaxBatchBytes
+        {
+            get => this._maxBatchBytes;
+
+            set
+            {
+                if (value < 0)
+                {
+                    throw new ArgumentOutOfRangeException(nameof(value), "MaxBatchBytes must not be less than 0.");
+                }
+
+                this._maxBatchBytes = value;
+            }
+        }
+
         /// <summary>
         /// Gets or sets the longest period of time to wait before checking for next batch of changes on the server.
         /// </summary>
@@ -121,6 +157,41 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             }
         }
 
+        /// <summary>
+        /// Gets or sets whether the whole user table is sent to the function when changes were lost because the trigger fell
+        /// behind the change tracking retention period. The rows are sent as updates, in primary key order and in batches
+        /// limited by <see cref="MaxBatchSize"/> and <see cref="MaxBatchBytes"/>, after which processing of changes resumes
+        /// from the version at which the resync started.
+        /// The default is false, which means that the changes that were cleaned up are skipped.
+        /// </summary>
+        public bool ResyncOnRetentionGap
+        {
+            get => this._resyncOnRetentionGap;
+
+            set => this._resyncOnRetentionGap = value;
+        }
+
+        /// <summary>
+        /// Gets or sets the percentage of batches of changes for which the commit time of each change is looked up in
+        /// sys.dm_tran_commit_table. The commit time is used to measure the latency from the commit of a change to when it
+        /// was fetched and to when the function finished processing it, and is also set on each change sent to the function.
+        /// The default is 0, which means that the commit time is never looked up.
+        /// </summary>
+        public int CommitLatencySamplingPercent
+        {
+            get => this._commitLatencySamplingPercent;
+
+            set
+            {
+                if (value < 0 || value > 100)
+                {
+                    throw new ArgumentOutOfRangeException(nameof(value), "CommitLatencySamplingPercent must be between 0 and 100.");
+                }
+
+                this._commitLatencySamplingPercent = value;
+            }
+        }
+
         /// <inheritdoc/>
         [EditorBrowsable(EditorBrowsableState.Never)]
         string IOptionsFormatter.Format()
@@ -128,9 +199,12 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             var options = new JObject
             {
                 { nameof(this.MaxBatchSize), this.MaxBatchSize },
+                { nameof(this.MaxBatchBytes), this.MaxBatchBytes },
                 { nameof(this.PollingIntervalMs), this.PollingIntervalMs },
                 { nameof(this.MaxChangesPerWorker), this.MaxChangesPerWorker },
-                { nameof(this.AppLockTimeoutMs), this.AppLockTimeoutMs }
+                { nameof(this.AppLockTimeoutMs), this.AppLockTimeoutMs },
+                { nameof(this.ResyncOnRetentionGap), this.ResyncOnRetentionGap },
+                { nameof(this.CommitLatencySamplingPercent), this.CommitLatencySamplingPercent }
             };
 
             return options.ToString(Formatting.Indented);
@@ -141,9 +215,12 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             var copy = new SqlOptions
             {
                 _maxBatchSize = this._maxBatchSize,
+                _maxBatchBytes = this._maxBatchBytes,
                 _pollingIntervalMs = this._pollingIntervalMs,
                 _maxChangesPerWorker = this._maxChangesPerWorker,
-                _appLockTimeoutMs = this._appLockTimeoutMs
+                _appLockTimeoutMs = this._appLockTimeoutMs,
+                _resyncOnRetentionGap = this._resyncOnRetentionGap,
+                _commitLatencySamplingPercent = this._commitLatencySamplingPercent
             };
             return copy;
         }
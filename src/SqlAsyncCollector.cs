@@ -55,7 +55,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
     }
 
     /// <typeparam name="T">A user-defined POCO that represents a row of the user's table</typeparam>
-    internal class SqlAsyncCollector<T> : IAsyncCollector<T>, IDisposable
+    internal class SqlAsyncCollector<T> : IAsyncCollector<T>, ISqlInvocationScopeBinding, IDisposable
     {
         private static readonly string[] UnsupportedTypes = { "NTEXT(*)", "TEXT(*)", "IMAGE(*)" };
         private const string RowDataParameter = "@rowData";
@@ -65,6 +65,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         private const string HasDefault = "has_default";
         private const string IsIdentity = "is_identity";
         private const string CteName = "cte";
+        private const string UpsertActivityName = "sql.output.upsert";
 
         private const int AZ_FUNC_TABLE_INFO_CACHE_TIMEOUT_MINUTES = 10;
 
@@ -75,6 +76,11 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         private readonly List<T> _rows = new List<T>();
         private readonly SemaphoreSlim _rowLock = new SemaphoreSlim(1, 1);
         private ServerProperties _serverProperties;
+        /// <summary>
+        /// The scope the collector joined if <see cref="SqlAttribute.InvocationScope"/> is set, which writes its rows
+        /// with the rows of the other collectors of the scope
+        /// </summary>
+        private readonly SqlInvocationScope _scope;
 
         /// <summary>
         /// Initializes a new instance of the <see cref="SqlAsyncCollector{T}"/> class.
@@ -102,6 +108,10 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                 connection.OpenAsyncWithSqlErrorHandling(logger, CancellationToken.None).Wait();
                 VerifyDatabaseSupported(connection, logger, CancellationToken.None).Wait();
             }
+            if (!string.IsNullOrEmpty(attribute.InvocationScope))
+            {
+                this._scope = SqlInvocationScopes.Instance.Join(GetConnectionString(attribute.ConnectionStringSetting, configuration), attribute.InvocationScope, this);
+            }
         }
 
         /// <summary>
@@ -131,29 +141,112 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// <summary>
         /// Processes all items added to the collector via <see cref="AddAsync"/>. Each item is interpreted as a row to be added
         /// to the SQL table specified in the SQL Binding. All rows are added in one transaction. Nothing is done
-        /// if no items were added via AddAsync.
+        /// if no items were added via AddAsync. If the collector is part of an <see cref="SqlAttribute.InvocationScope"/>,
+        /// the rows of all the collectors of the scope which haven't been written yet are written in the same transaction.
         /// </summary>
         /// <param name="cancellationToken">The cancellationToken is not used in this method</param>
         /// <returns> A CompletedTask if executed successfully. If no rows were added, this is returned
         /// automatically. </returns>
         public async Task FlushAsync(CancellationToken cancellationToken = default)
         {
+            if (this._scope != null)
+            {
+                try
+                {
+                    await this._scope.FlushAsync();
+                }
+                catch (Exception ex)
+                {
+                    TelemetryInstance.TrackException(TelemetryErrorName.FlushAsync, ex);
+                    throw;
+                }
+                return;
+            }
+            Activity activity = null;
             await this._rowLock.WaitAsync(cancellationToken);
             try
             {
                 if (this._rows.Count != 0)
                 {
                     TelemetryInstance.TrackEvent(TelemetryEventName.FlushAsync);
+                    activity = SqlBindingMetrics.StartActivity(UpsertActivityName, this._attribute.CommandText);
+                    activity?.SetTag(SqlBindingMetrics.RowCountTagName, this._rows.Count);
                     await this.UpsertRowsAsync(this._rows, this._attribute, this._configuration);
                     this._rows.Clear();
                 }
             }
             catch (Exception ex)
             {
+                activity?.SetStatus(ActivityStatusCode.Error, ex.Message);
                 TelemetryInstance.TrackException(TelemetryErrorName.FlushAsync, ex);
                 throw;
             }
             finally
+            {
+                activity?.Dispose();
+                this._rowLock.Release();
+            }
+        }
+
+        /// <summary>
+        /// The table the collector writes to
+        /// </summary>
+        string ISqlInvocationScopeBinding.Table => this._attribute.CommandText;
+
+        /// <summary>
+        /// Gets the upsert of the rows added to the collector which its scope hasn't written yet
+        /// </summary>
+        async Task<(int RowCount, Func<SqlConnection, Task<Func<SqlTransaction, Task<Func<Task>>>>> Upsert)> ISqlInvocationScopeBinding.GetPendingUpsertAsync()
+        {
+            List<T> rows;
+            await this._rowLock.WaitAsync();
+            try
+            {
+                rows = this._rows.ToList();
+            }
+            finally
+            {
+                this._rowLock.Release();
+            }
+            if (rows.Count == 0)
+            {
+                return (0, null);
+            }
+            return (rows.Count, async connection =>
+            {
+                var upsertRowsAsyncSw = Stopwatch.StartNew();
+                Func<SqlTransaction, Task<Func<Task>>> upsert = await this.PrepareUpsertAsync(rows, this._attribute, this._configuration, connection, upsertRowsAsyncSw);
+                return async transaction =>
+                {
+                    TelemetryInstance.TrackEvent(TelemetryEventName.FlushAsync);
+                    using (Activity activity = SqlBindingMetrics.StartActivity(UpsertActivityName, this._attribute.CommandText))
+                    {
+                        activity?.SetTag(SqlBindingMetrics.RowCountTagName, rows.Count);
+                        try
+                        {
+                            return await upsert(transaction);
+                        }
+                        catch (Exception ex)
+                        {
+                            activity?.SetStatus(ActivityStatusCode.Error, ex.Message);
+                            throw;
+                        }
+                    }
+                };
+            });
+        }
+
+        /// <summary>
+        /// Removes the rows which the scope of the collector wrote. Rows added while they were being written are kept.
+        /// </summary>
+        async Task ISqlInvocationScopeBinding.RemoveWrittenRowsAsync(int rowCount)
+        {
+            await this._rowLock.WaitAsync();
+            try
+            {
+                this._rows.RemoveRange(0, rowCount);
+            }
+            finally
             {
                 this._rowLock.Release();
             }
@@ -174,99 +267,120 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             using (SqlConnection connection = BuildConnection(attribute.ConnectionStringSetting, configuration))
             {
                 await connection.OpenAsyncWithLogging(this._logger, CancellationToken.None);
-                this._serverProperties = await GetServerTelemetryProperties(connection, this._logger, CancellationToken.None);
-                Dictionary<TelemetryPropertyName, string> props = connection.AsConnectionProps(this._serverProperties);
+                Func<SqlTransaction, Task<Func<Task>>> upsert = await this.PrepareUpsertAsync(rows, attribute, configuration, connection, upsertRowsAsyncSw);
+                Func<Task> recordSlowStatements = await upsert(null);
+                await recordSlowStatements();
+            }
+        }
 
-                string fullTableName = attribute.CommandText;
+        /// <summary>
+        /// Reads the information of the table the rows are upserted to and validates the rows against it, and returns the
+        /// function upserting them. The function upserts the rows in the given transaction, or in a new transaction which it
+        /// commits if it's null, and returns the function recording the slow statements once the transaction is committed.
+        /// The information is read before the transaction starts, since the commands reading it aren't part of it.
+        /// </summary>
+        /// <param name="rows"> The rows to be upserted </param>
+        /// <param name="attribute"> Contains the name of the table to be modified and SQL connection information </param>
+        /// <param name="configuration"> Used to read the slow statement settings </param>
+        /// <param name="connection"> The open connection the rows are upserted on </param>
+        /// <param name="upsertRowsAsyncSw"> Measures the duration of the upsert </param>
+        private async Task<Func<SqlTransaction, Task<Func<Task>>>> PrepareUpsertAsync(List<T> rows, SqlAttribute attribute, IConfiguration configuration, SqlConnection connection, Stopwatch upsertRowsAsyncSw)
+        {
+            this._serverProperties = await GetServerTelemetryProperties(connection, this._logger, CancellationToken.None);
+            Dictionary<TelemetryPropertyName, string> props = connection.AsConnectionProps(this._serverProperties);
 
-                // Include the connection string hash as part of the key in case this customer has the same table in two different Sql Servers
-                string cacheKey = $"{connection.ConnectionString.GetHashCode()}-{fullTableName}";
+            string fullTableName = attribute.CommandText;
 
-                MemoryCache cachedTables = MemoryCache.Default;
+            // Include the connection string hash as part of the key in case this customer has the same table in two different Sql Servers
+            string cacheKey = $"{connection.ConnectionString.GetHashCode()}-{fullTableName}";
 
-                int timeout = AZ_FUNC_TABLE_INFO_CACHE_TIMEOUT_MINUTES;
-                string timeoutEnvVar = Environment.GetEnvironmentVariable("AZ_FUNC_TABLE_INFO_CACHE_TIMEOUT_MINUTES");
-                if (!string.IsNullOrEmpty(timeoutEnvVar))
-                {
-                    if (int.TryParse(timeoutEnvVar, NumberStyles.Integer, CultureInfo.InvariantCulture, out timeout))
-                    {
-                        this._logger.LogDebug($"Overriding default table info cache timeout with new value {timeout}");
-                    }
-                    else
-                    {
-                        timeout = AZ_FUNC_TABLE_INFO_CACHE_TIMEOUT_MINUTES;
-                    }
-                }
+            MemoryCache cachedTables = MemoryCache.Default;
 
-                if (!(cachedTables[cacheKey] is TableInformation tableInfo))
+            int timeout = AZ_FUNC_TABLE_INFO_CACHE_TIMEOUT_MINUTES;
+            string timeoutEnvVar = Environment.GetEnvironmentVariable("AZ_FUNC_TABLE_INFO_CACHE_TIMEOUT_MINUTES");
+            if (!string.IsNullOrEmpty(timeoutEnvVar))
+            {
+                if (int.TryParse(timeoutEnvVar, NumberStyles.Integer, CultureInfo.InvariantCulture, out timeout))
                 {
-                    TelemetryInstance.TrackEvent(TelemetryEventName.TableInfoCacheMiss, props);
-                    // set the columnNames for supporting T as JObject since it doesn't have columns in the member info.
-                    tableInfo = TableInformation.RetrieveTableInformation(connection, fullTableName, this._logger, this._serverProperties);
-                    var policy = new CacheItemPolicy
-                    {
-                        // Re-look up the primary key(s) after timeout (default timeout is 10 minutes)
-                        AbsoluteExpiration = DateTimeOffset.Now.AddMinutes(timeout)
-                    };
-
-                    cachedTables.Set(cacheKey, tableInfo, policy);
+                    this._logger.LogDebug($"Overriding default table info cache timeout with new value {timeout}");
                 }
                 else
                 {
-                    TelemetryInstance.TrackEvent(TelemetryEventName.TableInfoCacheHit, props);
+                    timeout = AZ_FUNC_TABLE_INFO_CACHE_TIMEOUT_MINUTES;
                 }
+            }
 
-                IEnumerable<string> extraProperties = GetExtraProperties(tableInfo.Columns, rows.First());
-                if (extraProperties.Any())
+            if (!(cachedTables[cacheKey] is TableInformation tableInfo))
+            {
+                TelemetryInstance.TrackEvent(TelemetryEventName.TableInfoCacheMiss, props);
+                // set the columnNames for supporting T as JObject since it doesn't have columns in the member info.
+                tableInfo = TableInformation.RetrieveTableInformation(connection, fullTableName, this._logger, this._serverProperties);
+                var policy = new CacheItemPolicy
                 {
-                    string message = $"The following properties in {typeof(T)} do not exist in the table {fullTableName}: {string.Join(", ", extraProperties.ToArray())}.";
-                    var ex = new InvalidOperationException(message);
-                    TelemetryInstance.TrackException(TelemetryErrorName.PropsNotExistOnTable, ex, props);
-                    throw ex;
-                }
+                    // Re-look up the primary key(s) after timeout (default timeout is 10 minutes)
+                    AbsoluteExpiration = DateTimeOffset.Now.AddMinutes(timeout)
+                };
 
-                IEnumerable<string> columnNamesFromItem = GetColumnNamesFromItem(rows.First());
-                IEnumerable<string> unsupportedColumns = columnNamesFromItem.Where(prop => UnsupportedTypes.Contains(tableInfo.Columns[prop], StringComparer.OrdinalIgnoreCase));
-                if (unsupportedColumns.Any())
-                {
-                    string message = $"The type(s) of the following column(s) are not supported: {string.Join(", ", unsupportedColumns.ToArray())}. See https://github.com/Azure/azure-functions-sql-extension#output-bindings for more details.";
-                    throw new InvalidOperationException(message);
-                }
+                cachedTables.Set(cacheKey, tableInfo, policy);
+            }
+            else
+            {
+                TelemetryInstance.TrackEvent(TelemetryEventName.TableInfoCacheHit, props);
+            }
 
-                IEnumerable<string> bracketedColumnNamesFromItem = columnNamesFromItem
-                    .Where(prop => !tableInfo.PrimaryKeys.Any(k => k.IsIdentity && string.Equals(k.Name, prop, StringComparison.Ordinal))) // Skip any identity columns, those should never be updated
-                    .Select(prop => prop.AsBracketQuotedString());
-                if (!bracketedColumnNamesFromItem.Any())
-                {
-                    string message = $"No property values found in item to upsert. If using query parameters, ensure that the casing of the parameter names and the property names match.";
-                    var ex = new InvalidOperationException(message);
-                    throw ex;
-                }
+            IEnumerable<string> extraProperties = GetExtraProperties(tableInfo.Columns, rows.First());
+            if (extraProperties.Any())
+            {
+                string message = $"The following properties in {typeof(T)} do not exist in the table {fullTableName}: {string.Join(", ", extraProperties.ToArray())}.";
+                var ex = new InvalidOperationException(message);
+                TelemetryInstance.TrackException(TelemetryErrorName.PropsNotExistOnTable, ex, props);
+                throw ex;
+            }
+
+            IEnumerable<string> columnNamesFromItem = GetColumnNamesFromItem(rows.First());
+            IEnumerable<string> unsupportedColumns = columnNamesFromItem.Where(prop => UnsupportedTypes.Contains(tableInfo.Columns[prop], StringComparer.OrdinalIgnoreCase));
+            if (unsupportedColumns.Any())
+            {
+                string message = $"The type(s) of the following column(s) are not supported: {string.Join(", ", unsupportedColumns.ToArray())}. See https://github.com/Azure/azure-functions-sql-extension#output-bindings for more details.";
+                throw new InvalidOperationException(message);
+            }
 
-                var table = new SqlObject(fullTableName);
+            IEnumerable<string> bracketedColumnNamesFromItem = columnNamesFromItem
+                .Where(prop => !tableInfo.PrimaryKeys.Any(k => k.IsIdentity && string.Equals(k.Name, prop, StringComparison.Ordinal))) // Skip any identity columns, those should never be updated
+                .Select(prop => prop.AsBracketQuotedString());
+            if (!bracketedColumnNamesFromItem.Any())
+            {
+                string message = $"No property values found in item to upsert. If using query parameters, ensure that the casing of the parameter names and the property names match.";
+                var ex = new InvalidOperationException(message);
+                throw ex;
+            }
 
-                IEnumerable<string> objectColumnNames = GetColumnNamesFromItem(rows.First());
-                IEnumerable<string> primaryKeysFromObject = objectColumnNames.Where(f => tableInfo.PrimaryKeys.Any(k => string.Equals(k.Name, f, StringComparison.Ordinal)));
-                IEnumerable<PrimaryKey> missingPrimaryKeysFromItem = tableInfo.PrimaryKeys
-                    .Where(k => !primaryKeysFromObject.Contains(k.Name));
-                // If none of the primary keys are an identity column or have a default value then we require that all primary keys be present in the POCO so we can
-                // generate the MERGE statement correctly
-                if (!tableInfo.HasIdentityColumnPrimaryKeys && !tableInfo.HasDefaultColumnPrimaryKeys && missingPrimaryKeysFromItem.Any())
-                {
-                    string message = $"All primary keys for SQL table {table} need to be found in '{typeof(T)}.' Missing primary keys: [{string.Join(",", missingPrimaryKeysFromItem)}]";
-                    var ex = new InvalidOperationException(message);
-                    TelemetryInstance.TrackException(TelemetryErrorName.MissingPrimaryKeys, ex, connection.AsConnectionProps(this._serverProperties));
-                    throw ex;
-                }
-                // If any identity columns or columns with default values aren't included in the object then we have to generate a basic insert since the merge statement expects all primary key
-                // columns to exist. (the merge statement can handle nullable columns though if those exist)
-                QueryType queryType = (tableInfo.HasIdentityColumnPrimaryKeys || tableInfo.HasDefaultColumnPrimaryKeys) && missingPrimaryKeysFromItem.Any() ? QueryType.Insert : QueryType.Merge;
-                string mergeOrInsertQuery = queryType == QueryType.Insert ? TableInformation.GetInsertQuery(table, bracketedColumnNamesFromItem) :
-                    TableInformation.GetMergeQuery(tableInfo.PrimaryKeys, table, bracketedColumnNamesFromItem);
+            var table = new SqlObject(fullTableName);
+
+            IEnumerable<string> objectColumnNames = GetColumnNamesFromItem(rows.First());
+            IEnumerable<string> primaryKeysFromObject = objectColumnNames.Where(f => tableInfo.PrimaryKeys.Any(k => string.Equals(k.Name, f, StringComparison.Ordinal)));
+            IEnumerable<PrimaryKey> missingPrimaryKeysFromItem = tableInfo.PrimaryKeys
+                .Where(k => !primaryKeysFromObject.Contains(k.Name));
+            // If none of the primary keys are an identity column or have a default value then we require that all primary keys be present in the POCO so we can
+            // generate the MERGE statement correctly
+            if (!tableInfo.HasIdentityColumnPrimaryKeys && !tableInfo.HasDefaultColumnPrimaryKeys && missingPrimaryKeysFromItem.Any())
+            {
+                string message = $"All primary keys for SQL table {table} need to be found in '{typeof(T)}.' Missing primary keys: [{string.Join(",", missingPrimaryKeysFromItem)}]";
+                var ex = new InvalidOperationException(message);
+                TelemetryInstance.TrackException(TelemetryErrorName.MissingPrimaryKeys, ex, connection.AsConnectionProps(this._serverProperties));
+                throw ex;
+            }
+            // If any identity columns or columns with default values aren't included in the object then we have to generate a basic insert since the merge statement expects all primary key
+            // columns to exist. (the merge statement can handle nullable columns though if those exist)
+            QueryType queryType = (tableInfo.HasIdentityColumnPrimaryKeys || tableInfo.HasDefaultColumnPrimaryKeys) && missingPrimaryKeysFromItem.Any() ? QueryType.Insert : QueryType.Merge;
+            string mergeOrInsertQuery = queryType == QueryType.Insert ? TableInformation.GetInsertQuery(table, bracketedColumnNamesFromItem) :
+                TableInformation.GetMergeQuery(tableInfo.PrimaryKeys, table, bracketedColumnNamesFromItem);
 
+            return async scopeTransaction =>
+            {
                 var transactionSw = Stopwatch.StartNew();
                 int batchSize = 1000;
-                SqlTransaction transaction = connection.BeginTransaction();
+                SqlTransaction transaction = scopeTransaction ?? connection.BeginTransaction();
                 try
                 {
                     SqlCommand command = connection.CreateCommand();
@@ -274,6 +388,9 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                     command.Transaction = transaction;
                     SqlParameter par = command.Parameters.Add(RowDataParameter, SqlDbType.NVarChar, -1);
                     int batchCount = 0;
+                    int slowStatementThresholdMs = SqlSlowStatementRecorder.GetThresholdMs(attribute, configuration);
+                    // The slow statements are only recorded once the transaction is committed, so that their plans aren't read while its locks are held
+                    var slowStatements = new List<SlowStatement>();
                     var commandSw = Stopwatch.StartNew();
                     foreach (IEnumerable<T> batch in rows.Batch(batchSize))
                     {
@@ -281,23 +398,50 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                         GenerateDataQueryForMerge(tableInfo, batch, out string newDataQuery, out string rowData);
                         command.CommandText = $"{newDataQuery} {mergeOrInsertQuery};";
                         par.Value = rowData;
-                        await command.ExecuteNonQueryAsyncWithLogging(this._logger, CancellationToken.None);
+                        long statementStartMs = commandSw.ElapsedMilliseconds;
+                        int rowCount = await command.ExecuteNonQueryAsyncWithLogging(this._logger, CancellationToken.None);
+                        long statementDurationMs = commandSw.ElapsedMilliseconds - statementStartMs;
+                        if (slowStatementThresholdMs > 0 && statementDurationMs >= slowStatementThresholdMs)
+                        {
+                            slowStatements.Add(SqlSlowStatementRecorder.Capture(command, queryType.ToString(), fullTableName, rowCount, statementDurationMs));
+                        }
+                    }
+                    if (scopeTransaction == null)
+                    {
+                        transaction.Commit();
                     }
-                    transaction.Commit();
                     transactionSw.Stop();
                     upsertRowsAsyncSw.Stop();
-                    var measures = new Dictionary<TelemetryMeasureName, double>()
-                {
-                    { TelemetryMeasureName.BatchCount, batchCount },
-                    { TelemetryMeasureName.TransactionDurationMs, transactionSw.ElapsedMilliseconds },
-                    { TelemetryMeasureName.CommandDurationMs, commandSw.ElapsedMilliseconds },
-                    { TelemetryMeasureName.BatchSize, batchSize },
-                    { TelemetryMeasureName.NumRows, rows.Count }
-                };
+                    Dictionary<TelemetryMeasureName, double> measures = GetCachedMeasures();
+                    measures[TelemetryMeasureName.BatchCount] = batchCount;
+                    measures[TelemetryMeasureName.TransactionDurationMs] = transactionSw.ElapsedMilliseconds;
+                    measures[TelemetryMeasureName.CommandDurationMs] = commandSw.ElapsedMilliseconds;
+                    measures[TelemetryMeasureName.BatchSize] = batchSize;
+                    measures[TelemetryMeasureName.NumRows] = rows.Count;
                     TelemetryInstance.TrackEvent(TelemetryEventName.Upsert, props, measures);
+                    SqlBindingMetrics.RecordUpsert(fullTableName, rows.Count, upsertRowsAsyncSw.ElapsedMilliseconds);
+                    string commandText = command.CommandText;
+                    return () =>
+                    {
+                        if (slowStatements.Count > 0)
+                        {
+                            int planSamplingPercent = SqlSlowStatementRecorder.GetPlanSamplingPercent(configuration);
+                            foreach (SlowStatement slowStatement in slowStatements)
+                            {
+                                SqlSlowStatementRecorder.Instance.Record(slowStatement, commandText, CommandType.Text, connection, planSamplingPercent, this._logger);
+                            }
+                        }
+                        return Task.CompletedTask;
+                    };
                 }
                 catch (Exception ex)
                 {
+                    if (scopeTransaction != null)
+                    {
+                        // The transaction is rolled back by the scope, along with the rows of its other bindings
+                        TelemetryInstance.TrackException(TelemetryErrorName.Upsert, ex, props);
+                        throw new InvalidOperationException($"Unexpected error upserting rows", ex);
+                    }
                     try
                     {
                         TelemetryInstance.TrackException(TelemetryErrorName.Upsert, ex, props);
@@ -311,7 +455,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                     }
                     throw new InvalidOperationException($"Unexpected error upserting rows", ex);
                 }
-            }
+            };
         }
 
         /// <summary>
@@ -359,7 +503,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// <param name="newDataQuery">Generated T-SQL data query</param>
         /// <param name="rowData">Serialized rows to be upserted represented as JSON string</param>
         /// <returns>T-SQL containing data for merge</returns>
-        private static void GenerateDataQueryForMerge(TableInformation table, IEnumerable<T> rows, out string newDataQuery, out string rowData)
+        internal static void GenerateDataQueryForMerge(TableInformation table, IEnumerable<T> rows, out string newDataQuery, out string rowData)
         {
             var rowsToUpsert = new List<T>();
 
@@ -41,7 +41,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// <returns>The enumerator</returns>
         public IAsyncEnumerator<T> GetAsyncEnumerator(CancellationToken cancellationToken = default)
         {
-            return new SqlAsyncEnumerator(this.Connection, this._attribute);
+            return new SqlAsyncEnumerator(this.Connection, this._attribute, cancellationToken);
         }
 
 
@@ -49,19 +49,22 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         {
             private readonly SqlConnection _connection;
             private readonly SqlAttribute _attribute;
+            private readonly CancellationToken _cancellationToken;
             private SqlDataReader _reader;
             /// <summary>
             /// Initializes a new instance of the <see cref="SqlAsyncEnumerator"/> class.
             /// </summary>
             /// <param name="connection">The SqlConnection to be used by the enumerator</param>
             /// <param name="attribute">The attribute containing the query, parameters, and query type</param>
+            /// <param name="cancellationToken">Cancels executing the query and reading the rows</param>
             /// <exception cref="ArgumentNullException">
             /// Thrown if either connection or attribute is null
             /// </exception>
-            public SqlAsyncEnumerator(SqlConnection connection, SqlAttribute attribute)
+            public SqlAsyncEnumerator(SqlConnection connection, SqlAttribute attribute, CancellationToken cancellationToken)
             {
                 this._connection = connection ?? throw new ArgumentNullException(nameof(connection));
                 this._attribute = attribute ?? throw new ArgumentNullException(nameof(attribute));
+                this._cancellationToken = cancellationToken;
             }
 
             /// <summary>
@@ -92,16 +95,17 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             /// </returns>
             public ValueTask<bool> MoveNextAsync()
             {
-                return new ValueTask<bool>(this.GetNextRow());
+                return new ValueTask<bool>(this.GetNextRowAsync());
             }
 
             /// <summary>
-            /// Attempts to grab the next row of the SQL query result.
+            /// Attempts to grab the next row of the SQL query result, without blocking a thread while the query runs
+            /// or the rows are read.
             /// </summary>
             /// <returns>
             /// True if there is another row left in the query to process, or false if this was the last row
             /// </returns>
-            private bool GetNextRow()
+            private async Task<bool> GetNextRowAsync()
             {
                 // check connection state before trying to access the reader
                 // if DisposeAsync has already closed it due to the issue described here https://github.com/Azure/azure-functions-sql-extension/issues/350
@@ -111,10 +115,18 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                     {
                         using (SqlCommand command = SqlBindingUtilities.BuildCommand(this._attribute, this._connection))
                         {
-                            this._reader = command.ExecuteReader();
+                            this._reader = await command.ExecuteReaderAsync(this._cancellationToken);
+                        }
+                        int resultSetIndex = SqlSharedResultSets.GetResultSetIndex(this._attribute);
+                        for (int i = 0; i < resultSetIndex; i++)
+                        {
+                            if (!await this._reader.NextResultAsync(this._cancellationToken))
+                            {
+                                throw new InvalidOperationException($"The command didn't return a result set at index {resultSetIndex}.");
+                            }
                         }
                     }
-                    if (this._reader.Read())
+                    if (await this._reader.ReadAsync(this._cancellationToken))
                     {
                         this.Current = Utils.JsonDeserializeObject<T>(this.SerializeRow());
                         return true;
@@ -129,6 +141,10 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             /// <returns>JSON string version of the SQL row</returns>
             private string SerializeRow()
             {
+                if (this._attribute.TemporalFormat == SqlTemporalFormat.Iso8601)
+                {
+                    return Utils.JsonSerializeObject(SqlBindingUtilities.BuildDictionaryFromSqlRow(this._reader), SqlTemporalJsonConverter.SerializerSettings);
+                }
                 var jsonSerializerSettings = new JsonSerializerSettings()
                 {
                     DateFormatString = ISO_8061_DATETIME_FORMAT
@@ -58,11 +58,12 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             }
             ILogger logger = this._loggerFactory.CreateLogger(LogCategories.Bindings);
             TelemetryInstance.Initialize(this._configuration, logger);
-            // Only enable SQL Client logging when VerboseLogging is set in the config to avoid extra overhead when the
-            // detailed logging it provides isn't needed
-            if (this.sqlClientListener == null && Utils.GetConfigSettingAsBool(VerboseLoggingSettingName, this._configuration))
+            // The SQL Client counters are always collected so that they're available as metrics, but SQL Client logging
+            // is only enabled when VerboseLogging is set in the config to avoid extra overhead when the detailed logging
+            // it provides isn't needed
+            if (this.sqlClientListener == null)
             {
-                this.sqlClientListener = new SqlClientListener(logger);
+                this.sqlClientListener = new SqlClientListener(logger, Utils.GetConfigSettingAsBool(VerboseLoggingSettingName, this._configuration));
             }
             LogDependentAssemblyVersions(logger);
 #pragma warning disable CS0618 // Fine to use this for our stuff
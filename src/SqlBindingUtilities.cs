@@ -4,13 +4,16 @@
 using System;
 using System.Collections.Generic;
 using System.Data;
+using System.Data.Common;
 using System.Diagnostics;
+using System.IO;
 using System.Linq;
 using System.Threading.Tasks;
 using System.Threading;
 using Microsoft.Data.SqlClient;
 using Microsoft.Extensions.Configuration;
 using Microsoft.Extensions.Logging;
+using Newtonsoft.Json;
 using static Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry.Telemetry;
 using Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry;
 
@@ -65,6 +68,10 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// If the value of a parameter should be null, use "null", as in @param1=null,@param2=param2".
         /// If the value of a parameter should be an empty string, do not add anything after the equals sign and before the comma,
         /// as in "@param1=,@param2=param2"
+        /// A value enclosed in square brackets is a JSON array, as in "@ids=[1,2,3]" or "@names=["a","b"]", which can contain
+        /// ',' and '='. It's passed as a single nvarchar(max) parameter so that the query can read its items with OPENJSON, and
+        /// gets the same plan no matter how many items it has. A value starting with '[' which isn't a valid JSON array, such
+        /// as "@param1=[abc", is a plain string value instead.
         /// </summary>
         /// <param name="parameters">The parameter string to be parsed</param>
         /// <param name="command">The SqlCommand to which the parsed parameters will be added to</param>
@@ -84,34 +91,139 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                 // Because we remove empty entries, we will ignore any commas that appear at the beginning/end of the parameter list,
                 // as well as extra commas that appear between parameter pairs.
                 // I.e., ",,@param1=param1,,@param2=param2,,," will be parsed just like "@param1=param1,@param2=param2" is.
-                string[] paramPairs = parameters.Split(ParameterSeparator, StringSplitOptions.RemoveEmptyEntries);
-
-                foreach (string pair in paramPairs)
+                foreach ((string pair, bool isArray) in SplitParameterPairs(parameters))
                 {
                     // Note that we don't throw away empty entries here, so a parameter pair that looks like "=@param1=param1"
                     // or "@param2=param2=" is considered malformed
-                    string[] items = pair.Split('=');
-                    if (items.Length != 2)
+                    int separatorIndex = pair.IndexOf('=');
+                    string value = separatorIndex < 0 ? null : pair.Substring(separatorIndex + 1);
+                    if (value == null || (!isArray && value.IndexOf('=') >= 0))
                     {
                         throw new ArgumentException("Parameters must be separated by \",\" and parameter name and parameter value must be separated by \"=\", " +
                            "i.e. \"@param1=param1,@param2=param2\". To specify a null value, use null, as in \"@param1=null,@param2=param2\"." +
-                           "To specify an empty string as a value, simply do not add anything after the equals sign, as in \"@param1=,@param2=param2\".");
+                           "To specify an empty string as a value, simply do not add anything after the equals sign, as in \"@param1=,@param2=param2\"." +
+                           "To specify an array, enclose its JSON items in square brackets, as in \"@param1=[1,2,3]\".");
                     }
-                    if (!items[0].StartsWith("@", StringComparison.InvariantCultureIgnoreCase))
+                    string name = pair.Substring(0, separatorIndex);
+                    if (!name.StartsWith("@", StringComparison.InvariantCultureIgnoreCase))
                     {
                         throw new ArgumentException("Parameter name must start with \"@\", i.e. \"@param1=param1,@param2=param2\"");
                     }
 
 
-                    if (items[1].Equals("null", StringComparison.OrdinalIgnoreCase))
+                    if (isArray)
+                    {
+                        command.Parameters.Add(new SqlParameter(name, SqlDbType.NVarChar, -1) { Value = value });
+                    }
+                    else if (value.Equals("null", StringComparison.OrdinalIgnoreCase))
                     {
-                        command.Parameters.Add(new SqlParameter(items[0], DBNull.Value));
+                        command.Parameters.Add(new SqlParameter(name, DBNull.Value));
                     }
                     else
                     {
-                        command.Parameters.Add(new SqlParameter(items[0], items[1]));
+                        command.Parameters.Add(new SqlParameter(name, value));
+                    }
+                }
+            }
+        }
+
+        /// <summary>
+        /// Splits the parameter string on the commas that aren't inside an array value, skipping empty entries. A value is
+        /// an array if it starts with "[" and everything up to the matching "]" (ignoring brackets in JSON strings) parses
+        /// as a JSON array followed by a comma or the end of the string, otherwise it's a plain string which can't contain
+        /// commas.
+        /// </summary>
+        /// <returns>Each parameter pair and whether its value is an array</returns>
+        private static IEnumerable<(string pair, bool isArray)> SplitParameterPairs(string parameters)
+        {
+            int start = 0;
+            bool isArray = false;
+            for (int i = 0; i < parameters.Length; i++)
+            {
+                char c = parameters[i];
+                // Only brackets at the start of a value begin an array, so that scalar values can still contain them
+                if (c == '[' && i > 0 && parameters[i - 1] == '=')
+                {
+                    int end = FindArrayEnd(parameters, i);
+                    if (end > 0 && (end == parameters.Length || parameters[end] == ParameterSeparator[0]) && IsJsonArray(parameters.Substring(i, end - i)))
+                    {
+                        isArray = true;
+                        i = end - 1;
+                    }
+                }
+                else if (c == ParameterSeparator[0])
+                {
+                    if (i > start)
+                    {
+                        yield return (parameters.Substring(start, i - start), isArray);
+                    }
+                    start = i + 1;
+                    isArray = false;
+                }
+            }
+            if (parameters.Length > start)
+            {
+                yield return (parameters.Substring(start), isArray);
+            }
+        }
+
+        /// <summary>
+        /// Finds the end of the array starting at the given index, matching brackets and ignoring the brackets in JSON strings.
+        /// </summary>
+        /// <returns>The index following the closing bracket of the array, or -1 if the array isn't closed</returns>
+        private static int FindArrayEnd(string parameters, int start)
+        {
+            int depth = 0;
+            bool inString = false;
+            for (int i = start; i < parameters.Length; i++)
+            {
+                char c = parameters[i];
+                if (inString)
+                {
+                    if (c == '\\')
+                    {
+                        i++;
                     }
+                    else if (c == '"')
+                    {
+                        inString = false;
+                    }
+                }
+                else if (c == '"')
+                {
+                    inString = true;
+                }
+                else if (c == '[')
+                {
+                    depth++;
                 }
+                else if (c == ']' && --depth == 0)
+                {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        private static bool IsJsonArray(string value)
+        {
+            try
+            {
+                using (var reader = new JsonTextReader(new StringReader(value)))
+                {
+                    if (!reader.Read() || reader.TokenType != JsonToken.StartArray)
+                    {
+                        return false;
+                    }
+                    while (reader.Read())
+                    {
+                    }
+                    return true;
+                }
+            }
+            catch (JsonReaderException)
+            {
+                return false;
             }
         }
 
@@ -150,7 +262,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// </summary>
         /// <param name="reader">Used to determine the columns of the table as well as the next SQL row to process</param>
         /// <returns>The built dictionary</returns>
-        public static IReadOnlyDictionary<string, object> BuildDictionaryFromSqlRow(SqlDataReader reader)
+        public static IReadOnlyDictionary<string, object> BuildDictionaryFromSqlRow(DbDataReader reader)
         {
             return Enumerable.Range(0, reader.FieldCount).ToDictionary(reader.GetName, i => reader.GetValue(i));
         }
@@ -3,32 +3,103 @@
 
 using System.Diagnostics.Tracing;
 using System;
+using System.Collections.Generic;
+using System.Globalization;
+using System.Linq;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry;
 using Microsoft.Extensions.Logging;
 
 namespace Microsoft.Azure.WebJobs.Extensions.Sql
 {
 
     /// <summary>
-    /// This listener class will listen for events from the SqlClientEventSource class
-    /// and forward them to the logger.
+    /// This listener class will listen for the event counters of the SqlClientEventSource class (such as the number of
+    /// pooled and active connections) and republish them as binding metrics. When tracing is enabled it will also
+    /// listen for the trace events of SqlClientEventSource and forward them to the logger.
     /// </summary>
     public class SqlClientListener : EventListener
     {
+        private const string SqlClientEventSourceName = "Microsoft.Data.SqlClient.EventSource";
+        private const string EventCountersEventName = "EventCounters";
+
+        /// <summary>
+        /// How often SqlClient publishes the values of its counters
+        /// </summary>
+        public const int CounterIntervalSeconds = 10;
+
         private readonly ILogger _logger;
+        private readonly bool _traceEvents;
+        private readonly object _eventSourceLock = new object();
+
+        /// <summary>
+        /// The event source created before this listener finished being constructed. The base constructor calls
+        /// OnEventSourceCreated for the existing event sources before the constructor of this class sets its fields,
+        /// so enabling the events of these sources is deferred until the end of the constructor. (Field initializers
+        /// run before the base constructor, so the lock is already set when it does.)
+        /// </summary>
+        private EventSource _pendingEventSource;
+        private bool _initialized;
+
+        public SqlClientListener(ILogger logger) : this(logger, true)
+        {
+        }
 
-        public SqlClientListener(ILogger logger)
+        /// <summary>
+        /// Creates a listener for the SqlClientEventSource.
+        /// </summary>
+        /// <param name="logger">The logger the trace events are forwarded to</param>
+        /// <param name="traceEvents">Whether to forward the trace events of SqlClient to the logger in addition to collecting its counters</param>
+        public SqlClientListener(ILogger logger, bool traceEvents)
         {
             this._logger = logger;
+            this._traceEvents = traceEvents;
+            lock (this._eventSourceLock)
+            {
+                this._initialized = true;
+                if (this._pendingEventSource != null)
+                {
+                    this.EnableSqlClientEvents(this._pendingEventSource);
+                    this._pendingEventSource = null;
+                }
+            }
         }
 
         protected override void OnEventSourceCreated(EventSource eventSource)
         {
             // Only enable events from SqlClientEventSource.
-            if (string.CompareOrdinal(eventSource.Name, "Microsoft.Data.SqlClient.EventSource") == 0)
+            if (string.CompareOrdinal(eventSource.Name, SqlClientEventSourceName) == 0)
+            {
+                lock (this._eventSourceLock)
+                {
+                    if (this._initialized)
+                    {
+                        this.EnableSqlClientEvents(eventSource);
+                    }
+                    else
+                    {
+                        this._pendingEventSource = eventSource;
+                    }
+                }
+            }
+        }
+
+        private void EnableSqlClientEvents(EventSource eventSource)
+        {
+            var arguments = new Dictionary<string, string>
+            {
+                { "EventCounterIntervalSec", CounterIntervalSeconds.ToString(CultureInfo.InvariantCulture) }
+            };
+            if (this._traceEvents)
             {
                 // Use EventKeyWord 2 to capture basic application flow events.
                 // See https://docs.microsoft.com/sql/connect/ado-net/enable-eventsource-tracing for all available keywords.
-                this.EnableEvents(eventSource, EventLevel.Informational, (EventKeywords)2);
+                this.EnableEvents(eventSource, EventLevel.Informational, (EventKeywords)2, arguments);
+            }
+            else
+            {
+                // The counters are written at the LogAlways level, so using the Critical level collects them without
+                // enabling any of the trace events (which are all Informational or lower)
+                this.EnableEvents(eventSource, EventLevel.Critical, EventKeywords.None, arguments);
             }
         }
 
@@ -46,12 +117,15 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                     return;
                 }
 
-                foreach (object payload in eventData.Payload)
+                if (string.CompareOrdinal(eventData.EventName, EventCountersEventName) == 0)
                 {
-                    if (payload != null)
-                    {
-                        this._logger.LogTrace($"EventID {eventData.EventId}. Payload: {payload}");
-                    }
+                    PublishCounter(eventData.Payload);
+                    return;
+                }
+
+                if (this._traceEvents && this._logger.IsEnabled(LogLevel.Trace))
+                {
+                    this._logger.LogTrace($"EventID {eventData.EventId}. Payload: {string.Join(", ", eventData.Payload.Where(payload => payload != null))}");
                 }
             }
             catch (Exception ex)
@@ -60,5 +134,28 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
 
             }
         }
+
+        /// <summary>
+        /// Republishes the value of a SqlClient counter as a binding metric. The counters which are a number of
+        /// connections (or pools) are published as gauges with their mean value over the interval, and the ones
+        /// which are a rate (such as hard-connects) as counters incremented by the number of events in the interval.
+        /// </summary>
+        /// <param name="payload">The payload of the EventCounters event</param>
+        private static void PublishCounter(IReadOnlyList<object> payload)
+        {
+            if (payload.Count == 0 || !(payload[0] is IDictionary<string, object> counter) || !counter.TryGetValue("Name", out object name))
+            {
+                return;
+            }
+            counter.TryGetValue("DisplayName", out object displayName);
+            if (counter.TryGetValue("Increment", out object increment))
+            {
+                SqlBindingMetrics.AddSqlClientCounter((string)name, displayName as string, Convert.ToDouble(increment, CultureInfo.InvariantCulture));
+            }
+            else if (counter.TryGetValue("Mean", out object mean))
+            {
+                SqlBindingMetrics.SetSqlClientGauge((string)name, displayName as string, Convert.ToDouble(mean, CultureInfo.InvariantCulture));
+            }
+        }
     }
 }
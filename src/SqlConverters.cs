@@ -4,6 +4,8 @@
 using System;
 using System.Collections.Generic;
 using System.Data;
+using System.Diagnostics;
+using System.Linq;
 using System.Threading;
 using System.Threading.Tasks;
 using Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry;
@@ -49,8 +51,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                 TelemetryInstance.TrackConvert(ConvertType.SqlCommand);
                 try
                 {
-                    return SqlBindingUtilities.BuildCommand(attribute, SqlBindingUtilities.BuildConnection(
-                                       attribute.ConnectionStringSetting, this._configuration));
+                    return SqlBindingUtilities.BuildCommand(attribute, SqlReadReplicaRouter.BuildReadConnection(attribute, this._configuration));
                 }
                 catch (Exception ex)
                 {
@@ -69,6 +70,8 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         internal class SqlGenericsConverter<T> : IAsyncConverter<SqlAttribute, IEnumerable<T>>, IConverter<SqlAttribute, IAsyncEnumerable<T>>,
             IAsyncConverter<SqlAttribute, string>, IAsyncConverter<SqlAttribute, JArray>
         {
+            private const string QueryActivityName = "sql.input.query";
+
             private readonly IConfiguration _configuration;
 
             private readonly ILogger _logger;
@@ -146,7 +149,8 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
 
             /// <summary>
             /// Extracts the <see cref="SqlAttribute.ConnectionStringSetting"/> in attribute and uses it to establish a connection
-            /// to the SQL database. (Must be virtual for mocking the method in unit tests)
+            /// to the SQL database, or returns the cached results of the query if <see cref="SqlAttribute.CacheTtlMs"/> is set.
+            /// (Must be virtual for mocking the method in unit tests)
             /// </summary>
             /// <param name="attribute">
             /// The binding attribute that contains the name of the connection string app setting and query.
@@ -157,26 +161,114 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             /// <returns></returns>
             public virtual async Task<string> BuildItemFromAttributeAsync(SqlAttribute attribute, ConvertType type)
             {
-                using (SqlConnection connection = SqlBindingUtilities.BuildConnection(attribute.ConnectionStringSetting, this._configuration))
-                // Ideally, we would like to move away from using SqlDataAdapter both here and in the
-                // SqlAsyncCollector since it does not support asynchronous operations.
-                using (var adapter = new SqlDataAdapter())
+                // The other conversions parse the JSON as an array of rows, so only the string can be columnar
+                SqlPayloadFormat payloadFormat = type == ConvertType.Json ? attribute.PayloadFormat : SqlPayloadFormat.Default;
+                int resultSetIndex = SqlSharedResultSets.GetResultSetIndex(attribute);
+                int pageSize = SqlPayloadWriter.GetPageSize(attribute);
+                int cacheTtlMs = SqlInputCache.GetTtlMs(attribute);
+                SqlInputCacheDependencies dependencies = SqlInputCacheInvalidator.GetDependencies(attribute);
+                string connectionString = SqlBindingUtilities.GetConnectionString(attribute.ConnectionStringSetting, this._configuration);
+                // The parameters were already resolved from the trigger data, so the key matches invocations which run
+                // the same query with the same values
+                var commandKey = new SqlInputCacheKey(connectionString, attribute.CommandType, attribute.CommandText, attribute.Parameters,
+                    attribute.CacheDependencies, attribute.TemporalFormat, payloadFormat, pageSize: pageSize);
+                if (cacheTtlMs == 0 && dependencies == null)
+                {
+                    return await this.QueryResultSetAsync(attribute, type, payloadFormat, pageSize, commandKey, resultSetIndex);
+                }
+                var key = new SqlInputCacheKey(connectionString, attribute.CommandType, attribute.CommandText, attribute.Parameters,
+                    attribute.CacheDependencies, attribute.TemporalFormat, payloadFormat, resultSetIndex, pageSize);
+                // Read before the query runs, so that any change to the tables which the query may not have seen is after it
+                long dependencyVersion = dependencies == null ? 0 : await SqlInputCacheInvalidator.Instance.WatchAsync(connectionString, dependencies,
+                    SqlInputCacheInvalidator.GetIntervalMs(this._configuration), this._logger);
+                return await SqlInputCache.Instance.GetOrLoadAsync(key, cacheTtlMs, SqlInputCache.GetMaxBytes(this._configuration),
+                    () => this.QueryResultSetAsync(attribute, type, payloadFormat, pageSize, commandKey, resultSetIndex), dependencies, dependencyVersion);
+            }
+
+            /// <summary>
+            /// Gets the JSON payload of the result set of the binding. If <see cref="SqlAttribute.InvocationScope"/> is set,
+            /// the execution of the command is shared with the other bindings of the scope to its result sets, otherwise
+            /// the binding runs the command on its own.
+            /// </summary>
+            private async Task<string> QueryResultSetAsync(SqlAttribute attribute, ConvertType type, SqlPayloadFormat payloadFormat, int pageSize, SqlInputCacheKey commandKey, int resultSetIndex)
+            {
+                if (string.IsNullOrEmpty(attribute.InvocationScope))
+                {
+                    IReadOnlyDictionary<int, string> payloads = await this.QueryAsync(attribute, type, payloadFormat, pageSize, resultSetIndex);
+                    if (!payloads.TryGetValue(resultSetIndex, out string payload))
+                    {
+                        throw new InvalidOperationException($"The command didn't return a result set at index {resultSetIndex}.");
+                    }
+                    return payload;
+                }
+                return await SqlSharedResultSets.Instance.GetAsync(attribute.InvocationScope, commandKey, resultSetIndex, () => this.QueryAsync(attribute, type, payloadFormat, pageSize, null));
+            }
+
+            /// <summary>
+            /// Runs the query of the binding and writes its result sets to JSON payloads, in a single pass over the results.
+            /// </summary>
+            /// <param name="pageSize">The maximum number of rows written for each result set, or 0 to write all of them</param>
+            /// <param name="resultSetIndex">The index of the only result set to write, or null to write all of them</param>
+            private async Task<IReadOnlyDictionary<int, string>> QueryAsync(SqlAttribute attribute, ConvertType type, SqlPayloadFormat payloadFormat, int pageSize, int? resultSetIndex)
+            {
+                // Only stored procedure names are used as the table tag, the text of queries could be arbitrarily long
+                using (Activity activity = SqlBindingMetrics.StartActivity(QueryActivityName, attribute.CommandType == CommandType.StoredProcedure ? attribute.CommandText : null))
+                // Opened against a read replica if the binding opted in to it
+                using (SqlConnection connection = await SqlReadReplicaRouter.Instance.OpenReadConnectionAsync(attribute, this._configuration, this._logger))
                 using (SqlCommand command = SqlBindingUtilities.BuildCommand(attribute, connection))
                 {
-                    adapter.SelectCommand = command;
-                    await connection.OpenAsyncWithSqlErrorHandling(this._logger, CancellationToken.None);
                     this._serverProperties = await SqlBindingUtilities.GetServerTelemetryProperties(connection, this._logger, CancellationToken.None);
                     Dictionary<TelemetryPropertyName, string> props = connection.AsConnectionProps(this._serverProperties);
                     TelemetryInstance.TrackConvert(type, props);
-                    var dataTable = new DataTable();
-                    adapter.Fill(dataTable);
-                    this._logger.LogInformation($"{dataTable.Rows.Count} row(s) queried from database: {connection.Database} using Command: {command.CommandText}");
-                    // Serialize any DateTime objects in UTC format
-                    var jsonSerializerSettings = new JsonSerializerSettings()
+                    // Serialize any DateTime objects in UTC format, unless another format was requested
+                    JsonSerializerSettings jsonSerializerSettings = attribute.TemporalFormat == SqlTemporalFormat.Iso8601 ? SqlTemporalJsonConverter.SerializerSettings : new JsonSerializerSettings()
                     {
                         DateFormatString = ISO_8061_DATETIME_FORMAT
                     };
-                    return Utils.JsonSerializeObject(dataTable, jsonSerializerSettings);
+                    var payloads = new Dictionary<int, string>();
+                    int rowCount = 0;
+                    bool hasMoreRows = false;
+                    var querySw = Stopwatch.StartNew();
+                    // The rows are written to the payload as they're read, instead of being buffered in a DataTable first
+                    using (SqlDataReader reader = await command.ExecuteReaderAsync(CancellationToken.None))
+                    {
+                        for (int index = 0; resultSetIndex == null || index <= resultSetIndex; index++)
+                        {
+                            if (index > 0 && !await reader.NextResultAsync(CancellationToken.None))
+                            {
+                                break;
+                            }
+                            // The result sets before the one bound are skipped without being written to a payload
+                            if (resultSetIndex == null || index == resultSetIndex)
+                            {
+                                (string json, int resultSetRowCount, bool resultSetHasMoreRows) = await SqlPayloadWriter.WriteAsync(reader, payloadFormat, jsonSerializerSettings, pageSize, CancellationToken.None);
+                                payloads.Add(index, json);
+                                rowCount += resultSetRowCount;
+                                hasMoreRows |= resultSetHasMoreRows;
+                            }
+                        }
+                        if (hasMoreRows)
+                        {
+                            // Every result set bound has been written, so stop the server from sending the rows after the
+                            // page instead of reading them only to discard them when the reader is closed
+                            command.Cancel();
+                            this._logger.LogInformation($"Stopped reading the results after a page of {pageSize} row(s) for Command: {command.CommandText}");
+                        }
+                    }
+                    long queryDurationMs = querySw.ElapsedMilliseconds;
+                    SqlBindingMetrics.RecordQuery(attribute.CommandType.ToString(), rowCount, queryDurationMs);
+                    int slowStatementThresholdMs = SqlSlowStatementRecorder.GetThresholdMs(attribute, this._configuration);
+                    if (slowStatementThresholdMs > 0 && queryDurationMs >= slowStatementThresholdMs)
+                    {
+                        SlowStatement slowStatement = SqlSlowStatementRecorder.Capture(command, attribute.CommandType.ToString(),
+                            attribute.CommandType == CommandType.StoredProcedure ? attribute.CommandText : null, rowCount, queryDurationMs);
+                        SqlSlowStatementRecorder.Instance.Record(slowStatement, command.CommandText, command.CommandType, connection,
+                            SqlSlowStatementRecorder.GetPlanSamplingPercent(this._configuration), this._logger);
+                    }
+                    activity?.SetTag(SqlBindingMetrics.CommandTypeTagName, attribute.CommandType.ToString());
+                    activity?.SetTag(SqlBindingMetrics.RowCountTagName, rowCount);
+                    this._logger.LogInformation($"{rowCount} row(s) queried from database: {connection.Database} using Command: {command.CommandText}");
+                    return payloads;
                 }
 
             }
@@ -185,7 +277,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             {
                 try
                 {
-                    var asyncEnumerable = new SqlAsyncEnumerable<T>(SqlBindingUtilities.BuildConnection(attribute.ConnectionStringSetting, this._configuration), attribute, this._logger);
+                    var asyncEnumerable = new SqlAsyncEnumerable<T>(SqlReadReplicaRouter.BuildReadConnection(attribute, this._configuration), attribute, this._logger);
                     Dictionary<TelemetryPropertyName, string> props = asyncEnumerable.Connection.AsConnectionProps(this._serverProperties);
                     TelemetryInstance.TrackConvert(ConvertType.IAsyncEnumerable, props);
                     return asyncEnumerable;
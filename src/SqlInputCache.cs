@@ -0,0 +1,358 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Data;
+using System.Diagnostics;
+using System.Threading.Tasks;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry;
+using Microsoft.Extensions.Configuration;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql
+{
+    /// <summary>
+    /// Identifies the results of an input binding in the <see cref="SqlInputCache"/>: the same command with the same
+    /// (already resolved) parameters and dependencies against the same database, written to the same payload, for the
+    /// same result set and page size.
+    /// </summary>
+    internal readonly struct SqlInputCacheKey : IEquatable<SqlInputCacheKey>
+    {
+        public SqlInputCacheKey(string connectionString, CommandType commandType, string commandText, string parameters, string dependencies, SqlTemporalFormat temporalFormat, SqlPayloadFormat payloadFormat, int resultSetIndex = 0, int pageSize = 0)
+        {
+            this.ConnectionString = connectionString ?? throw new ArgumentNullException(nameof(connectionString));
+            this.CommandType = commandType;
+            this.CommandText = commandText ?? throw new ArgumentNullException(nameof(commandText));
+            this.Parameters = parameters;
+            this.Dependencies = dependencies;
+            this.TemporalFormat = temporalFormat;
+            this.PayloadFormat = payloadFormat;
+            this.ResultSetIndex = resultSetIndex;
+            this.PageSize = pageSize;
+        }
+
+        public string ConnectionString { get; }
+
+        public CommandType CommandType { get; }
+
+        public string CommandText { get; }
+
+        public string Parameters { get; }
+
+        /// <summary>
+        /// The tables the results depend on, as set on the binding
+        /// </summary>
+        public string Dependencies { get; }
+
+        public SqlTemporalFormat TemporalFormat { get; }
+
+        public SqlPayloadFormat PayloadFormat { get; }
+
+        public int ResultSetIndex { get; }
+
+        public int PageSize { get; }
+
+        public bool Equals(SqlInputCacheKey other)
+        {
+            return string.Equals(this.ConnectionString, other.ConnectionString, StringComparison.Ordinal)
+                && this.CommandType == other.CommandType
+                && string.Equals(this.CommandText, other.CommandText, StringComparison.Ordinal)
+                && string.Equals(this.Parameters, other.Parameters, StringComparison.Ordinal)
+                && string.Equals(this.Dependencies, other.Dependencies, StringComparison.Ordinal)
+                && this.TemporalFormat == other.TemporalFormat
+                && this.PayloadFormat == other.PayloadFormat
+                && this.ResultSetIndex == other.ResultSetIndex
+                && this.PageSize == other.PageSize;
+        }
+
+        public override bool Equals(object obj)
+        {
+            return obj is SqlInputCacheKey other && this.Equals(other);
+        }
+
+        public override int GetHashCode()
+        {
+            return (this.ConnectionString, this.CommandType, this.CommandText, this.Parameters, this.Dependencies, this.TemporalFormat, this.PayloadFormat, this.ResultSetIndex, this.PageSize).GetHashCode();
+        }
+    }
+
+    /// <summary>
+    /// Caches the JSON payloads of the input bindings which opt in with <see cref="SqlAttribute.CacheTtlMs"/>, so that
+    /// functions which run the same query many times a second don't go to the database for each invocation. Each
+    /// payload is kept for the TTL of its binding after it was read, and the least recently used payloads are evicted
+    /// once their total size goes above the Sql_InputCacheMaxBytes app setting. Concurrent requests for a payload that
+    /// isn't cached wait for the same query instead of each running it, and a query which fails isn't cached. Payloads
+    /// can also depend on tables (see <see cref="SqlAttribute.CacheDependencies"/>), in which case they're removed by
+    /// <see cref="Invalidate"/> when the <see cref="SqlInputCacheInvalidator"/> finds that one of the tables changed.
+    /// </summary>
+    internal sealed class SqlInputCache
+    {
+        public const string ConfigKey_InputCacheMaxBytes = "Sql_InputCacheMaxBytes";
+
+        public const long DefaultMaxBytes = 64 * 1024 * 1024;
+
+        public static readonly SqlInputCache Instance = new SqlInputCache();
+
+        private readonly Dictionary<SqlInputCacheKey, Entry> _entries = new Dictionary<SqlInputCacheKey, Entry>();
+        /// <summary>
+        /// The loaded entries, from the most to the least recently used
+        /// </summary>
+        private readonly LinkedList<Entry> _usedEntries = new LinkedList<Entry>();
+        private readonly object _entriesLock = new object();
+        private readonly Func<long> _getElapsedMs;
+        private long _sizeBytes;
+
+        public SqlInputCache() : this(Stopwatch.StartNew())
+        {
+        }
+
+        private SqlInputCache(Stopwatch stopwatch) : this(() => stopwatch.ElapsedMilliseconds)
+        {
+        }
+
+        /// <summary>
+        /// Initializes a new instance of the <see cref="SqlInputCache"/> class.
+        /// </summary>
+        /// <param name="getElapsedMs">Gets the current time in milliseconds, from any starting point</param>
+        public SqlInputCache(Func<long> getElapsedMs)
+        {
+            this._getElapsedMs = getElapsedMs ?? throw new ArgumentNullException(nameof(getElapsedMs));
+        }
+
+        /// <summary>
+        /// The total size of the cached payloads in bytes
+        /// </summary>
+        public long SizeBytes
+        {
+            get
+            {
+                lock (this._entriesLock)
+                {
+                    return this._sizeBytes;
+                }
+            }
+        }
+
+        /// <summary>
+        /// Gets the TTL of the payloads of a binding. 0 means that they don't expire, which for bindings without
+        /// dependencies means that they aren't cached.
+        /// </summary>
+        public static int GetTtlMs(SqlAttribute attribute)
+        {
+            if (attribute.CacheTtlMs < 0)
+            {
+                throw new InvalidOperationException($"Invalid value for {nameof(SqlAttribute.CacheTtlMs)}. Value must not be less than 0.");
+            }
+            return attribute.CacheTtlMs;
+        }
+
+        /// <summary>
+        /// Gets the maximum total size of the cached payloads from the Sql_InputCacheMaxBytes app setting
+        /// </summary>
+        public static long GetMaxBytes(IConfiguration configuration)
+        {
+            long maxBytes = configuration.GetValue(ConfigKey_InputCacheMaxBytes, DefaultMaxBytes);
+            if (maxBytes <= 0)
+            {
+                throw new InvalidOperationException($"Invalid value for configuration setting '{ConfigKey_InputCacheMaxBytes}'. Value must be greater than 0.");
+            }
+            return maxBytes;
+        }
+
+        /// <summary>
+        /// Gets the cached payload for the key, or loads it if it isn't cached or has expired. If the payload is already
+        /// being loaded by another caller then this waits for it instead of loading it again.
+        /// </summary>
+        /// <param name="key">The key of the payload</param>
+        /// <param name="ttlMs">How long the payload is kept after it was loaded, 0 to keep it until it's invalidated or evicted</param>
+        /// <param name="maxBytes">The maximum total size of the cached payloads</param>
+        /// <param name="load">Loads the payload</param>
+        /// <param name="dependencies">The tables the payload depends on, if any</param>
+        /// <param name="dependencyVersion">The change tracking version of the database before the payload is loaded, which
+        /// the changes to the tables it depends on are compared against</param>
+        /// <returns>The payload</returns>
+        public async Task<string> GetOrLoadAsync(SqlInputCacheKey key, int ttlMs, long maxBytes, Func<Task<string>> load,
+            SqlInputCacheDependencies dependencies = null, long dependencyVersion = 0)
+        {
+            if (load == null)
+            {
+                throw new ArgumentNullException(nameof(load));
+            }
+            Entry entry;
+            string result;
+            lock (this._entriesLock)
+            {
+                if (this._entries.TryGetValue(key, out entry))
+                {
+                    if (entry.Node == null)
+                    {
+                        result = SqlBindingMetrics.InputCacheCoalesced;
+                    }
+                    else if (entry.ExpiresAtMs > this._getElapsedMs())
+                    {
+                        this._usedEntries.Remove(entry.Node);
+                        this._usedEntries.AddFirst(entry.Node);
+                        result = SqlBindingMetrics.InputCacheHit;
+                    }
+                    else
+                    {
+                        this.Remove(entry);
+                        entry = null;
+                        result = SqlBindingMetrics.InputCacheMiss;
+                    }
+                }
+                else
+                {
+                    result = SqlBindingMetrics.InputCacheMiss;
+                }
+                if (entry == null)
+                {
+                    entry = new Entry(key, dependencies, dependencyVersion);
+                    this._entries.Add(key, entry);
+                }
+            }
+            SqlBindingMetrics.RecordInputCacheLookup(result);
+            if (result == SqlBindingMetrics.InputCacheMiss)
+            {
+                await this.LoadAsync(entry, ttlMs, maxBytes, load);
+            }
+            return await entry.Payload.Task;
+        }
+
+        /// <summary>
+        /// Removes the payloads which depend on a table that changed after they were loaded. The payloads still being
+        /// loaded aren't cached once they're loaded, since the query may have read the table before the change.
+        /// </summary>
+        /// <param name="connectionString">The connection string of the database of the table</param>
+        /// <param name="table">The bracket quoted full name of the table, or null for all the tables</param>
+        /// <param name="changeVersion">The change tracking version of the last change to the table</param>
+        /// <returns>The number of payloads removed</returns>
+        public int Invalidate(string connectionString, string table, long changeVersion)
+        {
+            lock (this._entriesLock)
+            {
+                var invalidated = new List<Entry>();
+                foreach (Entry entry in this._entries.Values)
+                {
+                    if (entry.Dependencies != null && entry.DependencyVersion < changeVersion
+                        && string.Equals(entry.Key.ConnectionString, connectionString, StringComparison.Ordinal)
+                        && (table == null || entry.Dependencies.TableNames.Contains(table)))
+                    {
+                        invalidated.Add(entry);
+                    }
+                }
+                foreach (Entry entry in invalidated)
+                {
+                    if (entry.Node == null)
+                    {
+                        // New requests for the payload run the query again instead of waiting for this one
+                        entry.IsInvalidated = true;
+                        this._entries.Remove(entry.Key);
+                    }
+                    else
+                    {
+                        this.Remove(entry);
+                    }
+                }
+                return invalidated.Count;
+            }
+        }
+
+        /// <summary>
+        /// Removes all the payloads from the cache, except the ones still being loaded
+        /// </summary>
+        public void Clear()
+        {
+            lock (this._entriesLock)
+            {
+                while (this._usedEntries.Last != null)
+                {
+                    this.Remove(this._usedEntries.Last.Value);
+                }
+            }
+        }
+
+        private async Task LoadAsync(Entry entry, int ttlMs, long maxBytes, Func<Task<string>> load)
+        {
+            string payload;
+            try
+            {
+                payload = await load();
+            }
+            catch (Exception ex)
+            {
+                lock (this._entriesLock)
+                {
+                    if (!entry.IsInvalidated)
+                    {
+                        this._entries.Remove(entry.Key);
+                    }
+                }
+                entry.Payload.SetException(ex);
+                return;
+            }
+            lock (this._entriesLock)
+            {
+                if (entry.IsInvalidated)
+                {
+                    entry.Payload.SetResult(payload);
+                    return;
+                }
+                // Payloads which depend on tables are kept until the tables change if they don't have a TTL
+                entry.ExpiresAtMs = ttlMs > 0 ? this._getElapsedMs() + ttlMs : long.MaxValue;
+                entry.SizeBytes = (long)payload.Length * sizeof(char);
+                entry.Node = this._usedEntries.AddFirst(entry);
+                this._sizeBytes += entry.SizeBytes;
+                // A payload larger than the whole cache evicts the others and then itself
+                while (this._sizeBytes > maxBytes)
+                {
+                    this.Remove(this._usedEntries.Last.Value);
+                }
+            }
+            entry.Payload.SetResult(payload);
+        }
+
+        private void Remove(Entry entry)
+        {
+            this._entries.Remove(entry.Key);
+            this._usedEntries.Remove(entry.Node);
+            this._sizeBytes -= entry.SizeBytes;
+        }
+
+        private sealed class Entry
+        {
+            public Entry(SqlInputCacheKey key, SqlInputCacheDependencies dependencies, long dependencyVersion)
+            {
+                this.Key = key;
+                this.Dependencies = dependencies;
+                this.DependencyVersion = dependencyVersion;
+            }
+
+            public SqlInputCacheKey Key { get; }
+
+            public SqlInputCacheDependencies Dependencies { get; }
+
+            public long DependencyVersion { get; }
+
+            /// <summary>
+            /// Set if one of the tables the payload depends on changed while it was being loaded
+            /// </summary>
+            public bool IsInvalidated { get; set; }
+
+            /// <summary>
+            /// Completed once the payload is loaded. The continuations run asynchronously so that the callers waiting for
+            /// the payload don't run on the thread of the caller which loaded it.
+            /// </summary>
+            public TaskCompletionSource<string> Payload { get; } = new TaskCompletionSource<string>(TaskCreationOptions.RunContinuationsAsynchronously);
+
+            /// <summary>
+            /// The node of the entry in the list of used entries, null while the payload is being loaded
+            /// </summary>
+            public LinkedListNode<Entry> Node { get; set; }
+
+            public long ExpiresAtMs { get; set; }
+
+            public long SizeBytes { get; set; }
+        }
+    }
+}
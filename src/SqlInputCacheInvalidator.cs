@@ -0,0 +1,348 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Concurrent;
+using System.Collections.Generic;
+using System.Linq;
+using System.Text;
+using System.Threading;
+using System.Threading.Tasks;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry;
+using Microsoft.Data.SqlClient;
+using Microsoft.Extensions.Configuration;
+using Microsoft.Extensions.Logging;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql
+{
+    /// <summary>
+    /// The tables the cached results of an input binding depend on, parsed from <see cref="SqlAttribute.CacheDependencies"/>
+    /// </summary>
+    internal sealed class SqlInputCacheDependencies
+    {
+        public SqlInputCacheDependencies(IReadOnlyList<SqlObject> tables)
+        {
+            this.Tables = tables ?? throw new ArgumentNullException(nameof(tables));
+            this.TableNames = new HashSet<string>(tables.Select(table => table.BracketQuotedFullName), StringComparer.OrdinalIgnoreCase);
+        }
+
+        public IReadOnlyList<SqlObject> Tables { get; }
+
+        /// <summary>
+        /// The bracket quoted full names of the tables
+        /// </summary>
+        public HashSet<string> TableNames { get; }
+    }
+
+    /// <summary>
+    /// Host-wide poller that removes the results cached by the input bindings from the <see cref="SqlInputCache"/> when
+    /// the tables they depend on change. The change tracking version of each database used by a binding with
+    /// dependencies is read every Sql_InputCacheInvalidationIntervalMs milliseconds on a single connection, and only if
+    /// it moved are the versions of the changes to the tables read, so the bindings of all the functions of the app
+    /// share a single cheap query per database no matter how often they're invoked. The tables must have change
+    /// tracking enabled, the same as for the SQL trigger.
+    /// </summary>
+    internal sealed class SqlInputCacheInvalidator
+    {
+        public const string ConfigKey_InputCacheInvalidationIntervalMs = "Sql_InputCacheInvalidationIntervalMs";
+
+        public const int DefaultIntervalMs = 1000;
+
+        private const string GetCurrentVersionCommandText = "SELECT CHANGE_TRACKING_CURRENT_VERSION();";
+
+        /// <summary>
+        /// The invalidator shared by all input bindings in the host.
+        /// </summary>
+        public static SqlInputCacheInvalidator Instance { get; } = new SqlInputCacheInvalidator(SqlInputCache.Instance);
+
+        /// <summary>
+        /// The dependencies of the bindings, by the value of <see cref="SqlAttribute.CacheDependencies"/>, so that the
+        /// table names aren't parsed again on each invocation
+        /// </summary>
+        private static readonly ConcurrentDictionary<string, SqlInputCacheDependencies> ParsedDependencies = new ConcurrentDictionary<string, SqlInputCacheDependencies>(StringComparer.Ordinal);
+
+        private readonly SqlInputCache _cache;
+        private readonly Dictionary<string, Poller> _pollers = new Dictionary<string, Poller>();
+
+        /// <summary>
+        /// Initializes a new instance of the <see cref="SqlInputCacheInvalidator"/> class.
+        /// </summary>
+        /// <param name="cache">The cache to remove the results from</param>
+        public SqlInputCacheInvalidator(SqlInputCache cache)
+        {
+            this._cache = cache ?? throw new ArgumentNullException(nameof(cache));
+        }
+
+        /// <summary>
+        /// Gets the tables the results of a binding depend on, or null if it doesn't have any.
+        /// </summary>
+        /// <exception cref="InvalidOperationException">Thrown if the names of the tables can't be parsed or there aren't any</exception>
+        public static SqlInputCacheDependencies GetDependencies(SqlAttribute attribute)
+        {
+            if (string.IsNullOrWhiteSpace(attribute.CacheDependencies))
+            {
+                return null;
+            }
+            return ParsedDependencies.GetOrAdd(attribute.CacheDependencies, ParseDependencies);
+        }
+
+        /// <summary>
+        /// Gets how often the change tracking versions are polled, from the Sql_InputCacheInvalidationIntervalMs app setting
+        /// </summary>
+        public static int GetIntervalMs(IConfiguration configuration)
+        {
+            int intervalMs = configuration.GetValue(ConfigKey_InputCacheInvalidationIntervalMs, DefaultIntervalMs);
+            if (intervalMs <= 0)
+            {
+                throw new InvalidOperationException($"Invalid value for configuration setting '{ConfigKey_InputCacheInvalidationIntervalMs}'. Value must be greater than 0.");
+            }
+            return intervalMs;
+        }
+
+        /// <summary>
+        /// Starts watching the tables for changes if they aren't already, and returns the change tracking version of the
+        /// database as of the last poll. Results loaded after this are removed from the cache if one of the tables
+        /// changes after this version.
+        /// </summary>
+        /// <param name="connectionString">The connection string of the database of the tables</param>
+        /// <param name="dependencies">The tables</param>
+        /// <param name="intervalMs">How often the versions are polled, if the database isn't already being polled</param>
+        /// <param name="logger">Facilitates logging of messages</param>
+        /// <returns>The change tracking version</returns>
+        /// <exception cref="InvalidOperationException">Thrown if change tracking isn't enabled for one of the tables</exception>
+        public Task<long> WatchAsync(string connectionString, SqlInputCacheDependencies dependencies, int intervalMs, ILogger logger)
+        {
+            Poller poller;
+            lock (this._pollers)
+            {
+                if (!this._pollers.TryGetValue(connectionString, out poller))
+                {
+                    poller = new Poller(this._cache, connectionString, TimeSpan.FromMilliseconds(intervalMs), logger);
+                    this._pollers.Add(connectionString, poller);
+                }
+            }
+            return poller.WatchAsync(dependencies);
+        }
+
+        /// <summary>
+        /// Builds the text of a single command that reads, for each table, the minimum valid change tracking version and
+        /// the version of the last change after @lastVersion (or null if there wasn't any).
+        /// </summary>
+        internal static string BuildGetChangeVersionsCommandText(IReadOnlyList<SqlObject> tables)
+        {
+            var commandText = new StringBuilder();
+            for (int i = 0; i < tables.Count; i++)
+            {
+                if (i > 0)
+                {
+                    commandText.AppendLine("UNION ALL");
+                }
+                commandText.AppendLine($"SELECT {i}, CHANGE_TRACKING_MIN_VALID_VERSION(OBJECT_ID(N{tables[i].QuotedFullName}, 'U')), (SELECT MAX(SYS_CHANGE_VERSION) FROM CHANGETABLE(CHANGES {tables[i].BracketQuotedFullName}, @lastVersion) AS c)");
+            }
+            return commandText.ToString();
+        }
+
+        private static SqlInputCacheDependencies ParseDependencies(string cacheDependencies)
+        {
+            var tables = new List<SqlObject>();
+            var tableNames = new HashSet<string>(StringComparer.OrdinalIgnoreCase);
+            foreach (string name in cacheDependencies.Split(SqlBindingUtilities.ParameterSeparator, StringSplitOptions.RemoveEmptyEntries))
+            {
+                if (string.IsNullOrWhiteSpace(name))
+                {
+                    continue;
+                }
+                var table = new SqlObject(name.Trim());
+                if (tableNames.Add(table.BracketQuotedFullName))
+                {
+                    tables.Add(table);
+                }
+            }
+            if (tables.Count == 0)
+            {
+                throw new InvalidOperationException($"Invalid value for {nameof(SqlAttribute.CacheDependencies)}. Value must be a comma separated list of table names.");
+            }
+            return new SqlInputCacheDependencies(tables);
+        }
+
+        /// <summary>
+        /// The tables watched in a database, along with the loop polling their versions.
+        /// </summary>
+        private sealed class Poller
+        {
+            private readonly SqlInputCache _cache;
+            private readonly string _connectionString;
+            private readonly TimeSpan _interval;
+            private readonly ILogger _logger;
+            private readonly List<SqlObject> _tables = new List<SqlObject>();
+            private readonly HashSet<string> _tableNames = new HashSet<string>(StringComparer.OrdinalIgnoreCase);
+            /// <summary>
+            /// Ensures the tables are checked and the loop started once
+            /// </summary>
+            private readonly SemaphoreSlim _watchLock = new SemaphoreSlim(1, 1);
+            private long _version;
+            private bool _started;
+
+            public Poller(SqlInputCache cache, string connectionString, TimeSpan interval, ILogger logger)
+            {
+                this._cache = cache;
+                this._connectionString = connectionString;
+                this._interval = interval;
+                this._logger = logger;
+            }
+
+            public async Task<long> WatchAsync(SqlInputCacheDependencies dependencies)
+            {
+                if (!this.IsWatching(dependencies))
+                {
+                    await this._watchLock.WaitAsync();
+                    try
+                    {
+                        SqlObject[] newTables = this.GetNewTables(dependencies);
+                        if (newTables.Length > 0)
+                        {
+                            using (var connection = new SqlConnection(this._connectionString))
+                            {
+                                await connection.OpenAsyncWithLogging(this._logger, CancellationToken.None);
+                                foreach (SqlObject table in newTables)
+                                {
+                                    await VerifyChangeTrackingEnabledAsync(connection, table);
+                                }
+                                if (!this._started)
+                                {
+                                    Interlocked.Exchange(ref this._version, await GetCurrentVersionAsync(connection, CancellationToken.None));
+                                }
+                            }
+                            lock (this._tables)
+                            {
+                                foreach (SqlObject table in newTables)
+                                {
+                                    this._tables.Add(table);
+                                    this._tableNames.Add(table.BracketQuotedFullName);
+                                }
+                            }
+                            if (!this._started)
+                            {
+                                this._started = true;
+                                _ = Task.Run(this.RunPollingLoopAsync);
+                            }
+                        }
+                    }
+                    finally
+                    {
+                        this._watchLock.Release();
+                    }
+                }
+                return Interlocked.Read(ref this._version);
+            }
+
+            private bool IsWatching(SqlInputCacheDependencies dependencies)
+            {
+                lock (this._tables)
+                {
+                    return this._tableNames.IsSupersetOf(dependencies.TableNames);
+                }
+            }
+
+            private SqlObject[] GetNewTables(SqlInputCacheDependencies dependencies)
+            {
+                lock (this._tables)
+                {
+                    return dependencies.Tables.Where(table => !this._tableNames.Contains(table.BracketQuotedFullName)).ToArray();
+                }
+            }
+
+            private SqlObject[] GetTables()
+            {
+                lock (this._tables)
+                {
+                    return this._tables.ToArray();
+                }
+            }
+
+            private async Task RunPollingLoopAsync()
+            {
+                this._logger.LogDebug("Starting input cache invalidation loop.");
+                while (true)
+                {
+                    await Task.Delay(this._interval);
+                    try
+                    {
+                        await this.PollAsync();
+                    }
+                    catch (Exception e)
+                    {
+                        // The changes can't be checked, so none of the results can be trusted to be up to date anymore.
+                        // The versions are polled again from the same version so no change is missed once it succeeds.
+                        int count = this._cache.Invalidate(this._connectionString, null, long.MaxValue);
+                        this._logger.LogWarning($"Removed {count} cached input binding result(s) after failing to poll the change tracking versions. Exception: {e.GetType()}. Exception message: {e.Message}");
+                    }
+                }
+            }
+
+            private async Task PollAsync()
+            {
+                SqlObject[] tables = this.GetTables();
+                long lastVersion = Interlocked.Read(ref this._version);
+                using (var connection = new SqlConnection(this._connectionString))
+                {
+                    await connection.OpenAsync();
+                    long currentVersion = await GetCurrentVersionAsync(connection, CancellationToken.None);
+                    if (currentVersion == lastVersion)
+                    {
+                        // Nothing changed in the database, so none of the tables changed
+                        return;
+                    }
+                    using (var command = new SqlCommand(BuildGetChangeVersionsCommandText(tables), connection))
+                    {
+                        command.Parameters.AddWithValue("@lastVersion", lastVersion);
+                        using (SqlDataReader reader = await command.ExecuteReaderAsync())
+                        {
+                            while (await reader.ReadAsync())
+                            {
+                                SqlObject table = tables[reader.GetInt32(0)];
+                                // Changes older than the minimum valid version were cleaned up, and there's no minimum
+                                // valid version if change tracking was disabled, so the table may have changed since
+                                // any version
+                                long changeVersion = reader.IsDBNull(1) || reader.GetInt64(1) > lastVersion ? currentVersion
+                                    : reader.IsDBNull(2) ? 0 : reader.GetInt64(2);
+                                if (changeVersion > lastVersion)
+                                {
+                                    int count = this._cache.Invalidate(this._connectionString, table.BracketQuotedFullName, changeVersion);
+                                    SqlBindingMetrics.RecordInputCacheInvalidation(table.FullName, count);
+                                    this._logger.LogDebug($"Removed {count} cached input binding result(s) depending on table {table.FullName} which changed at version {changeVersion}.");
+                                }
+                            }
+                        }
+                    }
+                    Interlocked.Exchange(ref this._version, currentVersion);
+                }
+            }
+
+            private static async Task<long> GetCurrentVersionAsync(SqlConnection connection, CancellationToken cancellationToken)
+            {
+                using (var command = new SqlCommand(GetCurrentVersionCommandText, connection))
+                {
+                    object currentVersion = await command.ExecuteScalarAsync(cancellationToken);
+                    if (currentVersion == null || currentVersion is DBNull)
+                    {
+                        throw new InvalidOperationException($"Could not find change tracking enabled for database: '{connection.Database}'.");
+                    }
+                    return (long)currentVersion;
+                }
+            }
+
+            private static async Task VerifyChangeTrackingEnabledAsync(SqlConnection connection, SqlObject table)
+            {
+                using (var command = new SqlCommand($"SELECT CHANGE_TRACKING_MIN_VALID_VERSION(OBJECT_ID(N{table.QuotedFullName}, 'U'));", connection))
+                {
+                    object minValidVersion = await command.ExecuteScalarAsync();
+                    if (minValidVersion == null || minValidVersion is DBNull)
+                    {
+                        throw new InvalidOperationException($"Could not find change tracking enabled for table: '{table.FullName}'.");
+                    }
+                }
+            }
+        }
+    }
+}
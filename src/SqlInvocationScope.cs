@@ -0,0 +1,307 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Diagnostics;
+using System.Linq;
+using System.Threading;
+using System.Threading.Tasks;
+using Microsoft.Data.SqlClient;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql
+{
+    /// <summary>
+    /// An output binding which takes part in a <see cref="SqlInvocationScope"/>.
+    /// </summary>
+    internal interface ISqlInvocationScopeBinding
+    {
+        /// <summary>
+        /// The table the binding writes to. A scope can only have one binding to each table.
+        /// </summary>
+        string Table { get; }
+
+        /// <summary>
+        /// Gets the upsert of the rows added to the binding which haven't been written yet.
+        /// </summary>
+        /// <returns>The number of rows, and the function preparing their upsert on the connection before the transaction
+        /// starts, which returns the function upserting them in the transaction, which returns what to do once it's
+        /// committed. The function is null if there are no rows to write.</returns>
+        Task<(int RowCount, Func<SqlConnection, Task<Func<SqlTransaction, Task<Func<Task>>>>> Upsert)> GetPendingUpsertAsync();
+
+        /// <summary>
+        /// Removes the rows returned by <see cref="GetPendingUpsertAsync"/> once they've been written.
+        /// </summary>
+        /// <param name="rowCount">The number of rows which were written</param>
+        Task RemoveWrittenRowsAsync(int rowCount);
+    }
+
+    /// <summary>
+    /// The output bindings of an invocation which write to the same database with the same
+    /// <see cref="SqlAttribute.InvocationScope"/>. All the output bindings of an invocation are created before the
+    /// function runs, so each binding joins the scope when it's created. Whenever one of the bindings flushes, the rows
+    /// added to all the bindings of the scope which haven't been written yet are upserted on a single connection in a
+    /// single transaction, in the order the bindings were created, so that they're either all written or none of them
+    /// are, and the flush only returns once they've been committed.
+    /// </summary>
+    internal sealed class SqlInvocationScope
+    {
+        /// <summary>
+        /// How long after it was created a scope which hasn't started flushing accepts new bindings, e.g. if the
+        /// function failed before its outputs were flushed.
+        /// </summary>
+        public const int MaxScopeAgeMs = 10 * 60 * 1000;
+
+        private readonly SqlInvocationScopes _scopes;
+        private readonly long _createdAtMs;
+        private readonly List<ISqlInvocationScopeBinding> _bindings = new List<ISqlInvocationScopeBinding>();
+        private readonly SemaphoreSlim _flushLock = new SemaphoreSlim(1, 1);
+
+        public SqlInvocationScope(SqlInvocationScopes scopes, (string ConnectionString, string Name) key, long createdAtMs)
+        {
+            this._scopes = scopes;
+            this.Key = key;
+            this._createdAtMs = createdAtMs;
+        }
+
+        public (string ConnectionString, string Name) Key { get; }
+
+        /// <summary>
+        /// Whether a binding of another invocation to a table of the scope joined with the same name, in which case
+        /// the bindings of the scope fail to flush.
+        /// </summary>
+        public bool IsSuperseded { get; set; }
+
+        /// <summary>
+        /// Returns whether the scope was created more than <see cref="MaxScopeAgeMs"/> ago
+        /// </summary>
+        public bool IsExpired(long nowMs)
+        {
+            return nowMs - this._createdAtMs >= MaxScopeAgeMs;
+        }
+
+        /// <summary>
+        /// Adds a binding to the scope, unless it already has a binding to the same table
+        /// </summary>
+        /// <returns>True if the binding was added</returns>
+        public bool TryJoin(ISqlInvocationScopeBinding binding)
+        {
+            lock (this._bindings)
+            {
+                if (this._bindings.Any(b => string.Equals(b.Table, binding.Table, StringComparison.OrdinalIgnoreCase)))
+                {
+                    return false;
+                }
+                this._bindings.Add(binding);
+                return true;
+            }
+        }
+
+        /// <summary>
+        /// Upserts the rows of all the bindings of the scope which haven't been written yet in a single transaction.
+        /// </summary>
+        /// <exception cref="InvalidOperationException">Thrown if the scope was superseded by another invocation</exception>
+        public async Task FlushAsync()
+        {
+            // The bindings of the invocation were all created before it started flushing, so the bindings created after
+            // that with the same name belong to another invocation and start a new scope
+            this._scopes.BeginFlush(this);
+            await this._flushLock.WaitAsync();
+            try
+            {
+                ISqlInvocationScopeBinding[] bindings;
+                lock (this._bindings)
+                {
+                    bindings = this._bindings.ToArray();
+                }
+                var pending = new List<(ISqlInvocationScopeBinding Binding, int RowCount, Func<SqlConnection, Task<Func<SqlTransaction, Task<Func<Task>>>>> Upsert)>();
+                foreach (ISqlInvocationScopeBinding binding in bindings)
+                {
+                    (int rowCount, Func<SqlConnection, Task<Func<SqlTransaction, Task<Func<Task>>>>> upsert) = await binding.GetPendingUpsertAsync();
+                    if (rowCount > 0)
+                    {
+                        pending.Add((binding, rowCount, upsert));
+                    }
+                }
+                if (pending.Count == 0)
+                {
+                    return;
+                }
+                await this._scopes.RunInTransactionAsync(this.Key.ConnectionString, async connection =>
+                {
+                    var prepared = new List<Func<SqlTransaction, Task<Func<Task>>>>();
+                    foreach ((ISqlInvocationScopeBinding Binding, int RowCount, Func<SqlConnection, Task<Func<SqlTransaction, Task<Func<Task>>>>> Upsert) p in pending)
+                    {
+                        prepared.Add(await p.Upsert(connection));
+                    }
+                    return async transaction =>
+                    {
+                        var afterCommit = new List<Func<Task>>();
+                        foreach (Func<SqlTransaction, Task<Func<Task>>> upsert in prepared)
+                        {
+                            afterCommit.Add(await upsert(transaction));
+                        }
+                        return afterCommit;
+                    };
+                });
+                // The rows are only removed once committed, so that a failed flush can be retried
+                foreach ((ISqlInvocationScopeBinding Binding, int RowCount, Func<SqlConnection, Task<Func<SqlTransaction, Task<Func<Task>>>>> Upsert) p in pending)
+                {
+                    await p.Binding.RemoveWrittenRowsAsync(p.RowCount);
+                }
+            }
+            finally
+            {
+                this._flushLock.Release();
+            }
+        }
+    }
+
+    /// <summary>
+    /// The <see cref="SqlInvocationScope"/>s which haven't started flushing yet, by connection string and
+    /// <see cref="SqlAttribute.InvocationScope"/>.
+    /// </summary>
+    internal sealed class SqlInvocationScopes
+    {
+        /// <summary>
+        /// The scopes of all the output bindings in the host.
+        /// </summary>
+        public static SqlInvocationScopes Instance { get; } = new SqlInvocationScopes();
+
+        private readonly Dictionary<(string, string), SqlInvocationScope> _scopes = new Dictionary<(string, string), SqlInvocationScope>();
+        private readonly Func<long> _getElapsedMs;
+        private readonly Func<string, Func<SqlConnection, Task<Func<SqlTransaction, Task<List<Func<Task>>>>>>, Task> _runInTransaction;
+        private long _lastExpiryCheckMs;
+
+        public SqlInvocationScopes() : this(Stopwatch.StartNew())
+        {
+        }
+
+        private SqlInvocationScopes(Stopwatch stopwatch) : this(() => stopwatch.ElapsedMilliseconds, RunInNewTransactionAsync)
+        {
+        }
+
+        /// <summary>
+        /// Initializes a new instance of the <see cref="SqlInvocationScopes"/> class.
+        /// </summary>
+        /// <param name="getElapsedMs">Gets the current time in milliseconds, from any starting point</param>
+        /// <param name="runInTransaction">Opens a connection with the connection string, prepares the upserts on it, runs
+        /// them in a transaction, commits it and then runs what the upserts returned</param>
+        public SqlInvocationScopes(Func<long> getElapsedMs, Func<string, Func<SqlConnection, Task<Func<SqlTransaction, Task<List<Func<Task>>>>>>, Task> runInTransaction)
+        {
+            this._getElapsedMs = getElapsedMs ?? throw new ArgumentNullException(nameof(getElapsedMs));
+            this._runInTransaction = runInTransaction ?? throw new ArgumentNullException(nameof(runInTransaction));
+        }
+
+        /// <summary>
+        /// Adds an output binding to its scope, creating the scope if this is its first binding. If the scope already has
+        /// a binding to the same table, the binding belongs to another invocation with the same name, such as a retry of
+        /// an invocation which failed before flushing, so it starts a new scope which supersedes the existing one.
+        /// </summary>
+        /// <param name="connectionString">The connection string of the binding</param>
+        /// <param name="name">The resolved value of <see cref="SqlAttribute.InvocationScope"/></param>
+        /// <param name="binding">The binding</param>
+        /// <returns>The scope</returns>
+        public SqlInvocationScope Join(string connectionString, string name, ISqlInvocationScopeBinding binding)
+        {
+            lock (this._scopes)
+            {
+                long nowMs = this._getElapsedMs();
+                if (nowMs - this._lastExpiryCheckMs >= SqlInvocationScope.MaxScopeAgeMs)
+                {
+                    this.RemoveExpiredScopes(nowMs);
+                }
+                if (this._scopes.TryGetValue((connectionString, name), out SqlInvocationScope scope) && scope.TryJoin(binding))
+                {
+                    return scope;
+                }
+                if (scope != null)
+                {
+                    scope.IsSuperseded = true;
+                }
+                scope = new SqlInvocationScope(this, (connectionString, name), nowMs);
+                this._scopes[(connectionString, name)] = scope;
+                scope.TryJoin(binding);
+                return scope;
+            }
+        }
+
+        /// <summary>
+        /// Removes a scope once one of its bindings starts flushing, so that the next bindings with the same name start a
+        /// new one
+        /// </summary>
+        /// <exception cref="InvalidOperationException">Thrown if the scope was superseded by another invocation</exception>
+        public void BeginFlush(SqlInvocationScope scope)
+        {
+            lock (this._scopes)
+            {
+                if (scope.IsSuperseded)
+                {
+                    throw new InvalidOperationException($"The rows of invocation scope '{scope.Key.Name}' weren't written since another invocation used the same scope while it was running. The invocation scope must be unique to each invocation.");
+                }
+                if (this._scopes.TryGetValue(scope.Key, out SqlInvocationScope current) && current == scope)
+                {
+                    this._scopes.Remove(scope.Key);
+                }
+            }
+        }
+
+        /// <summary>
+        /// Opens a connection with the connection string, prepares the upserts of a scope on it, runs them in a single
+        /// transaction, commits it and then runs what the upserts returned
+        /// </summary>
+        public Task RunInTransactionAsync(string connectionString, Func<SqlConnection, Task<Func<SqlTransaction, Task<List<Func<Task>>>>>> prepare)
+        {
+            return this._runInTransaction(connectionString, prepare);
+        }
+
+        /// <summary>
+        /// Removes the scopes which never started flushing, e.g. because the function failed. Their bindings hold their
+        /// own rows, so nothing is dropped and a late flush of one of them still writes them.
+        /// </summary>
+        private void RemoveExpiredScopes(long nowMs)
+        {
+            this._lastExpiryCheckMs = nowMs;
+            foreach (KeyValuePair<(string, string), SqlInvocationScope> scope in this._scopes.Where(s => s.Value.IsExpired(nowMs)).ToArray())
+            {
+                this._scopes.Remove(scope.Key);
+            }
+        }
+
+        private static async Task RunInNewTransactionAsync(string connectionString, Func<SqlConnection, Task<Func<SqlTransaction, Task<List<Func<Task>>>>>> prepare)
+        {
+            List<Func<Task>> afterCommit;
+            using (var connection = new SqlConnection(connectionString))
+            {
+                await connection.OpenAsync(CancellationToken.None);
+                // The upserts read the information of their tables before the transaction starts, since a command
+                // can't run on the connection outside of its transaction once it's started
+                Func<SqlTransaction, Task<List<Func<Task>>>> upsert = await prepare(connection);
+                using (SqlTransaction transaction = connection.BeginTransaction())
+                {
+                    try
+                    {
+                        afterCommit = await upsert(transaction);
+                        transaction.Commit();
+                    }
+                    catch (Exception ex)
+                    {
+                        try
+                        {
+                            transaction.Rollback();
+                        }
+                        catch (Exception ex2)
+                        {
+                            throw new AggregateException("Encountered exception during upsert and rollback.", new List<Exception> { ex, ex2 });
+                        }
+                        throw;
+                    }
+                }
+                foreach (Func<Task> action in afterCommit.Where(a => a != null))
+                {
+                    await action();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Data.Common;
+using System.Globalization;
+using System.IO;
+using System.Text;
+using System.Threading;
+using System.Threading.Tasks;
+using Newtonsoft.Json;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql
+{
+    /// <summary>
+    /// Writes the rows read by the input binding to the JSON payload as they are read, instead of buffering them in a
+    /// DataTable first and serializing the table afterwards.
+    /// </summary>
+    internal static class SqlPayloadWriter
+    {
+        public const string ColumnsPropertyName = "columns";
+        public const string RowsPropertyName = "rows";
+        public const string ChangesPropertyName = "changes";
+
+        private const string DefaultColumnName = "Column";
+
+        /// <summary>
+        /// Gets the maximum number of rows of the result set passed to the function, see <see cref="SqlAttribute.PageSize"/>.
+        /// </summary>
+        /// <param name="attribute">The attribute of the input binding</param>
+        /// <returns>The page size, or 0 if the rows aren't limited</returns>
+        public static int GetPageSize(SqlAttribute attribute)
+        {
+            if (attribute.PageSize < 0)
+            {
+                throw new InvalidOperationException($"Invalid value for {nameof(SqlAttribute.PageSize)}. Value must not be less than 0.");
+            }
+            return attribute.PageSize;
+        }
+
+        /// <summary>
+        /// Reads the rows of the current result set of the reader and writes them to a JSON payload, the same as
+        /// serializing a DataTable filled from the reader.
+        /// </summary>
+        /// <param name="reader">The reader of the results of the query</param>
+        /// <param name="payloadFormat">The layout of the rows</param>
+        /// <param name="settings">The settings used to serialize the values</param>
+        /// <param name="pageSize">The maximum number of rows to write, or 0 to write all of them</param>
+        /// <param name="cancellationToken">Cancels reading the rows</param>
+        /// <returns>The JSON payload, the number of rows written and whether the result set has more rows than were written</returns>
+        public static async Task<(string json, int rowCount, bool hasMoreRows)> WriteAsync(DbDataReader reader, SqlPayloadFormat payloadFormat, JsonSerializerSettings settings, int pageSize, CancellationToken cancellationToken)
+        {
+            string[] columns = GetColumnNames(reader);
+            bool isColumnar = payloadFormat == SqlPayloadFormat.Columnar;
+            var serializer = JsonSerializer.Create(settings);
+            var sb = new StringBuilder(256);
+            int rowCount = 0;
+            bool hasMoreRows = false;
+            using (var sw = new StringWriter(sb, CultureInfo.InvariantCulture))
+            using (var writer = new JsonTextWriter(sw))
+            {
+                if (isColumnar)
+                {
+                    writer.WriteStartObject();
+                    writer.WritePropertyName(ColumnsPropertyName);
+                    writer.WriteStartArray();
+                    foreach (string column in columns)
+                    {
+                        writer.WriteValue(column);
+                    }
+                    writer.WriteEndArray();
+                    writer.WritePropertyName(RowsPropertyName);
+                }
+                writer.WriteStartArray();
+                while (await reader.ReadAsync(cancellationToken))
+                {
+                    if (pageSize > 0 && rowCount == pageSize)
+                    {
+                        // The row after the page is only read to tell whether the page is the last one, it isn't written
+                        hasMoreRows = true;
+                        break;
+                    }
+                    rowCount++;
+                    if (isColumnar)
+                    {
+                        writer.WriteStartArray();
+                    }
+                    else
+                    {
+                        writer.WriteStartObject();
+                    }
+                    for (int i = 0; i < columns.Length; i++)
+                    {
+                        if (!isColumnar)
+                        {
+                            writer.WritePropertyName(columns[i]);
+                        }
+                        object value = reader.GetValue(i);
+                        if (value == DBNull.Value)
+                        {
+                            writer.WriteNull();
+                        }
+                        else
+                        {
+                            serializer.Serialize(writer, value);
+                        }
+                    }
+                    if (isColumnar)
+                    {
+                        writer.WriteEndArray();
+                    }
+                    else
+                    {
+                        writer.WriteEndObject();
+                    }
+                }
+                writer.WriteEndArray();
+                if (isColumnar)
+                {
+                    writer.WriteEndObject();
+                }
+            }
+            return (sb.ToString(), rowCount, hasMoreRows);
+        }
+
+        /// <summary>
+        /// Gets the names of the columns of the reader, named the same way as the columns of a DataTable filled from the
+        /// reader: columns without a name are named Column1, Column2, etc. and a suffix is added to the columns whose
+        /// name (ignoring case) was already used by a previous column.
+        /// </summary>
+        /// <param name="reader">The reader of the results of the query</param>
+        /// <returns>The unique names of the columns</returns>
+        public static string[] GetColumnNames(DbDataReader reader)
+        {
+            var names = new string[reader.FieldCount];
+            // The index of the first column with each name
+            var indexes = new Dictionary<string, int>(StringComparer.OrdinalIgnoreCase);
+            int start = names.Length;
+            for (int i = names.Length - 1; i >= 0; i--)
+            {
+                names[i] = reader.GetName(i) ?? string.Empty;
+                if (names[i].Length == 0)
+                {
+                    start = i;
+                }
+                else
+                {
+                    if (indexes.TryGetValue(names[i], out int index))
+                    {
+                        start = Math.Min(start, index);
+                    }
+                    indexes[names[i]] = i;
+                }
+            }
+            int defaultNameSuffix = 1;
+            for (int i = start; i < names.Length; i++)
+            {
+                if (names[i].Length == 0)
+                {
+                    names[i] = GenerateUniqueName(indexes, DefaultColumnName, i, ref defaultNameSuffix);
+                }
+                else if (indexes[names[i]] != i)
+                {
+                    int suffix = 1;
+                    names[i] = GenerateUniqueName(indexes, names[i], i, ref suffix);
+                }
+            }
+            return names;
+        }
+
+        private static string GenerateUniqueName(Dictionary<string, int> indexes, string name, int index, ref int suffix)
+        {
+            for (; ; suffix++)
+            {
+                string uniqueName = name + suffix.ToString(CultureInfo.InvariantCulture);
+                if (!indexes.ContainsKey(uniqueName))
+                {
+                    indexes.Add(uniqueName, index);
+                    return uniqueName;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Concurrent;
+using System.Diagnostics;
+using System.Threading;
+using System.Threading.Tasks;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry;
+using Microsoft.Data.SqlClient;
+using Microsoft.Extensions.Configuration;
+using Microsoft.Extensions.Logging;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql
+{
+    /// <summary>
+    /// Routes the queries of the input bindings which opt in with <see cref="SqlAttribute.ReadOnly"/> or
+    /// <see cref="SqlAttribute.ReadReplicaConnectionStringSetting"/> to a readable secondary replica, so that read-heavy
+    /// functions don't compete with the output bindings and triggers for the primary. If the binding also sets
+    /// <see cref="SqlAttribute.MaxReplicaLagMs"/>, the lag of the replica is checked (at most once every
+    /// <see cref="LagCheckIntervalMs"/> per replica) and the query goes to the primary instead while the replica is
+    /// further behind than that, without connecting to the replica at all until its lag is read again.
+    /// </summary>
+    internal sealed class SqlReadReplicaRouter
+    {
+        /// <summary>
+        /// How long the lag read from a replica is used for before it's read again
+        /// </summary>
+        public const int LagCheckIntervalMs = 1000;
+
+        /// <summary>
+        /// Reads the size of the log of the primary which hasn't been sent to the local replica of the database yet (in
+        /// KB) and the rate at which it's being sent (in KB/s), and the size of the log which the replica received but
+        /// hasn't redone yet (in KB) and the rate at which it's being redone (in KB/s). There's no row if the database
+        /// isn't in an availability group, in which case it's not lagging behind anything.
+        /// </summary>
+        private const string GetLogQueuesCommandText = "SELECT log_send_queue_size, log_send_rate, redo_queue_size, redo_rate FROM sys.dm_database_replica_states WHERE is_local = 1 AND database_id = DB_ID();";
+
+        /// <summary>
+        /// The router shared by all input bindings in the host.
+        /// </summary>
+        public static SqlReadReplicaRouter Instance { get; } = new SqlReadReplicaRouter();
+
+        private readonly Func<long> _getElapsedMs;
+        /// <summary>
+        /// The last lag read from each replica, by connection string
+        /// </summary>
+        private readonly ConcurrentDictionary<string, LagSample> _lags = new ConcurrentDictionary<string, LagSample>(StringComparer.Ordinal);
+
+        public SqlReadReplicaRouter() : this(Stopwatch.StartNew())
+        {
+        }
+
+        private SqlReadReplicaRouter(Stopwatch stopwatch) : this(() => stopwatch.ElapsedMilliseconds)
+        {
+        }
+
+        /// <summary>
+        /// Initializes a new instance of the <see cref="SqlReadReplicaRouter"/> class.
+        /// </summary>
+        /// <param name="getElapsedMs">Returns the milliseconds elapsed since an arbitrary start, used to expire the lags read</param>
+        public SqlReadReplicaRouter(Func<long> getElapsedMs)
+        {
+            this._getElapsedMs = getElapsedMs ?? throw new ArgumentNullException(nameof(getElapsedMs));
+        }
+
+        /// <summary>
+        /// Returns whether the binding reads from a replica. Bindings whose results are cached until the tables they
+        /// depend on change always read from the primary, since the changes are tracked on the primary and a result
+        /// read from a replica which hadn't caught up with them would be cached until the next change.
+        /// </summary>
+        public static bool IsRouted(SqlAttribute attribute)
+        {
+            return (attribute.ReadOnly || !string.IsNullOrEmpty(attribute.ReadReplicaConnectionStringSetting))
+                && string.IsNullOrWhiteSpace(attribute.CacheDependencies);
+        }
+
+        /// <summary>
+        /// Gets the maximum lag of the replica for the binding, or 0 if it isn't checked.
+        /// </summary>
+        /// <exception cref="InvalidOperationException">Thrown if the value is negative</exception>
+        public static int GetMaxReplicaLagMs(SqlAttribute attribute)
+        {
+            if (attribute.MaxReplicaLagMs < 0)
+            {
+                throw new InvalidOperationException($"Invalid value for {nameof(SqlAttribute.MaxReplicaLagMs)}. Value must be greater than or equal to 0.");
+            }
+            return attribute.MaxReplicaLagMs;
+        }
+
+        /// <summary>
+        /// Gets the connection string the binding reads from: the read replica setting if there is one, otherwise the
+        /// connection string setting, with ApplicationIntent=ReadOnly if <see cref="SqlAttribute.ReadOnly"/> is set.
+        /// </summary>
+        /// <exception cref="ArgumentException">Thrown if the app setting is missing or empty</exception>
+        public static string GetReadConnectionString(SqlAttribute attribute, IConfiguration configuration)
+        {
+            if (!IsRouted(attribute))
+            {
+                return SqlBindingUtilities.GetConnectionString(attribute.ConnectionStringSetting, configuration);
+            }
+            string connectionString = SqlBindingUtilities.GetConnectionString(
+                string.IsNullOrEmpty(attribute.ReadReplicaConnectionStringSetting) ? attribute.ConnectionStringSetting : attribute.ReadReplicaConnectionStringSetting,
+                configuration);
+            if (!attribute.ReadOnly)
+            {
+                return connectionString;
+            }
+            return new SqlConnectionStringBuilder(connectionString) { ApplicationIntent = ApplicationIntent.ReadOnly }.ConnectionString;
+        }
+
+        /// <summary>
+        /// Builds an unopened connection to the database the binding reads from. The lag of the replica isn't
+        /// checked, since the connection is opened later.
+        /// </summary>
+        public static SqlConnection BuildReadConnection(SqlAttribute attribute, IConfiguration configuration)
+        {
+            return new SqlConnection(GetReadConnectionString(attribute, configuration));
+        }
+
+        /// <summary>
+        /// Estimates how far behind the primary a replica is from the log it hasn't received yet and the log it hasn't
+        /// redone yet. The log which wasn't sent yet has to be sent and then redone too, and the log is redone as it's
+        /// received, so the replica catches up once the whole send queue was sent and both queues were redone.
+        /// </summary>
+        /// <param name="logSendQueueSizeKb">The log of the primary not sent to the replica yet, or null if unknown</param>
+        /// <param name="logSendRateKbPerSecond">The rate at which the log is sent, or null if unknown</param>
+        /// <param name="redoQueueSizeKb">The log received by the replica but not redone yet, or null if unknown</param>
+        /// <param name="redoRateKbPerSecond">The rate at which the log is redone, or null if unknown</param>
+        /// <returns>The lag in milliseconds, or <see cref="long.MaxValue"/> if there's log to send or redo but it isn't being sent or redone</returns>
+        internal static long GetReplicaLagMs(long? logSendQueueSizeKb, long? logSendRateKbPerSecond, long? redoQueueSizeKb, long? redoRateKbPerSecond)
+        {
+            long sendQueueSizeKb = Math.Max(logSendQueueSizeKb ?? 0, 0);
+            long unredoneSizeKb = sendQueueSizeKb + Math.Max(redoQueueSizeKb ?? 0, 0);
+            long sendMs = sendQueueSizeKb == 0 ? 0 : GetDrainMs(sendQueueSizeKb, logSendRateKbPerSecond);
+            long redoMs = unredoneSizeKb == 0 ? 0 : GetDrainMs(unredoneSizeKb, redoRateKbPerSecond);
+            return Math.Max(sendMs, redoMs);
+        }
+
+        /// <summary>
+        /// Returns whether the lag last read from a replica is still current and more than the maximum lag, in which case
+        /// the replica isn't connected to.
+        /// </summary>
+        /// <param name="connectionString">The connection string of the replica</param>
+        /// <param name="maxReplicaLagMs">The maximum lag allowed by the binding</param>
+        /// <param name="lagMs">The lag last read from the replica</param>
+        internal bool IsKnownToLag(string connectionString, int maxReplicaLagMs, out long lagMs)
+        {
+            if (this._lags.TryGetValue(connectionString, out LagSample sample) && this._getElapsedMs() - sample.ReadAtMs < LagCheckIntervalMs)
+            {
+                lagMs = sample.LagMs;
+                return lagMs > maxReplicaLagMs;
+            }
+            lagMs = 0;
+            return false;
+        }
+
+        /// <summary>
+        /// Stores the lag read from a replica, which is used until it's more than <see cref="LagCheckIntervalMs"/> old
+        /// </summary>
+        internal void SetLag(string connectionString, long lagMs)
+        {
+            this._lags[connectionString] = new LagSample(this._getElapsedMs(), lagMs);
+        }
+
+        /// <summary>
+        /// Opens a connection to the database the binding reads from. If the replica is further behind than
+        /// <see cref="SqlAttribute.MaxReplicaLagMs"/>, or its lag can't be read, a connection to the primary is
+        /// opened instead.
+        /// </summary>
+        /// <param name="attribute">The binding</param>
+        /// <param name="configuration">Used to read the connection string settings</param>
+        /// <param name="logger">Facilitates logging of messages</param>
+        /// <returns>The opened connection</returns>
+        public async Task<SqlConnection> OpenReadConnectionAsync(SqlAttribute attribute, IConfiguration configuration, ILogger logger)
+        {
+            int maxReplicaLagMs = GetMaxReplicaLagMs(attribute);
+            string connectionString = GetReadConnectionString(attribute, configuration);
+            bool checkLag = IsRouted(attribute) && maxReplicaLagMs > 0;
+            long lagMs = 0;
+            // While the replica is known to be too far behind, the primary is used without connecting to the replica
+            if (!checkLag || !this.IsKnownToLag(connectionString, maxReplicaLagMs, out lagMs))
+            {
+                var readConnection = new SqlConnection(connectionString);
+                try
+                {
+                    await readConnection.OpenAsyncWithSqlErrorHandling(logger, CancellationToken.None);
+                    if (!checkLag)
+                    {
+                        return readConnection;
+                    }
+                    lagMs = await this.GetLagMsAsync(readConnection, connectionString, logger);
+                    if (lagMs <= maxReplicaLagMs)
+                    {
+                        return readConnection;
+                    }
+                }
+                catch
+                {
+                    readConnection.Dispose();
+                    throw;
+                }
+                readConnection.Dispose();
+            }
+            SqlBindingMetrics.RecordReplicaFallback();
+            SqlConnection connection = SqlBindingUtilities.BuildConnection(attribute.ConnectionStringSetting, configuration);
+            try
+            {
+                await connection.OpenAsyncWithSqlErrorHandling(logger, CancellationToken.None);
+            }
+            catch
+            {
+                connection.Dispose();
+                throw;
+            }
+            logger.LogWarning($"Reading from the primary instead of the replica of database {connection.Database} which is {(lagMs == long.MaxValue ? "not catching up with the primary" : $"{lagMs} ms behind")}, more than the {maxReplicaLagMs} ms allowed by the binding.");
+            return connection;
+        }
+
+        /// <summary>
+        /// Gets the lag of the replica of the connection, reading it again if it was last read more than
+        /// <see cref="LagCheckIntervalMs"/> ago. The lag is unknown (<see cref="long.MaxValue"/>) if it can't be read,
+        /// e.g. because the login doesn't have the VIEW DATABASE STATE permission.
+        /// </summary>
+        private async Task<long> GetLagMsAsync(SqlConnection connection, string connectionString, ILogger logger)
+        {
+            if (this._lags.TryGetValue(connectionString, out LagSample sample) && this._getElapsedMs() - sample.ReadAtMs < LagCheckIntervalMs)
+            {
+                return sample.LagMs;
+            }
+            long lagMs;
+            try
+            {
+                using (var command = new SqlCommand(GetLogQueuesCommandText, connection))
+                using (SqlDataReader reader = await command.ExecuteReaderAsync())
+                {
+                    lagMs = await reader.ReadAsync()
+                        ? GetReplicaLagMs(GetNullableInt64(reader, 0), GetNullableInt64(reader, 1), GetNullableInt64(reader, 2), GetNullableInt64(reader, 3))
+                        : 0;
+                }
+            }
+            catch (SqlException e)
+            {
+                logger.LogWarning($"Failed to read the lag of the replica of database {connection.Database}. Exception: {e.GetType()}. Exception message: {e.Message}");
+                lagMs = long.MaxValue;
+            }
+            this.SetLag(connectionString, lagMs);
+            return lagMs;
+        }
+
+        /// <summary>
+        /// Returns how long it takes to process a queue of log at a rate, or <see cref="long.MaxValue"/> if it isn't
+        /// being processed.
+        /// </summary>
+        private static long GetDrainMs(long queueSizeKb, long? rateKbPerSecond)
+        {
+            return rateKbPerSecond == null || rateKbPerSecond <= 0 ? long.MaxValue : (long)Math.Ceiling(queueSizeKb * 1000d / rateKbPerSecond.Value);
+        }
+
+        private static long? GetNullableInt64(SqlDataReader reader, int ordinal)
+        {
+            return reader.IsDBNull(ordinal) ? (long?)null : reader.GetInt64(ordinal);
+        }
+
+        private readonly struct LagSample
+        {
+            public LagSample(long readAtMs, long lagMs)
+            {
+                this.ReadAtMs = readAtMs;
+                this.LagMs = lagMs;
+            }
+
+            public long ReadAtMs { get; }
+
+            public long LagMs { get; }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Diagnostics;
+using System.Linq;
+using System.Threading.Tasks;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql
+{
+    /// <summary>
+    /// Shares a single execution of a command between the input bindings of an invocation reading its different result
+    /// sets (see <see cref="SqlAttribute.ResultSetIndex"/>), so that a function binding several result sets of a stored
+    /// procedure or batch to several parameters only opens one connection and runs the command once. Sharing is opt-in
+    /// and limited to the bindings with the same <see cref="SqlAttribute.InvocationScope"/>, which is unique to each
+    /// invocation: the first binding of a scope to need the command reads all of its result sets in a single pass over the
+    /// results, and the other bindings of the scope then take their result set from that execution, each of them once.
+    /// The payloads of an execution are dropped once all of them have been taken, and are held for at most
+    /// <see cref="MaxBatchAgeMs"/> otherwise.
+    /// </summary>
+    internal sealed class SqlSharedResultSets
+    {
+        /// <summary>
+        /// How long the payloads of an execution are held for the other bindings of the scope to take
+        /// </summary>
+        public const int MaxBatchAgeMs = 5000;
+
+        /// <summary>
+        /// The instance shared by all input bindings in the host.
+        /// </summary>
+        public static SqlSharedResultSets Instance { get; } = new SqlSharedResultSets();
+
+        /// <summary>
+        /// The latest execution of each command by invocation scope, command and parameter values
+        /// </summary>
+        private readonly Dictionary<(string, SqlInputCacheKey), Batch> _batches = new Dictionary<(string, SqlInputCacheKey), Batch>();
+        private readonly Func<long> _getElapsedMs;
+        private long _lastExpiryCheckMs;
+
+        public SqlSharedResultSets() : this(Stopwatch.StartNew())
+        {
+        }
+
+        private SqlSharedResultSets(Stopwatch stopwatch) : this(() => stopwatch.ElapsedMilliseconds)
+        {
+        }
+
+        /// <summary>
+        /// Initializes a new instance of the <see cref="SqlSharedResultSets"/> class.
+        /// </summary>
+        /// <param name="getElapsedMs">Gets the current time in milliseconds, from any starting point</param>
+        public SqlSharedResultSets(Func<long> getElapsedMs)
+        {
+            this._getElapsedMs = getElapsedMs ?? throw new ArgumentNullException(nameof(getElapsedMs));
+        }
+
+        /// <summary>
+        /// The number of executions whose payloads are currently held
+        /// </summary>
+        internal int BatchCount
+        {
+            get
+            {
+                lock (this._batches)
+                {
+                    return this._batches.Count;
+                }
+            }
+        }
+
+        /// <summary>
+        /// Gets the index of the result set read by a binding
+        /// </summary>
+        /// <exception cref="InvalidOperationException">Thrown if the index is negative</exception>
+        public static int GetResultSetIndex(SqlAttribute attribute)
+        {
+            if (attribute.ResultSetIndex < 0)
+            {
+                throw new InvalidOperationException($"Invalid value for {nameof(SqlAttribute.ResultSetIndex)}. Value must not be less than 0.");
+            }
+            return attribute.ResultSetIndex;
+        }
+
+        /// <summary>
+        /// Gets the payload of a result set of the command, either from the execution of the command by another binding of
+        /// the invocation scope or by executing it.
+        /// </summary>
+        /// <param name="invocationScope">The resolved value of <see cref="SqlAttribute.InvocationScope"/></param>
+        /// <param name="key">The command and its parameter values, with a <see cref="SqlInputCacheKey.ResultSetIndex"/> of 0</param>
+        /// <param name="resultSetIndex">The index of the result set</param>
+        /// <param name="load">Executes the command and returns the payloads of all the result sets which it returned</param>
+        /// <returns>The payload</returns>
+        /// <exception cref="InvalidOperationException">Thrown if the command didn't return a result set at the index</exception>
+        public async Task<string> GetAsync(string invocationScope, SqlInputCacheKey key, int resultSetIndex, Func<Task<IReadOnlyDictionary<int, string>>> load)
+        {
+            if (string.IsNullOrEmpty(invocationScope))
+            {
+                throw new ArgumentNullException(nameof(invocationScope));
+            }
+            if (load == null)
+            {
+                throw new ArgumentNullException(nameof(load));
+            }
+            (string, SqlInputCacheKey) batchKey = (invocationScope, key);
+            Batch batch;
+            bool isNew = false;
+            lock (this._batches)
+            {
+                long nowMs = this._getElapsedMs();
+                if (nowMs - this._lastExpiryCheckMs >= MaxBatchAgeMs)
+                {
+                    this.RemoveExpiredBatches(nowMs);
+                }
+                // A binding whose result set was already taken from the execution belongs to another invocation with the
+                // same scope, such as a retry of a failed invocation, so it runs the command again for that invocation
+                if (!this._batches.TryGetValue(batchKey, out batch) || nowMs - batch.StartedAtMs >= MaxBatchAgeMs || batch.Taken.Contains(resultSetIndex))
+                {
+                    batch = new Batch(nowMs);
+                    this._batches[batchKey] = batch;
+                    isNew = true;
+                }
+                batch.Taken.Add(resultSetIndex);
+            }
+            if (isNew)
+            {
+                await this.LoadAsync(batchKey, batch, load);
+            }
+            IReadOnlyDictionary<int, string> payloads = await batch.Payloads.Task;
+            lock (this._batches)
+            {
+                // Nothing is left for the other bindings of the scope to take once every result set has been taken
+                if (payloads.Keys.All(batch.Taken.Contains) && this._batches.TryGetValue(batchKey, out Batch current) && current == batch)
+                {
+                    this._batches.Remove(batchKey);
+                }
+            }
+            if (!payloads.TryGetValue(resultSetIndex, out string payload))
+            {
+                throw new InvalidOperationException($"The command didn't return a result set at index {resultSetIndex}.");
+            }
+            return payload;
+        }
+
+        private void RemoveExpiredBatches(long nowMs)
+        {
+            this._lastExpiryCheckMs = nowMs;
+            foreach (KeyValuePair<(string, SqlInputCacheKey), Batch> batch in this._batches.Where(b => nowMs - b.Value.StartedAtMs >= MaxBatchAgeMs).ToArray())
+            {
+                this._batches.Remove(batch.Key);
+            }
+        }
+
+        private async Task LoadAsync((string, SqlInputCacheKey) batchKey, Batch batch, Func<Task<IReadOnlyDictionary<int, string>>> load)
+        {
+            try
+            {
+                batch.Payloads.SetResult(await load());
+            }
+            catch (Exception ex)
+            {
+                // The bindings of the scope which haven't taken their result set yet run the command again
+                lock (this._batches)
+                {
+                    if (this._batches.TryGetValue(batchKey, out Batch current) && current == batch)
+                    {
+                        this._batches.Remove(batchKey);
+                    }
+                }
+                batch.Payloads.SetException(ex);
+            }
+        }
+
+        private sealed class Batch
+        {
+            public Batch(long startedAtMs)
+            {
+                this.StartedAtMs = startedAtMs;
+            }
+
+            public long StartedAtMs { get; }
+
+            /// <summary>
+            /// The indexes of the result sets which were taken by the bindings of the scope
+            /// </summary>
+            public HashSet<int> Taken { get; } = new HashSet<int>();
+
+            public TaskCompletionSource<IReadOnlyDictionary<int, string>> Payloads { get; } = new TaskCompletionSource<IReadOnlyDictionary<int, string>>(TaskCreationOptions.RunContinuationsAsynchronously);
+        }
+    }
+}
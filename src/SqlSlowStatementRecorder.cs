@@ -0,0 +1,364 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Data;
+using System.Linq;
+using System.Security.Cryptography;
+using System.Text;
+using System.Threading;
+using System.Threading.Tasks;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry;
+using Microsoft.Data.SqlClient;
+using Microsoft.Extensions.Configuration;
+using Microsoft.Extensions.Logging;
+using static Microsoft.Azure.WebJobs.Extensions.Sql.SqlTriggerConstants;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql
+{
+    /// <summary>
+    /// A statement executed by one of the bindings which took longer than the slow statement threshold
+    /// </summary>
+    internal sealed class SlowStatement
+    {
+        public SlowStatement(string statementType, string target, string commandText, string commandTextHash, string parameterShapes, long rowCount, long durationMs)
+        {
+            this.StatementType = statementType;
+            this.Target = target;
+            this.CommandText = commandText;
+            this.CommandTextHash = commandTextHash;
+            this.ParameterShapes = parameterShapes;
+            this.RowCount = rowCount;
+            this.DurationMs = durationMs;
+            this.Timestamp = DateTime.UtcNow;
+        }
+
+        /// <summary>
+        /// The type of the statement, one of Text or StoredProcedure for input bindings and Merge or Insert for output bindings
+        /// </summary>
+        public string StatementType { get; }
+
+        /// <summary>
+        /// The table (or stored procedure) the statement was executed against, null for the queries of input bindings
+        /// </summary>
+        public string Target { get; }
+
+        /// <summary>
+        /// The text of the command, truncated to <see cref="SqlSlowStatementRecorder.MaxCommandTextLength"/> characters
+        /// </summary>
+        public string CommandText { get; }
+
+        /// <summary>
+        /// A hash of the full text of the command, which identifies the statement without its parameter values
+        /// </summary>
+        public string CommandTextHash { get; }
+
+        /// <summary>
+        /// The name, type, size and length of the value of each parameter (but not the value itself), which helps finding
+        /// statements whose plan depends on the parameters passed to them (e.g. parameter sniffing or implicit conversions)
+        /// </summary>
+        public string ParameterShapes { get; }
+
+        public long RowCount { get; }
+
+        public long DurationMs { get; }
+
+        public DateTime Timestamp { get; }
+
+        /// <summary>
+        /// The XML of the cached plan of the statement, if it was sampled for plan collection and the plan could be read.
+        /// It's read in the background, so it's only set some time after the statement is recorded.
+        /// </summary>
+        public string QueryPlan { get; set; }
+    }
+
+    /// <summary>
+    /// Records the statements executed by the input and output bindings which take longer than a threshold, keeping the
+    /// most recent ones in a bounded in-memory buffer and reporting each through the logs and the sql.slow_statements
+    /// metric. On a sampled basis the cached plan of the statement is also read from sys.dm_exec_query_plan, in the
+    /// background on a separate connection so that it doesn't delay the invocation which ran the statement.
+    /// </summary>
+    internal sealed class SqlSlowStatementRecorder
+    {
+        public const string ConfigKey_SlowStatementThresholdMs = "Sql_SlowStatementThresholdMs";
+        public const string ConfigKey_SlowStatementPlanSamplingPercent = "Sql_SlowStatementPlanSamplingPercent";
+
+        /// <summary>
+        /// The number of slow statements kept in memory
+        /// </summary>
+        public const int DefaultCapacity = 100;
+        public const int MaxCommandTextLength = 4000;
+        /// <summary>
+        /// Plans larger than this are truncated (and so won't be valid XML) to bound the memory used by the recorder
+        /// </summary>
+        public const int MaxQueryPlanLength = 65536;
+        private const int GetQueryPlanTimeoutSeconds = 5;
+
+        /// <summary>
+        /// Gets the cached plan of the most recent execution of a stored procedure, looking it up by its object id
+        /// instead of going through the text of the cached statements.
+        /// </summary>
+        internal const string GetProcedurePlanCommandText = @"
+            SELECT TOP (1) CAST(qp.query_plan AS nvarchar(max))
+            FROM sys.dm_exec_procedure_stats AS ps
+            CROSS APPLY sys.dm_exec_query_plan(ps.plan_handle) AS qp
+            WHERE ps.database_id = DB_ID() AND ps.object_id = OBJECT_ID(@objectName)
+            ORDER BY ps.last_execution_time DESC;";
+
+        /// <summary>
+        /// Gets the cached plan of the most recent execution of a query. Only the statements executed since the query
+        /// started have their text read, so that the lookup doesn't go through the text of the whole plan cache. Queries
+        /// sent with parameters are cached with the declaration of their parameters in front of their text, so the text
+        /// is matched from its end.
+        /// </summary>
+        internal const string GetQueryPlanCommandText = @"
+            SELECT TOP (1) CAST(qp.query_plan AS nvarchar(max))
+            FROM sys.dm_exec_query_stats AS qs
+            CROSS APPLY sys.dm_exec_sql_text(qs.sql_handle) AS st
+            CROSS APPLY sys.dm_exec_query_plan(qs.plan_handle) AS qp
+            WHERE qs.last_execution_time >= DATEADD(second, -@secondsSinceExecution, GETDATE())
+                AND RIGHT(st.text, LEN(@commandText + N'x') - 1) = @commandText
+            ORDER BY qs.last_execution_time DESC;";
+
+        public static readonly SqlSlowStatementRecorder Instance = new SqlSlowStatementRecorder(DefaultCapacity);
+
+        private readonly SlowStatement[] _statements;
+        private readonly object _statementsLock = new object();
+        private readonly Random _random = new Random();
+        private readonly Func<SqlCommand, Task<object>> _readQueryPlan;
+        private int _nextIndex;
+        private long _recordedCount;
+        /// <summary>
+        /// 1 while a plan is being read, so that only one plan is read at a time and the slow statements sampled in the
+        /// meantime are recorded without their plan
+        /// </summary>
+        private int _planLookupInProgress;
+        /// <summary>
+        /// Set once reading a plan fails because of missing permissions, so that it isn't attempted again
+        /// </summary>
+        private volatile bool _planCollectionDenied;
+
+        public SqlSlowStatementRecorder(int capacity) : this(capacity, ExecuteQueryPlanCommandAsync)
+        {
+        }
+
+        /// <summary>
+        /// Initializes a new instance of the <see cref="SqlSlowStatementRecorder"/> class.
+        /// </summary>
+        /// <param name="capacity">The number of slow statements kept in memory</param>
+        /// <param name="readQueryPlan">Opens the connection of the command reading a plan and executes it</param>
+        internal SqlSlowStatementRecorder(int capacity, Func<SqlCommand, Task<object>> readQueryPlan)
+        {
+            if (capacity <= 0)
+            {
+                throw new ArgumentOutOfRangeException(nameof(capacity), "The capacity must be greater than 0.");
+            }
+            this._statements = new SlowStatement[capacity];
+            this._readQueryPlan = readQueryPlan ?? throw new ArgumentNullException(nameof(readQueryPlan));
+        }
+
+        /// <summary>
+        /// The lookup of the plan started by the last call to <see cref="Record"/> which sampled its statement
+        /// </summary>
+        internal Task PlanLookup { get; private set; } = Task.CompletedTask;
+
+        /// <summary>
+        /// Gets the threshold above which the statements of a binding are recorded, either from the binding itself or
+        /// from the Sql_SlowStatementThresholdMs app setting. 0 means that slow statements aren't recorded.
+        /// </summary>
+        public static int GetThresholdMs(SqlAttribute attribute, IConfiguration configuration)
+        {
+            if (attribute.SlowStatementThresholdMs < 0)
+            {
+                throw new InvalidOperationException($"Invalid value for {nameof(SqlAttribute.SlowStatementThresholdMs)}. Value must not be less than 0.");
+            }
+            if (attribute.SlowStatementThresholdMs > 0)
+            {
+                return attribute.SlowStatementThresholdMs;
+            }
+            int thresholdMs = configuration.GetValue(ConfigKey_SlowStatementThresholdMs, 0);
+            if (thresholdMs < 0)
+            {
+                throw new InvalidOperationException($"Invalid value for configuration setting '{ConfigKey_SlowStatementThresholdMs}'. Value must not be less than 0.");
+            }
+            return thresholdMs;
+        }
+
+        /// <summary>
+        /// Gets the percentage of the slow statements whose plan is read, from the Sql_SlowStatementPlanSamplingPercent app setting
+        /// </summary>
+        public static int GetPlanSamplingPercent(IConfiguration configuration)
+        {
+            int planSamplingPercent = configuration.GetValue(ConfigKey_SlowStatementPlanSamplingPercent, 0);
+            if (planSamplingPercent < 0 || planSamplingPercent > 100)
+            {
+                throw new InvalidOperationException($"Invalid value for configuration setting '{ConfigKey_SlowStatementPlanSamplingPercent}'. Value must be between 0 and 100.");
+            }
+            return planSamplingPercent;
+        }
+
+        /// <summary>
+        /// The slow statements recorded, from the oldest to the most recent
+        /// </summary>
+        public IReadOnlyList<SlowStatement> GetStatements()
+        {
+            lock (this._statementsLock)
+            {
+                int count = (int)Math.Min(this._recordedCount, this._statements.Length);
+                int start = this._recordedCount > this._statements.Length ? this._nextIndex : 0;
+                return Enumerable.Range(0, count).Select(i => this._statements[(start + i) % this._statements.Length]).ToList();
+            }
+        }
+
+        /// <summary>
+        /// Captures the shape of a statement which was slow. This only reads the command, so it can be called while
+        /// the transaction of the statement is still in progress and the statement recorded once it's done.
+        /// </summary>
+        /// <param name="command">The command executed</param>
+        /// <param name="statementType">The type of the statement</param>
+        /// <param name="target">The table or stored procedure the statement was executed against, if any</param>
+        /// <param name="rowCount">The number of rows read or written by the statement</param>
+        /// <param name="durationMs">How long the statement took</param>
+        public static SlowStatement Capture(SqlCommand command, string statementType, string target, long rowCount, long durationMs)
+        {
+            string commandText = command.CommandText ?? "";
+            string parameterShapes = string.Join(", ", command.Parameters.Cast<SqlParameter>().Select(GetParameterShape));
+            return new SlowStatement(
+                statementType,
+                target,
+                commandText.Length > MaxCommandTextLength ? commandText.Substring(0, MaxCommandTextLength) : commandText,
+                GetCommandTextHash(commandText),
+                parameterShapes,
+                rowCount,
+                durationMs);
+        }
+
+        /// <summary>
+        /// Records a slow statement. If it's sampled for plan collection its plan is read in the background, on a copy of
+        /// the connection, and attached to the statement once it's found.
+        /// </summary>
+        /// <param name="statement">The statement</param>
+        /// <param name="fullCommandText">The full text of the command, used to find its plan</param>
+        /// <param name="commandType">The type of the command, used to find its plan</param>
+        /// <param name="connection">The connection the statement was executed on, whose settings are used to read the plan</param>
+        /// <param name="planSamplingPercent">The percentage of slow statements whose plan is read</param>
+        /// <param name="logger">The logger</param>
+        public void Record(SlowStatement statement, string fullCommandText, CommandType commandType, SqlConnection connection, int planSamplingPercent, ILogger logger)
+        {
+            this.Add(statement);
+            SqlBindingMetrics.RecordSlowStatement(statement.StatementType, statement.Target, statement.DurationMs);
+            logger.LogWarning($"Slow {statement.StatementType} statement took {statement.DurationMs}ms for {statement.RowCount} row(s). Hash={statement.CommandTextHash} Parameters=[{statement.ParameterShapes}] Command={statement.CommandText}");
+            if (this.ShouldCollectPlan(planSamplingPercent) && Interlocked.CompareExchange(ref this._planLookupInProgress, 1, 0) == 0)
+            {
+                // The connection of the invocation is closed once it's done, so the plan is read on a clone of it, which
+                // keeps its credentials
+                var planConnection = (SqlConnection)((ICloneable)connection).Clone();
+                SqlCommand command = CreateGetQueryPlanCommand(statement, fullCommandText, commandType, planConnection);
+                this.PlanLookup = Task.Run(() => this.ReadQueryPlanAsync(statement, command, logger));
+            }
+        }
+
+        internal void Add(SlowStatement statement)
+        {
+            lock (this._statementsLock)
+            {
+                this._statements[this._nextIndex] = statement;
+                this._nextIndex = (this._nextIndex + 1) % this._statements.Length;
+                this._recordedCount++;
+            }
+        }
+
+        private bool ShouldCollectPlan(int planSamplingPercent)
+        {
+            if (planSamplingPercent <= 0 || this._planCollectionDenied)
+            {
+                return false;
+            }
+            lock (this._random)
+            {
+                return this._random.Next(100) < planSamplingPercent;
+            }
+        }
+
+        /// <summary>
+        /// Creates the command reading the plan of a statement on a connection
+        /// </summary>
+        internal static SqlCommand CreateGetQueryPlanCommand(SlowStatement statement, string fullCommandText, CommandType commandType, SqlConnection connection)
+        {
+            SqlCommand command;
+            if (commandType == CommandType.StoredProcedure)
+            {
+                command = new SqlCommand(GetProcedurePlanCommandText, connection);
+                command.Parameters.Add(new SqlParameter("@objectName", SqlDbType.NVarChar, -1) { Value = fullCommandText });
+            }
+            else
+            {
+                // The statement is recorded as soon as it's done, so it started at most its duration before that. The
+                // extra second covers the rounding of the duration and of the execution times of the plan cache.
+                int secondsSinceExecution = (int)Math.Ceiling((DateTime.UtcNow - statement.Timestamp).TotalSeconds + (statement.DurationMs / 1000.0)) + 1;
+                command = new SqlCommand(GetQueryPlanCommandText, connection);
+                command.Parameters.Add(new SqlParameter("@secondsSinceExecution", SqlDbType.Int) { Value = secondsSinceExecution });
+                command.Parameters.Add(new SqlParameter("@commandText", SqlDbType.NVarChar, -1) { Value = fullCommandText });
+            }
+            command.CommandTimeout = GetQueryPlanTimeoutSeconds;
+            return command;
+        }
+
+        private async Task ReadQueryPlanAsync(SlowStatement statement, SqlCommand command, ILogger logger)
+        {
+            try
+            {
+                using (SqlConnection connection = command.Connection)
+                using (command)
+                {
+                    string queryPlan = await this._readQueryPlan(command) as string;
+                    if (queryPlan != null)
+                    {
+                        statement.QueryPlan = queryPlan.Length > MaxQueryPlanLength ? queryPlan.Substring(0, MaxQueryPlanLength) : queryPlan;
+                        logger.LogDebug($"Plan of slow statement {statement.CommandTextHash}: {statement.QueryPlan}");
+                    }
+                }
+            }
+            catch (SqlException ex) when (ex.Number == PermissionDeniedOnObjectErrorNumber || ex.Number == PermissionDeniedErrorNumber)
+            {
+                logger.LogWarning($"Disabling plan collection for slow statements since the cached plans can't be read from sys.dm_exec_query_plan. Grant VIEW SERVER STATE (or VIEW DATABASE STATE on Azure SQL Database) to enable it. Exception message: {ex.Message}");
+                this._planCollectionDenied = true;
+            }
+            catch (Exception ex)
+            {
+                // The plan is only a diagnostic aid, so failing to read it shouldn't fail anything else
+                logger.LogWarning($"Failed to read the plan of a slow statement. Exception message: {ex.Message}");
+            }
+            finally
+            {
+                Interlocked.Exchange(ref this._planLookupInProgress, 0);
+            }
+        }
+
+        private static async Task<object> ExecuteQueryPlanCommandAsync(SqlCommand command)
+        {
+            await command.Connection.OpenAsync(CancellationToken.None);
+            return await command.ExecuteScalarAsync(CancellationToken.None);
+        }
+
+        private static string GetParameterShape(SqlParameter parameter)
+        {
+            string size = parameter.Size == -1 ? "(max)" : parameter.Size > 0 ? $"({parameter.Size})" : "";
+            object value = parameter.Value;
+            string valueShape = value == null || value is DBNull ? "null"
+                : value is string s ? $"{value.GetType().Name}[{s.Length}]"
+                : value.GetType().Name;
+            return $"{parameter.ParameterName} {parameter.SqlDbType}{size}={valueShape}";
+        }
+
+        private static string GetCommandTextHash(string commandText)
+        {
+            using (var sha256 = SHA256.Create())
+            {
+                byte[] hash = sha256.ComputeHash(Encoding.UTF8.GetBytes(commandText));
+                return BitConverter.ToString(hash, 0, 8).Replace("-", "");
+            }
+        }
+    }
+}
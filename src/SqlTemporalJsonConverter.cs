@@ -0,0 +1,83 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Globalization;
+using Newtonsoft.Json;
+using Newtonsoft.Json.Serialization;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql
+{
+    /// <summary>
+    /// Writes the values of date and time columns in the <see cref="SqlTemporalFormat.Iso8601"/> format.
+    /// </summary>
+    internal sealed class SqlTemporalJsonConverter : JsonConverter
+    {
+        private const string DateTimeFormat = "yyyy'-'MM'-'dd'T'HH':'mm':'ss'.'fffffff'Z'";
+        private const string DateTimeOffsetFormat = "yyyy'-'MM'-'dd'T'HH':'mm':'ss'.'fffffffzzz";
+        private const string TimeFormat = @"hh\:mm\:ss\.fffffff";
+
+        public static readonly SqlTemporalJsonConverter Instance = new SqlTemporalJsonConverter();
+
+        /// <summary>
+        /// The settings used to serialize rows in the <see cref="SqlTemporalFormat.Iso8601"/> format.
+        /// </summary>
+        public static readonly JsonSerializerSettings SerializerSettings = new JsonSerializerSettings
+        {
+            ContractResolver = new DefaultContractResolver(),
+            Converters = { Instance }
+        };
+
+        public override bool CanRead => false;
+
+        public override bool CanConvert(Type objectType)
+        {
+            Type type = Nullable.GetUnderlyingType(objectType) ?? objectType;
+            return type == typeof(DateTime) || type == typeof(DateTimeOffset) || type == typeof(TimeSpan);
+        }
+
+        public override void WriteJson(JsonWriter writer, object value, JsonSerializer serializer)
+        {
+            if (TryFormat(value, out string formatted))
+            {
+                writer.WriteValue(formatted);
+            }
+            else
+            {
+                writer.WriteNull();
+            }
+        }
+
+        public override object ReadJson(JsonReader reader, Type objectType, object existingValue, JsonSerializer serializer)
+        {
+            throw new NotSupportedException($"{nameof(SqlTemporalJsonConverter)} only writes values.");
+        }
+
+        /// <summary>
+        /// Formats a date or time value, returning false if the value isn't one.
+        /// </summary>
+        /// <param name="value">The value read from the column</param>
+        /// <param name="formatted">The formatted value</param>
+        /// <returns>True if the value is a <see cref="DateTime"/>, <see cref="DateTimeOffset"/> or <see cref="TimeSpan"/></returns>
+        public static bool TryFormat(object value, out string formatted)
+        {
+            switch (value)
+            {
+                case DateTime dateTime:
+                    // Values read from SQL don't have a kind, they're assumed to be in UTC the same as with the default format
+                    formatted = (dateTime.Kind == DateTimeKind.Local ? dateTime.ToUniversalTime() : dateTime).ToString(DateTimeFormat, CultureInfo.InvariantCulture);
+                    return true;
+                case DateTimeOffset dateTimeOffset:
+                    formatted = dateTimeOffset.ToString(DateTimeOffsetFormat, CultureInfo.InvariantCulture);
+                    return true;
+                case TimeSpan timeSpan:
+                    // time columns are always within a day, other durations use the constant format
+                    formatted = timeSpan >= TimeSpan.Zero && timeSpan < TimeSpan.FromDays(1) ? timeSpan.ToString(TimeFormat, CultureInfo.InvariantCulture) : timeSpan.ToString("c", CultureInfo.InvariantCulture);
+                    return true;
+                default:
+                    formatted = null;
+                    return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,460 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System.Collections.Concurrent;
+using System.Collections.Generic;
+using System.Diagnostics;
+using System.Diagnostics.Metrics;
+using System.Linq;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry
+{
+    /// <summary>
+    /// Metrics and traces published by the SQL bindings through <see cref="Meter"/> and <see cref="System.Diagnostics.ActivitySource"/>,
+    /// which can be collected by any listener such as OpenTelemetry or dotnet-counters. Unlike the events sent by
+    /// <see cref="Telemetry"/> these are intended for the owner of the function app and so aren't affected by the
+    /// telemetry opt out settings. Nothing is recorded (and no activities are created) unless a listener is attached.
+    /// </summary>
+    internal static class SqlBindingMetrics
+    {
+        /// <summary>
+        /// The name of both the meter and the activity source
+        /// </summary>
+        public const string MeterName = "Microsoft.Azure.WebJobs.Extensions.Sql";
+
+        public const string TableTagName = "sql.table";
+        public const string FunctionTagName = "sql.function";
+        public const string CommandTypeTagName = "sql.command_type";
+        public const string RowCountTagName = "sql.rows";
+        public const string CacheResultTagName = "sql.cache.result";
+
+        /// <summary>
+        /// The values of the sql.cache.result tag: the payload was cached, wasn't cached (or had expired) and was
+        /// queried, or was being queried by another invocation which was waited for.
+        /// </summary>
+        public const string InputCacheHit = "hit";
+        public const string InputCacheMiss = "miss";
+        public const string InputCacheCoalesced = "coalesced";
+
+        private static readonly string AssemblyVersion = typeof(SqlBindingMetrics).Assembly.GetName().Version?.ToString();
+
+        private static readonly Meter BindingsMeter = new Meter(MeterName, AssemblyVersion);
+
+        /// <summary>
+        /// The source of the activities tracing the SQL operations of the bindings. The activities are children of the
+        /// activity of the function invocation (if any), except for the ones of the trigger which are the parent of it.
+        /// </summary>
+        public static readonly ActivitySource ActivitySource = new ActivitySource(MeterName, AssemblyVersion);
+
+        /// <summary>
+        /// The last number of unprocessed changes queried for each function and user table, reported by the sql.trigger.unprocessed_changes gauge
+        /// </summary>
+        private static readonly ConcurrentDictionary<(string function, string table), long> UnprocessedChangeCounts = new ConcurrentDictionary<(string function, string table), long>();
+
+        /// <summary>
+        /// The last values of the SqlClient counters which are republished as gauges, see SetSqlClientGauge
+        /// </summary>
+        private static readonly ConcurrentDictionary<string, double> SqlClientGaugeValues = new ConcurrentDictionary<string, double>();
+
+        /// <summary>
+        /// The counters republishing the SqlClient counters which are a rate, see AddSqlClientCounter
+        /// </summary>
+        private static readonly ConcurrentDictionary<string, Counter<double>> SqlClientCounters = new ConcurrentDictionary<string, Counter<double>>();
+
+        #region Output binding
+        private static readonly Counter<long> OutputRows = BindingsMeter.CreateCounter<long>(
+            "sql.output.rows",
+            "{row}",
+            "Number of rows upserted by the SQL output binding.");
+
+        private static readonly Histogram<long> OutputBatchSize = BindingsMeter.CreateHistogram<long>(
+            "sql.output.batch_size",
+            "{row}",
+            "Number of rows upserted by the SQL output binding in each flush.");
+
+        private static readonly Histogram<double> OutputDuration = BindingsMeter.CreateHistogram<double>(
+            "sql.output.duration",
+            "ms",
+            "Time taken by the SQL output binding to upsert the rows of a flush.");
+        #endregion
+
+        #region Slow statements
+        private static readonly Counter<long> SlowStatements = BindingsMeter.CreateCounter<long>(
+            "sql.slow_statements",
+            "{statement}",
+            "Number of statements of the SQL input and output bindings which took longer than the slow statement threshold.");
+
+        private static readonly Histogram<double> SlowStatementDuration = BindingsMeter.CreateHistogram<double>(
+            "sql.slow_statement.duration",
+            "ms",
+            "Time taken by the statements of the SQL input and output bindings which took longer than the slow statement threshold.");
+        #endregion
+
+        #region Input binding
+        private static readonly Histogram<double> InputDuration = BindingsMeter.CreateHistogram<double>(
+            "sql.input.duration",
+            "ms",
+            "Time taken by the SQL input binding to execute its command and read the results.");
+
+        private static readonly Histogram<long> InputRows = BindingsMeter.CreateHistogram<long>(
+            "sql.input.rows",
+            "{row}",
+            "Number of rows returned by the command of the SQL input binding.");
+
+        private static readonly Counter<long> InputCacheLookups = BindingsMeter.CreateCounter<long>(
+            "sql.input.cache.lookups",
+            "{lookup}",
+            "Number of invocations of the SQL input bindings with caching enabled, by whether the results were cached.");
+
+        private static readonly Counter<long> InputCacheInvalidations = BindingsMeter.CreateCounter<long>(
+            "sql.input.cache.invalidations",
+            "{entry}",
+            "Number of results cached for the SQL input bindings which were removed because a table they depend on changed.");
+
+        private static readonly Counter<long> InputReplicaFallbacks = BindingsMeter.CreateCounter<long>(
+            "sql.input.replica.fallbacks",
+            "{query}",
+            "Number of queries of the SQL input bindings run against the primary because the read replica was lagging too far behind.");
+        #endregion
+
+        #region Trigger binding
+        private static readonly Histogram<double> GetChangesDuration = BindingsMeter.CreateHistogram<double>(
+            "sql.trigger.get_changes.duration",
+            "ms",
+            "Time taken by the SQL trigger to query the changes of a batch.");
+
+        private static readonly Histogram<double> AcquireLeasesDuration = BindingsMeter.CreateHistogram<double>(
+            "sql.trigger.acquire_leases.duration",
+            "ms",
+            "Time taken by the SQL trigger to acquire the leases on the changes of a batch.");
+
+        private static readonly Histogram<double> RenewLeasesDuration = BindingsMeter.CreateHistogram<double>(
+            "sql.trigger.renew_leases.duration",
+            "ms",
+            "Time taken by the SQL trigger to renew the leases on the changes being processed.");
+
+        private static readonly Histogram<double> ReleaseLeasesDuration = BindingsMeter.CreateHistogram<double>(
+            "sql.trigger.release_leases.duration",
+            "ms",
+            "Time taken by the SQL trigger to release the leases on the changes of a batch and update the last sync version.");
+
+        private static readonly Histogram<long> TriggerBatchSize = BindingsMeter.CreateHistogram<long>(
+            "sql.trigger.batch_size",
+            "{change}",
+            "Number of changes sent to the function in each batch of the SQL trigger.");
+
+        private static readonly Histogram<double> TriggerFunctionDuration = BindingsMeter.CreateHistogram<double>(
+            "sql.trigger.function.duration",
+            "ms",
+            "Time taken by the function to process a batch of changes of the SQL trigger.");
+
+        /// <summary>
+        /// Time from the commit of a change in the user table to when the trigger fetched it.
+        /// </summary>
+        private static readonly Histogram<double> CommitToFetchLatency = BindingsMeter.CreateHistogram<double>(
+            "sql.trigger.commit_to_fetch.duration",
+            "ms",
+            "Time from the commit of a change to when the SQL trigger fetched it.");
+
+        /// <summary>
+        /// Time from the commit of a change in the user table to when the function finished processing it.
+        /// </summary>
+        private static readonly Histogram<double> CommitToCompletionLatency = BindingsMeter.CreateHistogram<double>(
+            "sql.trigger.commit_to_completion.duration",
+            "ms",
+            "Time from the commit of a change to when the function triggered by it completed successfully.");
+        #endregion
+
+        static SqlBindingMetrics()
+        {
+            // Observed by the listeners when they collect it, from the counts stored by SetUnprocessedChangeCount
+            BindingsMeter.CreateObservableGauge<long>(
+                "sql.trigger.unprocessed_changes",
+                ObserveUnprocessedChanges,
+                "{change}",
+                "Number of changes of the user table that haven't been processed by the function yet, as of the last scale check.");
+            BindingsMeter.CreateObservableGauge<long>(
+                "sql.input.cache.size",
+                () => SqlInputCache.Instance.SizeBytes,
+                "By",
+                "Total size of the results cached for the SQL input bindings.");
+        }
+
+        /// <summary>
+        /// Starts an activity tracing a SQL operation of one of the bindings.
+        /// </summary>
+        /// <param name="name">The name of the operation</param>
+        /// <param name="table">The name of the table (or the command) the operation is for</param>
+        /// <param name="function">The ID of the function the operation is for, if known</param>
+        /// <param name="kind">The kind of the activity, by default a call to the database</param>
+        /// <returns>The started activity, or null if there's no listener for it</returns>
+        public static Activity StartActivity(string name, string table, string function = null, ActivityKind kind = ActivityKind.Client)
+        {
+            Activity activity = ActivitySource.StartActivity(name, kind);
+            if (activity != null)
+            {
+                activity.SetTag(TableTagName, table);
+                if (function != null)
+                {
+                    activity.SetTag(FunctionTagName, function);
+                }
+            }
+            return activity;
+        }
+
+        /// <summary>
+        /// Records the upsert of the rows of a flush of the output binding.
+        /// </summary>
+        /// <param name="table">The name of the table the rows were upserted to</param>
+        /// <param name="rowCount">The number of rows upserted</param>
+        /// <param name="durationMs">The duration of the upsert in milliseconds</param>
+        public static void RecordUpsert(string table, long rowCount, double durationMs)
+        {
+            var tag = new KeyValuePair<string, object>(TableTagName, table);
+            if (OutputRows.Enabled)
+            {
+                OutputRows.Add(rowCount, tag);
+            }
+            if (OutputBatchSize.Enabled)
+            {
+                OutputBatchSize.Record(rowCount, tag);
+            }
+            if (OutputDuration.Enabled)
+            {
+                OutputDuration.Record(durationMs, tag);
+            }
+        }
+
+        /// <summary>
+        /// Records the execution of the command of the input binding.
+        /// </summary>
+        /// <param name="commandType">The type of the command, either Text or StoredProcedure</param>
+        /// <param name="rowCount">The number of rows returned by the command</param>
+        /// <param name="durationMs">The duration of the command in milliseconds</param>
+        public static void RecordQuery(string commandType, long rowCount, double durationMs)
+        {
+            var tag = new KeyValuePair<string, object>(CommandTypeTagName, commandType);
+            if (InputRows.Enabled)
+            {
+                InputRows.Record(rowCount, tag);
+            }
+            if (InputDuration.Enabled)
+            {
+                InputDuration.Record(durationMs, tag);
+            }
+        }
+
+        /// <summary>
+        /// Records a lookup in the cache of the input binding.
+        /// </summary>
+        /// <param name="result">Whether the results were cached, one of InputCacheHit, InputCacheMiss or InputCacheCoalesced</param>
+        public static void RecordInputCacheLookup(string result)
+        {
+            if (InputCacheLookups.Enabled)
+            {
+                InputCacheLookups.Add(1, new KeyValuePair<string, object>(CacheResultTagName, result));
+            }
+        }
+
+        /// <summary>
+        /// Records the removal of the results cached for the input bindings which depend on a table that changed.
+        /// </summary>
+        /// <param name="table">The name of the table that changed</param>
+        /// <param name="count">The number of results removed</param>
+        public static void RecordInputCacheInvalidation(string table, long count)
+        {
+            if (InputCacheInvalidations.Enabled)
+            {
+                InputCacheInvalidations.Add(count, new KeyValuePair<string, object>(TableTagName, table));
+            }
+        }
+
+        /// <summary>
+        /// Records a query of the input binding run against the primary because the read replica was lagging too far behind.
+        /// </summary>
+        public static void RecordReplicaFallback()
+        {
+            if (InputReplicaFallbacks.Enabled)
+            {
+                InputReplicaFallbacks.Add(1);
+            }
+        }
+
+        /// <summary>
+        /// Records a statement of the input or output binding which took longer than the slow statement threshold.
+        /// </summary>
+        /// <param name="statementType">The type of the statement, one of Text, StoredProcedure, Merge or Insert</param>
+        /// <param name="table">The table (or stored procedure) the statement was executed against, if any</param>
+        /// <param name="durationMs">The duration of the statement in milliseconds</param>
+        public static void RecordSlowStatement(string statementType, string table, double durationMs)
+        {
+            var commandTypeTag = new KeyValuePair<string, object>(CommandTypeTagName, statementType);
+            var tableTag = new KeyValuePair<string, object>(TableTagName, table);
+            if (SlowStatements.Enabled)
+            {
+                SlowStatements.Add(1, commandTypeTag, tableTag);
+            }
+            if (SlowStatementDuration.Enabled)
+            {
+                SlowStatementDuration.Record(durationMs, commandTypeTag, tableTag);
+            }
+        }
+
+        /// <summary>
+        /// Records the duration of getting a batch of changes of the trigger.
+        /// </summary>
+        /// <param name="function">The ID of the function</param>
+        /// <param name="table">The name of the user table</param>
+        /// <param name="durationMs">The duration in milliseconds</param>
+        public static void RecordGetChanges(string function, string table, double durationMs)
+        {
+            Record(GetChangesDuration, durationMs, function, table);
+        }
+
+        /// <summary>
+        /// Records the duration of acquiring the leases on a batch of changes of the trigger.
+        /// </summary>
+        /// <param name="function">The ID of the function</param>
+        /// <param name="table">The name of the user table</param>
+        /// <param name="durationMs">The duration in milliseconds</param>
+        public static void RecordAcquireLeases(string function, string table, double durationMs)
+        {
+            Record(AcquireLeasesDuration, durationMs, function, table);
+        }
+
+        /// <summary>
+        /// Records the duration of renewing the leases on the changes being processed by the trigger.
+        /// </summary>
+        /// <param name="function">The ID of the function</param>
+        /// <param name="table">The name of the user table</param>
+        /// <param name="durationMs">The duration in milliseconds</param>
+        public static void RecordRenewLeases(string function, string table, double durationMs)
+        {
+            Record(RenewLeasesDuration, durationMs, function, table);
+        }
+
+        /// <summary>
+        /// Records the duration of releasing the leases on a batch of changes of the trigger.
+        /// </summary>
+        /// <param name="function">The ID of the function</param>
+        /// <param name="table">The name of the user table</param>
+        /// <param name="durationMs">The duration in milliseconds</param>
+        public static void RecordReleaseLeases(string function, string table, double durationMs)
+        {
+            Record(ReleaseLeasesDuration, durationMs, function, table);
+        }
+
+        /// <summary>
+        /// Records the processing of a batch of changes of the trigger by the function.
+        /// </summary>
+        /// <param name="function">The ID of the function</param>
+        /// <param name="table">The name of the user table</param>
+        /// <param name="batchSize">The number of changes in the batch</param>
+        /// <param name="durationMs">The duration of the function execution in milliseconds</param>
+        public static void RecordTriggerFunction(string function, string table, long batchSize, double durationMs)
+        {
+            if (TriggerBatchSize.Enabled)
+            {
+                TriggerBatchSize.Record(batchSize, new KeyValuePair<string, object>(FunctionTagName, function), new KeyValuePair<string, object>(TableTagName, table));
+            }
+            Record(TriggerFunctionDuration, durationMs, function, table);
+        }
+
+        /// <summary>
+        /// Sets the number of unprocessed changes of the user table reported for the function.
+        /// </summary>
+        /// <param name="function">The ID of the function</param>
+        /// <param name="table">The name of the user table</param>
+        /// <param name="unprocessedChangeCount">The number of unprocessed changes</param>
+        public static void SetUnprocessedChangeCount(string function, string table, long unprocessedChangeCount)
+        {
+            UnprocessedChangeCounts[(function, table)] = unprocessedChangeCount;
+        }
+
+        /// <summary>
+        /// Records the latency from the commit of a change to when it was fetched by the trigger.
+        /// </summary>
+        /// <param name="function">The ID of the function</param>
+        /// <param name="table">The name of the user table the change was made to</param>
+        /// <param name="latencyMs">The latency in milliseconds</param>
+        public static void RecordCommitToFetchLatency(string function, string table, double latencyMs)
+        {
+            Record(CommitToFetchLatency, latencyMs, function, table);
+        }
+
+        /// <summary>
+        /// Records the latency from the commit of a change to when the function finished processing it.
+        /// </summary>
+        /// <param name="function">The ID of the function</param>
+        /// <param name="table">The name of the user table the change was made to</param>
+        /// <param name="latencyMs">The latency in milliseconds</param>
+        public static void RecordCommitToCompletionLatency(string function, string table, double latencyMs)
+        {
+            Record(CommitToCompletionLatency, latencyMs, function, table);
+        }
+
+        /// <summary>
+        /// Sets the value of a SqlClient counter which is a number of connections or pools (such as
+        /// number-of-pooled-connections), republished as the sql.client.* gauge of the same name. SqlClient's
+        /// counters are process wide so these aren't tagged with a function or table.
+        /// </summary>
+        /// <param name="counterName">The name of the SqlClient counter</param>
+        /// <param name="displayName">The display name of the SqlClient counter, used as the description of the gauge</param>
+        /// <param name="value">The mean value of the counter over the last interval</param>
+        public static void SetSqlClientGauge(string counterName, string displayName, double value)
+        {
+            if (SqlClientGaugeValues.TryAdd(counterName, value))
+            {
+                // The gauge is created the first time SqlClient publishes the counter, and then observes its last value
+                BindingsMeter.CreateObservableGauge<double>(
+                    GetSqlClientInstrumentName(counterName),
+                    () => SqlClientGaugeValues[counterName],
+                    null,
+                    displayName);
+            }
+            else
+            {
+                SqlClientGaugeValues[counterName] = value;
+            }
+        }
+
+        /// <summary>
+        /// Adds to a SqlClient counter which is a rate (such as hard-connects), republished as the sql.client.*
+        /// counter of the same name. SqlClient's counters are process wide so these aren't tagged with a function or table.
+        /// </summary>
+        /// <param name="counterName">The name of the SqlClient counter</param>
+        /// <param name="displayName">The display name of the SqlClient counter, used as the description of the counter</param>
+        /// <param name="increment">The number of events counted over the last interval</param>
+        public static void AddSqlClientCounter(string counterName, string displayName, double increment)
+        {
+            Counter<double> counter = SqlClientCounters.GetOrAdd(counterName, name => BindingsMeter.CreateCounter<double>(GetSqlClientInstrumentName(name), null, displayName));
+            if (counter.Enabled)
+            {
+                counter.Add(increment);
+            }
+        }
+
+        private static string GetSqlClientInstrumentName(string counterName)
+        {
+            // e.g. number-of-pooled-connections -> sql.client.number_of_pooled_connections
+            return "sql.client." + counterName.Replace('-', '_');
+        }
+
+        private static void Record(Histogram<double> histogram, double value, string function, string table)
+        {
+            // Checking Enabled first avoids the cost of recording when nothing is listening
+            if (histogram.Enabled)
+            {
+                histogram.Record(value, new KeyValuePair<string, object>(FunctionTagName, function), new KeyValuePair<string, object>(TableTagName, table));
+            }
+        }
+
+        private static IEnumerable<Measurement<long>> ObserveUnprocessedChanges()
+        {
+            return UnprocessedChangeCounts.Select(entry => new Measurement<long>(
+                entry.Value,
+                new KeyValuePair<string, object>(FunctionTagName, entry.Key.function),
+                new KeyValuePair<string, object>(TableTagName, entry.Key.table)));
+        }
+    }
+}
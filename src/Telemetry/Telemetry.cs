@@ -3,10 +3,13 @@
 
 using System;
 using System.Collections.Generic;
+using System.Diagnostics;
 using System.Runtime.InteropServices;
+using System.Threading;
 using System.Threading.Tasks;
 using Microsoft.Extensions.Logging;
 using Microsoft.ApplicationInsights;
+using Microsoft.ApplicationInsights.Channel;
 using Microsoft.ApplicationInsights.Extensibility;
 using Microsoft.Extensions.Configuration;
 using System.Globalization;
@@ -28,6 +31,31 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry
         private ILogger _logger;
         private bool _initialized;
         private const string InstrumentationKey = "98697a1c-1416-486a-99ac-c6c74ebe5ebd";
+
+        /// <summary>
+        /// The number of events the buffer of events waiting to be aggregated can hold
+        /// </summary>
+        private const int EventBufferCapacity = 4096;
+        /// <summary>
+        /// How often the background task reads the events from the buffer, which needs to be often enough that
+        /// the buffer doesn't fill up
+        /// </summary>
+        private const int EventBufferDrainIntervalMs = 1000;
+        public const int DefaultAggregationIntervalSec = 60;
+        public const int DefaultSamplingPercent = 100;
+
+        private readonly TelemetryEventBuffer _eventBuffer = new TelemetryEventBuffer(EventBufferCapacity);
+        private readonly TelemetryEventAggregator _eventAggregator = new TelemetryEventAggregator();
+        private readonly object _aggregatedEventsLock = new object();
+        private int _aggregationIntervalSec = DefaultAggregationIntervalSec;
+        private int _samplingPercent = DefaultSamplingPercent;
+        private long _sampledEventCount;
+        private Task _drainEventsTask;
+
+        [ThreadStatic]
+        private static Dictionary<TelemetryPropertyName, string> _cachedProperties;
+        [ThreadStatic]
+        private static Dictionary<TelemetryMeasureName, double> _cachedMeasures;
         /// <summary>
         /// The environment variable used for opting out of telemetry
         /// </summary>
@@ -36,6 +64,14 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry
         /// The app setting used for opting out of telemetry
         /// </summary>
         public const string TelemetryOptoutSetting = "AzureFunctionsSqlBindingsTelemetryOptOut";
+        /// <summary>
+        /// The app setting for how often (in seconds) the aggregated events are sent. If 0 then each event is sent individually.
+        /// </summary>
+        public const string TelemetryAggregationIntervalSetting = "AzureFunctionsSqlBindingsTelemetryAggregationIntervalSec";
+        /// <summary>
+        /// The app setting for the percentage of the events (other than exceptions) which are sampled
+        /// </summary>
+        public const string TelemetrySamplingPercentSetting = "AzureFunctionsSqlBindingsTelemetrySamplingPercent";
 
         public const string WelcomeMessage = @"Azure SQL binding for Azure Functions
 -----------------------------------------------
@@ -47,6 +83,14 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
 ";
 
         public void Initialize(IConfiguration config, ILogger logger)
+        {
+            this.Initialize(config, logger, null);
+        }
+
+        /// <summary>
+        /// Initializes telemetry, sending it through the specified channel instead of the default one (used by tests and benchmarks)
+        /// </summary>
+        internal void Initialize(IConfiguration config, ILogger logger, ITelemetryChannel channel)
         {
             this._logger = logger;
             this.Enabled = !(Utils.GetEnvironmentVariableAsBool(TelemetryOptoutEnvVar) || Utils.GetConfigSettingAsBool(TelemetryOptoutSetting, config));
@@ -59,13 +103,33 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
             // Store the session ID in a static field so that it can be reused
             CurrentSessionId = Guid.NewGuid().ToString();
 
+            this._aggregationIntervalSec = GetSettingInRange(config, TelemetryAggregationIntervalSetting, DefaultAggregationIntervalSec, 0, int.MaxValue / 1000, logger);
+            this._samplingPercent = GetSettingInRange(config, TelemetrySamplingPercentSetting, DefaultSamplingPercent, 0, 100, logger);
+
             string productVersion = typeof(Telemetry).Assembly.GetName().Version.ToString();
             // initialize in task to offload to parallel thread
-            this._trackEventTask = Task.Factory.StartNew(() => this.InitializeTelemetry(productVersion, config));
+            this._trackEventTask = Task.Factory.StartNew(() => this.InitializeTelemetry(productVersion, config, channel));
+            if (this._aggregationIntervalSec > 0 && this._drainEventsTask == null)
+            {
+                this._drainEventsTask = this.DrainEventsAsync(this._trackEventTask);
+                // Send the events aggregated so far when the host shuts down
+                AppDomain.CurrentDomain.ProcessExit += (sender, args) => this.SendAggregatedEvents(true);
+            }
             this._initialized = true;
         }
 
-        private void InitializeTelemetry(string productVersion, IConfiguration config)
+        private static int GetSettingInRange(IConfiguration config, string settingName, int defaultValue, int min, int max, ILogger logger)
+        {
+            int value = config.GetValue(settingName, defaultValue);
+            if (value < min || value > max)
+            {
+                logger.LogWarning($"Invalid value {value} for {settingName}, it must be between {min} and {max}. Using the default value {defaultValue} instead.");
+                return defaultValue;
+            }
+            return value;
+        }
+
+        private void InitializeTelemetry(string productVersion, IConfiguration config, ITelemetryChannel channel)
         {
             try
             {
@@ -73,6 +137,10 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
                 {
                     ConnectionString = $"InstrumentationKey={InstrumentationKey};"
                 };
+                if (channel != null)
+                {
+                    telemetryConfig.TelemetryChannel = channel;
+                }
                 this._client = new TelemetryClient(telemetryConfig);
                 this._client.Context.Session.Id = CurrentSessionId;
                 this._client.Context.Device.OperatingSystem = RuntimeInformation.OSDescription;
@@ -99,6 +167,37 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
 
         public bool Enabled { get; private set; }
 
+        /// <summary>
+        /// Gets a dictionary of properties for an event tracked on a hot path, which is reused by the next call on the same
+        /// thread instead of allocating a new one for every event. The Track methods copy the properties of the event, so
+        /// the dictionary must be passed to one of them without awaiting anything in between and not used afterwards.
+        /// </summary>
+        /// <param name="properties">The properties the dictionary starts with, if any</param>
+        internal static Dictionary<TelemetryPropertyName, string> GetCachedProperties(IDictionary<TelemetryPropertyName, string> properties = null)
+        {
+            Dictionary<TelemetryPropertyName, string> cachedProperties = _cachedProperties ?? (_cachedProperties = new Dictionary<TelemetryPropertyName, string>());
+            cachedProperties.Clear();
+            if (properties != null)
+            {
+                foreach (KeyValuePair<TelemetryPropertyName, string> property in properties)
+                {
+                    cachedProperties[property.Key] = property.Value;
+                }
+            }
+            return cachedProperties;
+        }
+
+        /// <summary>
+        /// Gets an empty dictionary of measures for an event tracked on a hot path, with the same restrictions as
+        /// <see cref="GetCachedProperties"/>.
+        /// </summary>
+        internal static Dictionary<TelemetryMeasureName, double> GetCachedMeasures()
+        {
+            Dictionary<TelemetryMeasureName, double> cachedMeasures = _cachedMeasures ?? (_cachedMeasures = new Dictionary<TelemetryMeasureName, double>());
+            cachedMeasures.Clear();
+            return cachedMeasures;
+        }
+
         public void TrackEvent(TelemetryEventName eventName, IDictionary<TelemetryPropertyName, string> properties = null,
             IDictionary<TelemetryMeasureName, double> measurements = null)
         {
@@ -108,7 +207,15 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
                 {
                     return;
                 }
+                if (this._aggregationIntervalSec > 0)
+                {
+                    this.BufferEvent(eventName, properties, measurements, null, null, 0);
+                    return;
+                }
                 this._logger.LogTrace($"Sending event {eventName}");
+                // The event is sent later, so copy the caller's dictionaries which it may change or reuse
+                properties = properties != null ? new Dictionary<TelemetryPropertyName, string>(properties) : null;
+                measurements = measurements != null ? new Dictionary<TelemetryMeasureName, double>(measurements) : null;
 
                 //continue task in existing parallel thread
                 this._trackEventTask = this._trackEventTask.ContinueWith(
@@ -135,6 +242,7 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
                 properties = properties != null ? new Dictionary<TelemetryPropertyName, string>(properties) : new Dictionary<TelemetryPropertyName, string>();
                 properties[TelemetryPropertyName.ErrorName] = errorName.ToString();
                 properties[TelemetryPropertyName.ErrorCode] = ExtractErrorCode(exception);
+                measurements = measurements != null ? new Dictionary<TelemetryMeasureName, double>(measurements) : null;
                 //continue task in existing parallel thread
                 this._trackEventTask = this._trackEventTask.ContinueWith(
                     x => this.TrackExceptionTask(exception, properties, measurements)
@@ -159,6 +267,12 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
         {
             try
             {
+                if (this._aggregationIntervalSec > 0)
+                {
+                    // The duration is copied to the buffered event, so there's no need to copy the measurements
+                    this.BufferEvent(eventName, properties, measurements, null, TelemetryMeasureName.DurationMs, durationMs);
+                    return;
+                }
                 measurements = measurements != null ? new Dictionary<TelemetryMeasureName, double>(measurements) : new Dictionary<TelemetryMeasureName, double>();
                 measurements[TelemetryMeasureName.DurationMs] = durationMs;
                 this.TrackEvent(eventName, properties, measurements);
@@ -181,6 +295,11 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
         {
             try
             {
+                if (this._aggregationIntervalSec > 0)
+                {
+                    this.BufferEvent(TelemetryEventName.Create, properties, measurements, type.ToString(), null, 0);
+                    return;
+                }
                 properties = properties != null ? new Dictionary<TelemetryPropertyName, string>(properties) : new Dictionary<TelemetryPropertyName, string>();
                 properties[TelemetryPropertyName.Type] = type.ToString();
                 this.TrackEvent(TelemetryEventName.Create, properties, measurements);
@@ -203,6 +322,11 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
         {
             try
             {
+                if (this._aggregationIntervalSec > 0)
+                {
+                    this.BufferEvent(TelemetryEventName.Convert, properties, measurements, type.ToString(), null, 0);
+                    return;
+                }
                 properties = properties != null ? new Dictionary<TelemetryPropertyName, string>(properties) : new Dictionary<TelemetryPropertyName, string>();
                 properties[TelemetryPropertyName.Type] = type.ToString();
                 this.TrackEvent(TelemetryEventName.Convert, properties, measurements);
@@ -214,6 +338,111 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
             }
         }
 
+        /// <summary>
+        /// Copies an event into the buffer of events waiting to be aggregated by the background task, which doesn't allocate
+        /// anything. The caller's dictionaries aren't referenced once the event is buffered.
+        /// </summary>
+        private void BufferEvent(
+            TelemetryEventName eventName,
+            IDictionary<TelemetryPropertyName, string> properties,
+            IDictionary<TelemetryMeasureName, double> measurements,
+            string type,
+            TelemetryMeasureName? extraMeasureName,
+            double extraMeasureValue)
+        {
+            if (this._samplingPercent < 100)
+            {
+                // Sample the events evenly by keeping the first N of every 100 events, the ones kept are weighted so
+                // that the aggregated counts are still an estimate of the total number of events
+                if (Interlocked.Increment(ref this._sampledEventCount) % 100 >= this._samplingPercent)
+                {
+                    return;
+                }
+            }
+            TelemetryEventRecord record = this._eventBuffer.TryClaim(out long position);
+            if (record == null)
+            {
+                // The buffer is full, the number of dropped events is logged when the buffer is next drained
+                return;
+            }
+            record.Set(eventName, properties, type, this._samplingPercent < 100 ? 100.0 / this._samplingPercent : 1);
+            record.SetMeasures(measurements);
+            if (extraMeasureName.HasValue)
+            {
+                record.SetMeasure(extraMeasureName.Value, extraMeasureValue);
+            }
+            TelemetryEventBuffer.Publish(record, position);
+        }
+
+        /// <summary>
+        /// Drains the buffer of events every second, and sends the aggregated events at every aggregation interval.
+        /// </summary>
+        /// <param name="initializeTask">The task initializing the telemetry client</param>
+        private async Task DrainEventsAsync(Task initializeTask)
+        {
+            await initializeTask;
+            var sinceLastSend = Stopwatch.StartNew();
+            while (true)
+            {
+                await Task.Delay(EventBufferDrainIntervalMs);
+                bool send = sinceLastSend.ElapsedMilliseconds >= this._aggregationIntervalSec * 1000L;
+                this.SendAggregatedEvents(send);
+                if (send)
+                {
+                    sinceLastSend.Restart();
+                }
+            }
+        }
+
+        /// <summary>
+        /// Reads the events from the buffer and aggregates them, optionally sending the events aggregated since they were last sent
+        /// </summary>
+        /// <param name="send">Whether to send the aggregated events</param>
+        internal void SendAggregatedEvents(bool send)
+        {
+            try
+            {
+                // Locked since this is called both by the background task and on process exit
+                lock (this._aggregatedEventsLock)
+                {
+                    this._eventBuffer.Drain(this._eventAggregator);
+                    long droppedEventCount = this._eventBuffer.ResetDroppedEventCount();
+                    if (droppedEventCount > 0)
+                    {
+                        this._logger.LogDebug($"Dropped {droppedEventCount} telemetry events because the event buffer was full.");
+                    }
+                    if (!send)
+                    {
+                        return;
+                    }
+                    if (this._client != null)
+                    {
+                        foreach (AggregatedTelemetryEvent aggregatedEvent in this._eventAggregator.Events)
+                        {
+                            Dictionary<string, double> eventMeasurements = this.GetEventMeasures(null);
+                            eventMeasurements[TelemetryMeasureName.EventCount.ToString()] = aggregatedEvent.Count;
+                            foreach (KeyValuePair<TelemetryMeasureName, AggregatedTelemetryMeasure> measure in aggregatedEvent.Measures)
+                            {
+                                string measureName = measure.Key.ToString();
+                                eventMeasurements[measureName] = measure.Value.Mean;
+                                eventMeasurements[measureName + "Min"] = measure.Value.Min;
+                                eventMeasurements[measureName + "Max"] = measure.Value.Max;
+                            }
+                            this._client.TrackEvent($"{EventsNamespace}/{aggregatedEvent.EventName}", this.GetEventProperties(aggregatedEvent.Properties), eventMeasurements);
+                        }
+                        // Flush once for all the events of the interval
+                        this._client.Flush();
+                    }
+                    this._eventAggregator.Clear();
+                }
+            }
+            catch (Exception e)
+            {
+                // We don't want errors sending telemetry to break the app, so just log and move on
+                this._logger.LogError($"Error sending aggregated events. Message={e.Message}");
+            }
+        }
+
         private void TrackEventTask(
             string eventName,
             IDictionary<TelemetryPropertyName, string> properties,
@@ -342,12 +571,14 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
         GetTableInfo,
         ReleaseLeases,
         RenewLeases,
+        Resync,
         StartListener,
         StopListener,
         TableInfoCacheHit,
         TableInfoCacheMiss,
         TriggerFunction,
         TriggerMonitorStart,
+        UpdateLastSyncVersion,
         Upsert,
         InsertGlobalStateTableRow,
         BuildRenewLeasesWithEmptyMatchCondtion
@@ -360,17 +591,23 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
     {
         ErrorCode,
         ErrorName,
+        Exclusive,
         HasIdentityColumnPrimaryKeys,
         HasDefaultColumnPrimaryKeys,
         HasConfiguredMaxBatchSize,
+        HasConfiguredMaxBatchBytes,
         HasConfiguredMaxChangesPerWorker,
         HasConfiguredPollingInterval,
         HasConfiguredAppLockTimeout,
+        HasConfiguredResyncOnRetentionGap,
+        HasConfiguredCommitLatencySamplingPercent,
         LeasesTableName,
+        ResyncOnRetentionGap,
         QueryType,
         ScaleRecommendation,
         ServerVersion,
         TriggerMetrics,
+        TriggerStateInitialized,
         Type,
         UserFunctionId,
         WorkerCount,
@@ -389,19 +626,25 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
         BatchCount,
         BatchSize,
         CommandDurationMs,
+        CommitLatencySamplingPercent,
+        CommitToCompletionLatencyMs,
+        CommitToFetchLatencyMs,
         CreatedSchemaDurationMs,
         CreateGlobalStateTableDurationMs,
         CreateLeasesTableDurationMs,
         DurationMs,
+        EventCount,
         GetChangesDurationMs,
         GetColumnDefinitionsDurationMs,
         GetPrimaryKeysDurationMs,
         GetUnprocessedChangesDurationMs,
         InsertGlobalStateTableRowDurationMs,
+        MaxBatchBytes,
         MaxBatchSize,
         MaxChangesPerWorker,
         NumRows,
         PollingIntervalMs,
+        ProbeTriggerStateDurationMs,
         ReleaseLeasesDurationMs,
         RetryAttemptNumber,
         SetLastSyncVersionDurationMs,
@@ -415,6 +658,7 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
     /// </summary>
     public enum TelemetryErrorName
     {
+        AcquireExclusiveLease,
         ConsumeChangesLoop,
         Convert,
         CreateGlobalStateTable,
@@ -425,6 +669,7 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
         GetChangesRollback,
         GetColumnDefinitions,
         GetColumnDefinitionsTableDoesNotExist,
+        GetCommitTimes,
         GetPrimaryKeys,
         GetScaleStatus,
         GetUnprocessedChangeCount,
@@ -436,10 +681,13 @@ To learn more about our Privacy Statement visit this link: https://go.microsoft.
         ReleaseLeases,
         ReleaseLeasesNoRetriesLeft,
         ReleaseLeasesRollback,
+        ReleaseSessionAppLocks,
         RenewLeases,
         RenewLeasesLoop,
         RenewLeasesRollback,
+        Resync,
         StartListener,
+        UpdateLastSyncVersion,
         Upsert,
         UpsertRollback,
         GetServerTelemetryProperties,
@@ -0,0 +1,125 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Text;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry
+{
+    /// <summary>
+    /// Aggregates the telemetry events read from the <see cref="TelemetryEventBuffer"/> over an interval, so that a
+    /// single event with the count of the events (and the mean, min and max of each of their measures) is sent for
+    /// each event name and set of properties instead of sending each event individually.
+    /// </summary>
+    /// <remarks>
+    /// This is only used by the background task draining the buffer, so it isn't thread safe.
+    /// </remarks>
+    internal sealed class TelemetryEventAggregator
+    {
+        private readonly Dictionary<string, AggregatedTelemetryEvent> _events = new Dictionary<string, AggregatedTelemetryEvent>();
+        private readonly StringBuilder _keyBuilder = new StringBuilder();
+
+        /// <summary>
+        /// The events aggregated since the last call to Clear
+        /// </summary>
+        public IReadOnlyCollection<AggregatedTelemetryEvent> Events => this._events.Values;
+
+        /// <summary>
+        /// Adds an event to the aggregate of the events with the same name and properties
+        /// </summary>
+        /// <param name="record">The event to add</param>
+        public void Add(TelemetryEventRecord record)
+        {
+            string key = this.GetKey(record);
+            if (!this._events.TryGetValue(key, out AggregatedTelemetryEvent aggregatedEvent))
+            {
+                var properties = new Dictionary<TelemetryPropertyName, string>(record.PropertyCount);
+                for (int i = 0; i < record.PropertyCount; i++)
+                {
+                    properties[record.GetPropertyName(i)] = record.GetPropertyValue(i);
+                }
+                aggregatedEvent = new AggregatedTelemetryEvent(record.EventName, properties);
+                this._events.Add(key, aggregatedEvent);
+            }
+            aggregatedEvent.Add(record);
+        }
+
+        public void Clear()
+        {
+            this._events.Clear();
+        }
+
+        private string GetKey(TelemetryEventRecord record)
+        {
+            this._keyBuilder.Clear().Append(record.EventName);
+            // The properties of the record are always in the same order, so events with the same properties have the same key
+            for (int i = 0; i < record.PropertyCount; i++)
+            {
+                this._keyBuilder.Append('|').Append(record.GetPropertyName(i)).Append('=').Append(record.GetPropertyValue(i));
+            }
+            return this._keyBuilder.ToString();
+        }
+    }
+
+    /// <summary>
+    /// The aggregate of the telemetry events with the same name and properties over an interval
+    /// </summary>
+    internal sealed class AggregatedTelemetryEvent
+    {
+        public AggregatedTelemetryEvent(TelemetryEventName eventName, IDictionary<TelemetryPropertyName, string> properties)
+        {
+            this.EventName = eventName;
+            this.Properties = properties;
+        }
+
+        public TelemetryEventName EventName { get; }
+
+        public IDictionary<TelemetryPropertyName, string> Properties { get; }
+
+        /// <summary>
+        /// The (estimated, if the events are sampled) number of events
+        /// </summary>
+        public double Count { get; private set; }
+
+        public IDictionary<TelemetryMeasureName, AggregatedTelemetryMeasure> Measures { get; } = new Dictionary<TelemetryMeasureName, AggregatedTelemetryMeasure>();
+
+        public void Add(TelemetryEventRecord record)
+        {
+            this.Count += record.Weight;
+            for (int i = 0; i < record.MeasureCount; i++)
+            {
+                TelemetryMeasureName name = record.GetMeasureName(i);
+                if (!this.Measures.TryGetValue(name, out AggregatedTelemetryMeasure measure))
+                {
+                    measure = new AggregatedTelemetryMeasure();
+                    this.Measures.Add(name, measure);
+                }
+                measure.Add(record.GetMeasureValue(i), record.Weight);
+            }
+        }
+    }
+
+    /// <summary>
+    /// The aggregate of the values of a measure of telemetry events
+    /// </summary>
+    internal sealed class AggregatedTelemetryMeasure
+    {
+        private double _sum;
+        private double _weight;
+
+        public double Min { get; private set; } = double.MaxValue;
+
+        public double Max { get; private set; } = double.MinValue;
+
+        public double Mean => this._weight == 0 ? 0 : this._sum / this._weight;
+
+        public void Add(double value, double weight)
+        {
+            this._sum += value * weight;
+            this._weight += weight;
+            this.Min = Math.Min(this.Min, value);
+            this.Max = Math.Max(this.Max, value);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Linq;
+using System.Threading;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry
+{
+    /// <summary>
+    /// A slot of the <see cref="TelemetryEventBuffer"/> holding the data of an event until it's aggregated. The slots
+    /// are allocated once when the buffer is created and reused for every event written to them.
+    /// </summary>
+    internal sealed class TelemetryEventRecord
+    {
+        private static readonly int PropertySlotCount = Enum.GetValues(typeof(TelemetryPropertyName)).Cast<int>().Max() + 1;
+        private static readonly int MeasureSlotCount = Enum.GetValues(typeof(TelemetryMeasureName)).Cast<int>().Max() + 1;
+
+        /// <summary>
+        /// The sequence number used by the buffer to know whether the slot is free to be written or ready to be read
+        /// </summary>
+        internal long Sequence;
+
+        private readonly string[] _properties = new string[PropertySlotCount];
+        /// <summary>
+        /// The names of the properties set on the event, in the order of <see cref="TelemetryPropertyName"/> so that
+        /// events with the same properties always list them in the same order
+        /// </summary>
+        private readonly int[] _setProperties = new int[PropertySlotCount];
+        private readonly double[] _measures = new double[MeasureSlotCount];
+        private readonly int[] _setMeasures = new int[MeasureSlotCount];
+
+        public TelemetryEventName EventName { get; private set; }
+
+        /// <summary>
+        /// How many events this one stands for, which is more than 1 when the events are sampled
+        /// </summary>
+        public double Weight { get; private set; }
+
+        /// <summary>
+        /// The number of properties set on the event
+        /// </summary>
+        public int PropertyCount { get; private set; }
+
+        /// <summary>
+        /// The number of measures set on the event
+        /// </summary>
+        public int MeasureCount { get; private set; }
+
+        /// <summary>
+        /// Sets the event written to the slot. The properties are copied into the slot, so the caller can change or
+        /// reuse its dictionary once the event is tracked.
+        /// </summary>
+        /// <param name="eventName">The name of the event</param>
+        /// <param name="properties">The properties of the event, if any</param>
+        /// <param name="type">The value of the Type property of the event, if any (used by Create and Convert events)</param>
+        /// <param name="weight">How many events this one stands for</param>
+        public void Set(TelemetryEventName eventName, IDictionary<TelemetryPropertyName, string> properties, string type, double weight)
+        {
+            this.EventName = eventName;
+            this.Weight = weight;
+            this.MeasureCount = 0;
+            if (properties is Dictionary<TelemetryPropertyName, string> dictionary)
+            {
+                // Enumerate the concrete type to avoid boxing its enumerator
+                foreach (KeyValuePair<TelemetryPropertyName, string> property in dictionary)
+                {
+                    this.SetProperty(property.Key, property.Value);
+                }
+            }
+            else if (properties != null)
+            {
+                foreach (KeyValuePair<TelemetryPropertyName, string> property in properties)
+                {
+                    this.SetProperty(property.Key, property.Value);
+                }
+            }
+            if (type != null)
+            {
+                this.SetProperty(TelemetryPropertyName.Type, type);
+            }
+        }
+
+        public void SetProperty(TelemetryPropertyName name, string value)
+        {
+            int index = (int)name;
+            int i = 0;
+            while (i < this.PropertyCount && this._setProperties[i] < index)
+            {
+                i++;
+            }
+            if (i == this.PropertyCount || this._setProperties[i] != index)
+            {
+                Array.Copy(this._setProperties, i, this._setProperties, i + 1, this.PropertyCount - i);
+                this._setProperties[i] = index;
+                this.PropertyCount++;
+            }
+            this._properties[index] = value;
+        }
+
+        public TelemetryPropertyName GetPropertyName(int i)
+        {
+            return (TelemetryPropertyName)this._setProperties[i];
+        }
+
+        public string GetPropertyValue(int i)
+        {
+            return this._properties[this._setProperties[i]];
+        }
+
+        public void SetMeasures(IDictionary<TelemetryMeasureName, double> measurements)
+        {
+            if (measurements is Dictionary<TelemetryMeasureName, double> dictionary)
+            {
+                // Enumerate the concrete type to avoid boxing its enumerator
+                foreach (KeyValuePair<TelemetryMeasureName, double> measurement in dictionary)
+                {
+                    this.SetMeasure(measurement.Key, measurement.Value);
+                }
+            }
+            else if (measurements != null)
+            {
+                foreach (KeyValuePair<TelemetryMeasureName, double> measurement in measurements)
+                {
+                    this.SetMeasure(measurement.Key, measurement.Value);
+                }
+            }
+        }
+
+        public void SetMeasure(TelemetryMeasureName name, double value)
+        {
+            int index = (int)name;
+            for (int i = 0; i < this.MeasureCount; i++)
+            {
+                if (this._setMeasures[i] == index)
+                {
+                    this._measures[index] = value;
+                    return;
+                }
+            }
+            this._setMeasures[this.MeasureCount++] = index;
+            this._measures[index] = value;
+        }
+
+        public TelemetryMeasureName GetMeasureName(int i)
+        {
+            return (TelemetryMeasureName)this._setMeasures[i];
+        }
+
+        public double GetMeasureValue(int i)
+        {
+            return this._measures[this._setMeasures[i]];
+        }
+
+        /// <summary>
+        /// Releases the references held by the slot once it's been read
+        /// </summary>
+        public void Clear()
+        {
+            for (int i = 0; i < this.PropertyCount; i++)
+            {
+                this._properties[this._setProperties[i]] = null;
+            }
+            this.PropertyCount = 0;
+        }
+    }
+
+    /// <summary>
+    /// A bounded lock-free buffer of telemetry events which can be written to by any number of threads and is read
+    /// by a single background task. Writing an event copies it into one of the pre-allocated slots of the buffer,
+    /// so it doesn't allocate anything. When the buffer is full the events are dropped rather than blocking the caller.
+    /// </summary>
+    /// <remarks>
+    /// Each slot has a sequence number telling whether it's free for the position being written (sequence == position)
+    /// or ready for the position being read (sequence == position + 1), see
+    /// https://www.1024cores.net/home/lock-free-algorithms/queues/bounded-mpmc-queue
+    /// </remarks>
+    internal sealed class TelemetryEventBuffer
+    {
+        private readonly TelemetryEventRecord[] _slots;
+        private readonly int _mask;
+        private long _writePosition;
+        private long _readPosition;
+        private long _droppedEventCount;
+
+        /// <summary>
+        /// Creates a buffer for the specified number of events
+        /// </summary>
+        /// <param name="capacity">The number of slots of the buffer, must be a power of 2</param>
+        public TelemetryEventBuffer(int capacity)
+        {
+            if (capacity < 2 || (capacity & (capacity - 1)) != 0)
+            {
+                throw new ArgumentOutOfRangeException(nameof(capacity), $"The capacity must be a power of 2 greater than 1 but was {capacity}.");
+            }
+            this._slots = new TelemetryEventRecord[capacity];
+            for (int i = 0; i < capacity; i++)
+            {
+                this._slots[i] = new TelemetryEventRecord { Sequence = i };
+            }
+            this._mask = capacity - 1;
+        }
+
+        /// <summary>
+        /// The number of events dropped because the buffer was full since the last call to ResetDroppedEventCount
+        /// </summary>
+        public long DroppedEventCount => Interlocked.Read(ref this._droppedEventCount);
+
+        /// <summary>
+        /// Claims the next slot of the buffer for writing an event to it. The event must then be written to the
+        /// returned slot, followed by a call to Publish with the returned position.
+        /// </summary>
+        /// <param name="position">The position of the claimed slot</param>
+        /// <returns>The slot to write the event to, or null if the buffer is full</returns>
+        public TelemetryEventRecord TryClaim(out long position)
+        {
+            position = Volatile.Read(ref this._writePosition);
+            while (true)
+            {
+                TelemetryEventRecord slot = this._slots[position & this._mask];
+                long difference = Volatile.Read(ref slot.Sequence) - position;
+                if (difference == 0)
+                {
+                    long current = Interlocked.CompareExchange(ref this._writePosition, position + 1, position);
+                    if (current == position)
+                    {
+                        return slot;
+                    }
+                    position = current;
+                }
+                else if (difference < 0)
+                {
+                    // The slot still holds an event which hasn't been read, so the buffer is full
+                    Interlocked.Increment(ref this._droppedEventCount);
+                    return null;
+                }
+                else
+                {
+                    // Another writer claimed this position, try the next one
+                    position = Volatile.Read(ref this._writePosition);
+                }
+            }
+        }
+
+        /// <summary>
+        /// Makes the event written to a slot claimed by TryClaim available to the reader
+        /// </summary>
+        public static void Publish(TelemetryEventRecord slot, long position)
+        {
+            Volatile.Write(ref slot.Sequence, position + 1);
+        }
+
+        /// <summary>
+        /// Reads all the events published so far, passing each to the aggregator. This must only be called by one thread at a time.
+        /// </summary>
+        /// <param name="aggregator">The aggregator to add the events to</param>
+        /// <returns>The number of events read</returns>
+        public int Drain(TelemetryEventAggregator aggregator)
+        {
+            int count = 0;
+            while (true)
+            {
+                TelemetryEventRecord slot = this._slots[this._readPosition & this._mask];
+                if (Volatile.Read(ref slot.Sequence) != this._readPosition + 1)
+                {
+                    // Nothing has been published to this position yet
+                    return count;
+                }
+                try
+                {
+                    aggregator.Add(slot);
+                    count++;
+                }
+                finally
+                {
+                    // Free the slot for the write which will wrap around to it, even if the event couldn't be aggregated
+                    slot.Clear();
+                    Volatile.Write(ref slot.Sequence, this._readPosition + this._slots.Length);
+                    this._readPosition++;
+                }
+            }
+        }
+
+        /// <summary>
+        /// Resets the number of dropped events, returning the number dropped until now
+        /// </summary>
+        public long ResetDroppedEventCount()
+        {
+            return Interlocked.Exchange(ref this._droppedEventCount, 0);
+        }
+    }
+}
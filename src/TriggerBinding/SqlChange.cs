@@ -1,6 +1,9 @@
 // Copyright (c) Microsoft Corporation. All rights reserved.
 // Licensed under the MIT License. See License.txt in the project root for license information.
 
+using System;
+using Newtonsoft.Json;
+
 namespace Microsoft.Azure.WebJobs.Extensions.Sql
 {
     /// <summary>
@@ -31,6 +34,20 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// keys will be populated.
         /// </summary>
         public T Item { get; }
+
+        /// <summary>
+        /// The time (in UTC) at which the transaction that made the change committed. Only populated for batches of
+        /// changes sampled for commit latency, see the Sql_Trigger_CommitLatencySamplingPercent setting.
+        /// </summary>
+        [JsonProperty(NullValueHandling = NullValueHandling.Ignore)]
+        public DateTime? CommitTime { get; internal set; }
+
+        /// <summary>
+        /// The number of milliseconds between the commit of the change and when it was fetched by the trigger. Only
+        /// populated for batches of changes sampled for commit latency, see the Sql_Trigger_CommitLatencySamplingPercent setting.
+        /// </summary>
+        [JsonProperty(NullValueHandling = NullValueHandling.Ignore)]
+        public long? CommitLagMs { get; internal set; }
     }
 
     /// <summary>
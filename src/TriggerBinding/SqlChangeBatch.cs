@@ -0,0 +1,274 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Buffers;
+using System.Collections;
+using System.Collections.Generic;
+using System.Globalization;
+using System.IO;
+using System.Text;
+using Newtonsoft.Json;
+using static Microsoft.Azure.WebJobs.Extensions.Sql.SqlTriggerConstants;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql
+{
+    /// <summary>
+    /// The changes passed to the user's function for a batch of rows read from the change table. The
+    /// <see cref="SqlChange{T}"/> objects are only built when the batch is enumerated, so for functions which bind to a
+    /// string (e.g. out-of-process functions) the payload is written by <see cref="ToJson"/> in a single pass from the
+    /// values read from the rows, instead of deserializing each row into an object which is then serialized again.
+    /// </summary>
+    /// <typeparam name="T">POCO class representing the row in the user table</typeparam>
+    internal sealed class SqlChangeBatch<T> : IReadOnlyList<SqlChange<T>>
+    {
+        /// <summary>
+        /// The largest builder kept by a thread for writing the next payload. Larger payloads are rare enough that
+        /// it isn't worth holding on to the memory.
+        /// </summary>
+        private const int MaxCachedBuilderCapacity = 1024 * 1024;
+
+        [ThreadStatic]
+        private static StringBuilder _cachedBuilder;
+
+        private readonly IReadOnlyList<IReadOnlyDictionary<string, object>> _rows;
+        private readonly SqlChangeOperation[] _operations;
+        private readonly IReadOnlyList<(string name, string type)> _primaryKeyColumns;
+        private readonly IReadOnlyList<string> _userTableColumns;
+        private readonly Lazy<List<SqlChange<T>>> _changes;
+
+        /// <summary>
+        /// Initializes a new instance of the <see cref="SqlChangeBatch{T}"/> class.
+        /// </summary>
+        /// <param name="rows">The rows read from the change table, which must not be modified afterwards</param>
+        /// <param name="primaryKeyColumns">The primary key columns of the user table</param>
+        /// <param name="userTableColumns">The columns of the user table</param>
+        /// <exception cref="InvalidDataException">Thrown if the operation of any of the rows is invalid</exception>
+        public SqlChangeBatch(IReadOnlyList<IReadOnlyDictionary<string, object>> rows, IReadOnlyList<(string name, string type)> primaryKeyColumns, IReadOnlyList<string> userTableColumns)
+        {
+            this._rows = rows ?? throw new ArgumentNullException(nameof(rows));
+            this._primaryKeyColumns = primaryKeyColumns ?? throw new ArgumentNullException(nameof(primaryKeyColumns));
+            this._userTableColumns = userTableColumns ?? throw new ArgumentNullException(nameof(userTableColumns));
+            // Get the operations now so that invalid rows fail when the changes are processed, the same as when the
+            // changes are built right away
+            this._operations = new SqlChangeOperation[rows.Count];
+            for (int i = 0; i < rows.Count; i++)
+            {
+                this._operations[i] = SqlTableChangeMonitor<T>.GetChangeOperation(rows[i]);
+            }
+            this._changes = new Lazy<List<SqlChange<T>>>(() => SqlTableChangeMonitor<T>.BuildChanges(this._rows, this._primaryKeyColumns, this._userTableColumns));
+        }
+
+        public int Count => this._rows.Count;
+
+        public SqlChange<T> this[int index] => this._changes.Value[index];
+
+        public IEnumerator<SqlChange<T>> GetEnumerator()
+        {
+            return this._changes.Value.GetEnumerator();
+        }
+
+        IEnumerator IEnumerable.GetEnumerator()
+        {
+            return this.GetEnumerator();
+        }
+
+        /// <summary>
+        /// Serializes the changes to a JSON array, the same as serializing the list of <see cref="SqlChange{T}"/>
+        /// with an item that has a property for each column (i.e. a JObject). The values are written as they were
+        /// read from the rows, so unlike deserializing them into a JObject first decimals keep their scale and
+        /// datetimeoffsets keep their offset. With <see cref="SqlPayloadFormat.Columnar"/> the names of the columns are
+        /// written once instead, followed by the operation and the values of each row.
+        /// </summary>
+        /// <param name="temporalFormat">How the date and time columns are written</param>
+        /// <param name="payloadFormat">The layout of the changes</param>
+        /// <returns>The JSON payload</returns>
+        public string ToJson(SqlTemporalFormat temporalFormat = SqlTemporalFormat.Default, SqlPayloadFormat payloadFormat = SqlPayloadFormat.Default)
+        {
+            StringBuilder builder = _cachedBuilder ?? new StringBuilder();
+            _cachedBuilder = null;
+            try
+            {
+                using (var stringWriter = new StringWriter(builder, CultureInfo.InvariantCulture))
+                using (var writer = new JsonTextWriter(stringWriter) { ArrayPool = JsonArrayPool.Instance })
+                {
+                    if (payloadFormat == SqlPayloadFormat.Columnar)
+                    {
+                        this.WriteColumnarChanges(writer, temporalFormat);
+                    }
+                    else
+                    {
+                        writer.WriteStartArray();
+                        for (int i = 0; i < this._rows.Count; i++)
+                        {
+                            this.WriteChange(writer, this._rows[i], this._operations[i], temporalFormat);
+                        }
+                        writer.WriteEndArray();
+                    }
+                }
+                return builder.ToString();
+            }
+            finally
+            {
+                if (builder.Capacity <= MaxCachedBuilderCapacity)
+                {
+                    builder.Clear();
+                    _cachedBuilder = builder;
+                }
+            }
+        }
+
+        private void WriteChange(JsonWriter writer, IReadOnlyDictionary<string, object> row, SqlChangeOperation operation, SqlTemporalFormat temporalFormat)
+        {
+            writer.WriteStartObject();
+            writer.WritePropertyName(nameof(SqlChange<T>.Operation));
+            writer.WriteValue((int)operation);
+            writer.WritePropertyName(nameof(SqlChange<T>.Item));
+            writer.WriteStartObject();
+            // Same as BuildChanges, deleted rows only have the values of their primary keys
+            if (operation == SqlChangeOperation.Delete)
+            {
+                foreach ((string name, string type) column in this._primaryKeyColumns)
+                {
+                    WriteColumn(writer, row, column.name, temporalFormat);
+                }
+            }
+            else
+            {
+                foreach (string column in this._userTableColumns)
+                {
+                    WriteColumn(writer, row, column, temporalFormat);
+                }
+            }
+            writer.WriteEndObject();
+            if (row.TryGetValue(CommitTimeColumnName, out object commitTime) && commitTime is DateTime commitDateTime)
+            {
+                writer.WritePropertyName(nameof(SqlChange<T>.CommitTime));
+                writer.WriteValue(DateTime.SpecifyKind(commitDateTime, DateTimeKind.Utc));
+            }
+            if (row.TryGetValue(CommitLagMsColumnName, out object commitLagMs) && commitLagMs is long commitLag)
+            {
+                writer.WritePropertyName(nameof(SqlChange<T>.CommitLagMs));
+                writer.WriteValue(commitLag);
+            }
+            writer.WriteEndObject();
+        }
+
+        /// <summary>
+        /// Writes the changes in the <see cref="SqlPayloadFormat.Columnar"/> format. Each change is an array with the
+        /// operation and the values of the columns, followed by the commit time and lag when they were read. Deleted
+        /// rows only have the values of their primary keys, the other columns are null.
+        /// </summary>
+        private void WriteColumnarChanges(JsonWriter writer, SqlTemporalFormat temporalFormat)
+        {
+            var primaryKeyColumns = new HashSet<string>(StringComparer.Ordinal);
+            foreach ((string name, string type) column in this._primaryKeyColumns)
+            {
+                primaryKeyColumns.Add(column.name);
+            }
+            writer.WriteStartObject();
+            writer.WritePropertyName(SqlPayloadWriter.ColumnsPropertyName);
+            writer.WriteStartArray();
+            foreach (string column in this._userTableColumns)
+            {
+                writer.WriteValue(column);
+            }
+            writer.WriteEndArray();
+            writer.WritePropertyName(SqlPayloadWriter.ChangesPropertyName);
+            writer.WriteStartArray();
+            for (int i = 0; i < this._rows.Count; i++)
+            {
+                IReadOnlyDictionary<string, object> row = this._rows[i];
+                SqlChangeOperation operation = this._operations[i];
+                writer.WriteStartArray();
+                writer.WriteValue((int)operation);
+                writer.WriteStartArray();
+                foreach (string column in this._userTableColumns)
+                {
+                    if (operation == SqlChangeOperation.Delete && !primaryKeyColumns.Contains(column))
+                    {
+                        writer.WriteNull();
+                    }
+                    else
+                    {
+                        WriteValue(writer, row[column], temporalFormat);
+                    }
+                }
+                writer.WriteEndArray();
+                // The commit time and lag are read together
+                if (row.TryGetValue(CommitTimeColumnName, out object commitTime) && commitTime is DateTime commitDateTime)
+                {
+                    writer.WriteValue(DateTime.SpecifyKind(commitDateTime, DateTimeKind.Utc));
+                    writer.WriteValue(row.TryGetValue(CommitLagMsColumnName, out object commitLagMs) && commitLagMs is long commitLag ? commitLag : (long?)null);
+                }
+                writer.WriteEndArray();
+            }
+            writer.WriteEndArray();
+            writer.WriteEndObject();
+        }
+
+        private static void WriteColumn(JsonWriter writer, IReadOnlyDictionary<string, object> row, string column, SqlTemporalFormat temporalFormat)
+        {
+            writer.WritePropertyName(column);
+            WriteValue(writer, row[column], temporalFormat);
+        }
+
+        private static void WriteValue(JsonWriter writer, object value, SqlTemporalFormat temporalFormat)
+        {
+            if (temporalFormat == SqlTemporalFormat.Iso8601 && SqlTemporalJsonConverter.TryFormat(value, out string formatted))
+            {
+                writer.WriteValue(formatted);
+                return;
+            }
+            switch (value)
+            {
+                case null:
+                case DBNull _:
+                    writer.WriteNull();
+                    break;
+                case string _:
+                case bool _:
+                case byte _:
+                case short _:
+                case int _:
+                case long _:
+                case float _:
+                case double _:
+                case decimal _:
+                case DateTime _:
+                case DateTimeOffset _:
+                case TimeSpan _:
+                case Guid _:
+                case byte[] _:
+                    // The types returned by SqlDataReader.GetValue for the supported column types, which are written
+                    // the same way the serializer writes them
+                    writer.WriteValue(value);
+                    break;
+                default:
+                    writer.WriteRawValue(Utils.JsonSerializeObject(value));
+                    break;
+            }
+        }
+
+        /// <summary>
+        /// Rents the buffers used by the JSON writer from the shared pool.
+        /// </summary>
+        private sealed class JsonArrayPool : IArrayPool<char>
+        {
+            public static readonly JsonArrayPool Instance = new JsonArrayPool();
+
+            public char[] Rent(int minimumLength)
+            {
+                return ArrayPool<char>.Shared.Rent(minimumLength);
+            }
+
+            public void Return(char[] array)
+            {
+                if (array != null)
+                {
+                    ArrayPool<char>.Shared.Return(array);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,511 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Data;
+using System.Diagnostics;
+using System.Linq;
+using System.Text;
+using System.Threading;
+using System.Threading.Tasks;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry;
+using static Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry.Telemetry;
+using static Microsoft.Azure.WebJobs.Extensions.Sql.SqlTriggerConstants;
+using Microsoft.Data.SqlClient;
+using Microsoft.Extensions.Logging;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql
+{
+    /// <summary>
+    /// A single lease renewal statement contributed by a change monitor for one tick of the
+    /// <see cref="SqlLeaseRenewalScheduler"/>.
+    /// </summary>
+    internal sealed class LeaseRenewalRequest
+    {
+        /// <summary>
+        /// Initializes a new instance of the <see cref="LeaseRenewalRequest"/> class.
+        /// </summary>
+        /// <param name="buildStatement">Function that builds the renewal statement given the name of the parameter holding the row data</param>
+        /// <param name="rowData">JSON array containing the primary key values of the rows to renew the leases for</param>
+        /// <param name="appLockTimeoutMs">The timeout in milliseconds for acquiring the application lock</param>
+        public LeaseRenewalRequest(Func<string, string> buildStatement, string rowData, int appLockTimeoutMs)
+        {
+            this.BuildStatement = buildStatement ?? throw new ArgumentNullException(nameof(buildStatement));
+            this.RowData = rowData ?? throw new ArgumentNullException(nameof(rowData));
+            this.AppLockTimeoutMs = appLockTimeoutMs;
+        }
+
+        /// <summary>
+        /// Builds the T-SQL statement that renews the leases. The statement must end by selecting the number of rows
+        /// it updated (SELECT @@ROWCOUNT) so that the results can be mapped back to each request in a batch.
+        /// </summary>
+        public Func<string, string> BuildStatement { get; }
+
+        /// <summary>
+        /// JSON array containing the primary key values of the rows to renew the leases for.
+        /// </summary>
+        public string RowData { get; }
+
+        /// <summary>
+        /// The timeout in milliseconds for acquiring the application lock.
+        /// </summary>
+        public int AppLockTimeoutMs { get; }
+    }
+
+    /// <summary>
+    /// A change monitor that holds leases which need to be periodically renewed by the <see cref="SqlLeaseRenewalScheduler"/>.
+    /// </summary>
+    internal interface ILeaseRenewalParticipant
+    {
+        /// <summary>
+        /// Called once per renewal interval. Returns the renewal request for the leases currently held, or null if
+        /// there is nothing to renew.
+        /// </summary>
+        Task<LeaseRenewalRequest> PrepareLeaseRenewalAsync();
+
+        /// <summary>
+        /// Called after the request returned by <see cref="PrepareLeaseRenewalAsync"/> has been executed.
+        /// </summary>
+        /// <param name="rowsAffected">The number of leases renewed, 0 if the renewal failed</param>
+        /// <param name="durationMs">The duration in milliseconds of the round trip the renewal was part of</param>
+        /// <param name="error">The exception that caused the renewal to fail, or null if it succeeded</param>
+        Task CompleteLeaseRenewalAsync(int rowsAffected, long durationMs, Exception error);
+    }
+
+    /// <summary>
+    /// Host-wide scheduler that renews the leases of all change monitors. Monitors watching tables in the same database
+    /// (i.e. sharing a connection string) are renewed together in a single batch on a single connection every
+    /// <see cref="LeaseRenewalIntervalInSeconds"/> seconds, so the number of connections used for lease renewal is
+    /// independent of the number of trigger functions defined by the app.
+    /// </summary>
+    internal sealed class SqlLeaseRenewalScheduler
+    {
+        /// <summary>
+        /// The scheduler shared by all change monitors in the host.
+        /// </summary>
+        public static SqlLeaseRenewalScheduler Instance { get; } = new SqlLeaseRenewalScheduler(TimeSpan.FromSeconds(LeaseRenewalIntervalInSeconds));
+
+        private readonly TimeSpan _renewalInterval;
+        private readonly Func<string, CancellationToken, Task> _renewLeasesUntilCancelledAsync;
+        private readonly Dictionary<string, RenewalGroup> _groups = new Dictionary<string, RenewalGroup>();
+
+        /// <summary>
+        /// Initializes a new instance of the <see cref="SqlLeaseRenewalScheduler"/> class.
+        /// </summary>
+        /// <param name="renewalInterval">How often the leases are renewed</param>
+        public SqlLeaseRenewalScheduler(TimeSpan renewalInterval) : this(renewalInterval, null)
+        {
+        }
+
+        /// <summary>
+        /// Initializes a new instance of the <see cref="SqlLeaseRenewalScheduler"/> class.
+        /// </summary>
+        /// <param name="renewalInterval">How often the leases are renewed</param>
+        /// <param name="renewLeasesUntilCancelledAsync">Renews the leases of a group until the token is cancelled,
+        /// or null to renew them on a connection to the database</param>
+        internal SqlLeaseRenewalScheduler(TimeSpan renewalInterval, Func<string, CancellationToken, Task> renewLeasesUntilCancelledAsync)
+        {
+            this._renewalInterval = renewalInterval;
+            this._renewLeasesUntilCancelledAsync = renewLeasesUntilCancelledAsync;
+        }
+
+        /// <summary>
+        /// Registers a participant whose leases should be renewed using the given connection string. A renewal loop is
+        /// started for the connection string if one isn't already running.
+        /// </summary>
+        /// <param name="connectionString">SQL connection string used to connect to the database holding the leases tables</param>
+        /// <param name="participant">The participant to renew leases for</param>
+        /// <param name="logger">Facilitates logging of messages</param>
+        /// <returns>Disposable that unregisters the participant. The renewal loop is stopped once the last participant for the connection string unregisters.</returns>
+        public IDisposable Register(string connectionString, ILeaseRenewalParticipant participant, ILogger logger)
+        {
+            if (string.IsNullOrEmpty(connectionString))
+            {
+                throw new ArgumentNullException(nameof(connectionString));
+            }
+            if (participant == null)
+            {
+                throw new ArgumentNullException(nameof(participant));
+            }
+            if (logger == null)
+            {
+                throw new ArgumentNullException(nameof(logger));
+            }
+
+            lock (this._groups)
+            {
+                if (!this._groups.TryGetValue(connectionString, out RenewalGroup group))
+                {
+                    // The first participant is added before the loop starts so that the loop always has a logger to use
+                    group = new RenewalGroup(connectionString, this._renewalInterval, this._renewLeasesUntilCancelledAsync);
+                    group.Add(participant, logger);
+                    this._groups.Add(connectionString, group);
+                    group.Start();
+                }
+                else
+                {
+                    group.Add(participant, logger);
+                }
+                return new Registration(this, group, participant);
+            }
+        }
+
+        private void Unregister(RenewalGroup group, ILeaseRenewalParticipant participant)
+        {
+            lock (this._groups)
+            {
+                if (group.Remove(participant))
+                {
+                    if (this._groups.TryGetValue(group.ConnectionString, out RenewalGroup current) && current == group)
+                    {
+                        this._groups.Remove(group.ConnectionString);
+                    }
+                    group.Dispose();
+                }
+            }
+        }
+
+        /// <summary>
+        /// Builds the text of a single command that renews the leases for all of the given requests. The application
+        /// lock is acquired once for the whole batch, using the largest timeout of all the requests. The parameter
+        /// holding the row data of the request at index i is named @rowData_i.
+        /// </summary>
+        /// <param name="requests">The requests to combine into a single batch</param>
+        /// <returns>The command text for the batch</returns>
+        internal static string BuildRenewLeasesBatchCommandText(IReadOnlyList<LeaseRenewalRequest> requests)
+        {
+            var commandText = new StringBuilder(GetAppLockStatements(requests.Max(r => r.AppLockTimeoutMs)));
+            for (int i = 0; i < requests.Count; i++)
+            {
+                commandText.AppendLine();
+                commandText.AppendLine(requests[i].BuildStatement(GetRowDataParameterName(i)));
+            }
+            return commandText.ToString();
+        }
+
+        private static string GetRowDataParameterName(int index)
+        {
+            return $"@rowData_{index}";
+        }
+
+        private sealed class Registration : IDisposable
+        {
+            private readonly SqlLeaseRenewalScheduler _scheduler;
+            private readonly RenewalGroup _group;
+            private readonly ILeaseRenewalParticipant _participant;
+            private int _disposed = 0;
+
+            public Registration(SqlLeaseRenewalScheduler scheduler, RenewalGroup group, ILeaseRenewalParticipant participant)
+            {
+                this._scheduler = scheduler;
+                this._group = group;
+                this._participant = participant;
+            }
+
+            public void Dispose()
+            {
+                if (Interlocked.Exchange(ref this._disposed, 1) == 0)
+                {
+                    this._scheduler.Unregister(this._group, this._participant);
+                }
+            }
+        }
+
+        /// <summary>
+        /// The set of participants sharing a connection string, along with the loop renewing their leases. The loop runs
+        /// until the group is disposed, which happens once the last participant unregisters.
+        /// </summary>
+        private sealed class RenewalGroup : IDisposable
+        {
+            private readonly TimeSpan _renewalInterval;
+            private readonly Func<string, CancellationToken, Task> _renewLeasesUntilCancelledAsync;
+            private readonly List<ILeaseRenewalParticipant> _participants = new List<ILeaseRenewalParticipant>();
+            private readonly Dictionary<ILeaseRenewalParticipant, ILogger> _loggers = new Dictionary<ILeaseRenewalParticipant, ILogger>();
+            private readonly CancellationTokenSource _cancellationTokenSource = new CancellationTokenSource();
+            private ILogger _lastLogger;
+            private int _disposed = 0;
+
+            public RenewalGroup(string connectionString, TimeSpan renewalInterval, Func<string, CancellationToken, Task> renewLeasesUntilCancelledAsync)
+            {
+                this.ConnectionString = connectionString;
+                this._renewalInterval = renewalInterval;
+                this._renewLeasesUntilCancelledAsync = renewLeasesUntilCancelledAsync ?? this.RenewLeasesUntilCancelledAsync;
+            }
+
+            public string ConnectionString { get; }
+
+            public void Add(ILeaseRenewalParticipant participant, ILogger logger)
+            {
+                lock (this._participants)
+                {
+                    this._participants.Add(participant);
+                    this._loggers[participant] = logger;
+                    this._lastLogger = this._lastLogger ?? logger;
+                }
+            }
+
+            /// <summary>
+            /// Removes the participant from the group.
+            /// </summary>
+            /// <returns>True if the participant was removed and the group is now empty</returns>
+            public bool Remove(ILeaseRenewalParticipant participant)
+            {
+                lock (this._participants)
+                {
+                    if (!this._participants.Remove(participant))
+                    {
+                        return false;
+                    }
+                    this._loggers.Remove(participant);
+                    return this._participants.Count == 0;
+                }
+            }
+
+            public void Start()
+            {
+                _ = Task.Run(this.RunLeaseRenewalLoopAsync);
+            }
+
+            /// <summary>
+            /// Stops the renewal loop. The loop disposes the cancellation token source itself once it has exited.
+            /// </summary>
+            public void Dispose()
+            {
+                if (Interlocked.Exchange(ref this._disposed, 1) == 0)
+                {
+                    this._cancellationTokenSource.Cancel();
+                }
+            }
+
+            private ILeaseRenewalParticipant[] GetParticipants()
+            {
+                lock (this._participants)
+                {
+                    return this._participants.ToArray();
+                }
+            }
+
+            /// <summary>
+            /// Gets the logger of a participant that is still registered, so that messages about the group as a whole
+            /// aren't logged through the logger of a function that has since stopped. Falls back to the logger of the last
+            /// participant seen once the group is empty.
+            /// </summary>
+            private ILogger GetLogger()
+            {
+                lock (this._participants)
+                {
+                    if (this._participants.Count > 0)
+                    {
+                        this._lastLogger = this._loggers[this._participants[0]];
+                    }
+                    return this._lastLogger;
+                }
+            }
+
+            private async Task RunLeaseRenewalLoopAsync()
+            {
+                CancellationToken token = this._cancellationTokenSource.Token;
+
+                try
+                {
+                    this.GetLogger().LogDebug("Starting shared lease renewal loop.");
+                    while (!token.IsCancellationRequested)
+                    {
+                        try
+                        {
+                            await this._renewLeasesUntilCancelledAsync(this.ConnectionString, token);
+                        }
+                        catch (Exception e) when (!token.IsCancellationRequested)
+                        {
+                            // The loop is shared by every participant using this connection string, so exiting here would
+                            // leave all of their leases to expire. Start over on a new connection after the renewal interval.
+                            this.GetLogger().LogError($"Restarting lease renewal loop due to exception: {e.GetType()}. Exception message: {e.Message}");
+                            TelemetryInstance.TrackException(TelemetryErrorName.RenewLeasesLoop, e);
+                            await Task.Delay(this._renewalInterval, token);
+                        }
+                    }
+                }
+                catch (Exception) when (token.IsCancellationRequested)
+                {
+                    // The last participant unregistered, Task.Delay throws an exception if it's cancelled.
+                }
+                finally
+                {
+                    this._cancellationTokenSource.Dispose();
+                }
+            }
+
+            private async Task RenewLeasesUntilCancelledAsync(string connectionString, CancellationToken token)
+            {
+                using (var connection = new SqlConnection(connectionString))
+                {
+                    await connection.OpenAsyncWithLogging(this.GetLogger(), token);
+
+                    bool forceReconnect = false;
+                    while (!token.IsCancellationRequested)
+                    {
+                        ILogger logger = this.GetLogger();
+                        bool isConnected = await connection.TryEnsureConnected(forceReconnect, logger, "LeaseRenewalLoopConnection", token);
+                        if (!isConnected)
+                        {
+                            // If we couldn't reconnect then wait our delay and try again
+                            await Task.Delay(this._renewalInterval, token);
+                            continue;
+                        }
+                        else
+                        {
+                            forceReconnect = false;
+                        }
+
+                        try
+                        {
+                            await this.RenewLeasesAsync(connection, logger, token);
+                        }
+                        catch (Exception e) when (e.IsFatalSqlException() || connection.IsBrokenOrClosed())
+                        {
+                            // Retry connection if there was a fatal SQL exception or something else caused the connection to be closed
+                            // since that indicates some other issue occurred (such as dropped network) and may be able to be recovered
+                            forceReconnect = true;
+                        }
+
+                        await Task.Delay(this._renewalInterval, token);
+                    }
+                }
+            }
+
+            private async Task RenewLeasesAsync(SqlConnection connection, ILogger logger, CancellationToken token)
+            {
+                var participants = new List<ILeaseRenewalParticipant>();
+                var requests = new List<LeaseRenewalRequest>();
+                foreach (ILeaseRenewalParticipant participant in this.GetParticipants())
+                {
+                    try
+                    {
+                        LeaseRenewalRequest request = await participant.PrepareLeaseRenewalAsync();
+                        if (request != null)
+                        {
+                            participants.Add(participant);
+                            requests.Add(request);
+                        }
+                    }
+                    catch (OperationCanceledException)
+                    {
+                        // The participant is being stopped, nothing to renew
+                    }
+                }
+
+                if (requests.Count == 0)
+                {
+                    return;
+                }
+
+                var stopwatch = Stopwatch.StartNew();
+                try
+                {
+                    IReadOnlyList<int> rowsAffected = await ExecuteRenewLeasesBatchAsync(connection, requests, logger, token);
+                    long durationMs = stopwatch.ElapsedMilliseconds;
+                    logger.LogDebug($"Renewed leases for {requests.Count} monitor(s) in a single batch in {durationMs}ms");
+                    for (int i = 0; i < participants.Count; i++)
+                    {
+                        await CompleteAsync(participants[i], rowsAffected[i], durationMs, null);
+                    }
+                }
+                catch (Exception e) when (requests.Count > 1 && !e.IsFatalSqlException() && !connection.IsBrokenOrClosed() && !token.IsCancellationRequested)
+                {
+                    // A single broken participant (such as one whose leases table was dropped) shouldn't prevent the other
+                    // participants from renewing their leases, so fall back to renewing each of them separately.
+                    logger.LogWarning($"Failed to renew leases in a single batch, renewing each monitor separately. Exception message: {e.Message}");
+                    for (int i = 0; i < participants.Count; i++)
+                    {
+                        stopwatch.Restart();
+                        try
+                        {
+                            IReadOnlyList<int> rowsAffected = await ExecuteRenewLeasesBatchAsync(connection, new[] { requests[i] }, logger, token);
+                            await CompleteAsync(participants[i], rowsAffected[0], stopwatch.ElapsedMilliseconds, null);
+                        }
+                        catch (Exception e2)
+                        {
+                            await CompleteAsync(participants[i], 0, stopwatch.ElapsedMilliseconds, e2);
+                            if (e2.IsFatalSqlException() || connection.IsBrokenOrClosed())
+                            {
+                                throw;
+                            }
+                        }
+                    }
+                }
+                catch (Exception e)
+                {
+                    long durationMs = stopwatch.ElapsedMilliseconds;
+                    foreach (ILeaseRenewalParticipant participant in participants)
+                    {
+                        await CompleteAsync(participant, 0, durationMs, e);
+                    }
+                    throw;
+                }
+            }
+
+            private static async Task CompleteAsync(ILeaseRenewalParticipant participant, int rowsAffected, long durationMs, Exception error)
+            {
+                try
+                {
+                    await participant.CompleteLeaseRenewalAsync(rowsAffected, durationMs, error);
+                }
+                catch (OperationCanceledException)
+                {
+                    // The participant is being stopped, nothing left to update
+                }
+            }
+
+            /// <summary>
+            /// Executes the renewal requests in a single round trip. Uses a transaction to automatically release the
+            /// app lock when we're done executing the query.
+            /// </summary>
+            /// <returns>The number of leases renewed for each request</returns>
+            private static async Task<IReadOnlyList<int>> ExecuteRenewLeasesBatchAsync(SqlConnection connection, IReadOnlyList<LeaseRenewalRequest> requests, ILogger logger, CancellationToken token)
+            {
+                using (SqlTransaction transaction = connection.BeginTransaction(IsolationLevel.RepeatableRead))
+                {
+                    try
+                    {
+                        var rowsAffected = new int[requests.Count];
+                        using (var command = new SqlCommand(BuildRenewLeasesBatchCommandText(requests), connection, transaction))
+                        {
+                            for (int i = 0; i < requests.Count; i++)
+                            {
+                                command.Parameters.Add(GetRowDataParameterName(i), SqlDbType.NVarChar, -1).Value = requests[i].RowData;
+                            }
+
+                            using (SqlDataReader reader = command.ExecuteReaderWithLogging(logger))
+                            {
+                                for (int i = 0; i < requests.Count; i++)
+                                {
+                                    if (i > 0 && !await reader.NextResultAsync(token))
+                                    {
+                                        throw new InvalidOperationException($"Expected {requests.Count} results when renewing leases but received {i}.");
+                                    }
+                                    rowsAffected[i] = await reader.ReadAsync(token) ? reader.GetInt32(0) : 0;
+                                }
+                            }
+                        }
+                        transaction.Commit();
+                        return rowsAffected;
+                    }
+                    catch (Exception)
+                    {
+                        try
+                        {
+                            transaction.Rollback();
+                        }
+                        catch (Exception e2)
+                        {
+                            logger.LogError($"RenewLeases - Failed to rollback transaction due to exception: {e2.GetType()}. Exception message: {e2.Message}");
+                            TelemetryInstance.TrackException(TelemetryErrorName.RenewLeasesRollback, e2);
+                        }
+                        throw;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@ using Microsoft.Azure.WebJobs.Host.Executors;
 using Microsoft.Data.SqlClient;
 using Microsoft.Extensions.Logging;
 using Microsoft.Extensions.Configuration;
+using Newtonsoft.Json.Linq;
 using System.Data;
 
 namespace Microsoft.Azure.WebJobs.Extensions.Sql
@@ -24,7 +25,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
     /// Watches for changes in the user table, invokes user function if changes are found, and manages leases.
     /// </summary>
     /// <typeparam name="T">POCO class representing the row in the user table</typeparam>
-    internal sealed class SqlTableChangeMonitor<T> : IDisposable
+    internal sealed class SqlTableChangeMonitor<T> : IDisposable, ILeaseRenewalParticipant
     {
         #region Constants
         /// <summary>
@@ -41,8 +42,13 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// </remarks>
         private const int MaxLeaseRenewalCount = 10;
         public const int LeaseIntervalInSeconds = 60;
-        private const int LeaseRenewalIntervalInSeconds = 15;
         private const int MaxRetryReleaseLeases = 3;
+        /// <summary>
+        /// Names of the activities started by the monitor, see <see cref="SqlBindingMetrics.ActivitySource"/>
+        /// </summary>
+        private const string GetChangesActivityName = "sql.trigger.get_changes";
+        private const string ProcessChangesActivityName = "sql.trigger.process_changes";
+        private const string ReleaseLeasesActivityName = "sql.trigger.release_leases";
 
         #endregion Constants
 
@@ -53,7 +59,6 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         private readonly string _bracketedLeasesTableName;
         private readonly IReadOnlyList<string> _userTableColumns;
         private readonly IReadOnlyList<(string name, string type)> _primaryKeyColumns;
-        private readonly IReadOnlyList<string> _rowMatchConditions;
         private readonly ITriggeredFunctionExecutor _executor;
         private readonly SqlOptions _sqlOptions;
         private readonly ILogger _logger;
@@ -62,13 +67,55 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// </summary>
         private readonly int _maxBatchSize;
         /// <summary>
+        /// Maximum estimated size in bytes of the changes to process in each iteration of the loop, 0 if there's no limit
+        /// </summary>
+        private readonly int _maxBatchBytes;
+        /// <summary>
         /// Delay in ms between processing each batch of changes
         /// </summary>
         private readonly int _pollingIntervalInMs;
+        private readonly int _appLockTimeoutMs;
         private readonly string _appLockStatements;
         private readonly CancellationTokenSource _cancellationTokenSourceCheckForChanges = new CancellationTokenSource();
         private readonly CancellationTokenSource _cancellationTokenSourceRenewLeases = new CancellationTokenSource();
+        /// <summary>
+        /// Token of <see cref="_cancellationTokenSourceRenewLeases"/>, captured up front since the shared lease renewal
+        /// loop may still call into this monitor after the token source has been disposed.
+        /// </summary>
+        private readonly CancellationToken _renewLeasesToken;
+        /// <summary>
+        /// Registration with the host-wide <see cref="SqlLeaseRenewalScheduler"/>, which renews our leases along with
+        /// those of every other monitor using the same connection string. Null in exclusive mode since no per-row
+        /// leases are taken.
+        /// </summary>
+        private readonly IDisposable _leaseRenewalRegistration;
         private CancellationTokenSource _cancellationTokenSourceExecutor = new CancellationTokenSource();
+        /// <summary>
+        /// Whether this monitor is the only consumer of the changes on the user table. If so no per-row leases are used,
+        /// instead a session-scoped app lock named <see cref="_exclusiveLeaseResource"/> is held on the change
+        /// consumption connection and only the LastSyncVersion is updated after each batch.
+        /// </summary>
+        private readonly bool _exclusive;
+        private readonly string _exclusiveLeaseResource;
+        /// <summary>
+        /// Whether all the rows of the user table are sent to the function when LastSyncVersion has fallen behind the
+        /// minimum valid version of change tracking, meaning that changes were lost. While the resync is in progress a
+        /// session-scoped app lock named <see cref="_resyncLeaseResource"/> is held by the instance sending the rows.
+        /// </summary>
+        private readonly bool _resyncOnRetentionGap;
+        private readonly string _resyncLeaseResource;
+        /// <summary>
+        /// Percentage of batches of changes for which the commit time of each change is looked up. Set to 0 if we aren't
+        /// allowed to query sys.dm_tran_commit_table, since that requires VIEW SERVER STATE (or VIEW DATABASE STATE on
+        /// Azure SQL Database).
+        /// </summary>
+        private int _commitLatencySamplingPercent;
+        private readonly Random _commitLatencySamplingRandom = new Random();
+        /// <summary>
+        /// Measures the time since "_rows" were fetched, the commit to completion latency of a change is its commit lag
+        /// when it was fetched plus this time.
+        /// </summary>
+        private readonly Stopwatch _rowsFetchedSw = new Stopwatch();
 
         /// <summary>
         /// The _rowsToProcess list is used by both the "check for changes" loop and the "renew leases" loop, so in order
@@ -88,6 +135,42 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         private List<IReadOnlyDictionary<string, object>> _rowsToRelease = new List<IReadOnlyDictionary<string, object>>();
         private int _leaseRenewalCount = 0;
         private State _state = State.CheckingForChanges;
+        /// <summary>
+        /// Whether the exclusive lease is currently held by the change consumption connection
+        /// </summary>
+        private bool _holdsExclusiveLease = false;
+        /// <summary>
+        /// The last row that was processed in exclusive mode. Changes are fetched in (change version, primary key) order
+        /// and only the ones after this row are fetched, since the LastSyncVersion can't be advanced past a version
+        /// whose changes were only partially processed.
+        /// </summary>
+        private IReadOnlyDictionary<string, object> _exclusiveCursor;
+        /// <summary>
+        /// Whether the last batch fetched in exclusive mode contained all the changes available at the time
+        /// </summary>
+        private bool _exclusiveBatchDrained = false;
+        /// <summary>
+        /// The number of times processing the current batch failed in exclusive mode, this is tracked in the leases
+        /// table when not in exclusive mode.
+        /// </summary>
+        private int _exclusiveAttemptCount = 0;
+        /// <summary>
+        /// Whether the resync lease is currently held by the change consumption connection
+        /// </summary>
+        private bool _holdsResyncLease = false;
+        /// <summary>
+        /// Whether the last check for changes found a resync of the user table in progress. The resync state is only read
+        /// on its own (see <see cref="GetResyncRowsAsync"/>) while this is set, otherwise it comes with the changes.
+        /// </summary>
+        private bool _resyncInProgress = false;
+        /// <summary>
+        /// The change version at which the resync that the rows in "_rows" are part of started, or null if "_rows" are changes
+        /// </summary>
+        private long? _resyncVersion;
+        /// <summary>
+        /// The number of times processing the current page of rows of a resync failed
+        /// </summary>
+        private int _resyncAttemptCount = 0;
 
         /// <summary>
         /// Initializes a new instance of the <see cref="SqlTableChangeMonitor{T}" />> class.
@@ -104,6 +187,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// <param name="logger">Facilitates logging of messages</param>
         /// <param name="configuration">Provides configuration values</param>
         /// <param name="telemetryProps">Properties passed in telemetry events</param>
+        /// <param name="exclusive">Whether this monitor is the only consumer of the changes on the user table</param>
         public SqlTableChangeMonitor(
             string connectionString,
             int userTableId,
@@ -116,7 +200,8 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             SqlOptions sqlOptions,
             ILogger logger,
             IConfiguration configuration,
-            IDictionary<TelemetryPropertyName, string> telemetryProps)
+            IDictionary<TelemetryPropertyName, string> telemetryProps,
+            bool exclusive)
         {
             this._connectionString = !string.IsNullOrEmpty(connectionString) ? connectionString : throw new ArgumentNullException(nameof(connectionString));
             this._userTable = !string.IsNullOrEmpty(userTable?.FullName) ? userTable : throw new ArgumentNullException(nameof(userTable));
@@ -130,6 +215,9 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
 
             this._userTableId = userTableId;
             this._telemetryProps = telemetryProps ?? new Dictionary<TelemetryPropertyName, string>();
+            this._exclusive = exclusive;
+            this._exclusiveLeaseResource = string.Format(CultureInfo.InvariantCulture, ExclusiveLeaseAppLockResourceFormat, this._userFunctionId, this._userTableId);
+            this._resyncLeaseResource = string.Format(CultureInfo.InvariantCulture, ResyncLeaseAppLockResourceFormat, this._userFunctionId, this._userTableId);
 
             // TODO: when we move to reading them exclusively from the host options, remove reading from settings.(https://github.com/Azure/azure-functions-sql-extension/issues/961)
             // Check if there's config settings to override the default max batch size/polling interval values
@@ -140,6 +228,12 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             {
                 throw new InvalidOperationException($"Invalid value for configuration setting '{ConfigKey_SqlTrigger_MaxBatchSize}'. Ensure that the value is a positive integer.");
             }
+            int? configuredMaxBatchBytes = configuration.GetValue<int?>(ConfigKey_SqlTrigger_MaxBatchBytes);
+            this._maxBatchBytes = configuredMaxBatchBytes ?? this._sqlOptions.MaxBatchBytes;
+            if (this._maxBatchBytes < 0)
+            {
+                throw new InvalidOperationException($"Invalid value for configuration setting '{ConfigKey_SqlTrigger_MaxBatchBytes}'. Ensure that the value is a non-negative integer.");
+            }
             this._pollingIntervalInMs = configuredPollingInterval ?? this._sqlOptions.PollingIntervalMs;
             if (this._pollingIntervalInMs <= 0)
             {
@@ -151,31 +245,46 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             {
                 throw new InvalidOperationException($"Invalid value for configuration setting '{ConfigKey_SqlTrigger_AppLockTimeoutMs}'. Value must not be less than {SqlOptions.MinimumAppLockTimeoutMs}ms.");
             }
+            this._appLockTimeoutMs = appLockTimeoutMs;
             this._appLockStatements = GetAppLockStatements(appLockTimeoutMs);
+            bool? configuredResyncOnRetentionGap = configuration.GetValue<bool?>(ConfigKey_SqlTrigger_ResyncOnRetentionGap);
+            this._resyncOnRetentionGap = configuredResyncOnRetentionGap ?? this._sqlOptions.ResyncOnRetentionGap;
+            int? configuredCommitLatencySamplingPercent = configuration.GetValue<int?>(ConfigKey_SqlTrigger_CommitLatencySamplingPercent);
+            this._commitLatencySamplingPercent = configuredCommitLatencySamplingPercent ?? this._sqlOptions.CommitLatencySamplingPercent;
+            if (this._commitLatencySamplingPercent < 0 || this._commitLatencySamplingPercent > 100)
+            {
+                throw new InvalidOperationException($"Invalid value for configuration setting '{ConfigKey_SqlTrigger_CommitLatencySamplingPercent}'. Ensure that the value is an integer between 0 and 100.");
+            }
             TelemetryInstance.TrackEvent(
                 TelemetryEventName.TriggerMonitorStart,
                 new Dictionary<TelemetryPropertyName, string>(telemetryProps) {
                         { TelemetryPropertyName.HasConfiguredMaxBatchSize, (configuredMaxBatchSize != null).ToString() },
+                        { TelemetryPropertyName.HasConfiguredMaxBatchBytes, (configuredMaxBatchBytes != null).ToString() },
                         { TelemetryPropertyName.HasConfiguredPollingInterval, (configuredPollingInterval != null).ToString() },
                         { TelemetryPropertyName.HasConfiguredAppLockTimeout, (configuredAppLockTimeout != null).ToString() },
+                        { TelemetryPropertyName.HasConfiguredResyncOnRetentionGap, (configuredResyncOnRetentionGap != null).ToString() },
+                        { TelemetryPropertyName.ResyncOnRetentionGap, this._resyncOnRetentionGap.ToString() },
+                        { TelemetryPropertyName.HasConfiguredCommitLatencySamplingPercent, (configuredCommitLatencySamplingPercent != null).ToString() },
                 },
                 new Dictionary<TelemetryMeasureName, double>() {
                     { TelemetryMeasureName.MaxBatchSize, this._maxBatchSize },
+                    { TelemetryMeasureName.MaxBatchBytes, this._maxBatchBytes },
                     { TelemetryMeasureName.PollingIntervalMs, this._pollingIntervalInMs },
-                    { TelemetryMeasureName.AppLockTimeoutMs, appLockTimeoutMs }
+                    { TelemetryMeasureName.AppLockTimeoutMs, appLockTimeoutMs },
+                    { TelemetryMeasureName.CommitLatencySamplingPercent, this._commitLatencySamplingPercent }
                 }
             );
 
-            // Prep search-conditions that will be used besides WHERE clause to match table rows.
-            this._rowMatchConditions = Enumerable.Range(0, this._maxBatchSize)
-                .Select(rowIndex => string.Join(" AND ", this._primaryKeyColumns.Select((col, colIndex) => $"{col.name.AsBracketQuotedString()} = @{rowIndex}_{colIndex}")))
-                .ToList();
+            this._renewLeasesToken = this._cancellationTokenSourceRenewLeases.Token;
+            if (!this._exclusive)
+            {
+                this._leaseRenewalRegistration = SqlLeaseRenewalScheduler.Instance.Register(this._connectionString, this, this._logger);
+            }
 
 #pragma warning disable CS4014 // Queue the below tasks and exit. Do not wait for their completion.
             _ = Task.Run(() =>
             {
                 this.RunChangeConsumptionLoopAsync();
-                this.RunLeaseRenewalLoopAsync();
             });
 #pragma warning restore CS4014
         }
@@ -200,62 +309,105 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// </summary>
         private async Task RunChangeConsumptionLoopAsync()
         {
-            this._logger.LogDebug($"Starting change consumption loop. MaxBatchSize: {this._maxBatchSize} PollingIntervalMs: {this._pollingIntervalInMs}");
+            this._logger.LogDebug($"Starting change consumption loop. MaxBatchSize: {this._maxBatchSize} PollingIntervalMs: {this._pollingIntervalInMs} MaxBatchBytes: {this._maxBatchBytes} Exclusive: {this._exclusive} ResyncOnRetentionGap: {this._resyncOnRetentionGap} CommitLatencySamplingPercent: {this._commitLatencySamplingPercent}");
 
             try
             {
                 CancellationToken token = this._cancellationTokenSourceCheckForChanges.Token;
 
-                using (var connection = new SqlConnection(this._connectionString))
+                using (var connection = new SqlConnection(this.GetChangeConsumptionConnectionString()))
                 {
-                    await connection.OpenAsyncWithLogging(this._logger, token);
-
-                    bool forceReconnect = false;
-                    // Check for cancellation request only after a cycle of checking and processing of changes completes.
-                    while (!token.IsCancellationRequested)
+                    try
                     {
-                        bool isConnected = await connection.TryEnsureConnected(forceReconnect, this._logger, "ChangeConsumptionConnection", token);
-                        if (!isConnected)
-                        {
-                            // If we couldn't reconnect then wait our delay and try again
-                            await Task.Delay(TimeSpan.FromMilliseconds(this._pollingIntervalInMs), token);
-                            continue;
-                        }
-                        else
-                        {
-                            forceReconnect = false;
-                        }
+                        await connection.OpenAsyncWithLogging(this._logger, token);
 
-                        try
+                        bool forceReconnect = false;
+                        // Check for cancellation request only after a cycle of checking and processing of changes completes.
+                        while (!token.IsCancellationRequested)
                         {
-                            // Process states sequentially since we normally expect the state to transition at the end
-                            // of each previous state - but if an unexpected error occurs we'll skip the rest and then
-                            // retry that state after the delay
-                            if (this._state == State.CheckingForChanges)
+                            if (forceReconnect)
                             {
-                                await this.GetTableChangesAsync(connection, token);
+                                // Give up the exclusive and resync leases before dropping the connection in case its
+                                // session is still alive, they're acquired again on the new connection
+                                await this.ReleaseSessionAppLocksAsync(connection);
                             }
-                            if (this._state == State.ProcessingChanges)
+                            bool isConnected = await connection.TryEnsureConnected(forceReconnect, this._logger, "ChangeConsumptionConnection", token);
+                            if (!isConnected)
                             {
-                                await this.ProcessTableChangesAsync(token);
+                                // If we couldn't reconnect then wait our delay and try again
+                                await Task.Delay(TimeSpan.FromMilliseconds(this._pollingIntervalInMs), token);
+                                continue;
                             }
-                            if (this._state == State.Cleanup)
+                            else
                             {
-                                await this.ReleaseLeasesAsync(connection, token);
+                                forceReconnect = false;
                             }
+
+                            try
+                            {
+                                // Process states sequentially since we normally expect the state to transition at the end
+                                // of each previous state - but if an unexpected error occurs we'll skip the rest and then
+                                // retry that state after the delay
+                                if (this._state == State.CheckingForChanges)
+                                {
+                                    bool canConsumeChanges = !this._exclusive || await this.TryAcquireExclusiveLeaseAsync(connection, token);
+                                    // Changes aren't checked for while a resync of the user table is in progress
+                                    if (canConsumeChanges && !(this._resyncInProgress && await this.GetResyncRowsAsync(connection, token)))
+                                    {
+                                        if (this._exclusive)
+                                        {
+                                            await this.GetTableChangesExclusiveAsync(connection, token);
+                                        }
+                                        else
+                                        {
+                                            await this.GetTableChangesAsync(connection, token);
+                                        }
+                                        // The check for changes found (or started) a resync instead, so send its first rows right away
+                                        if (this._resyncInProgress)
+                                        {
+                                            await this.GetResyncRowsAsync(connection, token);
+                                        }
+                                    }
+                                }
+                                if (this._state == State.ProcessingChanges)
+                                {
+                                    await this.ProcessTableChangesAsync(token);
+                                }
+                                if (this._state == State.Cleanup)
+                                {
+                                    if (this._resyncVersion != null)
+                                    {
+                                        await this.UpdateResyncCursorAsync(connection, token);
+                                    }
+                                    else if (this._exclusive)
+                                    {
+                                        await this.UpdateLastSyncVersionExclusiveAsync(connection, token);
+                                    }
+                                    else
+                                    {
+                                        await this.ReleaseLeasesAsync(connection, token);
+                                    }
+                                }
+                            }
+                            catch (Exception e) when (e.IsFatalSqlException() || connection.IsBrokenOrClosed())
+                            {
+                                // Retry connection if there was a fatal SQL exception or something else caused the connection to be closed
+                                // since that indicates some other issue occurred (such as dropped network) and may be able to be recovered
+                                this._logger.LogError($"Fatal SQL Client exception processing changes. Will attempt to reestablish connection in {this._pollingIntervalInMs}ms. Exception = {e.Message}");
+                                forceReconnect = true;
+                            }
+                            catch (Exception e) when (e.IsDeadlockException())
+                            {
+                                // Deadlocks aren't fatal and don't need a reconnection so just let the loop try again after the normal delay
+                            }
+                            await Task.Delay(TimeSpan.FromMilliseconds(this._pollingIntervalInMs), token);
                         }
-                        catch (Exception e) when (e.IsFatalSqlException() || connection.IsBrokenOrClosed())
-                        {
-                            // Retry connection if there was a fatal SQL exception or something else caused the connection to be closed
-                            // since that indicates some other issue occurred (such as dropped network) and may be able to be recovered
-                            this._logger.LogError($"Fatal SQL Client exception processing changes. Will attempt to reestablish connection in {this._pollingIntervalInMs}ms. Exception = {e.Message}");
-                            forceReconnect = true;
-                        }
-                        catch (Exception e) when (e.IsDeadlockException())
-                        {
-                            // Deadlocks aren't fatal and don't need a reconnection so just let the loop try again after the normal delay
-                        }
-                        await Task.Delay(TimeSpan.FromMilliseconds(this._pollingIntervalInMs), token);
+                    }
+                    finally
+                    {
+                        // Give up the exclusive and resync leases right away so that another instance can take over
+                        // without having to wait for the session to be cleaned up
+                        await this.ReleaseSessionAppLocksAsync(connection);
                     }
                 }
             }
@@ -272,9 +424,11 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             }
             finally
             {
-                // If this thread exits due to any reason, then the lease renewal thread should exit as well. Otherwise,
-                // it will keep looping perpetually.
+                // If this thread exits due to any reason, then we should stop renewing leases as well. Otherwise,
+                // they will keep being renewed perpetually.
+                this._leaseRenewalRegistration?.Dispose();
                 this._cancellationTokenSourceRenewLeases.Cancel();
+                this._cancellationTokenSourceRenewLeases.Dispose();
                 this._cancellationTokenSourceCheckForChanges.Dispose();
                 this._cancellationTokenSourceExecutor.Dispose();
             }
@@ -286,127 +440,621 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// </summary>
         private async Task GetTableChangesAsync(SqlConnection connection, CancellationToken token)
         {
-            try
+            bool sampleCommitLatency = this.ShouldSampleCommitLatency();
+            using (Activity activity = SqlBindingMetrics.StartActivity(GetChangesActivityName, this._userTable.FullName, this._userFunctionId))
             {
-                var transactionSw = Stopwatch.StartNew();
-                long setLastSyncVersionDurationMs = 0L, getChangesDurationMs = 0L, acquireLeasesDurationMs = 0L;
-
-                using (SqlTransaction transaction = connection.BeginTransaction(IsolationLevel.RepeatableRead))
+                try
                 {
-                    try
+                    var transactionSw = Stopwatch.StartNew();
+                    long setLastSyncVersionDurationMs = 0L, getChangesDurationMs = 0L, acquireLeasesDurationMs = 0L;
+
+                    using (SqlTransaction transaction = connection.BeginTransaction(IsolationLevel.RepeatableRead))
                     {
-                        // Update the version number stored in the global state table if necessary before using it.
-                        using (SqlCommand updateTablesPreInvocationCommand = this.BuildUpdateTablesPreInvocation(connection, transaction))
+                        try
                         {
-                            var commandSw = Stopwatch.StartNew();
-                            object result = await updateTablesPreInvocationCommand.ExecuteScalarAsyncWithLogging(this._logger, token, true);
-                            if (result != null)
+                            // Update the version number stored in the global state table if necessary before using it.
+                            using (SqlCommand updateTablesPreInvocationCommand = this.BuildUpdateTablesPreInvocation(connection, transaction))
                             {
-                                // If we updated the LastSyncVersion we'll get a message back from the query, so log it here
-                                this._logger.LogDebug($"[PreInvocation] {result}");
+                                var commandSw = Stopwatch.StartNew();
+                                object result = await updateTablesPreInvocationCommand.ExecuteScalarAsyncWithLogging(this._logger, token, true);
+                                if (result != null)
+                                {
+                                    // If we updated the LastSyncVersion we'll get a message back from the query, so log it here
+                                    this._logger.LogDebug($"[PreInvocation] {result}");
+                                }
+                                setLastSyncVersionDurationMs = commandSw.ElapsedMilliseconds;
                             }
-                            setLastSyncVersionDurationMs = commandSw.ElapsedMilliseconds;
-                        }
 
-                        var rows = new List<IReadOnlyDictionary<string, object>>();
+                            var rows = new List<IReadOnlyDictionary<string, object>>();
 
-                        // Use the version number to query for new changes.
-                        using (SqlCommand getChangesCommand = this.BuildGetChangesCommand(connection, transaction))
-                        {
-                            var commandSw = Stopwatch.StartNew();
+                            // Use the version number to query for new changes.
+                            using (SqlCommand getChangesCommand = this.BuildGetChangesCommand(connection, transaction, sampleCommitLatency))
+                            {
+                                var commandSw = Stopwatch.StartNew();
 
-                            using (SqlDataReader reader = getChangesCommand.ExecuteReader())
+                                using (SqlDataReader reader = getChangesCommand.ExecuteReader())
+                                {
+                                    this._resyncInProgress = await this.ReadResyncInProgressAsync(reader, token);
+                                    while (!this._resyncInProgress && reader.Read())
+                                    {
+                                        token.ThrowIfCancellationRequested();
+                                        rows.Add(SqlBindingUtilities.BuildDictionaryFromSqlRow(reader));
+                                    }
+                                }
+
+                                getChangesDurationMs = commandSw.ElapsedMilliseconds;
+                            }
+                            if (this._resyncInProgress)
+                            {
+                                // The changes aren't consumed while the user table is being resynced, only the update of
+                                // LastSyncVersion (which may have started the resync) is kept
+                                transaction.Commit();
+                                return;
+                            }
+                            SqlBindingMetrics.RecordGetChanges(this._userFunctionId, this._userTable.FullName, getChangesDurationMs);
+                            activity?.SetTag(SqlBindingMetrics.RowCountTagName, rows.Count);
+                            // Also get the number of rows that currently have lease locks on them
+                            // or are skipped because they have reached their max attempt count.
+                            // This can help with supportability by allowing a customer to see when a
+                            // trigger was processed successfully but returned fewer rows than expected.
+                            string leaseLockedOrMaxAttemptRowCountMessage = await this.GetLeaseLockedOrMaxAttemptRowCountMessage(connection, transaction, token);
+                            if (rows.Count > 0 || leaseLockedOrMaxAttemptRowCountMessage != null)
                             {
-                                while (reader.Read())
+                                this._logger.LogDebug($"Executed GetChangesCommand in GetTableChangesAsync. {rows.Count} available changed rows. {leaseLockedOrMaxAttemptRowCountMessage}");
+                            }
+                            // If changes were found, acquire leases on them.
+                            if (rows.Count > 0)
+                            {
+                                using (SqlCommand acquireLeasesCommand = this.BuildAcquireLeasesCommand(connection, transaction, rows))
                                 {
-                                    token.ThrowIfCancellationRequested();
-                                    rows.Add(SqlBindingUtilities.BuildDictionaryFromSqlRow(reader));
+                                    var commandSw = Stopwatch.StartNew();
+                                    await acquireLeasesCommand.ExecuteNonQueryAsyncWithLogging(this._logger, token);
+                                    acquireLeasesDurationMs = commandSw.ElapsedMilliseconds;
                                 }
+                                SqlBindingMetrics.RecordAcquireLeases(this._userFunctionId, this._userTable.FullName, acquireLeasesDurationMs);
+
+                                // Only send event if we got changes to reduce the overall number of events sent since we generally
+                                // only care about the times that we had to actually retrieve and process rows
+                                Dictionary<TelemetryMeasureName, double> measures = GetCachedMeasures();
+                                measures[TelemetryMeasureName.SetLastSyncVersionDurationMs] = setLastSyncVersionDurationMs;
+                                measures[TelemetryMeasureName.GetChangesDurationMs] = getChangesDurationMs;
+                                measures[TelemetryMeasureName.AcquireLeasesDurationMs] = acquireLeasesDurationMs;
+                                measures[TelemetryMeasureName.TransactionDurationMs] = transactionSw.ElapsedMilliseconds;
+                                measures[TelemetryMeasureName.BatchCount] = this._rowsToProcess.Count;
+                                this.RecordCommitToFetchLatency(rows, measures);
+                                TelemetryInstance.TrackEvent(TelemetryEventName.GetChanges, this._telemetryProps, measures);
                             }
 
-                            getChangesDurationMs = commandSw.ElapsedMilliseconds;
-                        }
-                        // Also get the number of rows that currently have lease locks on them
-                        // or are skipped because they have reached their max attempt count.
-                        // This can help with supportability by allowing a customer to see when a
-                        // trigger was processed successfully but returned fewer rows than expected.
-                        string leaseLockedOrMaxAttemptRowCountMessage = await this.GetLeaseLockedOrMaxAttemptRowCountMessage(connection, transaction, token);
-                        if (rows.Count > 0 || leaseLockedOrMaxAttemptRowCountMessage != null)
-                        {
-                            this._logger.LogDebug($"Executed GetChangesCommand in GetTableChangesAsync. {rows.Count} available changed rows. {leaseLockedOrMaxAttemptRowCountMessage}");
+                            transaction.Commit();
+
+                            // Set the rows for processing, now since the leases are acquired.
+                            await this._rowsToProcessLock.WaitAsync(token);
+                            try
+                            {
+                                this._rowsToProcess = rows;
+                                this._rowsFetchedSw.Restart();
+                                this._state = State.ProcessingChanges;
+                            }
+                            finally
+                            {
+                                this._rowsToProcessLock.Release();
+                            }
                         }
-                        // If changes were found, acquire leases on them.
-                        if (rows.Count > 0)
+                        catch (Exception)
                         {
-                            using (SqlCommand acquireLeasesCommand = this.BuildAcquireLeasesCommand(connection, transaction, rows))
+                            try
                             {
-                                var commandSw = Stopwatch.StartNew();
-                                await acquireLeasesCommand.ExecuteNonQueryAsyncWithLogging(this._logger, token);
-                                acquireLeasesDurationMs = commandSw.ElapsedMilliseconds;
+                                transaction.Rollback();
                             }
-
-                            // Only send event if we got changes to reduce the overall number of events sent since we generally
-                            // only care about the times that we had to actually retrieve and process rows
-                            var measures = new Dictionary<TelemetryMeasureName, double>
+                            catch (Exception ex)
                             {
-                                [TelemetryMeasureName.SetLastSyncVersionDurationMs] = setLastSyncVersionDurationMs,
-                                [TelemetryMeasureName.GetChangesDurationMs] = getChangesDurationMs,
-                                [TelemetryMeasureName.AcquireLeasesDurationMs] = acquireLeasesDurationMs,
-                                [TelemetryMeasureName.TransactionDurationMs] = transactionSw.ElapsedMilliseconds,
-                                [TelemetryMeasureName.BatchCount] = this._rowsToProcess.Count,
-                            };
-                            TelemetryInstance.TrackEvent(TelemetryEventName.GetChanges, this._telemetryProps, measures);
+                                this._logger.LogError($"Failed to rollback transaction due to exception: {ex.GetType()}. Exception message: {ex.Message}");
+                                TelemetryInstance.TrackException(TelemetryErrorName.GetChangesRollback, ex, this._telemetryProps);
+                            }
+                            throw;
                         }
+                    }
+                }
+                catch (Exception e)
+                {
+                    // If there's an exception in any part of the process, we want to clear all of our data in memory and
+                    // retry checking for changes again.
+                    await this._rowsToProcessLock.WaitAsync(token);
+                    try
+                    {
+                        this._rowsToProcess = new List<IReadOnlyDictionary<string, object>>();
+                    }
+                    finally
+                    {
+                        this._rowsToProcessLock.Release();
+                    }
+                    activity?.SetStatus(ActivityStatusCode.Error, e.Message);
+                    if (sampleCommitLatency)
+                    {
+                        this.DisableCommitLatencySamplingIfDenied(e);
+                    }
+                    this._logger.LogError($"Failed to check for changes in table '{this._userTable.FullName}' due to exception: {e.GetType()}. Exception message: {e.Message}");
+                    TelemetryInstance.TrackException(TelemetryErrorName.GetChanges, e, this._telemetryProps);
+                    if (e.IsFatalSqlException() || connection.IsBrokenOrClosed())
+                    {
+                        // If we get a fatal SQL Client exception or the connection is broken let it bubble up so we can try to re-establish the connection
+                        throw;
+                    }
+                }
+            }
+        }
 
-                        transaction.Commit();
+        /// <summary>
+        /// Queries the change table for the changes on the user's table that follow the last row processed in exclusive
+        /// mode. No leases are acquired on them since no other instance consumes changes while we hold the exclusive lease.
+        /// If any are found, stores the change along with the corresponding data from the user table in "_rows".
+        /// </summary>
+        private async Task GetTableChangesExclusiveAsync(SqlConnection connection, CancellationToken token)
+        {
+            bool sampleCommitLatency = this.ShouldSampleCommitLatency();
+            using (Activity activity = SqlBindingMetrics.StartActivity(GetChangesActivityName, this._userTable.FullName, this._userFunctionId))
+            {
+                try
+                {
+                    var rows = new List<IReadOnlyDictionary<string, object>>();
+                    long getChangesDurationMs = 0L;
 
-                        // Set the rows for processing, now since the leases are acquired.
-                        await this._rowsToProcessLock.WaitAsync(token);
-                        try
-                        {
-                            this._rowsToProcess = rows;
-                            this._state = State.ProcessingChanges;
-                        }
-                        finally
+                    using (SqlCommand getChangesCommand = this.BuildGetChangesExclusiveCommand(connection, sampleCommitLatency))
+                    {
+                        var commandSw = Stopwatch.StartNew();
+
+                        using (SqlDataReader reader = getChangesCommand.ExecuteReader())
                         {
-                            this._rowsToProcessLock.Release();
+                            this._resyncInProgress = await this.ReadResyncInProgressAsync(reader, token);
+                            while (!this._resyncInProgress && reader.Read())
+                            {
+                                token.ThrowIfCancellationRequested();
+                                rows.Add(SqlBindingUtilities.BuildDictionaryFromSqlRow(reader));
+                            }
                         }
+
+                        getChangesDurationMs = commandSw.ElapsedMilliseconds;
                     }
-                    catch (Exception)
+                    if (this._resyncInProgress)
                     {
-                        try
-                        {
-                            transaction.Rollback();
-                        }
-                        catch (Exception ex)
-                        {
-                            this._logger.LogError($"Failed to rollback transaction due to exception: {ex.GetType()}. Exception message: {ex.Message}");
-                            TelemetryInstance.TrackException(TelemetryErrorName.GetChangesRollback, ex, this._telemetryProps);
-                        }
+                        // The changes aren't consumed while the user table is being resynced
+                        return;
+                    }
+                    SqlBindingMetrics.RecordGetChanges(this._userFunctionId, this._userTable.FullName, getChangesDurationMs);
+                    activity?.SetTag(SqlBindingMetrics.RowCountTagName, rows.Count);
+
+                    if (rows.Count > 0)
+                    {
+                        this._logger.LogDebug($"Executed GetChangesCommand in GetTableChangesExclusiveAsync. {rows.Count} available changed rows.");
+                        Dictionary<TelemetryMeasureName, double> measures = GetCachedMeasures();
+                        measures[TelemetryMeasureName.GetChangesDurationMs] = getChangesDurationMs;
+                        measures[TelemetryMeasureName.BatchCount] = rows.Count;
+                        this.RecordCommitToFetchLatency(rows, measures);
+                        TelemetryInstance.TrackEvent(TelemetryEventName.GetChanges, this._telemetryProps, measures);
+                    }
+
+                    await this._rowsToProcessLock.WaitAsync(token);
+                    try
+                    {
+                        this._rowsToProcess = rows;
+                        this._rowsFetchedSw.Restart();
+                        this._exclusiveBatchDrained = IsBatchDrained(rows, this._maxBatchSize, this._maxBatchBytes);
+                        this._state = State.ProcessingChanges;
+                    }
+                    finally
+                    {
+                        this._rowsToProcessLock.Release();
+                    }
+                }
+                catch (Exception e)
+                {
+                    // If there's an exception in any part of the process, we want to clear all of our data in memory and
+                    // retry checking for changes again.
+                    await this._rowsToProcessLock.WaitAsync(token);
+                    try
+                    {
+                        this._rowsToProcess = new List<IReadOnlyDictionary<string, object>>();
+                    }
+                    finally
+                    {
+                        this._rowsToProcessLock.Release();
+                    }
+                    activity?.SetStatus(ActivityStatusCode.Error, e.Message);
+                    if (sampleCommitLatency)
+                    {
+                        this.DisableCommitLatencySamplingIfDenied(e);
+                    }
+                    this._logger.LogError($"Failed to check for changes in table '{this._userTable.FullName}' due to exception: {e.GetType()}. Exception message: {e.Message}");
+                    TelemetryInstance.TrackException(TelemetryErrorName.GetChanges, e, this._telemetryProps);
+                    if (e.IsFatalSqlException() || connection.IsBrokenOrClosed())
+                    {
+                        // If we get a fatal SQL Client exception or the connection is broken let it bubble up so we can try to re-establish the connection
                         throw;
                     }
                 }
             }
-            catch (Exception e)
+        }
+
+        /// <summary>
+        /// Acquires the exclusive lease for this function and user table on the change consumption connection if it
+        /// isn't held already. The lease is a session-scoped app lock, so if this instance goes away (or its connection
+        /// is lost) the lease is released and another instance takes it over.
+        /// </summary>
+        /// <param name="connection">The change consumption connection</param>
+        /// <param name="token">Cancellation token</param>
+        /// <returns>True if the lease is held by this instance, false if it's held by another one</returns>
+        private async Task<bool> TryAcquireExclusiveLeaseAsync(SqlConnection connection, CancellationToken token)
+        {
+            // @result is left NULL if the lease is already held by this session
+            string acquireExclusiveLeaseQuery = $@"
+                DECLARE @result int;
+                IF APPLOCK_MODE('public', '{this._exclusiveLeaseResource}', 'Session') <> 'Exclusive'
+                BEGIN
+                    EXEC @result = sp_getapplock @Resource = '{this._exclusiveLeaseResource}',
+                                @LockMode = 'Exclusive',
+                                @LockOwner = 'Session',
+                                @LockTimeout = 0;
+                END
+                SELECT @result;";
+
+            try
+            {
+                object result;
+                using (var acquireExclusiveLeaseCommand = new SqlCommand(acquireExclusiveLeaseQuery, connection))
+                {
+                    result = await acquireExclusiveLeaseCommand.ExecuteScalarAsyncWithLogging(this._logger, token);
+                }
+
+                if (result == null || result is DBNull)
+                {
+                    return true;
+                }
+                if ((int)result >= 0)
+                {
+                    // Another instance may have processed changes since we last held the lease, so start over from
+                    // the LastSyncVersion it stored
+                    this._logger.LogInformation($"Acquired exclusive lease '{this._exclusiveLeaseResource}' for table '{this._userTable.FullName}'");
+                    this._holdsExclusiveLease = true;
+                    this._exclusiveCursor = null;
+                    this._exclusiveAttemptCount = 0;
+                    return true;
+                }
+
+                if (this._holdsExclusiveLease)
+                {
+                    this._logger.LogWarning($"Lost exclusive lease '{this._exclusiveLeaseResource}' for table '{this._userTable.FullName}' to another instance");
+                }
+                else
+                {
+                    this._logger.LogDebug($"Exclusive lease '{this._exclusiveLeaseResource}' is held by another instance. Result = {result}");
+                }
+                this._holdsExclusiveLease = false;
+                return false;
+            }
+            catch (Exception ex)
+            {
+                this._logger.LogError($"Failed to acquire exclusive lease '{this._exclusiveLeaseResource}' for table '{this._userTable.FullName}' due to exception: {ex.GetType()}. Exception message: {ex.Message}");
+                TelemetryInstance.TrackException(TelemetryErrorName.AcquireExclusiveLease, ex, this._telemetryProps);
+                if (ex.IsFatalSqlException() || connection.IsBrokenOrClosed())
+                {
+                    throw;
+                }
+                return false;
+            }
+        }
+
+        /// <summary>
+        /// Gets the connection string of the change consumption connection. The exclusive and resync leases are session
+        /// scoped app locks held on that connection, so it isn't pooled when they may be used: closing a pooled connection
+        /// (e.g. to reconnect after a fatal error) would return the session still holding them to the pool.
+        /// </summary>
+        private string GetChangeConsumptionConnectionString()
+        {
+            if (!this._exclusive && !this._resyncOnRetentionGap)
+            {
+                return this._connectionString;
+            }
+            return new SqlConnectionStringBuilder(this._connectionString) { Pooling = false }.ConnectionString;
+        }
+
+        /// <summary>
+        /// Releases the exclusive and resync leases held by the change consumption connection so that another instance can
+        /// take over right away.
+        /// </summary>
+        /// <param name="connection">The change consumption connection</param>
+        private async Task ReleaseSessionAppLocksAsync(SqlConnection connection)
+        {
+            var resources = new List<string>();
+            if (this._holdsExclusiveLease)
+            {
+                resources.Add(this._exclusiveLeaseResource);
+            }
+            if (this._holdsResyncLease)
+            {
+                resources.Add(this._resyncLeaseResource);
+            }
+            this._holdsExclusiveLease = false;
+            this._holdsResyncLease = false;
+            if (resources.Count == 0 || connection.IsBrokenOrClosed())
+            {
+                return;
+            }
+
+            string releaseSessionAppLocksQuery = string.Join(Environment.NewLine, resources.Select(resource => $@"
+                IF APPLOCK_MODE('public', '{resource}', 'Session') = 'Exclusive'
+                BEGIN
+                    EXEC sp_releaseapplock @Resource = '{resource}', @LockOwner = 'Session';
+                END"));
+
+            try
             {
-                // If there's an exception in any part of the process, we want to clear all of our data in memory and
-                // retry checking for changes again.
+                using (var releaseSessionAppLocksCommand = new SqlCommand(releaseSessionAppLocksQuery, connection))
+                {
+                    // The leases are released when the monitor is being stopped too, so don't pass in its cancellation token
+                    await releaseSessionAppLocksCommand.ExecuteNonQueryAsyncWithLogging(this._logger, CancellationToken.None);
+                }
+                this._logger.LogInformation($"Released leases {string.Join(", ", resources)} for table '{this._userTable.FullName}'");
+            }
+            catch (Exception ex)
+            {
+                // The leases are released anyways once the connection is closed
+                this._logger.LogError($"Failed to release leases {string.Join(", ", resources)} for table '{this._userTable.FullName}' due to exception: {ex.GetType()}. Exception message: {ex.Message}");
+                TelemetryInstance.TrackException(TelemetryErrorName.ReleaseSessionAppLocks, ex, this._telemetryProps);
+            }
+        }
+
+        /// <summary>
+        /// Checks whether the resync of the user table found by the last check for changes is still in progress. If so and
+        /// this instance holds the resync lease, stores the next page of rows of the user table in "_rows" as updates - or
+        /// completes the resync if all the rows have been sent.
+        /// </summary>
+        /// <returns>True if a resync is in progress, in which case changes shouldn't be checked for</returns>
+        private async Task<bool> GetResyncRowsAsync(SqlConnection connection, CancellationToken token)
+        {
+            try
+            {
+                long? resyncVersion = null;
+                bool holdsResyncLease = false;
+                var rows = new List<IReadOnlyDictionary<string, object>>();
+                var commandSw = Stopwatch.StartNew();
+
+                using (SqlCommand getResyncRowsCommand = this.BuildGetResyncRowsCommand(connection))
+                using (SqlDataReader reader = getResyncRowsCommand.ExecuteReaderWithLogging(this._logger))
+                {
+                    if (await reader.ReadAsync(token))
+                    {
+                        resyncVersion = await reader.IsDBNullAsync(0, token) ? (long?)null : reader.GetInt64(0);
+                        holdsResyncLease = reader.GetBoolean(1);
+                    }
+                    await reader.NextResultAsync(token);
+                    while (await reader.ReadAsync(token))
+                    {
+                        rows.Add(SqlBindingUtilities.BuildDictionaryFromSqlRow(reader));
+                    }
+                }
+
+                if (resyncVersion == null)
+                {
+                    this._holdsResyncLease = false;
+                    this._resyncInProgress = false;
+                    return false;
+                }
+                if (!holdsResyncLease)
+                {
+                    this._logger.LogDebug($"Resync of table '{this._userTable.FullName}' is being performed by another instance");
+                    this._holdsResyncLease = false;
+                    return true;
+                }
+                if (!this._holdsResyncLease)
+                {
+                    this._logger.LogWarning($"Resyncing table '{this._userTable.FullName}' since LastSyncVersion fell behind the change tracking retention period. All rows of the table will be sent to the function, after which changes will be processed from version {resyncVersion}.");
+                    this._holdsResyncLease = true;
+                    this._resyncAttemptCount = 0;
+                }
+
+                if (rows.Count == 0)
+                {
+                    await this.CompleteResyncAsync(connection, resyncVersion.Value, token);
+                    return true;
+                }
+
+                this._logger.LogDebug($"Executed GetResyncRowsCommand in GetResyncRowsAsync. {rows.Count} rows to resync.");
+                Dictionary<TelemetryMeasureName, double> measures = GetCachedMeasures();
+                measures[TelemetryMeasureName.GetChangesDurationMs] = commandSw.ElapsedMilliseconds;
+                measures[TelemetryMeasureName.BatchCount] = rows.Count;
+                TelemetryInstance.TrackEvent(TelemetryEventName.GetChanges, this._telemetryProps, measures);
+
                 await this._rowsToProcessLock.WaitAsync(token);
                 try
                 {
-                    this._rowsToProcess = new List<IReadOnlyDictionary<string, object>>();
+                    this._rowsToProcess = rows;
+                    this._resyncVersion = resyncVersion;
+                    this._state = State.ProcessingChanges;
                 }
                 finally
                 {
                     this._rowsToProcessLock.Release();
                 }
-                this._logger.LogError($"Failed to check for changes in table '{this._userTable.FullName}' due to exception: {e.GetType()}. Exception message: {e.Message}");
-                TelemetryInstance.TrackException(TelemetryErrorName.GetChanges, e, this._telemetryProps);
+                return true;
+            }
+            catch (Exception e)
+            {
+                this._logger.LogError($"Failed to resync table '{this._userTable.FullName}' due to exception: {e.GetType()}. Exception message: {e.Message}");
+                TelemetryInstance.TrackException(TelemetryErrorName.Resync, e, this._telemetryProps);
                 if (e.IsFatalSqlException() || connection.IsBrokenOrClosed())
                 {
                     // If we get a fatal SQL Client exception or the connection is broken let it bubble up so we can try to re-establish the connection
                     throw;
                 }
+                // Changes shouldn't be processed until we know that there's no resync in progress
+                return true;
+            }
+        }
+
+        /// <summary>
+        /// Completes the resync once all the rows of the user table have been sent to the function, resuming the processing
+        /// of changes from the change version at which the resync started.
+        /// </summary>
+        private async Task CompleteResyncAsync(SqlConnection connection, long resyncVersion, CancellationToken token)
+        {
+            using (SqlTransaction transaction = connection.BeginTransaction(IsolationLevel.RepeatableRead))
+            {
+                try
+                {
+                    using (SqlCommand completeResyncCommand = this.BuildCompleteResyncCommand(connection, transaction, resyncVersion))
+                    {
+                        await completeResyncCommand.ExecuteNonQueryAsyncWithLogging(this._logger, token, true);
+                    }
+                    transaction.Commit();
+                }
+                catch (Exception)
+                {
+                    try
+                    {
+                        transaction.Rollback();
+                    }
+                    catch (Exception ex)
+                    {
+                        this._logger.LogError($"Failed to rollback transaction due to exception: {ex.GetType()}. Exception message: {ex.Message}");
+                    }
+                    throw;
+                }
+            }
+
+            // LastSyncVersion has moved so the exclusive mode cursor no longer applies
+            this._holdsResyncLease = false;
+            this._resyncInProgress = false;
+            this._exclusiveCursor = null;
+            this._logger.LogInformation($"Completed resync of table '{this._userTable.FullName}', processing changes from version {resyncVersion}");
+            TelemetryInstance.TrackEvent(TelemetryEventName.Resync, this._telemetryProps);
+        }
+
+        /// <summary>
+        /// Stores the primary key of the last row in "_rowsToRelease" as the position of the resync so that the next page of
+        /// rows follows it. If processing the rows failed they're sent again in the next iteration, until
+        /// <see cref="MaxChangeProcessAttemptCount"/> attempts have been made at which point they're skipped.
+        /// </summary>
+        private async Task UpdateResyncCursorAsync(SqlConnection connection, CancellationToken token)
+        {
+            try
+            {
+                bool succeeded = this._rowsToRelease.Count > 0;
+                List<IReadOnlyDictionary<string, object>> rows = succeeded ? this._rowsToRelease : this._rowsToProcess;
+                if (rows.Count == 0)
+                {
+                    return;
+                }
+                if (!succeeded)
+                {
+                    this._resyncAttemptCount += 1;
+                    if (this._resyncAttemptCount < MaxChangeProcessAttemptCount)
+                    {
+                        return;
+                    }
+                    this._logger.LogError($"Skipping {rows.Count} rows of the resync of table '{this._userTable.FullName}' since they've reached the max attempt limit of {MaxChangeProcessAttemptCount}");
+                }
+                this._resyncAttemptCount = 0;
+
+                string resyncCursor = Utils.JsonSerializeObject(this._primaryKeyColumns.ToDictionary(col => col.name, col => rows[rows.Count - 1][col.name]));
+                string updateResyncCursorQuery = $@"
+                    UPDATE {ResyncStateTableName}
+                    SET {ResyncCursorColumnName} = @resync_cursor
+                    WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId} AND {ResyncVersionColumnName} = {this._resyncVersion};
+
+                    UPDATE {GlobalStateTableName}
+                    SET LastAccessTime = GETUTCDATE()
+                    WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId};";
+                using (var updateResyncCursorCommand = new SqlCommand(updateResyncCursorQuery, connection))
+                {
+                    updateResyncCursorCommand.Parameters.Add("@resync_cursor", SqlDbType.NVarChar, -1).Value = resyncCursor;
+                    await updateResyncCursorCommand.ExecuteNonQueryAsyncWithLogging(this._logger, token);
+                }
+            }
+            catch (Exception ex)
+            {
+                // The same rows are sent again in the next iteration
+                this._logger.LogError($"Failed to update the resync position of table '{this._userTable.FullName}' due to exception: {ex.GetType()}. Exception message: {ex.Message}");
+                TelemetryInstance.TrackException(TelemetryErrorName.Resync, ex, this._telemetryProps);
+                if (ex.IsFatalSqlException() || connection.IsBrokenOrClosed())
+                {
+                    throw;
+                }
+            }
+            finally
+            {
+                this._rowsToRelease = new List<IReadOnlyDictionary<string, object>>();
+                await this.ClearRowsAsync(token);
+            }
+        }
+
+        /// <summary>
+        /// Decides whether to look up the commit time of the changes in the next batch, based on the configured sampling
+        /// percentage.
+        /// </summary>
+        private bool ShouldSampleCommitLatency()
+        {
+            return this._commitLatencySamplingPercent > 0 && this._commitLatencySamplingRandom.Next(100) < this._commitLatencySamplingPercent;
+        }
+
+        /// <summary>
+        /// Stops sampling the commit latency if getting the changes failed because we aren't allowed to query
+        /// sys.dm_tran_commit_table, so that the changes can be fetched on the next attempt.
+        /// </summary>
+        /// <param name="e">The exception thrown while getting the changes of a sampled batch</param>
+        private void DisableCommitLatencySamplingIfDenied(Exception e)
+        {
+            if (e is SqlException sqlEx && (sqlEx.Number == PermissionDeniedOnObjectErrorNumber || sqlEx.Number == PermissionDeniedErrorNumber))
+            {
+                this._logger.LogWarning($"Disabling commit latency sampling for table '{this._userTable.FullName}' since the commit times of changes can't be read from sys.dm_tran_commit_table. Grant VIEW SERVER STATE (or VIEW DATABASE STATE on Azure SQL Database) to enable it. Exception message: {e.Message}");
+                TelemetryInstance.TrackException(TelemetryErrorName.GetCommitTimes, e, this._telemetryProps);
+                this._commitLatencySamplingPercent = 0;
+            }
+        }
+
+        /// <summary>
+        /// Records the latency from commit to fetch of the changes in a batch sampled for commit latency, and adds the
+        /// highest one to the measures of the telemetry event. Does nothing if the batch wasn't sampled.
+        /// </summary>
+        /// <param name="rows">The rows fetched</param>
+        /// <param name="measures">The measures of the get changes telemetry event</param>
+        private void RecordCommitToFetchLatency(IReadOnlyList<IReadOnlyDictionary<string, object>> rows, IDictionary<TelemetryMeasureName, double> measures)
+        {
+            long? maxCommitLagMs = null;
+            foreach (IReadOnlyDictionary<string, object> row in rows)
+            {
+                if (row.TryGetValue(CommitLagMsColumnName, out object value) && value is long commitLagMs)
+                {
+                    SqlBindingMetrics.RecordCommitToFetchLatency(this._userFunctionId, this._userTable.FullName, commitLagMs);
+                    maxCommitLagMs = Math.Max(maxCommitLagMs ?? 0, commitLagMs);
+                }
+            }
+            if (maxCommitLagMs != null)
+            {
+                measures[TelemetryMeasureName.CommitToFetchLatencyMs] = maxCommitLagMs.Value;
+            }
+        }
+
+        /// <summary>
+        /// Records the latency from commit to completion of the changes in "_rows" after the function processed them
+        /// successfully, and adds the highest one to the measures of the telemetry event. Does nothing if the batch
+        /// wasn't sampled.
+        /// </summary>
+        /// <param name="measures">The measures of the trigger function telemetry event</param>
+        private void RecordCommitToCompletionLatency(IDictionary<TelemetryMeasureName, double> measures)
+        {
+            long sinceFetchMs = this._rowsFetchedSw.ElapsedMilliseconds;
+            long? maxLatencyMs = null;
+            foreach (IReadOnlyDictionary<string, object> row in this._rowsToProcess)
+            {
+                if (row.TryGetValue(CommitLagMsColumnName, out object value) && value is long commitLagMs)
+                {
+                    SqlBindingMetrics.RecordCommitToCompletionLatency(this._userFunctionId, this._userTable.FullName, commitLagMs + sinceFetchMs);
+                    maxLatencyMs = Math.Max(maxLatencyMs ?? 0, commitLagMs + sinceFetchMs);
+                }
+            }
+            if (maxLatencyMs != null)
+            {
+                measures[TelemetryMeasureName.CommitToCompletionLatencyMs] = maxLatencyMs.Value;
             }
         }
 
@@ -440,18 +1088,34 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
 
                     var stopwatch = Stopwatch.StartNew();
 
-                    FunctionResult result = await this._executor.TryExecuteAsync(input, this._cancellationTokenSourceExecutor.Token);
+                    FunctionResult result;
+                    // The activity of the function invocation is started as a child of this one, tying it to the changes
+                    using (Activity activity = SqlBindingMetrics.StartActivity(ProcessChangesActivityName, this._userTable.FullName, this._userFunctionId, ActivityKind.Consumer))
+                    {
+                        activity?.SetTag(SqlBindingMetrics.RowCountTagName, this._rowsToProcess.Count);
+                        result = await this._executor.TryExecuteAsync(input, this._cancellationTokenSourceExecutor.Token);
+                        if (!result.Succeeded)
+                        {
+                            activity?.SetStatus(ActivityStatusCode.Error, result.Exception?.Message);
+                        }
+                    }
                     long durationMs = stopwatch.ElapsedMilliseconds;
-                    var measures = new Dictionary<TelemetryMeasureName, double>
+                    SqlBindingMetrics.RecordTriggerFunction(this._userFunctionId, this._userTable.FullName, this._rowsToProcess.Count, durationMs);
+                    Dictionary<TelemetryMeasureName, double> measures = GetCachedMeasures();
+                    measures[TelemetryMeasureName.DurationMs] = durationMs;
+                    measures[TelemetryMeasureName.BatchCount] = this._rowsToProcess.Count;
+                    if (result.Succeeded)
                     {
-                        [TelemetryMeasureName.DurationMs] = durationMs,
-                        [TelemetryMeasureName.BatchCount] = this._rowsToProcess.Count,
-                    };
+                        this.RecordCommitToCompletionLatency(measures);
+                    }
+                    // Tracked before anything is awaited since the dictionaries are reused by the thread
+                    Dictionary<TelemetryPropertyName, string> properties = GetCachedProperties(this._telemetryProps);
+                    properties[TelemetryPropertyName.Succeeded] = result.Succeeded.ToString();
+                    TelemetryInstance.TrackEvent(TelemetryEventName.TriggerFunction, properties, measures);
                     // In the future might make sense to retry executing the function, but for now we just let
                     // another worker try.
                     if (result.Succeeded)
                     {
-
                         // We've successfully fully processed these so set them to be released in the cleanup phase
                         await this._rowsToProcessLock.WaitAsync(token);
                         try
@@ -464,12 +1128,6 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                             this._rowsToProcessLock.Release();
                         }
                     }
-                    TelemetryInstance.TrackEvent(
-                        TelemetryEventName.TriggerFunction,
-                        new Dictionary<TelemetryPropertyName, string>(this._telemetryProps) {
-                            { TelemetryPropertyName.Succeeded, result.Succeeded.ToString() },
-                        },
-                        measures);
                     this._state = State.Cleanup;
                 }
             }
@@ -482,151 +1140,84 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         }
 
         /// <summary>
-        /// Executed once every <see cref="LeaseRenewalIntervalInSeconds"/> seconds. If the state of the change monitor is
-        /// <see cref="State.ProcessingChanges"/>, then we will renew the leases held by the change monitor on "_rows".
+        /// Called by the <see cref="SqlLeaseRenewalScheduler"/> once every <see cref="LeaseRenewalIntervalInSeconds"/> seconds.
+        /// If the state of the change monitor is <see cref="State.ProcessingChanges"/>, then returns the request to renew
+        /// the leases held by the change monitor on "_rows".
         /// </summary>
-        private async void RunLeaseRenewalLoopAsync()
+        public async Task<LeaseRenewalRequest> PrepareLeaseRenewalAsync()
         {
-            this._logger.LogDebug("Starting lease renewal loop.");
-
+            await this._rowsToProcessLock.WaitAsync(this._renewLeasesToken);
             try
             {
-                CancellationToken token = this._cancellationTokenSourceRenewLeases.Token;
-
-                using (var connection = new SqlConnection(this._connectionString))
+                // The rows of a resync don't have leases
+                if (this._state == State.ProcessingChanges && this._rowsToProcess.Count > 0 && this._resyncVersion == null)
                 {
-                    await connection.OpenAsyncWithLogging(this._logger, token);
-
-                    bool forceReconnect = false;
-                    while (!token.IsCancellationRequested)
-                    {
-                        bool isConnected = await connection.TryEnsureConnected(forceReconnect, this._logger, "LeaseRenewalLoopConnection", token);
-                        if (!isConnected)
-                        {
-                            // If we couldn't reconnect then wait our delay and try again
-                            await Task.Delay(TimeSpan.FromSeconds(LeaseRenewalIntervalInSeconds), token);
-                            continue;
-                        }
-                        else
-                        {
-                            forceReconnect = false;
-                        }
-                        try
-                        {
-                            await this.RenewLeasesAsync(connection, token);
-                        }
-                        catch (Exception e) when (e.IsFatalSqlException() || connection.IsBrokenOrClosed())
-                        {
-                            // Retry connection if there was a fatal SQL exception or something else caused the connection to be closed
-                            // since that indicates some other issue occurred (such as dropped network) and may be able to be recovered
-                            forceReconnect = true;
-                        }
-
-                        await Task.Delay(TimeSpan.FromSeconds(LeaseRenewalIntervalInSeconds), token);
-                    }
-                }
-            }
-            catch (Exception e)
-            {
-                // Only want to log the exception if it wasn't caused by StopAsync being called, since Task.Delay throws
-                // an exception if it's cancelled.
-                if (e.GetType() != typeof(TaskCanceledException))
-                {
-                    this._logger.LogError($"Exiting lease renewal loop due to exception: {e.GetType()}. Exception message: {e.Message}");
-                    TelemetryInstance.TrackException(TelemetryErrorName.RenewLeasesLoop, e);
+                    return this.BuildRenewLeasesRequest();
                 }
+                return null;
             }
             finally
             {
-                this._cancellationTokenSourceRenewLeases.Dispose();
+                this._rowsToProcessLock.Release();
             }
         }
 
-        private async Task RenewLeasesAsync(SqlConnection connection, CancellationToken token)
+        /// <summary>
+        /// Called by the <see cref="SqlLeaseRenewalScheduler"/> once the request returned by <see cref="PrepareLeaseRenewalAsync"/>
+        /// has been executed.
+        /// </summary>
+        /// <param name="rowsAffected">The number of leases renewed</param>
+        /// <param name="durationMs">The duration of the renewal round trip</param>
+        /// <param name="error">The exception that caused the renewal to fail, or null if it succeeded</param>
+        public async Task CompleteLeaseRenewalAsync(int rowsAffected, long durationMs, Exception error)
         {
+            CancellationToken token = this._renewLeasesToken;
             await this._rowsToProcessLock.WaitAsync(token);
             try
             {
-                if (this._state == State.ProcessingChanges && this._rowsToProcess.Count > 0)
+                if (error != null)
                 {
-                    // Use a transaction to automatically release the app lock when we're done executing the query
-                    using (SqlTransaction transaction = connection.BeginTransaction(IsolationLevel.RepeatableRead))
-                    {
-                        try
-                        {
-                            SqlCommand renewLeasesCommand = this.BuildRenewLeasesCommand(connection, transaction);
-                            if (renewLeasesCommand != null)
-                            {
-                                using (renewLeasesCommand)
-                                {
-                                    var stopwatch = Stopwatch.StartNew();
-
-                                    int rowsAffected = await renewLeasesCommand.ExecuteNonQueryAsyncWithLogging(this._logger, token, true);
+                    // If we fail to renew the leases, multiple workers could be processing the same change data, but we
+                    // have functionality in place to deal with this (see design doc).
+                    this._logger.LogError($"Failed to renew leases due to exception: {error.GetType()}. Exception message: {error.Message}");
+                    TelemetryInstance.TrackException(TelemetryErrorName.RenewLeases, error, this._telemetryProps);
+                }
+                else if (rowsAffected > 0)
+                {
+                    this._logger.LogDebug($"Renewed leases for {rowsAffected} rows");
+                    // Only send an event if we actually updated rows to reduce the overall number of events we send
+                    Dictionary<TelemetryMeasureName, double> measures = GetCachedMeasures();
+                    measures[TelemetryMeasureName.DurationMs] = durationMs;
 
-                                    long durationMs = stopwatch.ElapsedMilliseconds;
+                    TelemetryInstance.TrackEvent(TelemetryEventName.RenewLeases, this._telemetryProps, measures);
+                    SqlBindingMetrics.RecordRenewLeases(this._userFunctionId, this._userTable.FullName, durationMs);
+                }
 
-                                    if (rowsAffected > 0)
-                                    {
-                                        this._logger.LogDebug($"Renewed leases for {rowsAffected} rows");
-                                        // Only send an event if we actually updated rows to reduce the overall number of events we send
-                                        var measures = new Dictionary<TelemetryMeasureName, double>
-                                        {
-                                            [TelemetryMeasureName.DurationMs] = durationMs,
-                                        };
+                // The rows may have been processed and cleared while the renewal was executing, in which case the
+                // renewal count has already been reset and shouldn't count against the next batch.
+                if (this._state != State.ProcessingChanges)
+                {
+                    return;
+                }
 
-                                        TelemetryInstance.TrackEvent(TelemetryEventName.RenewLeases, this._telemetryProps, measures);
-                                    }
-                                    transaction.Commit();
-                                }
-                            }
-                        }
-                        catch (Exception e)
-                        {
-                            // This catch block is necessary so that the finally block is executed even in the case of an exception
-                            // (see https://docs.microsoft.com/dotnet/csharp/language-reference/keywords/try-finally, third
-                            // paragraph). If we fail to renew the leases, multiple workers could be processing the same change
-                            // data, but we have functionality in place to deal with this (see design doc).
-                            this._logger.LogError($"Failed to renew leases due to exception: {e.GetType()}. Exception message: {e.Message}");
-                            TelemetryInstance.TrackException(TelemetryErrorName.RenewLeases, e, this._telemetryProps);
+                // Do we want to update this count even in the case of a failure to renew the leases? Probably,
+                // because the count is simply meant to indicate how much time the other thread has spent processing
+                // changes essentially.
+                this._leaseRenewalCount += 1;
 
-                            try
-                            {
-                                transaction.Rollback();
-                            }
-                            catch (Exception e2)
-                            {
-                                this._logger.LogError($"RenewLeases - Failed to rollback transaction due to exception: {e2.GetType()}. Exception message: {e2.Message}");
-                                TelemetryInstance.TrackException(TelemetryErrorName.RenewLeasesRollback, e2, this._telemetryProps);
-                            }
-                        }
-                        finally
-                        {
-                            // Do we want to update this count even in the case of a failure to renew the leases? Probably,
-                            // because the count is simply meant to indicate how much time the other thread has spent processing
-                            // changes essentially.
-                            this._leaseRenewalCount += 1;
-
-                            // If this thread has been cancelled, then the _cancellationTokenSourceExecutor could have already
-                            // been disposed so shouldn't cancel it.
-                            if (this._leaseRenewalCount == MaxLeaseRenewalCount && !token.IsCancellationRequested)
-                            {
-                                this._logger.LogWarning("Call to execute the function (TryExecuteAsync) seems to be stuck, so it is being cancelled");
+                // If this monitor has been stopped, then the _cancellationTokenSourceExecutor could have already
+                // been disposed so shouldn't cancel it.
+                if (this._leaseRenewalCount == MaxLeaseRenewalCount && !token.IsCancellationRequested)
+                {
+                    this._logger.LogWarning("Call to execute the function (TryExecuteAsync) seems to be stuck, so it is being cancelled");
 
-                                // If we keep renewing the leases, the thread responsible for processing the changes is stuck.
-                                // If it's stuck, it has to be stuck in the function execution call (I think), so we should
-                                // cancel the call.
-                                this._cancellationTokenSourceExecutor.Cancel();
-                                this._cancellationTokenSourceExecutor = new CancellationTokenSource();
-                            }
-                        }
-                    }
+                    // If we keep renewing the leases, the thread responsible for processing the changes is stuck.
+                    // If it's stuck, it has to be stuck in the function execution call (I think), so we should
+                    // cancel the call.
+                    this._cancellationTokenSourceExecutor.Cancel();
+                    this._cancellationTokenSourceExecutor = new CancellationTokenSource();
                 }
             }
-            catch (Exception e)
-            {
-                this._logger.LogError($"Failed to begin transaction for lease renewal due to exception: {e.GetType()}. Exception message: {e.Message}");
-                TelemetryInstance.TrackException(TelemetryErrorName.RenewLeases, e, this._telemetryProps);
-            }
             finally
             {
                 this._rowsToProcessLock.Release();
@@ -643,6 +1234,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             try
             {
                 this._leaseRenewalCount = 0;
+                this._resyncVersion = null;
                 this._state = State.CheckingForChanges;
                 if (this._rowsToProcess.Count > 0)
                 {
@@ -667,79 +1259,86 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                 long newLastSyncVersion = this.RecomputeLastSyncVersion();
                 bool retrySucceeded = false;
 
-                for (int retryCount = 1; retryCount <= MaxRetryReleaseLeases && !retrySucceeded; retryCount++)
+                using (Activity activity = SqlBindingMetrics.StartActivity(ReleaseLeasesActivityName, this._userTable.FullName, this._userFunctionId))
                 {
-                    var transactionSw = Stopwatch.StartNew();
-                    long releaseLeasesDurationMs = 0L, updateLastSyncVersionDurationMs = 0L;
-
-                    using (SqlTransaction transaction = connection.BeginTransaction(IsolationLevel.RepeatableRead))
+                    activity?.SetTag(SqlBindingMetrics.RowCountTagName, this._rowsToRelease.Count);
+                    for (int retryCount = 1; retryCount <= MaxRetryReleaseLeases && !retrySucceeded; retryCount++)
                     {
-                        try
-                        {
-                            // Release the leases held on "_rowsToRelease".
-                            using (SqlCommand releaseLeasesCommand = this.BuildReleaseLeasesCommand(connection, transaction))
-                            {
-                                var commandSw = Stopwatch.StartNew();
-                                int rowsUpdated = await releaseLeasesCommand.ExecuteNonQueryAsyncWithLogging(this._logger, token, true);
-                                releaseLeasesDurationMs = commandSw.ElapsedMilliseconds;
-                            }
+                        var transactionSw = Stopwatch.StartNew();
+                        long releaseLeasesDurationMs = 0L, updateLastSyncVersionDurationMs = 0L;
 
-                            // Update the global state table if we have processed all changes with ChangeVersion <= newLastSyncVersion,
-                            // and clean up the leases table to remove all rows with ChangeVersion <= newLastSyncVersion.
-                            using (SqlCommand updateTablesPostInvocationCommand = this.BuildUpdateTablesPostInvocation(connection, transaction, newLastSyncVersion))
-                            {
-                                var commandSw = Stopwatch.StartNew();
-                                object result = await updateTablesPostInvocationCommand.ExecuteScalarAsyncWithLogging(this._logger, token);
-                                if (result != null)
-                                {
-                                    // If we updated the LastSyncVersion we'll get a message back from the query, so log it here
-                                    this._logger.LogDebug($"[PostInvocation] {result}");
-                                }
-                                updateLastSyncVersionDurationMs = commandSw.ElapsedMilliseconds;
-                            }
-                            transaction.Commit();
-
-                            var measures = new Dictionary<TelemetryMeasureName, double>
-                            {
-                                [TelemetryMeasureName.ReleaseLeasesDurationMs] = releaseLeasesDurationMs,
-                                [TelemetryMeasureName.UpdateLastSyncVersionDurationMs] = updateLastSyncVersionDurationMs,
-                                [TelemetryMeasureName.TransactionDurationMs] = transactionSw.ElapsedMilliseconds,
-                            };
-
-                            TelemetryInstance.TrackEvent(TelemetryEventName.ReleaseLeases, this._telemetryProps, measures);
-                            retrySucceeded = true;
-                            this._rowsToRelease = new List<IReadOnlyDictionary<string, object>>();
-                        }
-                        catch (Exception ex)
+                        using (SqlTransaction transaction = connection.BeginTransaction(IsolationLevel.RepeatableRead))
                         {
-                            if (retryCount < MaxRetryReleaseLeases)
+                            try
                             {
-                                this._logger.LogError($"Failed to execute SQL commands to release leases in attempt: {retryCount} for table '{this._userTable.FullName}' due to exception: {ex.GetType()}. Exception message: {ex.Message}");
+                                // Release the leases held on "_rowsToRelease".
+                                using (SqlCommand releaseLeasesCommand = this.BuildReleaseLeasesCommand(connection, transaction))
+                                {
+                                    var commandSw = Stopwatch.StartNew();
+                                    int rowsUpdated = await releaseLeasesCommand.ExecuteNonQueryAsyncWithLogging(this._logger, token, true);
+                                    releaseLeasesDurationMs = commandSw.ElapsedMilliseconds;
+                                }
 
-                                var measures = new Dictionary<TelemetryMeasureName, double>
+                                // Update the global state table if we have processed all changes with ChangeVersion <= newLastSyncVersion,
+                                // and clean up the leases table to remove all rows with ChangeVersion <= newLastSyncVersion.
+                                using (SqlCommand updateTablesPostInvocationCommand = this.BuildUpdateTablesPostInvocation(connection, transaction, newLastSyncVersion))
                                 {
-                                    [TelemetryMeasureName.RetryAttemptNumber] = retryCount,
-                                };
+                                    var commandSw = Stopwatch.StartNew();
+                                    object result = await updateTablesPostInvocationCommand.ExecuteScalarAsyncWithLogging(this._logger, token);
+                                    if (result != null)
+                                    {
+                                        // If we updated the LastSyncVersion we'll get a message back from the query, so log it here
+                                        this._logger.LogDebug($"[PostInvocation] {result}");
+                                    }
+                                    updateLastSyncVersionDurationMs = commandSw.ElapsedMilliseconds;
+                                }
+                                transaction.Commit();
 
-                                TelemetryInstance.TrackException(TelemetryErrorName.ReleaseLeases, ex, this._telemetryProps, measures);
-                            }
-                            else
-                            {
-                                this._logger.LogError($"Failed to release leases for table '{this._userTable.FullName}' after {MaxRetryReleaseLeases} attempts due to exception: {ex.GetType()}. Exception message: {ex.Message}");
-                                TelemetryInstance.TrackException(TelemetryErrorName.ReleaseLeasesNoRetriesLeft, ex, this._telemetryProps);
-                            }
+                                Dictionary<TelemetryMeasureName, double> measures = GetCachedMeasures();
+                                measures[TelemetryMeasureName.ReleaseLeasesDurationMs] = releaseLeasesDurationMs;
+                                measures[TelemetryMeasureName.UpdateLastSyncVersionDurationMs] = updateLastSyncVersionDurationMs;
+                                measures[TelemetryMeasureName.TransactionDurationMs] = transactionSw.ElapsedMilliseconds;
 
-                            try
-                            {
-                                transaction.Rollback();
+                                TelemetryInstance.TrackEvent(TelemetryEventName.ReleaseLeases, this._telemetryProps, measures);
+                                SqlBindingMetrics.RecordReleaseLeases(this._userFunctionId, this._userTable.FullName, transactionSw.ElapsedMilliseconds);
+                                retrySucceeded = true;
+                                this._rowsToRelease = new List<IReadOnlyDictionary<string, object>>();
                             }
-                            catch (Exception ex2)
+                            catch (Exception ex)
                             {
-                                this._logger.LogError($"Failed to rollback transaction due to exception: {ex2.GetType()}. Exception message: {ex2.Message}");
-                                TelemetryInstance.TrackException(TelemetryErrorName.ReleaseLeasesRollback, ex2, this._telemetryProps);
+                                if (retryCount < MaxRetryReleaseLeases)
+                                {
+                                    this._logger.LogError($"Failed to execute SQL commands to release leases in attempt: {retryCount} for table '{this._userTable.FullName}' due to exception: {ex.GetType()}. Exception message: {ex.Message}");
+
+                                    var measures = new Dictionary<TelemetryMeasureName, double>
+                                    {
+                                        [TelemetryMeasureName.RetryAttemptNumber] = retryCount,
+                                    };
+
+                                    TelemetryInstance.TrackException(TelemetryErrorName.ReleaseLeases, ex, this._telemetryProps, measures);
+                                }
+                                else
+                                {
+                                    this._logger.LogError($"Failed to release leases for table '{this._userTable.FullName}' after {MaxRetryReleaseLeases} attempts due to exception: {ex.GetType()}. Exception message: {ex.Message}");
+                                    TelemetryInstance.TrackException(TelemetryErrorName.ReleaseLeasesNoRetriesLeft, ex, this._telemetryProps);
+                                }
+
+                                try
+                                {
+                                    transaction.Rollback();
+                                }
+                                catch (Exception ex2)
+                                {
+                                    this._logger.LogError($"Failed to rollback transaction due to exception: {ex2.GetType()}. Exception message: {ex2.Message}");
+                                    TelemetryInstance.TrackException(TelemetryErrorName.ReleaseLeasesRollback, ex2, this._telemetryProps);
+                                }
                             }
                         }
                     }
+                    if (!retrySucceeded)
+                    {
+                        activity?.SetStatus(ActivityStatusCode.Error);
+                    }
                 }
             }
             await this.ClearRowsAsync(token);
@@ -768,6 +1367,125 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             return changeVersionSet.ElementAt(changeVersionSet.Count > 1 ? changeVersionSet.Count - 2 : 0);
         }
 
+        /// <summary>
+        /// Moves the exclusive mode cursor past the rows in "_rowsToRelease" and stores the new LastSyncVersion in the
+        /// global state table. If processing the rows failed they're fetched and processed again in the next iteration,
+        /// until <see cref="MaxChangeProcessAttemptCount"/> attempts have been made at which point they're skipped.
+        /// </summary>
+        private async Task UpdateLastSyncVersionExclusiveAsync(SqlConnection connection, CancellationToken token)
+        {
+            bool succeeded = this._rowsToRelease.Count > 0;
+            List<IReadOnlyDictionary<string, object>> rows = succeeded ? this._rowsToRelease : this._rowsToProcess;
+            if (rows.Count == 0)
+            {
+                await this.ClearRowsAsync(token);
+                return;
+            }
+
+            if (!succeeded)
+            {
+                this._exclusiveAttemptCount += 1;
+                if (this._exclusiveAttemptCount < MaxChangeProcessAttemptCount)
+                {
+                    // Leave the cursor where it is so that the same changes are processed again
+                    await this.ClearRowsAsync(token);
+                    return;
+                }
+                this._logger.LogError($"Skipping {rows.Count} changes for table '{this._userTable.FullName}' since they've reached the max attempt limit of {MaxChangeProcessAttemptCount}");
+            }
+            this._exclusiveAttemptCount = 0;
+            this._exclusiveCursor = rows[rows.Count - 1];
+            long? newLastSyncVersion = RecomputeLastSyncVersionExclusive(rows, this._exclusiveBatchDrained);
+
+            try
+            {
+                using (SqlCommand updateLastSyncVersionCommand = this.BuildUpdateLastSyncVersionExclusiveCommand(connection, newLastSyncVersion))
+                {
+                    var commandSw = Stopwatch.StartNew();
+                    object leaseMode = await updateLastSyncVersionCommand.ExecuteScalarAsyncWithLogging(this._logger, token, true);
+                    if (leaseMode?.ToString() != "Exclusive")
+                    {
+                        // The session lost the lease (e.g. the connection was reset) so another instance may have taken
+                        // over. The LastSyncVersion wasn't updated and we start over from the stored one once we get it back.
+                        this._logger.LogWarning($"Lost exclusive lease '{this._exclusiveLeaseResource}' for table '{this._userTable.FullName}', LastSyncVersion wasn't updated");
+                        this._holdsExclusiveLease = false;
+                        this._exclusiveCursor = null;
+                    }
+
+                    Dictionary<TelemetryMeasureName, double> measures = GetCachedMeasures();
+                    measures[TelemetryMeasureName.UpdateLastSyncVersionDurationMs] = commandSw.ElapsedMilliseconds;
+                    TelemetryInstance.TrackEvent(TelemetryEventName.UpdateLastSyncVersion, this._telemetryProps, measures);
+                    SqlBindingMetrics.RecordReleaseLeases(this._userFunctionId, this._userTable.FullName, commandSw.ElapsedMilliseconds);
+                }
+            }
+            catch (Exception ex)
+            {
+                // The cursor has already moved past the rows so they won't be processed again by this instance, the
+                // LastSyncVersion will be updated after the next batch.
+                this._logger.LogError($"Failed to update LastSyncVersion for table '{this._userTable.FullName}' due to exception: {ex.GetType()}. Exception message: {ex.Message}");
+                TelemetryInstance.TrackException(TelemetryErrorName.UpdateLastSyncVersion, ex, this._telemetryProps);
+                if (ex.IsFatalSqlException() || connection.IsBrokenOrClosed())
+                {
+                    this._rowsToRelease = new List<IReadOnlyDictionary<string, object>>();
+                    await this.ClearRowsAsync(token);
+                    throw;
+                }
+            }
+
+            this._rowsToRelease = new List<IReadOnlyDictionary<string, object>>();
+            await this.ClearRowsAsync(token);
+        }
+
+        /// <summary>
+        /// Returns whether a batch fetched in exclusive mode contains every change that was available, i.e. it wasn't cut
+        /// short by MaxBatchSize or MaxBatchBytes. When MaxBatchBytes is set the rows include the running size of the
+        /// batch, and the next row was only left out if the batch had already reached MaxBatchBytes.
+        /// </summary>
+        /// <param name="rows">The rows of the batch</param>
+        /// <param name="maxBatchSize">The maximum number of rows in a batch</param>
+        /// <param name="maxBatchBytes">The maximum size of a batch in bytes, 0 if there's no limit</param>
+        internal static bool IsBatchDrained(IReadOnlyList<IReadOnlyDictionary<string, object>> rows, int maxBatchSize, long maxBatchBytes)
+        {
+            if (rows.Count >= maxBatchSize)
+            {
+                return false;
+            }
+            if (maxBatchBytes <= 0 || rows.Count == 0)
+            {
+                return true;
+            }
+            return Convert.ToInt64(rows[rows.Count - 1][RunningBatchBytesColumnName], CultureInfo.InvariantCulture) < maxBatchBytes;
+        }
+
+        /// <summary>
+        /// Computes the version number that can be used as the new LastSyncVersion in the global state table once the
+        /// given rows have been processed in exclusive mode.
+        /// </summary>
+        /// <param name="rows">The processed rows, in ascending order of their change version</param>
+        /// <param name="batchDrained">Whether the rows are every change that was available, see <see cref="IsBatchDrained"/></param>
+        /// <returns>The new LastSyncVersion, or null if it can't be advanced yet</returns>
+        internal static long? RecomputeLastSyncVersionExclusive(IReadOnlyList<IReadOnlyDictionary<string, object>> rows, bool batchDrained)
+        {
+            long highestVersion = Convert.ToInt64(rows[rows.Count - 1][SysChangeVersionColumnName], CultureInfo.InvariantCulture);
+            // If the batch contained every available change then all the changes up to the highest version have been
+            // processed. Otherwise there may be changes with the highest version that haven't been fetched yet, so
+            // only the versions below it are complete.
+            if (batchDrained)
+            {
+                return highestVersion;
+            }
+            long? newLastSyncVersion = null;
+            foreach (IReadOnlyDictionary<string, object> row in rows)
+            {
+                long changeVersion = Convert.ToInt64(row[SysChangeVersionColumnName], CultureInfo.InvariantCulture);
+                if (changeVersion < highestVersion)
+                {
+                    newLastSyncVersion = changeVersion;
+                }
+            }
+            return newLastSyncVersion;
+        }
+
         /// <summary>
         /// Builds up the list of <see cref="SqlChange{T}"/> passed to the user's triggered function based on the data
         /// stored in "_rows". If any of the changes correspond to a deleted row, then the <see cref="SqlChange{T}.Item" />
@@ -777,23 +1495,16 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// <returns>The list of changes</returns>
         private async Task<IReadOnlyList<SqlChange<T>>> ProcessChanges(CancellationToken token)
         {
-            var changes = new List<SqlChange<T>>();
             await this._rowsToProcessLock.WaitAsync(token);
             try
             {
-                foreach (IReadOnlyDictionary<string, object> row in this._rowsToProcess)
+                // Functions binding to a string get the changes serialized by the value provider, which can write
+                // them directly from the rows instead of going through JObjects
+                if (typeof(T) == typeof(JObject))
                 {
-                    SqlChangeOperation operation = GetChangeOperation(row);
-
-                    // If the row has been deleted, there is no longer any data for it in the user table. The best we can do
-                    // is populate the row-item with the primary key values of the row.
-                    Dictionary<string, object> item = operation == SqlChangeOperation.Delete
-                        ? this._primaryKeyColumns.ToDictionary(col => col.name, col => row[col.name])
-                        : this._userTableColumns.ToDictionary(col => col, col => row[col]);
-
-                    changes.Add(new SqlChange<T>(operation, Utils.JsonDeserializeObject<T>(Utils.JsonSerializeObject(item))));
+                    return new SqlChangeBatch<T>(this._rowsToProcess, this._primaryKeyColumns, this._userTableColumns);
                 }
-                return changes;
+                return BuildChanges(this._rowsToProcess, this._primaryKeyColumns, this._userTableColumns);
             }
             finally
             {
@@ -802,13 +1513,48 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             }
         }
 
+        /// <summary>
+        /// Builds the changes passed to the user's function from the rows read from the change table.
+        /// </summary>
+        /// <param name="rows">The rows read from the change table</param>
+        /// <param name="primaryKeyColumns">The primary key columns of the user table</param>
+        /// <param name="userTableColumns">The columns of the user table</param>
+        /// <returns>The list of changes</returns>
+        internal static List<SqlChange<T>> BuildChanges(IEnumerable<IReadOnlyDictionary<string, object>> rows, IReadOnlyList<(string name, string type)> primaryKeyColumns, IReadOnlyList<string> userTableColumns)
+        {
+            var changes = new List<SqlChange<T>>();
+            foreach (IReadOnlyDictionary<string, object> row in rows)
+            {
+                SqlChangeOperation operation = GetChangeOperation(row);
+
+                // If the row has been deleted, there is no longer any data for it in the user table. The best we can do
+                // is populate the row-item with the primary key values of the row.
+                Dictionary<string, object> item = operation == SqlChangeOperation.Delete
+                    ? primaryKeyColumns.ToDictionary(col => col.name, col => row[col.name])
+                    : userTableColumns.ToDictionary(col => col, col => row[col]);
+
+                var change = new SqlChange<T>(operation, Utils.JsonDeserializeObject<T>(Utils.JsonSerializeObject(item)));
+                // The commit time is only available for batches sampled for commit latency
+                if (row.TryGetValue(CommitTimeColumnName, out object commitTime) && commitTime is DateTime commitDateTime)
+                {
+                    change.CommitTime = DateTime.SpecifyKind(commitDateTime, DateTimeKind.Utc);
+                }
+                if (row.TryGetValue(CommitLagMsColumnName, out object commitLagMs) && commitLagMs is long commitLag)
+                {
+                    change.CommitLagMs = commitLag;
+                }
+                changes.Add(change);
+            }
+            return changes;
+        }
+
         /// <summary>
         /// Gets the change associated with this row (either an insert, update or delete).
         /// </summary>
         /// <param name="row">The (combined) row from the change table and leases table</param>
         /// <exception cref="InvalidDataException">Thrown if the value of the "SYS_CHANGE_OPERATION" column is none of "I", "U", or "D"</exception>
         /// <returns>SqlChangeOperation.Insert for an insert, SqlChangeOperation.Update for an update, and SqlChangeOperation.Delete for a delete</returns>
-        private static SqlChangeOperation GetChangeOperation(IReadOnlyDictionary<string, object> row)
+        internal static SqlChangeOperation GetChangeOperation(IReadOnlyDictionary<string, object> row)
         {
             string operation = row["SYS_CHANGE_OPERATION"].ToString();
             switch (operation)
@@ -845,7 +1591,8 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                 BEGIN
                     UPDATE {GlobalStateTableName}
                     SET LastSyncVersion = @min_valid_version
-                    WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId};
+                    WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId} AND LastSyncVersion < @min_valid_version;
+                    {this.GetStartResyncStatement()}
                     SELECT 'Updated LastSyncVersion from ' + CAST(@last_sync_version AS NVARCHAR) + ' to ' + CAST(@min_valid_version AS NVARCHAR);
                 END
             ";
@@ -858,10 +1605,11 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// </summary>
         /// <param name="connection">The connection to add to the returned SqlCommand</param>
         /// <param name="transaction">The transaction to add to the returned SqlCommand</param>
+        /// <param name="sampleCommitLatency">Whether to look up the commit time of the changes</param>
         /// <returns>The SqlCommand populated with the query and appropriate parameters</returns>
-        private SqlCommand BuildGetChangesCommand(SqlConnection connection, SqlTransaction transaction)
+        private SqlCommand BuildGetChangesCommand(SqlConnection connection, SqlTransaction transaction, bool sampleCommitLatency)
         {
-            string selectList = string.Join(", ", this._userTableColumns.Select(col => this._primaryKeyColumns.Select(c => c.name).Contains(col) ? $"c.{col.AsBracketQuotedString()}" : $"u.{col.AsBracketQuotedString()}"));
+            string selectList = string.Join(", ", this._userTableColumns.Select(this.GetChangesColumnReference));
             string userTableJoinCondition = string.Join(" AND ", this._primaryKeyColumns.Select(col => $"c.{col.name.AsBracketQuotedString()} = u.{col.name.AsBracketQuotedString()}"));
             string leasesTableJoinCondition = string.Join(" AND ", this._primaryKeyColumns.Select(col => $"c.{col.name.AsBracketQuotedString()} = l.{col.name.AsBracketQuotedString()}"));
 
@@ -875,35 +1623,363 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             // processing it before it was able to complete successfully. In that case we want to pick it
             // up regardless since we know it should be processed - no need to check the change version.
             // Once a row is successfully processed the LeaseExpirationTime column is set to NULL.
-            string getChangesQuery = $@"
-                {this._appLockStatements}
-
-                DECLARE @last_sync_version bigint;
-                SELECT @last_sync_version = LastSyncVersion
-                FROM {GlobalStateTableName}
-                WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId};
-
+            string getChangesSelect = $@"
                 SELECT TOP {this._maxBatchSize}
                     {selectList},
                     c.{SysChangeVersionColumnName},
                     c.SYS_CHANGE_OPERATION,
                     l.{LeasesTableChangeVersionColumnName},
                     l.{LeasesTableAttemptCountColumnName},
-                    l.{LeasesTableLeaseExpirationTimeColumnName}
+                    l.{LeasesTableLeaseExpirationTimeColumnName}{GetCommitTimeSelect(sampleCommitLatency)}{this.GetRowSizeSelect(this._userTableColumns.Select(this.GetChangesColumnReference))}
                 FROM CHANGETABLE(CHANGES {this._userTable.BracketQuotedFullName}, @last_sync_version) AS c
                 LEFT OUTER JOIN {this._bracketedLeasesTableName} AS l ON {leasesTableJoinCondition}
-                LEFT OUTER JOIN {this._userTable.BracketQuotedFullName} AS u ON {userTableJoinCondition}
+                LEFT OUTER JOIN {this._userTable.BracketQuotedFullName} AS u ON {userTableJoinCondition}{GetCommitTimeJoin(sampleCommitLatency)}
                 WHERE
                     (l.{LeasesTableLeaseExpirationTimeColumnName} IS NULL AND
                        (l.{LeasesTableChangeVersionColumnName} IS NULL OR l.{LeasesTableChangeVersionColumnName} < c.{SysChangeVersionColumnName}) OR
                         l.{LeasesTableLeaseExpirationTimeColumnName} < SYSDATETIME()
                     ) AND
                     (l.{LeasesTableAttemptCountColumnName} IS NULL OR l.{LeasesTableAttemptCountColumnName} < {MaxChangeProcessAttemptCount})
-                ORDER BY c.{SysChangeVersionColumnName} ASC;";
+                ORDER BY c.{SysChangeVersionColumnName} ASC";
+
+            getChangesSelect = this.LimitBatchBytes(
+                getChangesSelect,
+                new[] { LeasesTableChangeVersionColumnName, LeasesTableAttemptCountColumnName, LeasesTableLeaseExpirationTimeColumnName }.Concat(GetCommitTimeColumns(sampleCommitLatency)),
+                new[] { SysChangeVersionColumnName });
+
+            string getChangesQuery = $@"
+                {this._appLockStatements}
+
+                DECLARE @last_sync_version bigint;
+                SELECT @last_sync_version = LastSyncVersion
+                FROM {GlobalStateTableName}
+                WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId};
+                {this.GetResyncInProgressSelect()}
+                {getChangesSelect};";
 
             return new SqlCommand(getChangesQuery, connection, transaction);
         }
 
+        /// <summary>
+        /// Builds the query to check for changes on the user's table in exclusive mode (<see cref="RunChangeConsumptionLoopAsync()"/>).
+        /// Only the changes following the last processed row are returned, in (change version, primary key) order. The
+        /// LastSyncVersion is moved up to the minimum valid version first if necessary.
+        /// </summary>
+        /// <param name="connection">The connection to add to the returned SqlCommand</param>
+        /// <param name="sampleCommitLatency">Whether to look up the commit time of the changes</param>
+        /// <returns>The SqlCommand populated with the query and appropriate parameters</returns>
+        private SqlCommand BuildGetChangesExclusiveCommand(SqlConnection connection, bool sampleCommitLatency)
+        {
+            string selectList = string.Join(", ", this._userTableColumns.Select(this.GetChangesColumnReference));
+            string userTableJoinCondition = string.Join(" AND ", this._primaryKeyColumns.Select(col => $"c.{col.name.AsBracketQuotedString()} = u.{col.name.AsBracketQuotedString()}"));
+            IEnumerable<string> bracketedPrimaryKeys = this._primaryKeyColumns.Select(p => p.name.AsBracketQuotedString());
+            var command = new SqlCommand() { Connection = connection };
+
+            // The changes following the cursor are the ones with a greater change version, or the same change version and
+            // a greater primary key - comparing the primary key columns in order.
+            string cursorCondition = string.Empty;
+            if (this._exclusiveCursor != null)
+            {
+                var primaryKeyConditions = new List<string>();
+                for (int i = 0; i < this._primaryKeyColumns.Count; i++)
+                {
+                    IEnumerable<string> columnConditions = this._primaryKeyColumns
+                        .Take(i)
+                        .Select((col, j) => $"c.{col.name.AsBracketQuotedString()} = CAST(@cursor_{j} AS {col.type})")
+                        .Append($"c.{this._primaryKeyColumns[i].name.AsBracketQuotedString()} > CAST(@cursor_{i} AS {this._primaryKeyColumns[i].type})");
+                    primaryKeyConditions.Add($"({string.Join(" AND ", columnConditions)})");
+                    command.Parameters.AddWithValue($"@cursor_{i}", this._exclusiveCursor[this._primaryKeyColumns[i].name]);
+                }
+                command.Parameters.AddWithValue("@cursor_version", this._exclusiveCursor[SysChangeVersionColumnName]);
+                cursorCondition = $@"
+                WHERE c.{SysChangeVersionColumnName} > @cursor_version OR
+                    (c.{SysChangeVersionColumnName} = @cursor_version AND ({string.Join(" OR ", primaryKeyConditions)}))";
+            }
+
+            string getChangesSelect = $@"
+                SELECT TOP {this._maxBatchSize}
+                    {selectList},
+                    c.{SysChangeVersionColumnName},
+                    c.SYS_CHANGE_OPERATION{GetCommitTimeSelect(sampleCommitLatency)}{this.GetRowSizeSelect(this._userTableColumns.Select(this.GetChangesColumnReference))}
+                FROM CHANGETABLE(CHANGES {this._userTable.BracketQuotedFullName}, @last_sync_version) AS c
+                LEFT OUTER JOIN {this._userTable.BracketQuotedFullName} AS u ON {userTableJoinCondition}{GetCommitTimeJoin(sampleCommitLatency)}{cursorCondition}
+                ORDER BY c.{SysChangeVersionColumnName} ASC, {string.Join(", ", bracketedPrimaryKeys.Select(key => $"c.{key} ASC"))}";
+            // The running size of the batch tells whether it was cut short by MaxBatchBytes, see IsBatchDrained
+            IEnumerable<string> internalColumns = this._maxBatchBytes > 0
+                ? GetCommitTimeColumns(sampleCommitLatency).Append(RunningBatchBytesColumnName)
+                : GetCommitTimeColumns(sampleCommitLatency);
+            getChangesSelect = this.LimitBatchBytes(getChangesSelect, internalColumns, new[] { SysChangeVersionColumnName }.Concat(bracketedPrimaryKeys));
+
+            // No app lock is needed since the only writes are to our own rows of the global state and resync state tables
+            command.CommandText = $@"
+                DECLARE @last_sync_version bigint;
+                SELECT @last_sync_version = LastSyncVersion
+                FROM {GlobalStateTableName}
+                WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId};
+
+                DECLARE @min_valid_version bigint;
+                SET @min_valid_version = CHANGE_TRACKING_MIN_VALID_VERSION({this._userTableId});
+
+                IF @last_sync_version < @min_valid_version
+                BEGIN
+                    UPDATE {GlobalStateTableName}
+                    SET LastSyncVersion = @min_valid_version
+                    WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId} AND LastSyncVersion < @min_valid_version;
+                    {this.GetStartResyncStatement()}
+                    SET @last_sync_version = @min_valid_version;
+                END;
+                {this.GetResyncInProgressSelect()}
+                {getChangesSelect};";
+            return command;
+        }
+
+        /// <summary>
+        /// Gets the select list item estimating the size of each row in the get changes query when MaxBatchBytes is set,
+        /// empty otherwise. The size is estimated from the DATALENGTH of the columns of the row.
+        /// </summary>
+        /// <param name="columnReferences">The references to the user table columns in the query</param>
+        private string GetRowSizeSelect(IEnumerable<string> columnReferences)
+        {
+            return this._maxBatchBytes > 0
+                ? $", ({string.Join(" + ", columnReferences.Select(col => $"CAST(ISNULL(DATALENGTH({col}), 0) AS bigint)"))}) AS {RowSizeBytesColumnName}"
+                : string.Empty;
+        }
+
+        /// <summary>
+        /// Gets the select list items with the commit time of each change and how long ago that was, empty if the commit
+        /// latency isn't sampled for the batch. The commit times come from <see cref="GetCommitTimeJoin"/>.
+        /// </summary>
+        /// <param name="sampleCommitLatency">Whether to look up the commit time of the changes</param>
+        private static string GetCommitTimeSelect(bool sampleCommitLatency)
+        {
+            return sampleCommitLatency
+                ? $@",
+                    tc.commit_time AS {CommitTimeColumnName},
+                    DATEDIFF_BIG(millisecond, tc.commit_time, SYSUTCDATETIME()) AS {CommitLagMsColumnName}"
+                : string.Empty;
+        }
+
+        /// <summary>
+        /// Gets the join looking up the commit time of each change in the get changes query, empty if the commit latency
+        /// isn't sampled for the batch. The commit table only keeps the transactions that are within the change tracking
+        /// retention period, so the commit time may be NULL.
+        /// </summary>
+        /// <param name="sampleCommitLatency">Whether to look up the commit time of the changes</param>
+        private static string GetCommitTimeJoin(bool sampleCommitLatency)
+        {
+            return sampleCommitLatency
+                ? $@"
+                LEFT OUTER JOIN sys.dm_tran_commit_table AS tc ON tc.commit_ts = c.{SysChangeVersionColumnName}"
+                : string.Empty;
+        }
+
+        /// <summary>
+        /// Gets the names of the columns added by <see cref="GetCommitTimeSelect"/>.
+        /// </summary>
+        /// <param name="sampleCommitLatency">Whether to look up the commit time of the changes</param>
+        private static IEnumerable<string> GetCommitTimeColumns(bool sampleCommitLatency)
+        {
+            return sampleCommitLatency ? new[] { CommitTimeColumnName, CommitLagMsColumnName } : Enumerable.Empty<string>();
+        }
+
+        /// <summary>
+        /// Gets the statement that starts a resync of the user table, to add right after the update moving LastSyncVersion
+        /// up to the minimum valid version. The resync is only started by the session whose update moved LastSyncVersion,
+        /// and only if there isn't one in progress already. Empty if resyncs aren't enabled, in which case the lost changes
+        /// are skipped.
+        /// </summary>
+        private string GetStartResyncStatement()
+        {
+            return this._resyncOnRetentionGap
+                ? $@"IF @@ROWCOUNT > 0 AND NOT EXISTS (SELECT 1 FROM {ResyncStateTableName} WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId})
+                    BEGIN
+                        INSERT INTO {ResyncStateTableName} (UserFunctionID, UserTableID, {ResyncVersionColumnName}, {ResyncCursorColumnName})
+                        VALUES ('{this._userFunctionId}', {this._userTableId}, CHANGE_TRACKING_CURRENT_VERSION(), NULL);
+                    END"
+                : string.Empty;
+        }
+
+        /// <summary>
+        /// Gets the statement returning whether a resync of the user table is in progress as the first result set of the
+        /// get changes queries, right after a resync may have been started by <see cref="GetStartResyncStatement"/>. Empty
+        /// if resyncs aren't enabled. The result set is read by <see cref="ReadResyncInProgressAsync"/>.
+        /// </summary>
+        private string GetResyncInProgressSelect()
+        {
+            return this._resyncOnRetentionGap
+                ? $@"SELECT CAST(CASE WHEN EXISTS (SELECT 1 FROM {ResyncStateTableName} WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId}) THEN 1 ELSE 0 END AS bit);"
+                : string.Empty;
+        }
+
+        /// <summary>
+        /// Reads the result set added by <see cref="GetResyncInProgressSelect"/> to the get changes queries, moving the
+        /// reader on to the changes.
+        /// </summary>
+        /// <returns>True if a resync of the user table is in progress, in which case the changes shouldn't be consumed</returns>
+        private async Task<bool> ReadResyncInProgressAsync(SqlDataReader reader, CancellationToken token)
+        {
+            if (!this._resyncOnRetentionGap)
+            {
+                return false;
+            }
+            bool resyncInProgress = await reader.ReadAsync(token) && reader.GetBoolean(0);
+            await reader.NextResultAsync(token);
+            return resyncInProgress;
+        }
+
+        /// <summary>
+        /// Builds the query checking whether a resync of the user table is still in progress and acquiring the resync lease
+        /// if so. Resyncs are only started by the get changes queries (see <see cref="GetStartResyncStatement"/>), which move
+        /// LastSyncVersion under the same app lock and transaction as the other updates of it. The first result set holds
+        /// the version at which the resync started (NULL if there's none in progress) and whether the lease is held by
+        /// this session, the second one the next page of rows of the user table in primary key order if the lease is held.
+        /// </summary>
+        /// <param name="connection">The connection to add to the returned SqlCommand</param>
+        /// <returns>The SqlCommand populated with the query</returns>
+        private SqlCommand BuildGetResyncRowsCommand(SqlConnection connection)
+        {
+            IEnumerable<string> columnReferences = this._userTableColumns.Select(col => $"u.{col.AsBracketQuotedString()}");
+            IEnumerable<string> bracketedPrimaryKeys = this._primaryKeyColumns.Select(p => p.name.AsBracketQuotedString());
+            IEnumerable<string> cursorColumnDefinitions = this._primaryKeyColumns.Select(c => $"{c.name.AsBracketQuotedString()} {c.type}");
+
+            // The rows following the cursor are the ones with a greater primary key, comparing the primary key columns in order
+            var primaryKeyConditions = new List<string>();
+            for (int i = 0; i < this._primaryKeyColumns.Count; i++)
+            {
+                IEnumerable<string> columnConditions = bracketedPrimaryKeys
+                    .Take(i)
+                    .Select(key => $"u.{key} = k.{key}")
+                    .Append($"u.{this._primaryKeyColumns[i].name.AsBracketQuotedString()} > k.{this._primaryKeyColumns[i].name.AsBracketQuotedString()}");
+                primaryKeyConditions.Add($"({string.Join(" AND ", columnConditions)})");
+            }
+
+            // The rows are returned as updates with the version the resync started at as their change version
+            string getResyncRowsSelect = $@"
+                SELECT TOP {this._maxBatchSize}
+                    {string.Join(", ", columnReferences)},
+                    @resync_version AS {SysChangeVersionColumnName},
+                    'U' AS SYS_CHANGE_OPERATION{this.GetRowSizeSelect(columnReferences)}
+                FROM {this._userTable.BracketQuotedFullName} AS u
+                WHERE @holds_resync_lease = 1 AND
+                    (@resync_cursor IS NULL OR EXISTS (
+                        SELECT 1 FROM OPENJSON(@resync_cursor) WITH ({string.Join(",", cursorColumnDefinitions)}) AS k
+                        WHERE {string.Join(" OR ", primaryKeyConditions)}))
+                ORDER BY {string.Join(", ", bracketedPrimaryKeys.Select(key => $"u.{key} ASC"))}";
+            getResyncRowsSelect = this.LimitBatchBytes(getResyncRowsSelect, Enumerable.Empty<string>(), bracketedPrimaryKeys);
+
+            string getResyncRowsQuery = $@"
+                DECLARE @resync_version bigint;
+                DECLARE @resync_cursor nvarchar(max);
+                SELECT @resync_version = {ResyncVersionColumnName}, @resync_cursor = {ResyncCursorColumnName}
+                FROM {ResyncStateTableName}
+                WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId};
+
+                DECLARE @holds_resync_lease bit = 0;
+                IF @resync_version IS NOT NULL
+                BEGIN
+                    DECLARE @lock_result int = 0;
+                    IF APPLOCK_MODE('public', '{this._resyncLeaseResource}', 'Session') <> 'Exclusive'
+                    BEGIN
+                        EXEC @lock_result = sp_getapplock @Resource = '{this._resyncLeaseResource}',
+                                    @LockMode = 'Exclusive',
+                                    @LockOwner = 'Session',
+                                    @LockTimeout = 0;
+                    END
+                    IF @lock_result >= 0
+                        SET @holds_resync_lease = 1;
+                END
+                ELSE IF APPLOCK_MODE('public', '{this._resyncLeaseResource}', 'Session') = 'Exclusive'
+                BEGIN
+                    EXEC sp_releaseapplock @Resource = '{this._resyncLeaseResource}', @LockOwner = 'Session';
+                END
+
+                SELECT @resync_version, @holds_resync_lease;
+                {getResyncRowsSelect};";
+
+            return new SqlCommand(getResyncRowsQuery, connection);
+        }
+
+        /// <summary>
+        /// Builds the command completing the resync of the user table: LastSyncVersion is moved up to the version at which
+        /// the resync started, the leases of the changes up to that version are removed since the rows have been sent since
+        /// and the resync lease is released.
+        /// </summary>
+        /// <param name="connection">The connection to add to the returned SqlCommand</param>
+        /// <param name="transaction">The transaction to add to the returned SqlCommand</param>
+        /// <param name="resyncVersion">The version at which the resync started</param>
+        /// <returns>The SqlCommand populated with the query</returns>
+        private SqlCommand BuildCompleteResyncCommand(SqlConnection connection, SqlTransaction transaction, long resyncVersion)
+        {
+            string completeResyncQuery = $@"
+                {this._appLockStatements}
+
+                DELETE FROM {ResyncStateTableName}
+                WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId} AND {ResyncVersionColumnName} = {resyncVersion};
+
+                IF @@ROWCOUNT > 0
+                BEGIN
+                    UPDATE {GlobalStateTableName}
+                    SET
+                        LastSyncVersion = CASE WHEN LastSyncVersion < {resyncVersion} THEN {resyncVersion} ELSE LastSyncVersion END,
+                        LastAccessTime = GETUTCDATE()
+                    WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId};
+
+                    DELETE FROM {this._bracketedLeasesTableName} WHERE {LeasesTableChangeVersionColumnName} <= {resyncVersion};
+                END
+
+                IF APPLOCK_MODE('public', '{this._resyncLeaseResource}', 'Session') = 'Exclusive'
+                BEGIN
+                    EXEC sp_releaseapplock @Resource = '{this._resyncLeaseResource}', @LockOwner = 'Session';
+                END";
+
+            return new SqlCommand(completeResyncQuery, connection, transaction);
+        }
+
+        /// <summary>
+        /// If MaxBatchBytes is set, wraps the get changes query so that rows are only included while the running total of
+        /// their size (in the order they're processed) stays within the limit. This is done on the server so that rows which
+        /// don't fit in the batch are never sent to us. The first row is always included so that a single row larger than
+        /// the limit can't block processing.
+        /// </summary>
+        /// <param name="getChangesSelect">The get changes query, which must include the <see cref="GetRowSizeSelect"/> column</param>
+        /// <param name="internalColumns">The columns returned by the query in addition to the user table and change table ones</param>
+        /// <param name="orderByColumns">The columns the changes are ordered by</param>
+        /// <returns>The wrapped query, or the original one if there's no limit</returns>
+        private string LimitBatchBytes(string getChangesSelect, IEnumerable<string> internalColumns, IEnumerable<string> orderByColumns)
+        {
+            if (this._maxBatchBytes <= 0)
+            {
+                return getChangesSelect;
+            }
+
+            string resultColumns = string.Join(", ", this._userTableColumns.Select(col => col.AsBracketQuotedString())
+                .Concat(new[] { SysChangeVersionColumnName, "SYS_CHANGE_OPERATION" })
+                .Concat(internalColumns));
+            string orderBy = string.Join(", ", orderByColumns.Select(col => $"{col} ASC"));
+            return $@"
+                WITH changes AS ({getChangesSelect}
+                ),
+                changesWithRunningSize AS (
+                    SELECT *, SUM({RowSizeBytesColumnName}) OVER (ORDER BY {orderBy} ROWS UNBOUNDED PRECEDING) AS {RunningBatchBytesColumnName}
+                    FROM changes
+                )
+                SELECT {resultColumns}
+                FROM changesWithRunningSize
+                WHERE {RunningBatchBytesColumnName} - {RowSizeBytesColumnName} < {this._maxBatchBytes}
+                ORDER BY {orderBy}";
+        }
+
+        /// <summary>
+        /// Gets the reference to a column of the user table in the get changes query - primary key columns come from the
+        /// change table (since they're still available there for deleted rows) and all others from the user table.
+        /// </summary>
+        /// <param name="column">The name of the user table column</param>
+        /// <returns>The aliased and bracket quoted column reference</returns>
+        private string GetChangesColumnReference(string column)
+        {
+            return this._primaryKeyColumns.Select(c => c.name).Contains(column) ? $"c.{column.AsBracketQuotedString()}" : $"u.{column.AsBracketQuotedString()}";
+        }
+
         /// <summary>
         /// Returns a message indicating the number of changes(rows) on the user's table that are actively locked by other leases or have
         /// reached the max attempts allowed for the row.
@@ -1015,30 +2091,35 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         }
 
         /// <summary>
-        /// Builds the query to renew leases on the rows in "_rows" (<see cref="RenewLeasesAsync(SqlConnection,CancellationToken)"/>).
+        /// Builds the request to renew leases on the rows in "_rows" (<see cref="PrepareLeaseRenewalAsync"/>). The
+        /// statement is executed by the <see cref="SqlLeaseRenewalScheduler"/> as part of a batch containing the
+        /// renewals of all monitors sharing our connection string, so the app lock is acquired by the scheduler.
         /// </summary>
-        /// <param name="connection">The connection to add to the returned SqlCommand</param>
-        /// <param name="transaction">The transaction to add to the returned SqlCommand</param>
-        /// <returns>The SqlCommand populated with the query and appropriate parameters</returns>
-        private SqlCommand BuildRenewLeasesCommand(SqlConnection connection, SqlTransaction transaction)
+        /// <returns>The request populated with the statement and the primary key values of the rows</returns>
+        private LeaseRenewalRequest BuildRenewLeasesRequest()
         {
-            string matchCondition = string.Join(" OR ", this._rowMatchConditions.Take(this._rowsToProcess.Count));
-            // If the matchCondition is empty return null to avoid empty where clause query failure.
-            if (string.IsNullOrEmpty(matchCondition))
-            {
-                this._logger.LogError($"MatchCondition resolved to empty with '{this._rowsToProcess.Count}' rowsToProcess.");
-                TelemetryInstance.TrackEvent(TelemetryEventName.BuildRenewLeasesWithEmptyMatchCondtion);
-                return null;
-            }
-            string renewLeasesQuery = $@"
-                {this._appLockStatements}
+            // The column definitions to use for the CTE
+            IEnumerable<string> cteColumnDefinitions = this._primaryKeyColumns.Select(c => $"{c.name.AsBracketQuotedString()} {c.type}");
+            string primaryKeyMatchingQuery = string.Join(" AND ", this._primaryKeyColumns.Select(c => $"l.{c.name.AsBracketQuotedString()} = cte.{c.name.AsBracketQuotedString()}"));
 
+            // Only send the primary key values since that's all that's needed to match the rows
+            string rowData = Utils.JsonSerializeObject(this._rowsToProcess
+                .Select(row => this._primaryKeyColumns.ToDictionary(col => col.name, col => row[col.name])));
+
+            // Leases that have already been released (LeaseExpirationTime is NULL) are skipped so that a renewal which
+            // races with the release doesn't lease the row again.
+            string BuildStatement(string rowDataParameter)
+            {
+                return $@"
+                WITH renewLeasesCte AS ( SELECT * FROM OPENJSON({rowDataParameter}) WITH ({string.Join(",", cteColumnDefinitions)}) )
                 UPDATE {this._bracketedLeasesTableName}
                 SET {LeasesTableLeaseExpirationTimeColumnName} = DATEADD(second, {LeaseIntervalInSeconds}, SYSDATETIME())
-                WHERE {matchCondition};
-            ";
+                FROM {this._bracketedLeasesTableName} l INNER JOIN renewLeasesCte cte ON {primaryKeyMatchingQuery}
+                WHERE l.{LeasesTableLeaseExpirationTimeColumnName} IS NOT NULL;
+                SELECT @@ROWCOUNT;";
+            }
 
-            return this.GetSqlCommandWithParameters(renewLeasesQuery, connection, transaction, this._rowsToProcess);
+            return new LeaseRenewalRequest(BuildStatement, rowData, this._appLockTimeoutMs);
         }
 
         /// <summary>
@@ -1133,33 +2214,29 @@ WHERE l.{LeasesTableChangeVersionColumnName} <= cte.{SysChangeVersionColumnName}
         }
 
         /// <summary>
-        /// Returns SqlCommand with SqlParameters added to it. Each parameter follows the format
-        /// (@PrimaryKey_i, PrimaryKeyValue), where @PrimaryKey is the name of a primary key column, and PrimaryKeyValue
-        /// is one of the row's value for that column. To distinguish between the parameters of different rows, each row
-        /// will have a distinct value of i.
+        /// Builds the command to update the global version number in _globalStateTable after processing a batch of
+        /// changes in exclusive mode. The version is only updated if the exclusive lease is still held by this session,
+        /// and never moved backwards.
         /// </summary>
-        /// <param name="commandText">SQL query string</param>
         /// <param name="connection">The connection to add to the returned SqlCommand</param>
-        /// <param name="transaction">The transaction to add to the returned SqlCommand</param>
-        /// <param name="rows">Dictionary representing the table rows</param>
-        /// <remarks>
-        /// Ideally, we would have a map that maps from rows to a list of SqlCommands populated with their primary key
-        /// values. The issue with this is that SQL doesn't seem to allow adding parameters to one collection when they
-        /// are part of another. So, for example, since the SqlParameters are part of the list in the map, an exception
-        /// is thrown if they are also added to the collection of a SqlCommand. The expected behavior seems to be to
-        /// rebuild the SqlParameters each time.
-        /// </remarks>
-        private SqlCommand GetSqlCommandWithParameters(string commandText, SqlConnection connection,
-            SqlTransaction transaction, List<IReadOnlyDictionary<string, object>> rows)
+        /// <param name="newLastSyncVersion">The new LastSyncVersion to store, or null to only check the lease</param>
+        /// <returns>The SqlCommand returning the mode of the exclusive lease held by this session</returns>
+        private SqlCommand BuildUpdateLastSyncVersionExclusiveCommand(SqlConnection connection, long? newLastSyncVersion)
         {
-            var command = new SqlCommand(commandText, connection, transaction);
+            string updateLastSyncVersionStatement = newLastSyncVersion == null ? string.Empty : $@"
+                IF @lease_mode = 'Exclusive'
+                BEGIN
+                    UPDATE {GlobalStateTableName}
+                    SET LastSyncVersion = {newLastSyncVersion}, LastAccessTime = GETUTCDATE()
+                    WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {this._userTableId} AND LastSyncVersion < {newLastSyncVersion};
+                END";
 
-            SqlParameter[] parameters = Enumerable.Range(0, rows.Count)
-                .SelectMany(rowIndex => this._primaryKeyColumns.Select((col, colIndex) => new SqlParameter($"@{rowIndex}_{colIndex}", rows[rowIndex][col.name])))
-                .ToArray();
+            string updateLastSyncVersionQuery = $@"
+                DECLARE @lease_mode nvarchar(32) = APPLOCK_MODE('public', '{this._exclusiveLeaseResource}', 'Session');
+                {updateLastSyncVersionStatement}
+                SELECT @lease_mode;";
 
-            command.Parameters.AddRange(parameters);
-            return command;
+            return new SqlCommand(updateLastSyncVersionQuery, connection);
         }
 
         private enum State
@@ -30,6 +30,9 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         private readonly string _connectionString;
         private readonly string _tableName;
         private readonly string _leasesTableName;
+        private readonly bool _exclusive;
+        private readonly SqlTemporalFormat _temporalFormat;
+        private readonly SqlPayloadFormat _payloadFormat;
         private readonly ParameterInfo _parameter;
         private readonly IHostIdProvider _hostIdProvider;
         private readonly SqlOptions _sqlOptions;
@@ -45,16 +48,22 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// <param name="connectionString">SQL connection string used to connect to user database</param>
         /// <param name="tableName">Name of the user table</param>
         /// <param name="leasesTableName">Optional - Name of the leases table</param>
+        /// <param name="exclusive">Whether the function is the only consumer of the changes on the user table</param>
+        /// <param name="temporalFormat">How the date and time columns are written for functions binding to a string</param>
+        /// <param name="payloadFormat">The layout of the changes for functions binding to a string</param>
         /// <param name="parameter">Trigger binding parameter information</param>
         /// <param name="hostIdProvider">Provider of unique host identifier</param>
         /// <param name="sqlOptions"></param>
         /// <param name="logger">Facilitates logging of messages</param>
         /// <param name="configuration">Provides configuration values</param>
-        public SqlTriggerBinding(string connectionString, string tableName, string leasesTableName, ParameterInfo parameter, IOptions<SqlOptions> sqlOptions, IHostIdProvider hostIdProvider, ILogger logger, IConfiguration configuration)
+        public SqlTriggerBinding(string connectionString, string tableName, string leasesTableName, bool exclusive, SqlTemporalFormat temporalFormat, SqlPayloadFormat payloadFormat, ParameterInfo parameter, IOptions<SqlOptions> sqlOptions, IHostIdProvider hostIdProvider, ILogger logger, IConfiguration configuration)
         {
             this._connectionString = connectionString ?? throw new ArgumentNullException(nameof(connectionString));
             this._tableName = tableName ?? throw new ArgumentNullException(nameof(tableName));
             this._leasesTableName = leasesTableName;
+            this._exclusive = exclusive;
+            this._temporalFormat = temporalFormat;
+            this._payloadFormat = payloadFormat;
             this._parameter = parameter ?? throw new ArgumentNullException(nameof(parameter));
             this._hostIdProvider = hostIdProvider ?? throw new ArgumentNullException(nameof(hostIdProvider));
             this._sqlOptions = (sqlOptions ?? throw new ArgumentNullException(nameof(sqlOptions))).Value;
@@ -71,7 +80,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
 
         public Task<ITriggerData> BindAsync(object value, ValueBindingContext context)
         {
-            IValueProvider valueProvider = new SqlTriggerValueProvider(this._parameter.ParameterType, value, this._tableName);
+            IValueProvider valueProvider = new SqlTriggerValueProvider(this._parameter.ParameterType, value, this._tableName, this._temporalFormat, this._payloadFormat);
             return Task.FromResult<ITriggerData>(new TriggerData(valueProvider, _emptyBindingData));
         }
 
@@ -85,7 +94,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             {
                 hostIdFunctionId = await this.GetHostIdFunctionIdAsync();
             });
-            return new SqlTriggerListener<T>(this._connectionString, this._tableName, this._leasesTableName, websiteSiteNameFunctionId, hostIdFunctionId, context.Executor, this._sqlOptions, this._logger, this._configuration);
+            return new SqlTriggerListener<T>(this._connectionString, this._tableName, this._leasesTableName, websiteSiteNameFunctionId, hostIdFunctionId, context.Executor, this._sqlOptions, this._logger, this._configuration, this._exclusive);
         }
 
         public ParameterDescriptor ToParameterDescriptor()
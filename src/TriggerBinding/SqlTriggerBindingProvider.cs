@@ -90,10 +90,10 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                 bindingType = typeof(SqlTriggerBinding<>).MakeGenericType(userType);
             }
 
-            var constructorParameterTypes = new Type[] { typeof(string), typeof(string), typeof(string), typeof(ParameterInfo), typeof(IOptions<SqlOptions>), typeof(IHostIdProvider), typeof(ILogger), typeof(IConfiguration) };
+            var constructorParameterTypes = new Type[] { typeof(string), typeof(string), typeof(string), typeof(bool), typeof(SqlTemporalFormat), typeof(SqlPayloadFormat), typeof(ParameterInfo), typeof(IOptions<SqlOptions>), typeof(IHostIdProvider), typeof(ILogger), typeof(IConfiguration) };
             ConstructorInfo bindingConstructor = bindingType.GetConstructor(constructorParameterTypes);
 
-            object[] constructorParameterValues = new object[] { connectionString, attribute.TableName, attribute.LeasesTableName, parameter, this._sqlOptions, this._hostIdProvider, this._logger, this._configuration };
+            object[] constructorParameterValues = new object[] { connectionString, attribute.TableName, attribute.LeasesTableName, attribute.Exclusive, attribute.TemporalFormat, attribute.PayloadFormat, parameter, this._sqlOptions, this._hostIdProvider, this._logger, this._configuration };
             var triggerBinding = (ITriggerBinding)bindingConstructor.Invoke(constructorParameterValues);
 
             return Task.FromResult(triggerBinding);
@@ -9,6 +9,11 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
 
         public const string GlobalStateTableName = "[" + SchemaName + "].[GlobalState]";
 
+        /// <summary>
+        /// The table tracking the resyncs in progress, with a row for each 'user function and table' being resynced.
+        /// </summary>
+        public const string ResyncStateTableName = "[" + SchemaName + "].[ResyncState]";
+
         public const string LeasesTableNameFormat = "[" + SchemaName + "].[Leases_{0}]";
 
         public const string UserDefinedLeasesTableNameFormat = "[" + SchemaName + "].{0}";
@@ -19,6 +24,23 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         public const string SysChangeVersionColumnName = "SYS_CHANGE_VERSION";
         public const string LastAccessTimeColumnName = "LastAccessTime";
         /// <summary>
+        /// Columns of the resync state table: the change version at which the resync of the user table started and the
+        /// primary key of the last row sent to the function (NULL if no rows have been sent yet).
+        /// </summary>
+        public const string ResyncVersionColumnName = "ResyncVersion";
+        public const string ResyncCursorColumnName = "ResyncCursor";
+        /// <summary>
+        /// Columns computed by the get changes query when limiting the size of a batch, these aren't returned to the function.
+        /// </summary>
+        public const string RowSizeBytesColumnName = "_az_func_RowSizeBytes";
+        public const string RunningBatchBytesColumnName = "_az_func_RunningBatchBytes";
+        /// <summary>
+        /// Columns returned by the get changes query for batches sampled for commit latency: the time at which the
+        /// transaction that made the change committed and how long ago that was when the change was fetched.
+        /// </summary>
+        public const string CommitTimeColumnName = "_az_func_CommitTime";
+        public const string CommitLagMsColumnName = "_az_func_CommitLagMs";
+        /// <summary>
         /// The column names that are used in internal state tables and so can't exist in the target table
         /// since that shares column names with the primary keys from each user table being monitored.
         /// </summary>
@@ -34,9 +56,17 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// </summary>
         public const string ConfigKey_SqlTrigger_BatchSize = "Sql_Trigger_BatchSize";
         public const string ConfigKey_SqlTrigger_MaxBatchSize = "Sql_Trigger_MaxBatchSize";
+        public const string ConfigKey_SqlTrigger_MaxBatchBytes = "Sql_Trigger_MaxBatchBytes";
         public const string ConfigKey_SqlTrigger_PollingInterval = "Sql_Trigger_PollingIntervalMs";
         public const string ConfigKey_SqlTrigger_MaxChangesPerWorker = "Sql_Trigger_MaxChangesPerWorker";
         public const string ConfigKey_SqlTrigger_AppLockTimeoutMs = "Sql_Trigger_AppLockTimeoutMs";
+        public const string ConfigKey_SqlTrigger_ResyncOnRetentionGap = "Sql_Trigger_ResyncOnRetentionGap";
+        public const string ConfigKey_SqlTrigger_CommitLatencySamplingPercent = "Sql_Trigger_CommitLatencySamplingPercent";
+
+        /// <summary>
+        /// How often the leases held by the change monitors are renewed by the <see cref="SqlLeaseRenewalScheduler"/>.
+        /// </summary>
+        public const int LeaseRenewalIntervalInSeconds = 15;
 
         /// <summary>
         /// The resource name to use for getting the application lock. We use the same resource name for all instances
@@ -51,6 +81,18 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// </summary>
         public const int DefaultAppLockTimeoutMs = 30000;
 
+        /// <summary>
+        /// The resource name format of the session-scoped application lock held by a function in exclusive mode while it's
+        /// consuming the changes of a table, where {0} is the function ID and {1} the object ID of the user table.
+        /// </summary>
+        public const string ExclusiveLeaseAppLockResourceFormat = "_az_func_Exclusive_{0}_{1}";
+
+        /// <summary>
+        /// The resource name format of the session-scoped application lock held by the instance sending the rows of the
+        /// user table to the function during a resync, where {0} is the function ID and {1} the object ID of the user table.
+        /// </summary>
+        public const string ResyncLeaseAppLockResourceFormat = "_az_func_Resync_{0}_{1}";
+
         /// <summary>
         /// Generates T-SQL statements for getting an application lock with the specified timeout.
         ///
@@ -91,5 +133,15 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// There is already an object named '%.*ls' in the database.
         /// </summary>
         public const int ObjectAlreadyExistsErrorNumber = 2714;
+
+        /// <summary>
+        /// %ls permission was denied on object '%.*ls', database '%.*ls'.
+        /// </summary>
+        public const int PermissionDeniedOnObjectErrorNumber = 300;
+
+        /// <summary>
+        /// The user does not have permission to perform this action.
+        /// </summary>
+        public const int PermissionDeniedErrorNumber = 297;
     }
 }
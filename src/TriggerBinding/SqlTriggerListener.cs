@@ -48,6 +48,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         private readonly SqlOptions _sqlOptions;
         private readonly ILogger _logger;
         private readonly IConfiguration _configuration;
+        private readonly bool _exclusive;
 
         private readonly Dictionary<TelemetryPropertyName, string> _telemetryProps = new Dictionary<TelemetryPropertyName, string>();
         private readonly int _maxChangesPerWorker;
@@ -75,7 +76,8 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// <param name="sqlOptions"></param>
         /// <param name="logger">Facilitates logging of messages</param>
         /// <param name="configuration">Provides configuration values</param>
-        public SqlTriggerListener(string connectionString, string tableName, string userDefinedLeasesTableName, string websiteSiteNameFunctionId, string hostIdFunctionId, ITriggeredFunctionExecutor executor, SqlOptions sqlOptions, ILogger logger, IConfiguration configuration)
+        /// <param name="exclusive">Optional - Whether the function is the only consumer of the changes on the user table</param>
+        public SqlTriggerListener(string connectionString, string tableName, string userDefinedLeasesTableName, string websiteSiteNameFunctionId, string hostIdFunctionId, ITriggeredFunctionExecutor executor, SqlOptions sqlOptions, ILogger logger, IConfiguration configuration, bool exclusive = false)
         {
             this._connectionString = !string.IsNullOrEmpty(connectionString) ? connectionString : throw new ArgumentNullException(nameof(connectionString));
             this._userTable = !string.IsNullOrEmpty(tableName) ? new SqlObject(tableName) : throw new ArgumentNullException(nameof(tableName));
@@ -88,6 +90,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             this._sqlOptions = sqlOptions ?? throw new ArgumentNullException(nameof(sqlOptions));
             this._logger = logger ?? throw new ArgumentNullException(nameof(logger));
             this._configuration = configuration ?? throw new ArgumentNullException(nameof(configuration));
+            this._exclusive = exclusive;
             int? configuredMaxChangesPerWorker;
             // TODO: when we move to reading them exclusively from the host options, remove reading from settings.(https://github.com/Azure/azure-functions-sql-extension/issues/961)
             configuredMaxChangesPerWorker = configuration.GetValue<int?>(ConfigKey_SqlTrigger_MaxChangesPerWorker);
@@ -162,19 +165,34 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                     string bracketedLeasesTableName = GetBracketedLeasesTableName(this._userDefinedLeasesTableName, this._userFunctionId, userTableId);
                     this._telemetryProps[TelemetryPropertyName.LeasesTableName] = bracketedLeasesTableName;
 
+                    // Most starts (restarts, scale out) happen after the trigger state has already been created, so first check
+                    // whether everything exists with a single query that doesn't need the app lock. This avoids having every
+                    // listener starting at the same time wait on each other for the app lock just to find out there's nothing to do.
+                    var probeSw = Stopwatch.StartNew();
+                    bool isTriggerStateInitialized = false;
+                    await RunStartupPhaseAsync("ProbeTriggerState", this._userTable.FullName, this._userFunctionId, this._logger, async () =>
+                    {
+                        isTriggerStateInitialized = await this.IsTriggerStateInitializedAsync(connection, userTableId, bracketedLeasesTableName, cancellationToken);
+                    });
+                    long probeTriggerStateDurationMs = probeSw.ElapsedMilliseconds;
+                    this._telemetryProps[TelemetryPropertyName.TriggerStateInitialized] = isTriggerStateInitialized.ToString();
+
                     var transactionSw = Stopwatch.StartNew();
                     long createdSchemaDurationMs = 0L, createGlobalStateTableDurationMs = 0L, insertGlobalStateTableRowDurationMs = 0L, createLeasesTableDurationMs = 0L;
-                    await RunStartupPhaseAsync("InitializeTriggerState", this._userTable.FullName, this._userFunctionId, this._logger, async () =>
+                    if (!isTriggerStateInitialized)
                     {
-                        using (SqlTransaction transaction = connection.BeginTransaction(System.Data.IsolationLevel.RepeatableRead))
+                        await RunStartupPhaseAsync("InitializeTriggerState", this._userTable.FullName, this._userFunctionId, this._logger, async () =>
                         {
-                            createdSchemaDurationMs = await this.CreateSchemaAsync(connection, transaction, cancellationToken);
-                            createGlobalStateTableDurationMs = await this.CreateGlobalStateTableAsync(connection, transaction, cancellationToken);
-                            insertGlobalStateTableRowDurationMs = await this.InsertGlobalStateTableRowAsync(connection, transaction, userTableId, cancellationToken);
-                            createLeasesTableDurationMs = await this.CreateLeasesTableAsync(connection, transaction, bracketedLeasesTableName, primaryKeyColumns, cancellationToken);
-                            transaction.Commit();
-                        }
-                    });
+                            using (SqlTransaction transaction = connection.BeginTransaction(System.Data.IsolationLevel.RepeatableRead))
+                            {
+                                createdSchemaDurationMs = await this.CreateSchemaAsync(connection, transaction, cancellationToken);
+                                createGlobalStateTableDurationMs = await this.CreateGlobalStateTableAsync(connection, transaction, cancellationToken);
+                                insertGlobalStateTableRowDurationMs = await this.InsertGlobalStateTableRowAsync(connection, transaction, userTableId, cancellationToken);
+                                createLeasesTableDurationMs = await this.CreateLeasesTableAsync(connection, transaction, bracketedLeasesTableName, primaryKeyColumns, cancellationToken);
+                                transaction.Commit();
+                            }
+                        });
+                    }
 
                     await RunStartupPhaseAsync("CreateChangeMonitor", this._userTable.FullName, this._userFunctionId, this._logger, () =>
                     {
@@ -190,7 +208,8 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                             this._sqlOptions,
                             this._logger,
                             this._configuration,
-                            this._telemetryProps);
+                            this._telemetryProps,
+                            this._exclusive);
                         return Task.CompletedTask;
                     });
 
@@ -203,7 +222,8 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                         [TelemetryMeasureName.CreateGlobalStateTableDurationMs] = createGlobalStateTableDurationMs,
                         [TelemetryMeasureName.InsertGlobalStateTableRowDurationMs] = insertGlobalStateTableRowDurationMs,
                         [TelemetryMeasureName.CreateLeasesTableDurationMs] = createLeasesTableDurationMs,
-                        [TelemetryMeasureName.TransactionDurationMs] = transactionSw.ElapsedMilliseconds,
+                        [TelemetryMeasureName.ProbeTriggerStateDurationMs] = probeTriggerStateDurationMs,
+                        [TelemetryMeasureName.TransactionDurationMs] = isTriggerStateInitialized ? 0L : transactionSw.ElapsedMilliseconds,
                         [TelemetryMeasureName.MaxChangesPerWorker] = this._maxChangesPerWorker,
                         [TelemetryMeasureName.AppLockTimeoutMs] = this._appLockTimeoutMs
                     };
@@ -305,6 +325,62 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
             }
         }
 
+        /// <summary>
+        /// Checks, in a single query, whether all of the trigger state for the 'user function and table' already exists:
+        /// the schema, the global state table (including the columns added to it since it was first introduced), the global state table row, the
+        /// resync state table and the leases table. Also verifies that change tracking is enabled for the user table, which is otherwise done while
+        /// inserting the global state table row.
+        /// </summary>
+        /// <remarks>
+        /// This doesn't take the app lock - if another instance is in the middle of creating the state then we'll either
+        /// see all of it (and can skip creating it) or not (and will create it ourselves under the app lock).
+        /// </remarks>
+        /// <param name="connection">The already-opened connection to use for executing the command</param>
+        /// <param name="userTableId">The ID of the table being watched</param>
+        /// <param name="leasesTableName">The name of the leases table</param>
+        /// <param name="cancellationToken">Cancellation token to pass to the command</param>
+        /// <returns>True if all of the trigger state exists, false if it needs to be created</returns>
+        private async Task<bool> IsTriggerStateInitializedAsync(SqlConnection connection, int userTableId, string leasesTableName, CancellationToken cancellationToken)
+        {
+            // The global state table row is only checked for if the table exists, since otherwise the statement would fail to compile.
+            string probeTriggerStateQuery = $@"
+                DECLARE @globalStateRowExists bit = 0;
+                IF COL_LENGTH(N'{GlobalStateTableName}', '{LastAccessTimeColumnName}') IS NOT NULL
+                BEGIN
+                    IF EXISTS (SELECT 1 FROM {GlobalStateTableName} WHERE UserFunctionID = '{this._userFunctionId}' AND UserTableID = {userTableId})
+                        SET @globalStateRowExists = 1;
+                END
+
+                SELECT
+                    CHANGE_TRACKING_MIN_VALID_VERSION({userTableId}),
+                    CASE WHEN SCHEMA_ID(N'{SchemaName}') IS NULL THEN 0 ELSE 1 END,
+                    @globalStateRowExists,
+                    CASE WHEN OBJECT_ID(N'{leasesTableName}', 'U') IS NULL THEN 0 ELSE 1 END,
+                    CASE WHEN OBJECT_ID(N'{ResyncStateTableName}', 'U') IS NULL THEN 0 ELSE 1 END;
+            ";
+
+            using (var probeTriggerStateCommand = new SqlCommand(probeTriggerStateQuery, connection))
+            using (SqlDataReader reader = probeTriggerStateCommand.ExecuteReaderWithLogging(this._logger))
+            {
+                if (!await reader.ReadAsync(cancellationToken))
+                {
+                    throw new InvalidOperationException($"Received empty response when checking the trigger state for table: '{this._userTable.FullName}'.");
+                }
+
+                if (await reader.IsDBNullAsync(0, cancellationToken))
+                {
+                    throw new InvalidOperationException($"Could not find change tracking enabled for table: '{this._userTable.FullName}'.");
+                }
+
+                bool schemaExists = reader.GetInt32(1) == 1;
+                bool globalStateRowExists = reader.GetBoolean(2);
+                bool leasesTableExists = reader.GetInt32(3) == 1;
+                bool resyncStateTableExists = reader.GetInt32(4) == 1;
+                this._logger.LogDebug($"ProbeTriggerState SchemaExists={schemaExists} GlobalStateRowExists={globalStateRowExists} LeasesTableExists={leasesTableExists} ResyncStateTableExists={resyncStateTableExists}");
+                return schemaExists && globalStateRowExists && leasesTableExists && resyncStateTableExists;
+            }
+        }
+
         /// <summary>
         /// Creates the schema for global state table and leases tables, if it does not already exist.
         /// </summary>
@@ -351,8 +427,13 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         }
 
         /// <summary>
-        /// Creates the global state table if it does not already exist.
+        /// Creates the global state table and the resync state table if they do not already exist.
         /// </summary>
+        /// <remarks>
+        /// The global state table is shared with the functions running older versions of the extension, which insert
+        /// their rows without a column list, so its columns must not change. The state of a resync is kept in the
+        /// separate resync state table instead.
+        /// </remarks>
         /// <param name="connection">The already-opened connection to use for executing the command</param>
         /// <param name="transaction">The transaction wrapping this command</param>
         /// <param name="cancellationToken">Cancellation token to pass to the command</param>
@@ -373,6 +454,15 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                 ELSE IF NOT EXISTS(SELECT 1 FROM sys.columns WHERE Name = N'LastAccessTime'
                     AND Object_ID = Object_ID(N'{GlobalStateTableName}'))
                         ALTER TABLE {GlobalStateTableName} ADD LastAccessTime Datetime NOT NULL DEFAULT GETUTCDATE();
+
+                IF OBJECT_ID(N'{ResyncStateTableName}', 'U') IS NULL
+                    CREATE TABLE {ResyncStateTableName} (
+                        UserFunctionID char(16) NOT NULL,
+                        UserTableID int NOT NULL,
+                        {ResyncVersionColumnName} bigint NOT NULL,
+                        {ResyncCursorColumnName} nvarchar(max) NULL,
+                        PRIMARY KEY (UserFunctionID, UserTableID)
+                    );
             ";
 
             using (var createGlobalStateTableCommand = new SqlCommand(createGlobalStateTableQuery, connection, transaction))
@@ -448,7 +538,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                     ELSE
                         DELETE FROM az_func.GlobalState WHERE UserFunctionID = '{this._hostIdFunctionId}' AND UserTableID = {userTableId}
 
-                    INSERT INTO {GlobalStateTableName}
+                    INSERT INTO {GlobalStateTableName} (UserFunctionID, UserTableID, LastSyncVersion, LastAccessTime)
                     VALUES ('{this._userFunctionId}', {userTableId}, @lastSyncVersion, GETUTCDATE());
                 END
             ";
@@ -567,6 +657,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         {
             this._telemetryProps.Clear();
             this._telemetryProps[TelemetryPropertyName.UserFunctionId] = this._userFunctionId;
+            this._telemetryProps[TelemetryPropertyName.Exclusive] = this._exclusive.ToString();
         }
     }
 }
\ No newline at end of file
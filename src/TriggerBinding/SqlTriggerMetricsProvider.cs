@@ -97,6 +97,7 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
                 throw;
             }
 
+            SqlBindingMetrics.SetUnprocessedChangeCount(this._userFunctionId, this._userTable.FullName, unprocessedChangeCount);
             return unprocessedChangeCount;
         }
         private SqlCommand BuildGetUnprocessedChangesCommand(SqlConnection connection, SqlTransaction transaction, IReadOnlyList<(string name, string type)> primaryKeyColumns, int userTableId)
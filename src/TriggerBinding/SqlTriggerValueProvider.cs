@@ -18,6 +18,8 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         private readonly string _tableName;
         private readonly Type _parameterType;
         private readonly bool _isString;
+        private readonly SqlTemporalFormat _temporalFormat;
+        private readonly SqlPayloadFormat _payloadFormat;
 
         /// <summary>
         /// Initializes a new instance of the <see cref="SqlTriggerValueProvider"/> class.
@@ -25,12 +27,16 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         /// <param name="parameterType">Type of the trigger parameter</param>
         /// <param name="value">Value of the trigger parameter</param>
         /// <param name="tableName">Name of the user table</param>
-        public SqlTriggerValueProvider(Type parameterType, object value, string tableName)
+        /// <param name="temporalFormat">How the date and time columns are written when binding to a string</param>
+        /// <param name="payloadFormat">The layout of the changes when binding to a string</param>
+        public SqlTriggerValueProvider(Type parameterType, object value, string tableName, SqlTemporalFormat temporalFormat, SqlPayloadFormat payloadFormat)
         {
             this._parameterType = parameterType;
             this._value = value;
             this._tableName = tableName;
             this._isString = parameterType == typeof(string);
+            this._temporalFormat = temporalFormat;
+            this._payloadFormat = payloadFormat;
         }
 
         /// <summary>
@@ -55,7 +61,10 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql
         {
             if (this._isString)
             {
-                return Task.FromResult<object>(Utils.JsonSerializeObject(this._value));
+                // The changes for functions binding to a string are written directly from the rows when possible
+                string json = this._value is SqlChangeBatch<JObject> batch ? batch.ToJson(this._temporalFormat, this._payloadFormat)
+                    : Utils.JsonSerializeObject(this._value, this._temporalFormat == SqlTemporalFormat.Iso8601 ? SqlTemporalJsonConverter.SerializerSettings : null);
+                return Task.FromResult<object>(json);
             }
 
             return Task.FromResult(this._value);
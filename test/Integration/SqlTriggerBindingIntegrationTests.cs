@@ -1159,5 +1159,132 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Integration
                 _ => 0,
                 this.GetBatchProcessingTimeout(firstId, lastId));
         }
+
+        /// <summary>
+        /// Ensures that all the rows of the table are sent to the function as updates when ResyncOnRetentionGap is enabled
+        /// and the changes made while the function was stopped are no longer available, after which changes are processed again.
+        /// </summary>
+        [RetryTheory]
+        [SqlInlineData()]
+        public async Task ResyncOnRetentionGapTriggerTest(SupportedLanguages lang)
+        {
+            var environmentVariables = new Dictionary<string, string>() { { ConfigKey_SqlTrigger_ResyncOnRetentionGap, "true" } };
+            this.SetChangeTrackingForTable("Products");
+            this.StartFunctionHost(nameof(ProductsTrigger), lang, environmentVariables: environmentVariables);
+
+            int firstId = 1;
+            int lastId = 30;
+            await this.WaitForProductChanges(
+                firstId,
+                lastId,
+                SqlChangeOperation.Insert,
+                () => { this.InsertProducts(firstId, lastId); return Task.CompletedTask; },
+                id => $"Product {id}",
+                id => id * 100,
+                this.GetBatchProcessingTimeout(firstId, lastId));
+
+            // The changes made while the function is stopped are lost
+            this.DisposeFunctionHosts();
+            this.UpdateProducts(firstId, lastId);
+            this.ResetChangeTrackingForTable("Products");
+
+            this.StartFunctionHost(nameof(ProductsTrigger), lang, environmentVariables: environmentVariables);
+            await this.WaitForProductChanges(
+                firstId,
+                lastId,
+                SqlChangeOperation.Update,
+                () => Task.CompletedTask,
+                id => $"Updated Product {id}",
+                id => id * 100,
+                this.GetBatchProcessingTimeout(firstId, lastId));
+            await this.WaitForResyncToComplete();
+
+            firstId = 31;
+            lastId = 40;
+            await this.WaitForProductChanges(
+                firstId,
+                lastId,
+                SqlChangeOperation.Insert,
+                () => { this.InsertProducts(firstId, lastId); return Task.CompletedTask; },
+                id => $"Product {id}",
+                id => id * 100,
+                this.GetBatchProcessingTimeout(firstId, lastId));
+        }
+
+        /// <summary>
+        /// Ensures that a resync which was interrupted continues after the last row that was sent to the function.
+        /// </summary>
+        [RetryTheory]
+        [SqlInlineData()]
+        public async Task ResyncOnRetentionGapResumeTriggerTest(SupportedLanguages lang)
+        {
+            var environmentVariables = new Dictionary<string, string>() { { ConfigKey_SqlTrigger_ResyncOnRetentionGap, "true" } };
+            this.SetChangeTrackingForTable("Products");
+            this.StartFunctionHost(nameof(ProductsTrigger), lang, environmentVariables: environmentVariables);
+
+            int firstId = 1;
+            int lastId = 30;
+            await this.WaitForProductChanges(
+                firstId,
+                lastId,
+                SqlChangeOperation.Insert,
+                () => { this.InsertProducts(firstId, lastId); return Task.CompletedTask; },
+                id => $"Product {id}",
+                id => id * 100,
+                this.GetBatchProcessingTimeout(firstId, lastId));
+
+            this.DisposeFunctionHosts();
+            this.UpdateProducts(firstId, lastId);
+            this.ResetChangeTrackingForTable("Products");
+
+            // Record a resync which was stopped after sending the rows up to product 10
+            this.ExecuteNonQuery($@"
+                DECLARE @user_table_id int = OBJECT_ID(N'[dbo].[Products]');
+                DECLARE @user_function_id char(16);
+                SELECT TOP 1 @user_function_id = UserFunctionID FROM {GlobalStateTableName} WHERE UserTableID = @user_table_id ORDER BY LastAccessTime DESC;
+
+                UPDATE {GlobalStateTableName}
+                SET LastSyncVersion = CHANGE_TRACKING_MIN_VALID_VERSION(@user_table_id)
+                WHERE UserFunctionID = @user_function_id AND UserTableID = @user_table_id;
+
+                INSERT INTO {ResyncStateTableName} (UserFunctionID, UserTableID, {ResyncVersionColumnName}, {ResyncCursorColumnName})
+                VALUES (@user_function_id, @user_table_id, CHANGE_TRACKING_CURRENT_VERSION(), N'{{""ProductId"":10}}');");
+
+            // Rows that were already sent fail the check for the expected IDs
+            firstId = 11;
+            this.StartFunctionHost(nameof(ProductsTrigger), lang, environmentVariables: environmentVariables);
+            await this.WaitForProductChanges(
+                firstId,
+                lastId,
+                SqlChangeOperation.Update,
+                () => Task.CompletedTask,
+                id => $"Updated Product {id}",
+                id => id * 100,
+                this.GetBatchProcessingTimeout(firstId, lastId));
+            await this.WaitForResyncToComplete();
+        }
+
+        /// <summary>
+        /// Disables and re-enables change tracking for the table, which moves its minimum valid version past the changes
+        /// made so far in the same way the change tracking cleanup does.
+        /// </summary>
+        private void ResetChangeTrackingForTable(string tableName)
+        {
+            this.SetChangeTrackingForTable(tableName, false);
+            this.SetChangeTrackingForTable(tableName);
+        }
+
+        /// <summary>
+        /// Waits for the resync state of the Products table to be removed, which happens once the resync is completed.
+        /// </summary>
+        private async Task WaitForResyncToComplete()
+        {
+            var stopwatch = Stopwatch.StartNew();
+            while ((int)this.ExecuteScalar($"SELECT COUNT(*) FROM {ResyncStateTableName} WHERE UserTableID = OBJECT_ID(N'[dbo].[Products]')") > 0)
+            {
+                Assert.True(stopwatch.ElapsedMilliseconds < 10000, "Timed out waiting for the resync to complete.");
+                await Task.Delay(SqlOptions.DefaultPollingIntervalMs);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@
 
 using System;
 using System.Collections.Generic;
+using System.Data;
 using System.Linq;
 using System.Threading;
 using static Microsoft.Azure.WebJobs.Extensions.Sql.SqlConverters;
@@ -221,6 +222,42 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
             Assert.Equal(0, command.Parameters.Count);
         }
 
+        [Fact]
+        public void TestArrayParameters()
+        {
+            var command = new SqlCommand();
+            // Commas, brackets and equals signs inside the array (including in its strings) don't separate parameters
+            string parameters = "@ids=[1,2,3],@name=Cup,@names=[\"a,b\",\"c]=d\",[\"e\"]],@empty=[]";
+            SqlBindingUtilities.ParseParameters(parameters, command);
+
+            Assert.Equal(4, command.Parameters.Count);
+            Assert.Equal("[1,2,3]", command.Parameters["@ids"].Value);
+            Assert.Equal(SqlDbType.NVarChar, command.Parameters["@ids"].SqlDbType);
+            Assert.Equal(-1, command.Parameters["@ids"].Size);
+            Assert.Equal("Cup", command.Parameters["@name"].Value);
+            Assert.Equal("[\"a,b\",\"c]=d\",[\"e\"]]", command.Parameters["@names"].Value);
+            Assert.Equal("[]", command.Parameters["@empty"].Value);
+
+            // Arrays resolved from binding expressions can span several lines
+            command = new SqlCommand();
+            SqlBindingUtilities.ParseParameters("@ids=[\r\n  1,\r\n  2\r\n]", command);
+            Assert.Equal("[\r\n  1,\r\n  2\r\n]", command.Parameters["@ids"].Value);
+
+            // Brackets in the middle of a scalar value don't start an array
+            command = new SqlCommand();
+            SqlBindingUtilities.ParseParameters("@name=a[b,@cost=1", command);
+            Assert.Equal("a[b", command.Parameters["@name"].Value);
+
+            // Values starting with a bracket which aren't JSON arrays are plain strings
+            command = new SqlCommand();
+            SqlBindingUtilities.ParseParameters("@name=[abc,@code=[a]", command);
+            Assert.Equal("[abc", command.Parameters["@name"].Value);
+            Assert.Equal("[a]", command.Parameters["@code"].Value);
+
+            Assert.Throws<ArgumentException>(() => SqlBindingUtilities.ParseParameters("@ids=[1,2", new SqlCommand()));
+            Assert.Throws<ArgumentException>(() => SqlBindingUtilities.ParseParameters("@ids=[1,2]x=1", new SqlCommand()));
+        }
+
         [Fact]
         public async Task TestWellformedDeserialization()
         {
@@ -0,0 +1,164 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Data;
+using System.Linq;
+using System.Threading;
+using System.Threading.Tasks;
+using Xunit;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
+{
+    public class SqlInputCacheTests
+    {
+        private const long MaxBytes = 1024;
+
+        private long _elapsedMs;
+
+        [Fact]
+        public async Task GetOrLoadAsync_ReturnsCachedPayloadUntilExpired()
+        {
+            var cache = new SqlInputCache(() => this._elapsedMs);
+            int loads = 0;
+            Task<string> Load()
+            {
+                return Task.FromResult($"[{++loads}]");
+            }
+
+            Assert.Equal("[1]", await cache.GetOrLoadAsync(CreateKey("@Cost=100"), 1000, MaxBytes, Load));
+            this._elapsedMs = 999;
+            Assert.Equal("[1]", await cache.GetOrLoadAsync(CreateKey("@Cost=100"), 1000, MaxBytes, Load));
+            // Other parameter values are cached separately
+            Assert.Equal("[2]", await cache.GetOrLoadAsync(CreateKey("@Cost=200"), 1000, MaxBytes, Load));
+            this._elapsedMs = 1000;
+            Assert.Equal("[3]", await cache.GetOrLoadAsync(CreateKey("@Cost=100"), 1000, MaxBytes, Load));
+        }
+
+        [Fact]
+        public async Task GetOrLoadAsync_ConcurrentMissesLoadOnce()
+        {
+            var cache = new SqlInputCache(() => this._elapsedMs);
+            var payload = new TaskCompletionSource<string>();
+            int loads = 0;
+            Task<string> Load()
+            {
+                Interlocked.Increment(ref loads);
+                return payload.Task;
+            }
+
+            Task<string> first = cache.GetOrLoadAsync(CreateKey("@Cost=100"), 1000, MaxBytes, Load);
+            Task<string> second = cache.GetOrLoadAsync(CreateKey("@Cost=100"), 1000, MaxBytes, Load);
+            payload.SetResult("[]");
+
+            Assert.Equal(new[] { "[]", "[]" }, await Task.WhenAll(first, second));
+            Assert.Equal(1, loads);
+        }
+
+        [Fact]
+        public async Task GetOrLoadAsync_DoesNotCacheFailures()
+        {
+            var cache = new SqlInputCache(() => this._elapsedMs);
+            var payload = new TaskCompletionSource<string>();
+
+            Task<string> first = cache.GetOrLoadAsync(CreateKey("@Cost=100"), 1000, MaxBytes, () => payload.Task);
+            Task<string> second = cache.GetOrLoadAsync(CreateKey("@Cost=100"), 1000, MaxBytes, () => Task.FromResult("[2]"));
+            payload.SetException(new InvalidOperationException("Query failed"));
+
+            // Both callers see the failure of the query they shared, and the next caller runs it again
+            await Assert.ThrowsAsync<InvalidOperationException>(() => first);
+            await Assert.ThrowsAsync<InvalidOperationException>(() => second);
+            Assert.Equal("[3]", await cache.GetOrLoadAsync(CreateKey("@Cost=100"), 1000, MaxBytes, () => Task.FromResult("[3]")));
+            Assert.Equal(6, cache.SizeBytes);
+        }
+
+        [Fact]
+        public async Task GetOrLoadAsync_EvictsLeastRecentlyUsedPayloads()
+        {
+            var cache = new SqlInputCache(() => this._elapsedMs);
+            string payload = new string('x', 200);
+
+            await cache.GetOrLoadAsync(CreateKey("@Cost=1"), 1000, MaxBytes, () => Task.FromResult(payload));
+            await cache.GetOrLoadAsync(CreateKey("@Cost=2"), 1000, MaxBytes, () => Task.FromResult(payload));
+            // Using the first payload again makes the second one the least recently used
+            await cache.GetOrLoadAsync(CreateKey("@Cost=1"), 1000, MaxBytes, () => Task.FromResult("[]"));
+            await cache.GetOrLoadAsync(CreateKey("@Cost=3"), 1000, MaxBytes, () => Task.FromResult(payload));
+
+            Assert.Equal(800, cache.SizeBytes);
+            Assert.Equal(payload, await cache.GetOrLoadAsync(CreateKey("@Cost=1"), 1000, MaxBytes, () => Task.FromResult("[]")));
+            Assert.Equal("[]", await cache.GetOrLoadAsync(CreateKey("@Cost=2"), 1000, MaxBytes, () => Task.FromResult("[]")));
+        }
+
+        [Fact]
+        public async Task GetOrLoadAsync_DoesNotKeepPayloadsLargerThanCache()
+        {
+            var cache = new SqlInputCache(() => this._elapsedMs);
+            string payload = new string('x', 1000);
+
+            Assert.Equal(payload, await cache.GetOrLoadAsync(CreateKey("@Cost=1"), 1000, MaxBytes, () => Task.FromResult(payload)));
+
+            Assert.Equal(0, cache.SizeBytes);
+        }
+
+        [Fact]
+        public async Task Invalidate_RemovesPayloadsLoadedBeforeTheChange()
+        {
+            var cache = new SqlInputCache(() => this._elapsedMs);
+            SqlInputCacheDependencies products = SqlInputCacheInvalidator.GetDependencies(new SqlAttribute("SELECT 1", "SqlConnectionString") { CacheDependencies = "dbo.Products" });
+            SqlInputCacheDependencies prices = SqlInputCacheInvalidator.GetDependencies(new SqlAttribute("SELECT 1", "SqlConnectionString") { CacheDependencies = "[dbo].[Prices], Products" });
+
+            // Without a TTL the payloads are kept until they're invalidated
+            await cache.GetOrLoadAsync(CreateKey("@Cost=1"), 0, MaxBytes, () => Task.FromResult("[1]"), products, 10);
+            await cache.GetOrLoadAsync(CreateKey("@Cost=2"), 0, MaxBytes, () => Task.FromResult("[2]"), prices, 10);
+            await cache.GetOrLoadAsync(CreateKey("@Cost=3"), 0, MaxBytes, () => Task.FromResult("[3]"), products, 20);
+            this._elapsedMs = long.MaxValue - 1;
+
+            Assert.Equal(0, cache.Invalidate("Server=localhost", "[dbo].[Products]", 10));
+            Assert.Equal(1, cache.Invalidate("Server=localhost", "[DBO].[PRICES]", 15));
+            Assert.Equal(0, cache.Invalidate("Server=other", "[dbo].[Products]", 15));
+            Assert.Equal(1, cache.Invalidate("Server=localhost", "[dbo].[Products]", 15));
+            Assert.Equal("[1b]", await cache.GetOrLoadAsync(CreateKey("@Cost=1"), 0, MaxBytes, () => Task.FromResult("[1b]"), products, 30));
+            Assert.Equal("[2b]", await cache.GetOrLoadAsync(CreateKey("@Cost=2"), 0, MaxBytes, () => Task.FromResult("[2b]"), prices, 30));
+            Assert.Equal("[3]", await cache.GetOrLoadAsync(CreateKey("@Cost=3"), 0, MaxBytes, () => Task.FromResult("[3b]"), products, 30));
+        }
+
+        [Fact]
+        public async Task Invalidate_DoesNotCachePayloadsBeingLoaded()
+        {
+            var cache = new SqlInputCache(() => this._elapsedMs);
+            SqlInputCacheDependencies products = SqlInputCacheInvalidator.GetDependencies(new SqlAttribute("SELECT 1", "SqlConnectionString") { CacheDependencies = "dbo.Products" });
+            var payload = new TaskCompletionSource<string>();
+
+            Task<string> first = cache.GetOrLoadAsync(CreateKey("@Cost=1"), 0, MaxBytes, () => payload.Task, products, 10);
+            Assert.Equal(1, cache.Invalidate("Server=localhost", null, long.MaxValue));
+            // Requests after the change don't wait for the query which may have missed it
+            Assert.Equal("[2]", await cache.GetOrLoadAsync(CreateKey("@Cost=1"), 0, MaxBytes, () => Task.FromResult("[2]"), products, 20));
+            payload.SetResult("[1]");
+
+            Assert.Equal("[1]", await first);
+            Assert.Equal("[2]", await cache.GetOrLoadAsync(CreateKey("@Cost=1"), 0, MaxBytes, () => Task.FromResult("[3]"), products, 20));
+        }
+
+        [Fact]
+        public void GetDependencies_ParsesTableNames()
+        {
+            Assert.Null(SqlInputCacheInvalidator.GetDependencies(new SqlAttribute("SELECT 1", "SqlConnectionString")));
+            SqlInputCacheDependencies dependencies = SqlInputCacheInvalidator.GetDependencies(new SqlAttribute("SELECT 1", "SqlConnectionString") { CacheDependencies = "dbo.Products, [dbo].[Products],Prices" });
+
+            Assert.Equal(new[] { "[dbo].[Products]", "[Prices]" }, dependencies.Tables.Select(table => table.BracketQuotedFullName));
+            Assert.Throws<InvalidOperationException>(() => SqlInputCacheInvalidator.GetDependencies(new SqlAttribute("SELECT 1", "SqlConnectionString") { CacheDependencies = " , " }));
+        }
+
+        [Fact]
+        public void GetTtlMs_ThrowsOnNegativeValue()
+        {
+            Assert.Equal(0, SqlInputCache.GetTtlMs(new SqlAttribute("SELECT 1", "SqlConnectionString")));
+            Assert.Throws<InvalidOperationException>(() => SqlInputCache.GetTtlMs(new SqlAttribute("SELECT 1", "SqlConnectionString") { CacheTtlMs = -1 }));
+        }
+
+        private static SqlInputCacheKey CreateKey(string parameters)
+        {
+            return new SqlInputCacheKey("Server=localhost", CommandType.Text, "SELECT * FROM Products WHERE Cost = @Cost", parameters, null, SqlTemporalFormat.Default, SqlPayloadFormat.Default);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Threading.Tasks;
+using Microsoft.Data.SqlClient;
+using Xunit;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
+{
+    public class SqlInvocationScopeTests
+    {
+        private long _elapsedMs;
+        private int _transactionCount;
+        private Exception _transactionError;
+        private readonly List<string> _calls = new List<string>();
+
+        [Fact]
+        public async Task FlushAsync_WritesRowsOfAllBindingsInOneTransaction()
+        {
+            SqlInvocationScopes scopes = this.CreateScopes();
+            FakeBinding customers = this.CreateBinding("Customers", 2);
+            FakeBinding addresses = this.CreateBinding("Addresses", 1);
+            FakeBinding orders = this.CreateBinding("Orders", 3);
+            SqlInvocationScope scope = scopes.Join("Server=localhost", "1", customers);
+            Assert.Same(scope, scopes.Join("Server=localhost", "1", addresses));
+            Assert.Same(scope, scopes.Join("Server=localhost", "1", orders));
+
+            // Whichever binding flushes first writes the rows of all the bindings in the order they joined
+            await scope.FlushAsync();
+            Assert.Equal(1, this._transactionCount);
+            Assert.Equal(new[]
+            {
+                "prepare Customers", "prepare Addresses", "prepare Orders",
+                "upsert Customers", "upsert Addresses", "upsert Orders",
+                "after Customers", "after Addresses", "after Orders"
+            }, this._calls);
+            Assert.Equal(0, customers.RowCount + addresses.RowCount + orders.RowCount);
+
+            // The other bindings have nothing left to write
+            await scope.FlushAsync();
+            await scope.FlushAsync();
+            Assert.Equal(1, this._transactionCount);
+        }
+
+        [Fact]
+        public async Task FlushAsync_WritesRowsAddedAfterEarlierFlush()
+        {
+            SqlInvocationScopes scopes = this.CreateScopes();
+            FakeBinding customers = this.CreateBinding("Customers", 1);
+            FakeBinding orders = this.CreateBinding("Orders", 0);
+            SqlInvocationScope scope = scopes.Join("Server=localhost", "1", customers);
+            scopes.Join("Server=localhost", "1", orders);
+
+            // A flush in the middle of the function writes the rows added so far
+            await scope.FlushAsync();
+            Assert.Equal(new[] { "prepare Customers", "upsert Customers", "after Customers" }, this._calls);
+            this._calls.Clear();
+
+            orders.RowCount = 2;
+            await scope.FlushAsync();
+            Assert.Equal(2, this._transactionCount);
+            Assert.Equal(new[] { "prepare Orders", "upsert Orders", "after Orders" }, this._calls);
+        }
+
+        [Fact]
+        public async Task FlushAsync_KeepsRowsWhenTransactionFails()
+        {
+            SqlInvocationScopes scopes = this.CreateScopes();
+            FakeBinding orders = this.CreateBinding("Orders", 2);
+            SqlInvocationScope scope = scopes.Join("Server=localhost", "1", orders);
+
+            this._transactionError = new InvalidOperationException("Upsert failed");
+            await Assert.ThrowsAsync<InvalidOperationException>(() => scope.FlushAsync());
+            Assert.Equal(2, orders.RowCount);
+
+            this._transactionError = null;
+            await scope.FlushAsync();
+            Assert.Equal(0, orders.RowCount);
+        }
+
+        [Fact]
+        public async Task FlushAsync_SkipsBindingsWithoutRows()
+        {
+            SqlInvocationScopes scopes = this.CreateScopes();
+            SqlInvocationScope scope = scopes.Join("Server=localhost", "1", this.CreateBinding("Customers", 0));
+            scopes.Join("Server=localhost", "1", this.CreateBinding("Orders", 0));
+            await scope.FlushAsync();
+            Assert.Equal(0, this._transactionCount);
+
+            scope = scopes.Join("Server=localhost", "2", this.CreateBinding("Customers", 0));
+            scopes.Join("Server=localhost", "2", this.CreateBinding("Orders", 1));
+            await scope.FlushAsync();
+            Assert.Equal(1, this._transactionCount);
+            Assert.Equal(new[] { "prepare Orders", "upsert Orders", "after Orders" }, this._calls);
+        }
+
+        [Fact]
+        public async Task Join_StartsNewScopeOnceFlushStarted()
+        {
+            SqlInvocationScopes scopes = this.CreateScopes();
+            SqlInvocationScope scope = scopes.Join("Server=localhost", "1", this.CreateBinding("Orders", 1));
+            await scope.FlushAsync();
+
+            Assert.NotSame(scope, scopes.Join("Server=localhost", "1", this.CreateBinding("Customers", 1)));
+        }
+
+        [Fact]
+        public void Join_ScopesBindingsByConnectionString()
+        {
+            SqlInvocationScopes scopes = this.CreateScopes();
+            SqlInvocationScope scope = scopes.Join("Server=localhost", "1", this.CreateBinding("Customers", 0));
+
+            Assert.Same(scope, scopes.Join("Server=localhost", "1", this.CreateBinding("Orders", 0)));
+            Assert.NotSame(scope, scopes.Join("Server=other", "1", this.CreateBinding("Addresses", 0)));
+            Assert.NotSame(scope, scopes.Join("Server=localhost", "2", this.CreateBinding("Addresses", 0)));
+        }
+
+        [Fact]
+        public async Task Join_SupersedesScopeWithBindingToSameTable()
+        {
+            SqlInvocationScopes scopes = this.CreateScopes();
+            SqlInvocationScope first = scopes.Join("Server=localhost", "1", this.CreateBinding("Orders", 1));
+            scopes.Join("Server=localhost", "1", this.CreateBinding("Customers", 1));
+
+            // Another invocation with the same scope starts a new one
+            SqlInvocationScope second = scopes.Join("Server=localhost", "1", this.CreateBinding("Orders", 1));
+            Assert.NotSame(first, second);
+
+            // The bindings of the earlier invocation fail instead of writing the rows of both invocations
+            InvalidOperationException ex = await Assert.ThrowsAsync<InvalidOperationException>(() => first.FlushAsync());
+            Assert.Equal("The rows of invocation scope '1' weren't written since another invocation used the same scope while it was running. The invocation scope must be unique to each invocation.", ex.Message);
+            await second.FlushAsync();
+            Assert.Equal(1, this._transactionCount);
+            Assert.Equal(new[] { "prepare Orders", "upsert Orders", "after Orders" }, this._calls);
+        }
+
+        [Fact]
+        public async Task Join_RemovesExpiredScopesWithoutDroppingRows()
+        {
+            SqlInvocationScopes scopes = this.CreateScopes();
+            FakeBinding orders = this.CreateBinding("Orders", 2);
+            SqlInvocationScope scope = scopes.Join("Server=localhost", "1", orders);
+
+            this._elapsedMs = SqlInvocationScope.MaxScopeAgeMs;
+            Assert.NotSame(scope, scopes.Join("Server=localhost", "1", this.CreateBinding("Customers", 0)));
+
+            // The bindings of the expired scope still write their rows
+            await scope.FlushAsync();
+            Assert.Equal(1, this._transactionCount);
+            Assert.Equal(0, orders.RowCount);
+        }
+
+        private SqlInvocationScopes CreateScopes()
+        {
+            return new SqlInvocationScopes(() => this._elapsedMs, this.RunInTransactionAsync);
+        }
+
+        private FakeBinding CreateBinding(string table, int rowCount)
+        {
+            return new FakeBinding(table, this._calls) { RowCount = rowCount };
+        }
+
+        /// <summary>
+        /// Runs the upserts of a scope like a single transaction would, without connecting to a database
+        /// </summary>
+        private async Task RunInTransactionAsync(string connectionString, Func<SqlConnection, Task<Func<SqlTransaction, Task<List<Func<Task>>>>>> prepare)
+        {
+            if (this._transactionError != null)
+            {
+                throw this._transactionError;
+            }
+            this._transactionCount++;
+            Func<SqlTransaction, Task<List<Func<Task>>>> upsert = await prepare(null);
+            foreach (Func<Task> afterCommit in await upsert(null))
+            {
+                await afterCommit();
+            }
+        }
+
+        /// <summary>
+        /// A binding holding a number of rows, which records the calls made to upsert them
+        /// </summary>
+        private sealed class FakeBinding : ISqlInvocationScopeBinding
+        {
+            private readonly List<string> _calls;
+
+            public FakeBinding(string table, List<string> calls)
+            {
+                this.Table = table;
+                this._calls = calls;
+            }
+
+            public string Table { get; }
+
+            public int RowCount { get; set; }
+
+            public Task<(int RowCount, Func<SqlConnection, Task<Func<SqlTransaction, Task<Func<Task>>>>> Upsert)> GetPendingUpsertAsync()
+            {
+                if (this.RowCount == 0)
+                {
+                    return Task.FromResult<(int, Func<SqlConnection, Task<Func<SqlTransaction, Task<Func<Task>>>>>)>((0, null));
+                }
+                Func<SqlConnection, Task<Func<SqlTransaction, Task<Func<Task>>>>> prepare = connection =>
+                {
+                    this._calls.Add($"prepare {this.Table}");
+                    Func<SqlTransaction, Task<Func<Task>>> upsert = transaction =>
+                    {
+                        this._calls.Add($"upsert {this.Table}");
+                        Func<Task> afterCommit = () =>
+                        {
+                            this._calls.Add($"after {this.Table}");
+                            return Task.CompletedTask;
+                        };
+                        return Task.FromResult(afterCommit);
+                    };
+                    return Task.FromResult(upsert);
+                };
+                return Task.FromResult<(int, Func<SqlConnection, Task<Func<SqlTransaction, Task<Func<Task>>>>>)>((this.RowCount, prepare));
+            }
+
+            public Task RemoveWrittenRowsAsync(int rowCount)
+            {
+                this.RowCount -= rowCount;
+                return Task.CompletedTask;
+            }
+        }
+    }
+}
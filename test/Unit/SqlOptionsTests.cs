@@ -15,9 +15,12 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
             var options = new SqlOptions();
 
             Assert.Equal(100, options.MaxBatchSize);
+            Assert.Equal(0, options.MaxBatchBytes);
             Assert.Equal(1000, options.PollingIntervalMs);
             Assert.Equal(1000, options.MaxChangesPerWorker);
             Assert.Equal(30000, options.AppLockTimeoutMs);
+            Assert.False(options.ResyncOnRetentionGap);
+            Assert.Equal(0, options.CommitLatencySamplingPercent);
         }
 
         [Fact]
@@ -29,6 +32,10 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
             options.MaxBatchSize = 200;
             Assert.Equal(200, options.MaxBatchSize);
 
+            Assert.Equal(0, options.MaxBatchBytes);
+            options.MaxBatchBytes = 1048576;
+            Assert.Equal(1048576, options.MaxBatchBytes);
+
             Assert.Equal(1000, options.PollingIntervalMs);
             options.PollingIntervalMs = 2000;
             Assert.Equal(2000, options.PollingIntervalMs);
@@ -40,6 +47,14 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
             Assert.Equal(30000, options.AppLockTimeoutMs);
             options.AppLockTimeoutMs = 60000;
             Assert.Equal(60000, options.AppLockTimeoutMs);
+
+            Assert.False(options.ResyncOnRetentionGap);
+            options.ResyncOnRetentionGap = true;
+            Assert.True(options.ResyncOnRetentionGap);
+
+            Assert.Equal(0, options.CommitLatencySamplingPercent);
+            options.CommitLatencySamplingPercent = 10;
+            Assert.Equal(10, options.CommitLatencySamplingPercent);
         }
 
         [Fact]
@@ -48,16 +63,37 @@ namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
             var jo = new JObject
             {
                 { "MaxBatchSize", 10 },
+                { "MaxBatchBytes", 4096 },
                 { "PollingIntervalMs", 2000 },
                 { "MaxChangesPerWorker", 10},
-                { "AppLockTimeoutMs", 5000}
+                { "AppLockTimeoutMs", 5000},
+                { "ResyncOnRetentionGap", true },
+                { "CommitLatencySamplingPercent", 25 }
             };
             SqlOptions options = jo.ToObject<SqlOptions>();
 
             Assert.Equal(10, options.MaxBatchSize);
+            Assert.Equal(4096, options.MaxBatchBytes);
             Assert.Equal(2000, options.PollingIntervalMs);
             Assert.Equal(10, options.MaxChangesPerWorker);
             Assert.Equal(5000, options.AppLockTimeoutMs);
+            Assert.True(options.ResyncOnRetentionGap);
+            Assert.Equal(25, options.CommitLatencySamplingPercent);
+        }
+
+        [Fact]
+        public void MaxBatchBytes_ThrowsOnNegativeValue()
+        {
+            var options = new SqlOptions();
+            Assert.Throws<ArgumentOutOfRangeException>(() => options.MaxBatchBytes = -1);
+        }
+
+        [Fact]
+        public void CommitLatencySamplingPercent_ThrowsOnOutOfRangeValue()
+        {
+            var options = new SqlOptions();
+            Assert.Throws<ArgumentOutOfRangeException>(() => options.CommitLatencySamplingPercent = -1);
+            Assert.Throws<ArgumentOutOfRangeException>(() => options.CommitLatencySamplingPercent = 101);
         }
 
         [Fact]
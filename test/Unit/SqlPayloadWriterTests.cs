@@ -0,0 +1,110 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Data;
+using System.Data.Common;
+using System.Threading;
+using System.Threading.Tasks;
+using Moq;
+using Newtonsoft.Json;
+using Xunit;
+using static Microsoft.Azure.WebJobs.Extensions.Sql.SqlBindingConstants;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
+{
+    public class SqlPayloadWriterTests
+    {
+        private static readonly JsonSerializerSettings Settings = new() { DateFormatString = ISO_8061_DATETIME_FORMAT };
+
+        [Fact]
+        public async Task WriteAsync_MatchesSerializedDataTable()
+        {
+            DataTable table = CreateProductsTable();
+
+            (string json, int rowCount, _) = await SqlPayloadWriter.WriteAsync(table.CreateDataReader(), SqlPayloadFormat.Default, Settings, 0, CancellationToken.None);
+
+            Assert.Equal(Utils.JsonSerializeObject(table, Settings), json);
+            Assert.Equal(2, rowCount);
+        }
+
+        [Fact]
+        public async Task WriteAsync_Columnar_WritesColumnsOnceAndRowsAsArrays()
+        {
+            DataTable table = CreateProductsTable();
+
+            (string json, int rowCount, _) = await SqlPayloadWriter.WriteAsync(table.CreateDataReader(), SqlPayloadFormat.Columnar, Settings, 0, CancellationToken.None);
+
+            Assert.Equal("{\"columns\":[\"ProductId\",\"Name\",\"LastModified\"],\"rows\":[[1,\"Product \\\"1\\\"\",\"2023-01-02T03:04:05.678Z\"],[2,null,null]]}", json);
+            Assert.Equal(2, rowCount);
+        }
+
+        [Fact]
+        public async Task WriteAsync_Columnar_UsesTemporalFormat()
+        {
+            var table = new DataTable();
+            table.Columns.Add("LastModified", typeof(DateTimeOffset));
+            table.Rows.Add(new DateTimeOffset(2023, 1, 2, 3, 4, 5, TimeSpan.FromHours(1)));
+
+            (string json, _, _) = await SqlPayloadWriter.WriteAsync(table.CreateDataReader(), SqlPayloadFormat.Columnar, SqlTemporalJsonConverter.SerializerSettings, 0, CancellationToken.None);
+
+            Assert.Equal("{\"columns\":[\"LastModified\"],\"rows\":[[\"2023-01-02T03:04:05.0000000+01:00\"]]}", json);
+        }
+
+        [Fact]
+        public async Task WriteAsync_EmptyResult()
+        {
+            var table = new DataTable();
+            table.Columns.Add("ProductId", typeof(int));
+
+            Assert.Equal(("[]", 0, false), await SqlPayloadWriter.WriteAsync(table.CreateDataReader(), SqlPayloadFormat.Default, null, 0, CancellationToken.None));
+            Assert.Equal(("{\"columns\":[\"ProductId\"],\"rows\":[]}", 0, false), await SqlPayloadWriter.WriteAsync(table.CreateDataReader(), SqlPayloadFormat.Columnar, null, 0, CancellationToken.None));
+        }
+
+        [Fact]
+        public async Task WriteAsync_PageSize_WritesOnlyThePage()
+        {
+            DataTable table = CreateProductsTable();
+
+            (string json, int rowCount, bool hasMoreRows) = await SqlPayloadWriter.WriteAsync(table.CreateDataReader(), SqlPayloadFormat.Columnar, Settings, 1, CancellationToken.None);
+
+            Assert.Equal("{\"columns\":[\"ProductId\",\"Name\",\"LastModified\"],\"rows\":[[1,\"Product \\\"1\\\"\",\"2023-01-02T03:04:05.678Z\"]]}", json);
+            Assert.Equal(1, rowCount);
+            Assert.True(hasMoreRows);
+
+            // A page which holds all the remaining rows is the last one
+            (_, rowCount, hasMoreRows) = await SqlPayloadWriter.WriteAsync(table.CreateDataReader(), SqlPayloadFormat.Default, Settings, 2, CancellationToken.None);
+            Assert.Equal(2, rowCount);
+            Assert.False(hasMoreRows);
+        }
+
+        [Fact]
+        public void GetPageSize_Negative_Throws()
+        {
+            Assert.Equal(0, SqlPayloadWriter.GetPageSize(new SqlAttribute("SELECT 1", "SqlConnectionString")));
+            Assert.Throws<InvalidOperationException>(() => SqlPayloadWriter.GetPageSize(new SqlAttribute("SELECT 1", "SqlConnectionString") { PageSize = -1 }));
+        }
+
+        [Fact]
+        public void GetColumnNames_NamesColumnsLikeDataTable()
+        {
+            var reader = new Mock<DbDataReader>();
+            string[] names = { "", "Name", "name", "", "Column1", "Cost" };
+            reader.Setup(r => r.FieldCount).Returns(names.Length);
+            reader.Setup(r => r.GetName(It.IsAny<int>())).Returns((int i) => names[i]);
+
+            Assert.Equal(new[] { "Column2", "Name", "name1", "Column3", "Column1", "Cost" }, SqlPayloadWriter.GetColumnNames(reader.Object));
+        }
+
+        private static DataTable CreateProductsTable()
+        {
+            var table = new DataTable();
+            table.Columns.Add("ProductId", typeof(int));
+            table.Columns.Add("Name", typeof(string));
+            table.Columns.Add("LastModified", typeof(DateTime));
+            table.Rows.Add(1, "Product \"1\"", new DateTime(2023, 1, 2, 3, 4, 5, 678));
+            table.Rows.Add(2, DBNull.Value, DBNull.Value);
+            return table;
+        }
+    }
+}
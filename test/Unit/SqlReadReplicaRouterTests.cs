@@ -0,0 +1,113 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using Microsoft.Data.SqlClient;
+using Microsoft.Extensions.Configuration;
+using Xunit;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
+{
+    public class SqlReadReplicaRouterTests
+    {
+        private static readonly IConfiguration Configuration = new ConfigurationBuilder()
+            .AddInMemoryCollection(new Dictionary<string, string>
+            {
+                { "SqlConnectionString", "Data Source=primary;Initial Catalog=TestDB" },
+                { "SqlReplicaConnectionString", "Data Source=replica;Initial Catalog=TestDB" },
+            })
+            .Build();
+
+        [Fact]
+        public void GetReadConnectionString_RoutesOptedInBindings()
+        {
+            Assert.Equal(ApplicationIntent.ReadWrite, GetReadConnectionString(new SqlAttribute("SELECT 1", "SqlConnectionString")).ApplicationIntent);
+
+            SqlConnectionStringBuilder readOnly = GetReadConnectionString(new SqlAttribute("SELECT 1", "SqlConnectionString") { ReadOnly = true });
+            Assert.Equal("primary", readOnly.DataSource);
+            Assert.Equal(ApplicationIntent.ReadOnly, readOnly.ApplicationIntent);
+
+            SqlConnectionStringBuilder replica = GetReadConnectionString(new SqlAttribute("SELECT 1", "SqlConnectionString") { ReadReplicaConnectionStringSetting = "SqlReplicaConnectionString" });
+            Assert.Equal("replica", replica.DataSource);
+            Assert.Equal(ApplicationIntent.ReadWrite, replica.ApplicationIntent);
+
+            SqlConnectionStringBuilder both = GetReadConnectionString(new SqlAttribute("SELECT 1", "SqlConnectionString") { ReadReplicaConnectionStringSetting = "SqlReplicaConnectionString", ReadOnly = true });
+            Assert.Equal("replica", both.DataSource);
+            Assert.Equal(ApplicationIntent.ReadOnly, both.ApplicationIntent);
+        }
+
+        [Fact]
+        public void GetReadConnectionString_ReadsCacheDependenciesFromPrimary()
+        {
+            SqlConnectionStringBuilder connectionString = GetReadConnectionString(new SqlAttribute("SELECT 1", "SqlConnectionString")
+            {
+                ReadReplicaConnectionStringSetting = "SqlReplicaConnectionString",
+                ReadOnly = true,
+                CacheDependencies = "dbo.Products"
+            });
+
+            Assert.Equal("primary", connectionString.DataSource);
+            Assert.Equal(ApplicationIntent.ReadWrite, connectionString.ApplicationIntent);
+        }
+
+        [Fact]
+        public void GetReadConnectionString_ThrowsOnMissingReplicaSetting()
+        {
+            Assert.Throws<ArgumentException>(() => GetReadConnectionString(new SqlAttribute("SELECT 1", "SqlConnectionString") { ReadReplicaConnectionStringSetting = "Missing" }));
+        }
+
+        [Fact]
+        public void GetReplicaLagMs_EstimatesLagFromRedoQueue()
+        {
+            Assert.Equal(0, SqlReadReplicaRouter.GetReplicaLagMs(null, null, null, null));
+            Assert.Equal(0, SqlReadReplicaRouter.GetReplicaLagMs(0, 0, 0, 0));
+            Assert.Equal(250, SqlReadReplicaRouter.GetReplicaLagMs(null, null, 1000, 4000));
+            Assert.Equal(1, SqlReadReplicaRouter.GetReplicaLagMs(0, 0, 1, 3000));
+            // Log waiting to be redone without any redo progress means the replica is stuck
+            Assert.Equal(long.MaxValue, SqlReadReplicaRouter.GetReplicaLagMs(null, null, 1000, 0));
+            Assert.Equal(long.MaxValue, SqlReadReplicaRouter.GetReplicaLagMs(null, null, 1000, null));
+        }
+
+        [Fact]
+        public void GetReplicaLagMs_IncludesLogNotSentYet()
+        {
+            // The log not sent yet also has to be redone once it's received
+            Assert.Equal(500, SqlReadReplicaRouter.GetReplicaLagMs(1000, 8000, 1000, 4000));
+            // Sending it may take longer than redoing both queues
+            Assert.Equal(2000, SqlReadReplicaRouter.GetReplicaLagMs(2000, 1000, 0, 4000));
+            Assert.Equal(long.MaxValue, SqlReadReplicaRouter.GetReplicaLagMs(1000, 0, 0, 4000));
+            Assert.Equal(long.MaxValue, SqlReadReplicaRouter.GetReplicaLagMs(1000, 1000, 0, 0));
+        }
+
+        [Fact]
+        public void IsKnownToLag_UsesLagUntilItsReadAgain()
+        {
+            long elapsedMs = 0;
+            var router = new SqlReadReplicaRouter(() => elapsedMs);
+            Assert.False(router.IsKnownToLag("Data Source=replica", 100, out _));
+
+            router.SetLag("Data Source=replica", 150);
+            Assert.True(router.IsKnownToLag("Data Source=replica", 100, out long lagMs));
+            Assert.Equal(150, lagMs);
+            Assert.False(router.IsKnownToLag("Data Source=replica", 200, out _));
+            Assert.False(router.IsKnownToLag("Data Source=other", 100, out _));
+
+            // Once the lag is too old the replica is connected to again to read it
+            elapsedMs = SqlReadReplicaRouter.LagCheckIntervalMs;
+            Assert.False(router.IsKnownToLag("Data Source=replica", 100, out _));
+        }
+
+        [Fact]
+        public void GetMaxReplicaLagMs_ThrowsOnNegativeValue()
+        {
+            Assert.Equal(0, SqlReadReplicaRouter.GetMaxReplicaLagMs(new SqlAttribute("SELECT 1", "SqlConnectionString")));
+            Assert.Throws<InvalidOperationException>(() => SqlReadReplicaRouter.GetMaxReplicaLagMs(new SqlAttribute("SELECT 1", "SqlConnectionString") { MaxReplicaLagMs = -1 }));
+        }
+
+        private static SqlConnectionStringBuilder GetReadConnectionString(SqlAttribute attribute)
+        {
+            return new SqlConnectionStringBuilder(SqlReadReplicaRouter.GetReadConnectionString(attribute, Configuration));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Data;
+using System.Linq;
+using System.Threading.Tasks;
+using Xunit;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
+{
+    public class SqlSharedResultSetsTests
+    {
+        private long _elapsedMs;
+        private int _loadCount;
+
+        [Fact]
+        public async Task GetAsync_SharesExecutionWithinInvocationScope()
+        {
+            var resultSets = new SqlSharedResultSets(() => this._elapsedMs);
+
+            // Whichever binding of the scope is first runs the command once for all of them
+            Assert.Equal("[1]", await resultSets.GetAsync("1", CreateKey("@Page=1"), 1, this.Load));
+            Assert.Equal("[0]", await resultSets.GetAsync("1", CreateKey("@Page=1"), 0, this.Load));
+            Assert.Equal("[2]", await resultSets.GetAsync("1", CreateKey("@Page=1"), 2, this.Load));
+            Assert.Equal(1, this._loadCount);
+        }
+
+        [Fact]
+        public async Task GetAsync_DropsPayloadsOnceAllResultSetsAreTaken()
+        {
+            var resultSets = new SqlSharedResultSets(() => this._elapsedMs);
+
+            await resultSets.GetAsync("1", CreateKey("@Page=1"), 0, this.Load);
+            await resultSets.GetAsync("1", CreateKey("@Page=1"), 2, this.Load);
+            Assert.Equal(1, resultSets.BatchCount);
+
+            // The payloads aren't held until they expire once the last result set has been taken
+            await resultSets.GetAsync("1", CreateKey("@Page=1"), 1, this.Load);
+            Assert.Equal(0, resultSets.BatchCount);
+            Assert.Equal(1, this._loadCount);
+        }
+
+        [Fact]
+        public async Task GetAsync_DoesNotShareAcrossInvocationScopesOrParameters()
+        {
+            var resultSets = new SqlSharedResultSets(() => this._elapsedMs);
+            await resultSets.GetAsync("1", CreateKey("@Page=1"), 0, this.Load);
+
+            await resultSets.GetAsync("2", CreateKey("@Page=1"), 1, this.Load);
+            await resultSets.GetAsync("1", CreateKey("@Page=2"), 1, this.Load);
+            Assert.Equal(3, this._loadCount);
+        }
+
+        [Fact]
+        public async Task GetAsync_RunsCommandAgainForResultSetAlreadyTaken()
+        {
+            var resultSets = new SqlSharedResultSets(() => this._elapsedMs);
+            await resultSets.GetAsync("1", CreateKey("@Page=1"), 0, this.Load);
+            await resultSets.GetAsync("1", CreateKey("@Page=1"), 1, this.Load);
+            Assert.Equal(1, this._loadCount);
+
+            // A retry of the invocation with the same scope reads the results of its own execution
+            await resultSets.GetAsync("1", CreateKey("@Page=1"), 0, this.Load);
+            Assert.Equal(2, this._loadCount);
+            await resultSets.GetAsync("1", CreateKey("@Page=1"), 1, this.Load);
+            Assert.Equal(2, this._loadCount);
+        }
+
+        [Fact]
+        public async Task GetAsync_DoesNotTakeExpiredResultSets()
+        {
+            var resultSets = new SqlSharedResultSets(() => this._elapsedMs);
+            await resultSets.GetAsync("1", CreateKey("@Page=1"), 0, this.Load);
+            this._elapsedMs = SqlSharedResultSets.MaxBatchAgeMs;
+            await resultSets.GetAsync("1", CreateKey("@Page=1"), 1, this.Load);
+
+            Assert.Equal(2, this._loadCount);
+        }
+
+        [Fact]
+        public async Task GetAsync_ThrowsOnMissingResultSet()
+        {
+            var resultSets = new SqlSharedResultSets(() => this._elapsedMs);
+
+            InvalidOperationException ex = await Assert.ThrowsAsync<InvalidOperationException>(() => resultSets.GetAsync("1", CreateKey("@Page=1"), 5, this.Load));
+            Assert.Equal("The command didn't return a result set at index 5.", ex.Message);
+        }
+
+        [Fact]
+        public async Task GetAsync_RunsCommandAgainAfterFailure()
+        {
+            var resultSets = new SqlSharedResultSets(() => this._elapsedMs);
+
+            await Assert.ThrowsAsync<InvalidOperationException>(() => resultSets.GetAsync("1", CreateKey("@Page=1"), 0,
+                () => Task.FromException<IReadOnlyDictionary<int, string>>(new InvalidOperationException("Query failed"))));
+
+            Assert.Equal("[1]", await resultSets.GetAsync("1", CreateKey("@Page=1"), 1, this.Load));
+            Assert.Equal(1, this._loadCount);
+        }
+
+        [Fact]
+        public async Task GetAsync_NullArguments_Throws()
+        {
+            var resultSets = new SqlSharedResultSets(() => this._elapsedMs);
+
+            await Assert.ThrowsAsync<ArgumentNullException>(() => resultSets.GetAsync(null, CreateKey("@Page=1"), 0, this.Load));
+            await Assert.ThrowsAsync<ArgumentNullException>(() => resultSets.GetAsync("", CreateKey("@Page=1"), 0, this.Load));
+            await Assert.ThrowsAsync<ArgumentNullException>(() => resultSets.GetAsync("1", CreateKey("@Page=1"), 0, null));
+        }
+
+        [Fact]
+        public void GetResultSetIndex_ThrowsOnNegativeValue()
+        {
+            Assert.Equal(0, SqlSharedResultSets.GetResultSetIndex(new SqlAttribute("dbo.GetPage", "SqlConnectionString")));
+            Assert.Throws<InvalidOperationException>(() => SqlSharedResultSets.GetResultSetIndex(new SqlAttribute("dbo.GetPage", "SqlConnectionString") { ResultSetIndex = -1 }));
+        }
+
+        /// <summary>
+        /// Returns the payloads of a command which returns three result sets
+        /// </summary>
+        private Task<IReadOnlyDictionary<int, string>> Load()
+        {
+            this._loadCount++;
+            IReadOnlyDictionary<int, string> payloads = Enumerable.Range(0, 3).ToDictionary(i => i, i => $"[{i}]");
+            return Task.FromResult(payloads);
+        }
+
+        private static SqlInputCacheKey CreateKey(string parameters)
+        {
+            return new SqlInputCacheKey("Server=localhost", CommandType.StoredProcedure, "dbo.GetPage", parameters, null, SqlTemporalFormat.Default, SqlPayloadFormat.Default);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Data;
+using System.Linq;
+using System.Threading.Tasks;
+using Microsoft.Data.SqlClient;
+using Microsoft.Extensions.Configuration;
+using Microsoft.Extensions.Logging;
+using Moq;
+using Xunit;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
+{
+    public class SqlSlowStatementRecorderTests
+    {
+        [Fact]
+        public void GetThresholdMs_BindingOverridesAppSetting()
+        {
+            Mock<IConfiguration> config = CreateMockConfiguration("500");
+
+            Assert.Equal(500, SqlSlowStatementRecorder.GetThresholdMs(new SqlAttribute("dbo.Products", "SqlConnectionString"), config.Object));
+            Assert.Equal(100, SqlSlowStatementRecorder.GetThresholdMs(new SqlAttribute("dbo.Products", "SqlConnectionString") { SlowStatementThresholdMs = 100 }, config.Object));
+        }
+
+        [Fact]
+        public void GetThresholdMs_ThrowsOnNegativeValue()
+        {
+            Assert.Throws<InvalidOperationException>(() => SqlSlowStatementRecorder.GetThresholdMs(new SqlAttribute("dbo.Products", "SqlConnectionString"), CreateMockConfiguration("-1").Object));
+            Assert.Throws<InvalidOperationException>(() => SqlSlowStatementRecorder.GetThresholdMs(new SqlAttribute("dbo.Products", "SqlConnectionString") { SlowStatementThresholdMs = -1 }, CreateMockConfiguration(null).Object));
+        }
+
+        [Fact]
+        public void Capture_RecordsParameterShapesWithoutValues()
+        {
+            using (var command = new SqlCommand("SELECT * FROM Products WHERE Name = @Name AND Cost = @Cost"))
+            {
+                command.Parameters.Add(new SqlParameter("@Name", SqlDbType.NVarChar, 4000) { Value = "secret value" });
+                command.Parameters.Add(new SqlParameter("@Cost", SqlDbType.Int) { Value = 100 });
+
+                SlowStatement statement = SqlSlowStatementRecorder.Capture(command, "Text", null, 2, 1500);
+
+                Assert.Equal("@Name NVarChar(4000)=String[12], @Cost Int=Int32", statement.ParameterShapes);
+                Assert.DoesNotContain("secret value", statement.ParameterShapes);
+                Assert.Equal(2, statement.RowCount);
+                Assert.Equal(1500, statement.DurationMs);
+                // The hash only depends on the text of the command
+                Assert.Equal(statement.CommandTextHash, SqlSlowStatementRecorder.Capture(command, "Text", null, 0, 0).CommandTextHash);
+            }
+        }
+
+        [Fact]
+        public void GetStatements_KeepsMostRecentStatements()
+        {
+            var recorder = new SqlSlowStatementRecorder(2);
+            for (int i = 1; i <= 3; i++)
+            {
+                recorder.Add(new SlowStatement("Text", null, $"SELECT {i}", "", "", 1, i));
+            }
+
+            IEnumerable<long> durations = recorder.GetStatements().Select(s => s.DurationMs);
+            Assert.Equal(new long[] { 2, 3 }, durations);
+        }
+
+        [Fact]
+        public async Task Record_ReadsPlanInBackground()
+        {
+            var planRead = new TaskCompletionSource<object>();
+            var commands = new List<string>();
+            var recorder = new SqlSlowStatementRecorder(10, command =>
+            {
+                commands.Add(command.CommandText);
+                return planRead.Task;
+            });
+            var first = new SlowStatement("Text", null, "SELECT 1", "", "", 1, 1500);
+            var second = new SlowStatement("Text", null, "SELECT 2", "", "", 1, 1500);
+            using (var connection = new SqlConnection("Server=localhost;Database=db"))
+            {
+                // The statements are recorded without waiting for their plan, and only one plan is read at a time
+                recorder.Record(first, "SELECT 1", CommandType.Text, connection, 100, new Mock<ILogger>().Object);
+                recorder.Record(second, "SELECT 2", CommandType.Text, connection, 100, new Mock<ILogger>().Object);
+                Assert.Equal(new[] { first, second }, recorder.GetStatements());
+                Assert.Null(first.QueryPlan);
+
+                planRead.SetResult("<ShowPlanXML />");
+                await recorder.PlanLookup;
+                Assert.Equal("<ShowPlanXML />", first.QueryPlan);
+                Assert.Null(second.QueryPlan);
+                Assert.Single(commands);
+
+                // The next sampled statement reads its plan once the previous lookup is done
+                recorder.Record(second, "SELECT 2", CommandType.Text, connection, 100, new Mock<ILogger>().Object);
+                await recorder.PlanLookup;
+                Assert.Equal("<ShowPlanXML />", second.QueryPlan);
+                Assert.Equal(2, commands.Count);
+            }
+        }
+
+        [Fact]
+        public void Record_DoesNotReadPlanWhenNotSampled()
+        {
+            var recorder = new SqlSlowStatementRecorder(10, command => throw new InvalidOperationException("The plan shouldn't be read"));
+            using (var connection = new SqlConnection("Server=localhost;Database=db"))
+            {
+                recorder.Record(new SlowStatement("Text", null, "SELECT 1", "", "", 1, 1500), "SELECT 1", CommandType.Text, connection, 0, new Mock<ILogger>().Object);
+            }
+            Assert.True(recorder.PlanLookup.IsCompleted);
+        }
+
+        [Fact]
+        public void CreateGetQueryPlanCommand_LooksUpStoredProceduresByObject()
+        {
+            var statement = new SlowStatement("StoredProcedure", "dbo.GetProducts", "dbo.GetProducts", "", "", 1, 1500);
+            using (SqlCommand command = SqlSlowStatementRecorder.CreateGetQueryPlanCommand(statement, "dbo.GetProducts", CommandType.StoredProcedure, new SqlConnection()))
+            {
+                Assert.Equal(SqlSlowStatementRecorder.GetProcedurePlanCommandText, command.CommandText);
+                Assert.Equal("dbo.GetProducts", command.Parameters["@objectName"].Value);
+            }
+        }
+
+        [Fact]
+        public void CreateGetQueryPlanCommand_OnlyMatchesQueriesExecutedSinceTheStatementStarted()
+        {
+            var statement = new SlowStatement("Text", null, "SELECT 1", "", "", 1, 1500);
+            using (SqlCommand command = SqlSlowStatementRecorder.CreateGetQueryPlanCommand(statement, "SELECT 1", CommandType.Text, new SqlConnection()))
+            {
+                Assert.Equal(SqlSlowStatementRecorder.GetQueryPlanCommandText, command.CommandText);
+                Assert.Equal("SELECT 1", command.Parameters["@commandText"].Value);
+                // 1.5s rounded up, plus a second for the rounding of the execution times
+                Assert.InRange((int)command.Parameters["@secondsSinceExecution"].Value, 3, 4);
+            }
+        }
+
+        private static Mock<IConfiguration> CreateMockConfiguration(string thresholdMs)
+        {
+            var mockConfiguration = new Mock<IConfiguration>();
+            mockConfiguration
+                .Setup(x => x.GetSection(SqlSlowStatementRecorder.ConfigKey_SlowStatementThresholdMs))
+                .Returns(Mock.Of<IConfigurationSection>(section => section.Value == thresholdMs));
+            return mockConfiguration;
+        }
+    }
+}
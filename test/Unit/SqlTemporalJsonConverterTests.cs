@@ -0,0 +1,58 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.Globalization;
+using System.Threading;
+using Xunit;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
+{
+    public class SqlTemporalJsonConverterTests
+    {
+        [Fact]
+        public void TryFormat_WritesFixedWidthValues()
+        {
+            Assert.True(SqlTemporalJsonConverter.TryFormat(new DateTime(2023, 1, 2, 3, 4, 5, 678), out string dateTime));
+            Assert.Equal("2023-01-02T03:04:05.6780000Z", dateTime);
+            Assert.True(SqlTemporalJsonConverter.TryFormat(new DateTimeOffset(2023, 1, 2, 3, 4, 5, TimeSpan.FromMinutes(-330)), out string dateTimeOffset));
+            Assert.Equal("2023-01-02T03:04:05.0000000-05:30", dateTimeOffset);
+            Assert.True(SqlTemporalJsonConverter.TryFormat(new TimeSpan(3, 4, 5), out string time));
+            Assert.Equal("03:04:05.0000000", time);
+            Assert.False(SqlTemporalJsonConverter.TryFormat("2023-01-02", out _));
+        }
+
+        [Fact]
+        public void TryFormat_IgnoresCurrentCulture()
+        {
+            CultureInfo culture = Thread.CurrentThread.CurrentCulture;
+            try
+            {
+                // Uses a different calendar and separators
+                Thread.CurrentThread.CurrentCulture = new CultureInfo("ar-SA");
+                Assert.True(SqlTemporalJsonConverter.TryFormat(new DateTime(2023, 1, 2, 3, 4, 5), out string dateTime));
+                Assert.Equal("2023-01-02T03:04:05.0000000Z", dateTime);
+            }
+            finally
+            {
+                Thread.CurrentThread.CurrentCulture = culture;
+            }
+        }
+
+        [Fact]
+        public void SerializerSettings_FormatsRowValues()
+        {
+            var row = new Dictionary<string, object>
+            {
+                { "Id", 1 },
+                { "Created", new DateTimeOffset(2023, 1, 2, 3, 4, 5, TimeSpan.FromHours(2)) },
+                { "Deleted", null },
+            };
+
+            string json = Utils.JsonSerializeObject(row, SqlTemporalJsonConverter.SerializerSettings);
+
+            Assert.Equal("{\"Id\":1,\"Created\":\"2023-01-02T03:04:05.0000000+02:00\",\"Deleted\":null}", json);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System.Collections.Generic;
+using System.Diagnostics.Metrics;
+using System.Linq;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry;
+using Xunit;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
+{
+    public class SqlBindingMetricsTests
+    {
+        [Fact]
+        public void RecordUpsert_PublishesRowsBatchSizeAndDuration()
+        {
+            var measurements = new List<(string name, double value, Dictionary<string, object> tags)>();
+            using (CreateListener(measurements))
+            {
+                SqlBindingMetrics.RecordUpsert("dbo.MetricsTestTable", 42, 12.5);
+            }
+
+            IEnumerable<(string name, double value, Dictionary<string, object> tags)> tableMeasurements = measurements
+                .Where(m => m.tags.TryGetValue(SqlBindingMetrics.TableTagName, out object table) && (string)table == "dbo.MetricsTestTable");
+            Assert.Contains(tableMeasurements, m => m.name == "sql.output.rows" && m.value == 42);
+            Assert.Contains(tableMeasurements, m => m.name == "sql.output.batch_size" && m.value == 42);
+            Assert.Contains(tableMeasurements, m => m.name == "sql.output.duration" && m.value == 12.5);
+        }
+
+        [Fact]
+        public void SetUnprocessedChangeCount_IsObservedByGauge()
+        {
+            var measurements = new List<(string name, double value, Dictionary<string, object> tags)>();
+            using (MeterListener listener = CreateListener(measurements))
+            {
+                SqlBindingMetrics.SetUnprocessedChangeCount("metrics-test-function", "dbo.MetricsTestTable", 10);
+                SqlBindingMetrics.SetUnprocessedChangeCount("metrics-test-function", "dbo.MetricsTestTable", 7);
+                listener.RecordObservableInstruments();
+            }
+
+            (string name, double value, Dictionary<string, object> tags) measurement = Assert.Single(measurements,
+                m => m.name == "sql.trigger.unprocessed_changes" && m.tags.TryGetValue(SqlBindingMetrics.FunctionTagName, out object function) && (string)function == "metrics-test-function");
+            Assert.Equal(7, measurement.value);
+            Assert.Equal("dbo.MetricsTestTable", measurement.tags[SqlBindingMetrics.TableTagName]);
+        }
+
+        [Fact]
+        public void SqlClientCounters_ArePublishedWithClientPrefix()
+        {
+            var measurements = new List<(string name, double value, Dictionary<string, object> tags)>();
+            SqlBindingMetrics.SetSqlClientGauge("metrics-test-pooled-connections", "Number of pooled connections", 3);
+            using (MeterListener listener = CreateListener(measurements))
+            {
+                SqlBindingMetrics.SetSqlClientGauge("metrics-test-pooled-connections", "Number of pooled connections", 5);
+                SqlBindingMetrics.AddSqlClientCounter("metrics-test-hard-connects", "Actual connection rate", 2);
+                listener.RecordObservableInstruments();
+            }
+
+            Assert.Contains(measurements, m => m.name == "sql.client.metrics_test_pooled_connections" && m.value == 5);
+            Assert.Contains(measurements, m => m.name == "sql.client.metrics_test_hard_connects" && m.value == 2);
+        }
+
+        private static MeterListener CreateListener(List<(string name, double value, Dictionary<string, object> tags)> measurements)
+        {
+            var listener = new MeterListener
+            {
+                InstrumentPublished = (instrument, l) =>
+                {
+                    if (instrument.Meter.Name == SqlBindingMetrics.MeterName)
+                    {
+                        l.EnableMeasurementEvents(instrument);
+                    }
+                }
+            };
+            listener.SetMeasurementEventCallback<long>((instrument, value, tags, state) =>
+            {
+                lock (measurements)
+                {
+                    measurements.Add((instrument.Name, value, tags.ToArray().ToDictionary(t => t.Key, t => t.Value)));
+                }
+            });
+            listener.SetMeasurementEventCallback<double>((instrument, value, tags, state) =>
+            {
+                lock (measurements)
+                {
+                    measurements.Add((instrument.Name, value, tags.ToArray().ToDictionary(t => t.Key, t => t.Value)));
+                }
+            });
+            listener.Start();
+            return listener;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Telemetry;
+using Xunit;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
+{
+    public class TelemetryEventBufferTests
+    {
+        [Fact]
+        public void Constructor_ThrowsOnInvalidCapacity()
+        {
+            Assert.Throws<ArgumentOutOfRangeException>(() => new TelemetryEventBuffer(1));
+            Assert.Throws<ArgumentOutOfRangeException>(() => new TelemetryEventBuffer(6));
+        }
+
+        [Fact]
+        public void Drain_AggregatesEventsWithSameNameAndProperties()
+        {
+            var buffer = new TelemetryEventBuffer(8);
+            for (int i = 1; i <= 3; i++)
+            {
+                // Different dictionaries with the same content are aggregated together
+                var props = new Dictionary<TelemetryPropertyName, string> { { TelemetryPropertyName.ServerVersion, "16.0" } };
+                var measures = new Dictionary<TelemetryMeasureName, double> { { TelemetryMeasureName.BatchSize, i * 10 } };
+                Write(buffer, TelemetryEventName.Upsert, props, measures);
+            }
+            Write(buffer, TelemetryEventName.FlushAsync, null, null);
+
+            var aggregator = new TelemetryEventAggregator();
+            Assert.Equal(4, buffer.Drain(aggregator));
+
+            Assert.Equal(2, aggregator.Events.Count);
+            AggregatedTelemetryEvent upsert = Assert.Single(aggregator.Events, e => e.EventName == TelemetryEventName.Upsert);
+            Assert.Equal(3, upsert.Count);
+            Assert.Equal("16.0", upsert.Properties[TelemetryPropertyName.ServerVersion]);
+            AggregatedTelemetryMeasure batchSize = upsert.Measures[TelemetryMeasureName.BatchSize];
+            Assert.Equal(20, batchSize.Mean);
+            Assert.Equal(10, batchSize.Min);
+            Assert.Equal(30, batchSize.Max);
+
+            // Everything was read so there's nothing left to drain
+            Assert.Equal(0, buffer.Drain(aggregator));
+        }
+
+        [Fact]
+        public void Drain_AggregatesPropertiesAsTheyWereWhenBuffered()
+        {
+            var buffer = new TelemetryEventBuffer(8);
+            var props = new Dictionary<TelemetryPropertyName, string>
+            {
+                { TelemetryPropertyName.ServerVersion, "16.0" },
+                { TelemetryPropertyName.EngineEdition, "Enterprise" }
+            };
+            Write(buffer, TelemetryEventName.Upsert, props, null);
+            // The caller may change or reuse its dictionary as soon as the event is tracked
+            props[TelemetryPropertyName.ServerVersion] = "15.0";
+            props[TelemetryPropertyName.Succeeded] = "True";
+            // Properties added in another order are still aggregated with the same ones
+            Write(buffer, TelemetryEventName.Upsert, new Dictionary<TelemetryPropertyName, string>
+            {
+                { TelemetryPropertyName.EngineEdition, "Enterprise" },
+                { TelemetryPropertyName.ServerVersion, "16.0" }
+            }, null);
+            props.Clear();
+
+            var aggregator = new TelemetryEventAggregator();
+            Assert.Equal(2, buffer.Drain(aggregator));
+            AggregatedTelemetryEvent upsert = Assert.Single(aggregator.Events);
+            Assert.Equal(2, upsert.Count);
+            Assert.Equal(2, upsert.Properties.Count);
+            Assert.Equal("16.0", upsert.Properties[TelemetryPropertyName.ServerVersion]);
+            Assert.Equal("Enterprise", upsert.Properties[TelemetryPropertyName.EngineEdition]);
+        }
+
+        [Fact]
+        public void Drain_AggregatesEventsByType()
+        {
+            var buffer = new TelemetryEventBuffer(8);
+            Write(buffer, TelemetryEventName.Convert, null, null, ConvertType.Json.ToString());
+            Write(buffer, TelemetryEventName.Convert, null, null, ConvertType.Json.ToString());
+            Write(buffer, TelemetryEventName.Convert, null, null, ConvertType.JArray.ToString());
+
+            var aggregator = new TelemetryEventAggregator();
+            Assert.Equal(3, buffer.Drain(aggregator));
+            Assert.Equal(2, aggregator.Events.Count);
+            Assert.Equal(2, Assert.Single(aggregator.Events, e => e.Properties[TelemetryPropertyName.Type] == ConvertType.Json.ToString()).Count);
+        }
+
+        [Fact]
+        public void TryClaim_DropsEventsWhenFullUntilDrained()
+        {
+            var buffer = new TelemetryEventBuffer(2);
+            Assert.True(Write(buffer, TelemetryEventName.FlushAsync, null, null));
+            Assert.True(Write(buffer, TelemetryEventName.FlushAsync, null, null));
+            Assert.False(Write(buffer, TelemetryEventName.FlushAsync, null, null));
+            Assert.Equal(1, buffer.ResetDroppedEventCount());
+
+            var aggregator = new TelemetryEventAggregator();
+            Assert.Equal(2, buffer.Drain(aggregator));
+            Assert.True(Write(buffer, TelemetryEventName.FlushAsync, null, null));
+            Assert.Equal(1, buffer.Drain(aggregator));
+            Assert.Equal(3, Assert.Single(aggregator.Events).Count);
+        }
+
+        private static bool Write(TelemetryEventBuffer buffer, TelemetryEventName eventName, IDictionary<TelemetryPropertyName, string> properties, IDictionary<TelemetryMeasureName, double> measurements, string type = null)
+        {
+            TelemetryEventRecord record = buffer.TryClaim(out long position);
+            if (record == null)
+            {
+                return false;
+            }
+            record.Set(eventName, properties, type, 1);
+            record.SetMeasures(measurements);
+            TelemetryEventBuffer.Publish(record, position);
+            return true;
+        }
+    }
+}
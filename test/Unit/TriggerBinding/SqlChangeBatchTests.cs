@@ -0,0 +1,106 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Generic;
+using System.IO;
+using Newtonsoft.Json.Linq;
+using Xunit;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
+{
+    public class SqlChangeBatchTests
+    {
+        private static readonly IReadOnlyList<(string name, string type)> PrimaryKeyColumns = new List<(string name, string type)> { ("ProductId", "int") };
+        private static readonly IReadOnlyList<string> UserTableColumns = new List<string> { "ProductId", "Name", "Cost", "LastModified" };
+
+        [Fact]
+        public void ToJson_MatchesSerializedChanges()
+        {
+            var rows = new List<IReadOnlyDictionary<string, object>>
+            {
+                new Dictionary<string, object> { { "SYS_CHANGE_OPERATION", "I" }, { "ProductId", 1 }, { "Name", "Product \"1\"" }, { "Cost", 100 }, { "LastModified", new DateTime(2024, 1, 2, 3, 4, 5) } },
+                new Dictionary<string, object> { { "SYS_CHANGE_OPERATION", "U" }, { "ProductId", 2 }, { "Name", DBNull.Value }, { "Cost", 200 }, { "LastModified", DBNull.Value }, { "_az_func_CommitTime", new DateTime(2024, 1, 2, 3, 4, 5) }, { "_az_func_CommitLagMs", 15L } },
+                new Dictionary<string, object> { { "SYS_CHANGE_OPERATION", "D" }, { "ProductId", 3 }, { "Name", DBNull.Value }, { "Cost", DBNull.Value }, { "LastModified", DBNull.Value } },
+            };
+
+            var batch = new SqlChangeBatch<JObject>(rows, PrimaryKeyColumns, UserTableColumns);
+
+            string expected = Utils.JsonSerializeObject(SqlTableChangeMonitor<JObject>.BuildChanges(rows, PrimaryKeyColumns, UserTableColumns));
+            Assert.Equal(expected, batch.ToJson());
+            // The writer is reused for the next payload
+            Assert.Equal(expected, batch.ToJson());
+        }
+
+        [Fact]
+        public void ToJson_WritesValuesAsRead()
+        {
+            var rows = new List<IReadOnlyDictionary<string, object>>
+            {
+                new Dictionary<string, object> { { "SYS_CHANGE_OPERATION", "I" }, { "ProductId", 1 }, { "Name", "Product 1" }, { "Cost", 12.50m }, { "LastModified", new DateTimeOffset(2024, 1, 2, 3, 4, 5, TimeSpan.FromHours(5)) } },
+            };
+
+            string json = new SqlChangeBatch<JObject>(rows, PrimaryKeyColumns, UserTableColumns).ToJson();
+
+            Assert.Equal("[{\"Operation\":0,\"Item\":{\"ProductId\":1,\"Name\":\"Product 1\",\"Cost\":12.50,\"LastModified\":\"2024-01-02T03:04:05+05:00\"}}]", json);
+        }
+
+        [Fact]
+        public void ToJson_Iso8601_WritesFixedTemporalFormat()
+        {
+            var rows = new List<IReadOnlyDictionary<string, object>>
+            {
+                new Dictionary<string, object> { { "SYS_CHANGE_OPERATION", "I" }, { "ProductId", 1 }, { "Name", "Product 1" }, { "Cost", new TimeSpan(0, 3, 4, 5, 6) }, { "LastModified", new DateTimeOffset(2024, 1, 2, 3, 4, 5, TimeSpan.FromHours(5)) } },
+                new Dictionary<string, object> { { "SYS_CHANGE_OPERATION", "U" }, { "ProductId", 2 }, { "Name", DBNull.Value }, { "Cost", DBNull.Value }, { "LastModified", new DateTime(2024, 1, 2, 3, 4, 5) } },
+            };
+
+            string json = new SqlChangeBatch<JObject>(rows, PrimaryKeyColumns, UserTableColumns).ToJson(SqlTemporalFormat.Iso8601);
+
+            Assert.Equal("[{\"Operation\":0,\"Item\":{\"ProductId\":1,\"Name\":\"Product 1\",\"Cost\":\"03:04:05.0060000\",\"LastModified\":\"2024-01-02T03:04:05.0000000+05:00\"}},"
+                + "{\"Operation\":1,\"Item\":{\"ProductId\":2,\"Name\":null,\"Cost\":null,\"LastModified\":\"2024-01-02T03:04:05.0000000Z\"}}]", json);
+        }
+
+        [Fact]
+        public void ToJson_Columnar_WritesColumnsOnce()
+        {
+            var rows = new List<IReadOnlyDictionary<string, object>>
+            {
+                new Dictionary<string, object> { { "SYS_CHANGE_OPERATION", "I" }, { "ProductId", 1 }, { "Name", "Product 1" }, { "Cost", 12.50m }, { "LastModified", DBNull.Value } },
+                new Dictionary<string, object> { { "SYS_CHANGE_OPERATION", "D" }, { "ProductId", 2 }, { "Name", "Product 2" }, { "Cost", 100 }, { "LastModified", DBNull.Value }, { "_az_func_CommitTime", new DateTime(2024, 1, 2, 3, 4, 5) }, { "_az_func_CommitLagMs", 15L } },
+            };
+
+            string json = new SqlChangeBatch<JObject>(rows, PrimaryKeyColumns, UserTableColumns).ToJson(SqlTemporalFormat.Default, SqlPayloadFormat.Columnar);
+
+            // Deleted rows only have the values of their primary keys
+            Assert.Equal("{\"columns\":[\"ProductId\",\"Name\",\"Cost\",\"LastModified\"],\"changes\":[[0,[1,\"Product 1\",12.50,null]],"
+                + "[2,[2,null,null,null],\"2024-01-02T03:04:05Z\",15]]}", json);
+        }
+
+        [Fact]
+        public void Enumerating_BuildsChanges()
+        {
+            var rows = new List<IReadOnlyDictionary<string, object>>
+            {
+                new Dictionary<string, object> { { "SYS_CHANGE_OPERATION", "D" }, { "ProductId", 3 }, { "Name", null }, { "Cost", null }, { "LastModified", null } },
+            };
+
+            var batch = new SqlChangeBatch<JObject>(rows, PrimaryKeyColumns, UserTableColumns);
+
+            SqlChange<JObject> change = Assert.Single(batch);
+            Assert.Equal(SqlChangeOperation.Delete, change.Operation);
+            Assert.Equal(3, change.Item["ProductId"].Value<int>());
+            Assert.Null(change.Item["Name"]);
+        }
+
+        [Fact]
+        public void Constructor_InvalidOperation_Throws()
+        {
+            var rows = new List<IReadOnlyDictionary<string, object>>
+            {
+                new Dictionary<string, object> { { "SYS_CHANGE_OPERATION", "X" }, { "ProductId", 1 } },
+            };
+
+            Assert.Throws<InvalidDataException>(() => new SqlChangeBatch<JObject>(rows, PrimaryKeyColumns, UserTableColumns));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System;
+using System.Collections.Concurrent;
+using System.Diagnostics;
+using System.Threading;
+using System.Threading.Tasks;
+using Microsoft.Extensions.Logging;
+using Moq;
+using Xunit;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
+{
+    public class SqlLeaseRenewalSchedulerTests
+    {
+        [Fact]
+        public void BuildRenewLeasesBatchCommandText_CombinesStatementsWithSingleAppLock()
+        {
+            var requests = new[]
+            {
+                new LeaseRenewalRequest(p => $"UPDATE [az_func].[Leases_a] -- {p}", "[]", 30000),
+                new LeaseRenewalRequest(p => $"UPDATE [az_func].[Leases_b] -- {p}", "[]", 60000),
+            };
+
+            string commandText = SqlLeaseRenewalScheduler.BuildRenewLeasesBatchCommandText(requests);
+
+            Assert.Contains("UPDATE [az_func].[Leases_a] -- @rowData_0", commandText);
+            Assert.Contains("UPDATE [az_func].[Leases_b] -- @rowData_1", commandText);
+            // The app lock is only acquired once for the whole batch
+            Assert.Equal(2, commandText.Split(new[] { "sp_getapplock" }, StringSplitOptions.None).Length);
+            Assert.Contains("@LockTimeout = 60000", commandText);
+            Assert.True(commandText.IndexOf("sp_getapplock", StringComparison.Ordinal) < commandText.IndexOf("UPDATE", StringComparison.Ordinal));
+        }
+
+        [Fact]
+        public void Register_NullArguments_Throws()
+        {
+            var scheduler = new SqlLeaseRenewalScheduler(TimeSpan.FromSeconds(15));
+            var participant = new Mock<ILeaseRenewalParticipant>();
+            var logger = new Mock<ILogger>();
+
+            Assert.Throws<ArgumentNullException>(() => scheduler.Register(null, participant.Object, logger.Object));
+            Assert.Throws<ArgumentNullException>(() => scheduler.Register("", participant.Object, logger.Object));
+            Assert.Throws<ArgumentNullException>(() => scheduler.Register("connectionString", null, logger.Object));
+            Assert.Throws<ArgumentNullException>(() => scheduler.Register("connectionString", participant.Object, null));
+        }
+
+        [Fact]
+        public async Task Register_RestartsLoopAfterFailureLoggingThroughRegisteredParticipant()
+        {
+            var fail = new TaskCompletionSource<bool>();
+            var loops = new ConcurrentQueue<CancellationToken>();
+            var scheduler = new SqlLeaseRenewalScheduler(TimeSpan.FromMilliseconds(10), async (connectionString, token) =>
+            {
+                loops.Enqueue(token);
+                if (loops.Count == 1)
+                {
+                    await fail.Task;
+                    throw new InvalidOperationException("Failed to renew leases");
+                }
+                await Task.Delay(Timeout.Infinite, token);
+            });
+            var firstLogger = new Mock<ILogger>();
+            var secondLogger = new Mock<ILogger>();
+
+            IDisposable first = scheduler.Register("connectionString", Mock.Of<ILeaseRenewalParticipant>(), firstLogger.Object);
+            IDisposable second = scheduler.Register("connectionString", Mock.Of<ILeaseRenewalParticipant>(), secondLogger.Object);
+            await WaitUntilAsync(() => loops.Count == 1);
+            first.Dispose();
+            fail.SetResult(true);
+
+            // The group keeps renewing the leases of the remaining participant on a new loop
+            await WaitUntilAsync(() => loops.Count == 2);
+            VerifyErrorLogged(secondLogger, Times.Once());
+            VerifyErrorLogged(firstLogger, Times.Never());
+
+            second.Dispose();
+            Assert.True(loops.ToArray()[1].IsCancellationRequested);
+        }
+
+        [Fact]
+        public async Task Unregister_StopsLoopOnceLastParticipantUnregisters()
+        {
+            var loops = new ConcurrentQueue<CancellationToken>();
+            var scheduler = new SqlLeaseRenewalScheduler(TimeSpan.FromMilliseconds(10), (connectionString, token) =>
+            {
+                loops.Enqueue(token);
+                return Task.Delay(Timeout.Infinite, token);
+            });
+            var logger = new Mock<ILogger>();
+
+            IDisposable first = scheduler.Register("connectionString", Mock.Of<ILeaseRenewalParticipant>(), logger.Object);
+            IDisposable second = scheduler.Register("connectionString", Mock.Of<ILeaseRenewalParticipant>(), logger.Object);
+            await WaitUntilAsync(() => loops.Count == 1);
+            loops.TryPeek(out CancellationToken token);
+
+            first.Dispose();
+            Assert.False(token.IsCancellationRequested);
+            second.Dispose();
+            Assert.True(token.IsCancellationRequested);
+
+            // Disposing a registration again doesn't cancel the stopped loop a second time
+            second.Dispose();
+            first.Dispose();
+
+            // A participant registering afterwards starts a new loop
+            IDisposable third = scheduler.Register("connectionString", Mock.Of<ILeaseRenewalParticipant>(), logger.Object);
+            await WaitUntilAsync(() => loops.Count == 2);
+            Assert.False(loops.ToArray()[1].IsCancellationRequested);
+            third.Dispose();
+            VerifyErrorLogged(logger, Times.Never());
+        }
+
+        [Fact]
+        public async Task Register_StartsLoopWithFirstParticipantsLogger()
+        {
+            var loops = new ConcurrentQueue<CancellationToken>();
+            var scheduler = new SqlLeaseRenewalScheduler(TimeSpan.FromMilliseconds(10), (connectionString, token) =>
+            {
+                loops.Enqueue(token);
+                return Task.Delay(Timeout.Infinite, token);
+            });
+            var logger = new Mock<ILogger>();
+
+            IDisposable registration = scheduler.Register("connectionString", Mock.Of<ILeaseRenewalParticipant>(), logger.Object);
+            await WaitUntilAsync(() => loops.Count == 1);
+
+            // The loop is only started once the first participant has been added, so it always has a logger to use
+            logger.Verify(l => l.Log(LogLevel.Debug, It.IsAny<EventId>(), It.IsAny<It.IsAnyType>(), It.IsAny<Exception>(), It.IsAny<Func<It.IsAnyType, Exception, string>>()), Times.Once());
+            registration.Dispose();
+            Assert.True(loops.ToArray()[0].IsCancellationRequested);
+        }
+
+        [Fact]
+        public void LeaseRenewalRequest_NullArguments_Throws()
+        {
+            Assert.Throws<ArgumentNullException>(() => new LeaseRenewalRequest(null, "[]", 30000));
+            Assert.Throws<ArgumentNullException>(() => new LeaseRenewalRequest(p => p, null, 30000));
+        }
+
+        private static async Task WaitUntilAsync(Func<bool> condition)
+        {
+            var stopwatch = Stopwatch.StartNew();
+            while (!condition())
+            {
+                Assert.True(stopwatch.ElapsedMilliseconds < 5000, "Timed out waiting for the lease renewal loop");
+                await Task.Delay(10);
+            }
+        }
+
+        private static void VerifyErrorLogged(Mock<ILogger> logger, Times times)
+        {
+            logger.Verify(l => l.Log(LogLevel.Error, It.IsAny<EventId>(), It.IsAny<It.IsAnyType>(), It.IsAny<Exception>(), It.IsAny<Func<It.IsAnyType, Exception, string>>()), times);
+        }
+    }
+}
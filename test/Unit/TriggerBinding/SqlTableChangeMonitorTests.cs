@@ -0,0 +1,89 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License. See License.txt in the project root for license information.
+
+using System.Collections.Generic;
+using Microsoft.Azure.WebJobs.Extensions.Sql.Samples.Common;
+using Xunit;
+
+namespace Microsoft.Azure.WebJobs.Extensions.Sql.Tests.Unit
+{
+    public class SqlTableChangeMonitorTests
+    {
+        [Fact]
+        public void BuildChanges_OnlySetsPrimaryKeysForDeletedRows()
+        {
+            var rows = new List<IReadOnlyDictionary<string, object>>
+            {
+                new Dictionary<string, object> { { "SYS_CHANGE_OPERATION", "I" }, { "ProductId", 1 }, { "Name", "Product 1" }, { "Cost", 100 } },
+                new Dictionary<string, object> { { "SYS_CHANGE_OPERATION", "D" }, { "ProductId", 2 }, { "Name", null }, { "Cost", null } },
+            };
+
+            List<SqlChange<Product>> changes = SqlTableChangeMonitor<Product>.BuildChanges(
+                rows,
+                new List<(string name, string type)> { ("ProductId", "int") },
+                new List<string> { "ProductId", "Name", "Cost" });
+
+            Assert.Equal(2, changes.Count);
+            Assert.Equal(SqlChangeOperation.Insert, changes[0].Operation);
+            Assert.Equal(new Product { ProductId = 1, Name = "Product 1", Cost = 100 }, changes[0].Item);
+            Assert.Equal(SqlChangeOperation.Delete, changes[1].Operation);
+            Assert.Equal(new Product { ProductId = 2 }, changes[1].Item);
+        }
+
+        [Fact]
+        public void IsBatchDrained_FalseWhenBatchReachedMaxBatchSize()
+        {
+            Assert.True(SqlTableChangeMonitor<Product>.IsBatchDrained(CreateRows(0), 3, 0));
+            Assert.True(SqlTableChangeMonitor<Product>.IsBatchDrained(CreateRows(2), 3, 0));
+            Assert.False(SqlTableChangeMonitor<Product>.IsBatchDrained(CreateRows(3), 3, 0));
+        }
+
+        [Fact]
+        public void IsBatchDrained_UsesRunningBatchBytesWhenMaxBatchBytesSet()
+        {
+            // The batch stayed under MaxBatchBytes so no row was left out
+            Assert.True(SqlTableChangeMonitor<Product>.IsBatchDrained(CreateRows(2, 100), 10, 250));
+            Assert.True(SqlTableChangeMonitor<Product>.IsBatchDrained(CreateRows(0, 100), 10, 250));
+            // The batch reached MaxBatchBytes so the next row may have been left out
+            Assert.False(SqlTableChangeMonitor<Product>.IsBatchDrained(CreateRows(3, 100), 10, 250));
+            Assert.False(SqlTableChangeMonitor<Product>.IsBatchDrained(CreateRows(1, 300), 10, 250));
+            Assert.False(SqlTableChangeMonitor<Product>.IsBatchDrained(CreateRows(10, 10), 10, 250));
+        }
+
+        [Fact]
+        public void RecomputeLastSyncVersionExclusive_OnlyAdvancesPastCompleteVersions()
+        {
+            var rows = new List<IReadOnlyDictionary<string, object>>
+            {
+                new Dictionary<string, object> { { SqlTriggerConstants.SysChangeVersionColumnName, 5L } },
+                new Dictionary<string, object> { { SqlTriggerConstants.SysChangeVersionColumnName, 6L } },
+                new Dictionary<string, object> { { SqlTriggerConstants.SysChangeVersionColumnName, 7L } },
+                new Dictionary<string, object> { { SqlTriggerConstants.SysChangeVersionColumnName, 7L } },
+            };
+
+            // Every available change was fetched, so all the versions are complete
+            Assert.Equal(7L, SqlTableChangeMonitor<Product>.RecomputeLastSyncVersionExclusive(rows, true));
+            // There may be more changes with the highest version which weren't fetched
+            Assert.Equal(6L, SqlTableChangeMonitor<Product>.RecomputeLastSyncVersionExclusive(rows, false));
+            Assert.Null(SqlTableChangeMonitor<Product>.RecomputeLastSyncVersionExclusive(rows.GetRange(2, 2), false));
+        }
+
+        /// <summary>
+        /// Creates the rows of a batch fetched in exclusive mode, with the running size of the batch if the rows have a size
+        /// </summary>
+        private static List<IReadOnlyDictionary<string, object>> CreateRows(int count, long rowSizeBytes = 0)
+        {
+            var rows = new List<IReadOnlyDictionary<string, object>>();
+            for (int i = 1; i <= count; i++)
+            {
+                var row = new Dictionary<string, object> { { SqlTriggerConstants.SysChangeVersionColumnName, (long)i } };
+                if (rowSizeBytes > 0)
+                {
+                    row[SqlTriggerConstants.RunningBatchBytesColumnName] = i * rowSizeBytes;
+                }
+                rows.Add(row);
+            }
+            return rows;
+        }
+    }
+}